@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.dmg.pmml.FieldName;
+import org.dmg.pmml.PMML;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.ModelEvaluatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.xd.tuple.Tuple;
+import org.springframework.xd.tuple.TupleBuilder;
+
+/**
+ * Measures every phase of the {@link TuplePmmlAnalytic} for each bundled test model: loading the document and creating
+ * its {@link Evaluator}, mapping the input {@link Tuple}, evaluating the model, mapping the output and all of it end to
+ * end. Run with {@code -prof gc}, the default of the {@code jmh} task, to see the allocations per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BundledModelBenchmark {
+
+	/**
+	 * The bundled test models together with a representative input.
+	 */
+	public enum BundledModel {
+
+		NAIVE_BAYES("iris-flower-classification-naive-bayes-1", "Predicted_Species") {
+
+			@Override
+			Tuple input() {
+				return TupleBuilder.tuple().of("Sepal.Length", 6.4, "Sepal.Width", 3.2, "Petal.Length", 4.5,
+						"Petal.Width", 1.5);
+			}
+		},
+
+		K_MEANS("iris-kmeans-clustering-1", "predictedValue") {
+
+			@Override
+			Tuple input() {
+				return TupleBuilder.tuple().of("Sepal.Length", 6.4, "Sepal.Width", 3.2, "Petal.Length", 4.5,
+						"Petal.Width", 1.5);
+			}
+		},
+
+		LINEAR_REGRESSION("interest-rate-simple-linear-regression-1", "rate") {
+
+			@Override
+			Tuple input() {
+				return TupleBuilder.tuple().of("year", 2015);
+			}
+		},
+
+		ASSOCIATION_RULES("shopping-association-rules-2", "Predicted_item") {
+
+			@Override
+			Tuple input() {
+				return TupleBuilder.tuple().of("item", Arrays.asList("Choclates", "Pencil"));
+			}
+
+			@Override
+			TuplePmmlAnalyticOutputDataMapper outputMapper() {
+				return new AssociationTuplePmmlAnalyticOutputDataMapper(Arrays.asList(outputField));
+			}
+		};
+
+		final String modelName;
+
+		final String outputField;
+
+		BundledModel(String modelName, String outputField) {
+			this.modelName = modelName;
+			this.outputField = outputField;
+		}
+
+		abstract Tuple input();
+
+		TuplePmmlAnalyticOutputDataMapper outputMapper() {
+			return new TuplePmmlAnalyticOutputDataMapper(Arrays.asList(outputField));
+		}
+
+		String location() {
+			return "classpath:analytics/pmml/" + modelName + ".pmml.xml";
+		}
+	}
+
+	@Param
+	public BundledModel model;
+
+	private ResourcePmmlLoader loader;
+
+	private TuplePmmlAnalyticInputDataMapper inputMapper;
+
+	private TuplePmmlAnalyticOutputDataMapper outputMapper;
+
+	private TuplePmmlAnalytic analytic;
+
+	private Tuple input;
+
+	private Map<FieldName, Object> modelInput;
+
+	private Map<FieldName, Object> modelOutput;
+
+	@Setup
+	public void setup() {
+
+		loader = new ResourcePmmlLoader();
+		inputMapper = new TuplePmmlAnalyticInputDataMapper(null);
+		outputMapper = model.outputMapper();
+
+		analytic = new TuplePmmlAnalytic(model.modelName, model.location(), loader, inputMapper, outputMapper);
+
+		input = model.input();
+		modelInput = inputMapper.mapInput(analytic, input);
+		modelOutput = analytic.evaluateModel(input);
+	}
+
+	@TearDown
+	public void tearDown() {
+		analytic.destroy();
+	}
+
+	@Benchmark
+	public Evaluator load() {
+
+		PMML pmml = loader.loadPmml(model.location());
+
+		return (Evaluator) ModelEvaluatorFactory.getInstance().getModelManager(pmml, pmml.getModels().get(0));
+	}
+
+	@Benchmark
+	public Map<FieldName, Object> mapInput() {
+		return inputMapper.mapInput(analytic, input);
+	}
+
+	@Benchmark
+	public Map<FieldName, ?> evaluate() {
+		return analytic.getPmmlEvaluator().evaluate(modelInput);
+	}
+
+	@Benchmark
+	public Tuple mapOutput() {
+		return outputMapper.mapOutput(analytic, input, modelOutput);
+	}
+
+	@Benchmark
+	public Tuple endToEnd() {
+		return analytic.evaluate(input);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.xd.tuple.Tuple;
+import org.springframework.xd.tuple.TupleBuilder;
+
+/**
+ * Compares scoring 10000 rows of the iris test models as a {@link ColumnarBatch} with exploding the same columns into
+ * one {@link Tuple} per row and scoring them with {@link TuplePmmlAnalytic#evaluateAll(List)}. The allocation rate can
+ * be reported with {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnarBatchBenchmark {
+
+	private static final int ROW_COUNT = 10000;
+
+	private static final List<String> COLUMN_NAMES = Arrays.asList("sepalLength", "sepalWidth", "petalLength",
+			"petalWidth");
+
+	private static final String INPUT_FIELD_MAPPING = "sepalLength:Sepal.Length,sepalWidth:Sepal.Width,"
+			+ "petalLength:Petal.Length,petalWidth:Petal.Width";
+
+	@Param({ "iris-kmeans-clustering-1", "iris-flower-classification-naive-bayes-1" })
+	public String model;
+
+	private ColumnarPmmlAnalytic columnarAnalytic;
+
+	private TuplePmmlAnalytic tupleAnalytic;
+
+	private double[][] columns;
+
+	@Setup
+	public void setup() {
+
+		String location = "classpath:analytics/pmml/" + model + ".pmml.xml";
+		String outputFieldMapping = model.contains("kmeans") ? "predictedValue" : "Predicted_Species";
+
+		columnarAnalytic = new ColumnarPmmlAnalytic(model, location, new ResourcePmmlLoader(), INPUT_FIELD_MAPPING,
+				outputFieldMapping);
+		tupleAnalytic = new TuplePmmlAnalytic(model, location, new ResourcePmmlLoader(), INPUT_FIELD_MAPPING,
+				outputFieldMapping);
+
+		Random random = new Random(42);
+
+		columns = new double[COLUMN_NAMES.size()][ROW_COUNT];
+		for (double[] column : columns) {
+			for (int row = 0; row < ROW_COUNT; row++) {
+				column[row] = Math.round(random.nextDouble() * 70) / 10.0;
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+
+		columnarAnalytic.destroy();
+		tupleAnalytic.destroy();
+	}
+
+	@Benchmark
+	public ColumnarBatch columnar() {
+		return columnarAnalytic.evaluateBatch(new ColumnarBatch(COLUMN_NAMES, (Object[]) columns));
+	}
+
+	@Benchmark
+	public List<Tuple> tuplePerRow() {
+
+		List<Tuple> tuples = new ArrayList<Tuple>(ROW_COUNT);
+		for (int row = 0; row < ROW_COUNT; row++) {
+			tuples.add(TupleBuilder.tuple().of(COLUMN_NAMES.get(0), columns[0][row], COLUMN_NAMES.get(1),
+					columns[1][row], COLUMN_NAMES.get(2), columns[2][row], COLUMN_NAMES.get(3), columns[3][row]));
+		}
+
+		return tupleAnalytic.evaluateAll(tuples);
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.dmg.pmml.FieldName;
+import org.dmg.pmml.Model;
+import org.dmg.pmml.PMML;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.EvaluatorUtil;
+import org.jpmml.evaluator.ModelEvaluatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the evaluation of the regression and k-means test models by jpmml with the compiled {@link Evaluator}s of
+ * the {@link CompiledModelEvaluatorFactory}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledModelEvaluatorBenchmark {
+
+	@Param({ "interest-rate-simple-linear-regression-1", "iris-kmeans-clustering-1" })
+	public String model;
+
+	private Evaluator jpmmlEvaluator;
+
+	private Evaluator compiledEvaluator;
+
+	private Map<FieldName, Object> modelInput;
+
+	@Setup
+	public void setup() {
+
+		PMML pmml = new ResourcePmmlLoader().loadPmml("classpath:analytics/pmml/" + model + ".pmml.xml");
+		Model pmmlModel = pmml.getModels().get(0);
+
+		jpmmlEvaluator = (Evaluator) ModelEvaluatorFactory.getInstance().getModelManager(pmml, pmmlModel);
+		compiledEvaluator = CompiledModelEvaluatorFactory.createModelEvaluator(pmml, pmmlModel);
+
+		modelInput = new HashMap<FieldName, Object>();
+		for (FieldName activeField : jpmmlEvaluator.getActiveFields()) {
+			modelInput.put(activeField, EvaluatorUtil.prepare(jpmmlEvaluator, activeField, 5.0));
+		}
+	}
+
+	@Benchmark
+	public Map<FieldName, ?> jpmml() {
+		return jpmmlEvaluator.evaluate(modelInput);
+	}
+
+	@Benchmark
+	public Map<FieldName, ?> compiled() {
+		return compiledEvaluator.evaluate(modelInput);
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+
+/**
+ * Measures the load time, the peak heap and the retained heap of a synthetic ensemble of 5000 regression trees loaded
+ * with and without {@code compactModels}. The model is loaded the way the module loads it, i.e. by creating a
+ * {@link TuplePmmlAnalytic} that acquires the document from the {@link PmmlModelCache}, and released again before the
+ * next iteration. The iterations are shorter than a single load, so every iteration measures exactly one load. The heap
+ * usage is reported as the secondary results {@code peakHeapMegabytes} and {@code retainedHeapMegabytes}, the
+ * allocation rate during the load can be reported with {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LargeEnsembleLoaderBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean compactModels;
+
+	private File ensemble;
+
+	private ResourcePmmlLoader loader;
+
+	@Setup
+	public void setup() throws Exception {
+
+		ensemble = File.createTempFile("tree-ensemble", ".pmml.xml");
+		new TreeEnsembleGenerator(5000, 5).writeTo(ensemble);
+
+		loader = new ResourcePmmlLoader();
+		loader.setCompactModels(compactModels);
+	}
+
+	@TearDown
+	public void tearDown() {
+		ensemble.delete();
+	}
+
+	@Benchmark
+	public TuplePmmlAnalytic load(HeapUsage heapUsage) {
+		return heapUsage.hold(new TuplePmmlAnalytic(null, ensemble.toURI().toString(), loader, (String) null, null));
+	}
+
+	/**
+	 * The heap usage of the load in the current iteration, the model is released again before the next iteration. The
+	 * peak is the sum of the peak usages of all heap memory pools during the iteration, so it is an upper bound of the
+	 * actual peak. JMH sums event counters over the iterations, so every iteration contributes its share of the average.
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class HeapUsage {
+
+		public double peakHeapMegabytes;
+
+		public double retainedHeapMegabytes;
+
+		private long heapWithoutModel;
+
+		private TuplePmmlAnalytic analytic;
+
+		@Setup(Level.Iteration)
+		public void start() {
+
+			release();
+
+			heapWithoutModel = usedHeapAfterGc();
+
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				if (pool.getType() == MemoryType.HEAP) {
+					pool.resetPeakUsage();
+				}
+			}
+		}
+
+		@TearDown(Level.Iteration)
+		public void stop(IterationParams iterationParams) {
+
+			long peakHeap = 0;
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				if (pool.getType() == MemoryType.HEAP) {
+					peakHeap += pool.getPeakUsage().getUsed();
+				}
+			}
+
+			double scale = (1 << 20) * (double) iterationParams.getCount();
+
+			peakHeapMegabytes = (peakHeap - heapWithoutModel) / scale;
+			retainedHeapMegabytes = (usedHeapAfterGc() - heapWithoutModel) / scale;
+		}
+
+		TuplePmmlAnalytic hold(TuplePmmlAnalytic analytic) {
+
+			release();
+
+			return this.analytic = analytic;
+		}
+
+		private void release() {
+
+			if (analytic != null) {
+				analytic.destroy();
+				analytic = null;
+			}
+		}
+
+		private static long usedHeapAfterGc() {
+
+			System.gc();
+
+			Runtime runtime = Runtime.getRuntime();
+
+			return runtime.totalMemory() - runtime.freeMemory();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.dmg.pmml.PMML;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures loading the test models and a synthetic ensemble of 1000 regression trees from their XML documents, which
+ * dominates the start of the module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PmmlLoaderStartupBenchmark {
+
+	private static final String TREE_ENSEMBLE = "tree-ensemble";
+
+	@Param({ "interest-rate-simple-linear-regression-1", "iris-flower-classification-naive-bayes-1",
+			"iris-flower-simple-linear-regression-1", "iris-kmeans-clustering-1", "multiple-models",
+			"shopping-association-rules-1", TREE_ENSEMBLE })
+	public String model;
+
+	private String modelLocation;
+
+	private File ensemble;
+
+	private ResourcePmmlLoader xmlLoader;
+
+	@Setup
+	public void setup() throws Exception {
+
+		if (TREE_ENSEMBLE.equals(model)) {
+
+			ensemble = File.createTempFile(TREE_ENSEMBLE, ".pmml.xml");
+			new TreeEnsembleGenerator(1000, 5).writeTo(ensemble);
+
+			modelLocation = ensemble.toURI().toString();
+		}
+		else {
+			modelLocation = "classpath:analytics/pmml/" + model + ".pmml.xml";
+		}
+
+		xmlLoader = new ResourcePmmlLoader();
+	}
+
+	@TearDown
+	public void tearDown() {
+
+		if (ensemble != null) {
+			ensemble.delete();
+		}
+	}
+
+	@Benchmark
+	public PMML xml() {
+		return xmlLoader.loadPmml(modelLocation);
+	}
+}
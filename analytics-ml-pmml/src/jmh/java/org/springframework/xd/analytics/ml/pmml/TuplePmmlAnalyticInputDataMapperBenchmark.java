@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.dmg.pmml.FieldName;
+import org.jpmml.evaluator.EvaluatorUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.xd.analytics.ml.AbstractFieldMappingAwareDataMapper;
+import org.springframework.xd.analytics.ml.InputMapper;
+import org.springframework.xd.tuple.Tuple;
+import org.springframework.xd.tuple.TupleBuilder;
+
+/**
+ * Compares the compiled binding plan of {@link TuplePmmlAnalyticInputDataMapper} with the previous per-field lookup
+ * implementation for {@link Tuple}s that carry additional fields which are not used by the model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TuplePmmlAnalyticInputDataMapperBenchmark {
+
+	private static final List<String> INPUT_FIELD_MAPPING = Arrays.asList("sepalLength:Sepal.Length",
+			"sepalWidth:Sepal.Width", "petalLength:Petal.Length", "petalWidth:Petal.Width");
+
+	@Param({ "0", "20", "200" })
+	public int additionalFields;
+
+	private TuplePmmlAnalytic analytic;
+
+	private TuplePmmlAnalyticInputDataMapper mapper;
+
+	private FieldLookupInputDataMapper fieldLookupMapper;
+
+	private Tuple input;
+
+	@Setup
+	public void setup() {
+
+		mapper = new TuplePmmlAnalyticInputDataMapper(INPUT_FIELD_MAPPING);
+		fieldLookupMapper = new FieldLookupInputDataMapper(INPUT_FIELD_MAPPING);
+
+		analytic = new TuplePmmlAnalytic(null,
+				"classpath:analytics/pmml/iris-flower-classification-naive-bayes-1.pmml.xml", mapper,
+				new TuplePmmlAnalyticOutputDataMapper(Arrays.asList("Predicted_Species:predictedSpecies")));
+
+		TupleBuilder builder = TupleBuilder.tuple();
+		for (int i = 0; i < additionalFields; i++) {
+			builder.put("field" + i, "value" + i);
+		}
+
+		input = builder.put("sepalLength", 6.4).put("sepalWidth", 3.2).put("petalLength", 4.5)
+				.put("petalWidth", 1.5).build();
+	}
+
+	@Benchmark
+	public Map<FieldName, Object> bindingPlan() {
+		return mapper.mapInput(analytic, input);
+	}
+
+	@Benchmark
+	public Map<FieldName, Object> fieldLookup() {
+		return fieldLookupMapper.mapInput(analytic, input);
+	}
+
+	/**
+	 * The field by field lookup that was used by {@link TuplePmmlAnalyticInputDataMapper} before the binding plan was
+	 * introduced. Serves as the baseline for this benchmark.
+	 */
+	static class FieldLookupInputDataMapper extends AbstractFieldMappingAwareDataMapper implements
+			InputMapper<Tuple, PmmlAnalytic<Tuple, Tuple>, Map<FieldName, Object>> {
+
+		private final Map<String, String> inputFieldToModelInputNameMapping;
+
+		FieldLookupInputDataMapper(List<String> inputFieldNameMapping) {
+			this.inputFieldToModelInputNameMapping = new HashMap<String, String>(
+					extractFieldNameMappingFrom(new ArrayList<String>(inputFieldNameMapping)));
+		}
+
+		@Override
+		public Map<FieldName, Object> mapInput(PmmlAnalytic<Tuple, Tuple> analytic, Tuple input) {
+
+			Map<FieldName, Object> inputData = new HashMap<FieldName, Object>();
+			for (String fieldName : input.getFieldNames()) {
+
+				String modelInputFieldNameToUse = inputFieldToModelInputNameMapping.get(fieldName);
+				if (modelInputFieldNameToUse == null) {
+					continue;
+				}
+
+				FieldName modelInputFieldName = new FieldName(modelInputFieldNameToUse);
+				inputData.put(modelInputFieldName,
+						EvaluatorUtil.prepare(analytic.getPmmlEvaluator(), modelInputFieldName, input.getValue(fieldName)));
+			}
+
+			return inputData;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.dmg.pmml.FieldName;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.xd.tuple.Tuple;
+import org.springframework.xd.tuple.TupleBuilder;
+
+/**
+ * Compares the cached output layout of {@link TuplePmmlAnalyticOutputDataMapper} with the previous list based merging
+ * of the model output into wide {@link Tuple}s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TuplePmmlAnalyticOutputDataMapperBenchmark {
+
+	private static final List<String> OUTPUT_FIELD_MAPPING = Arrays.asList("Predicted_Species:predictedSpecies",
+			"Probability_setosa:probabilitySetosa", "Probability_versicolor:probabilityVersicolor",
+			"Probability_virginica:probabilityVirginica");
+
+	@Param({ "0", "20", "300" })
+	public int additionalFields;
+
+	private TuplePmmlAnalyticOutputDataMapper mapper;
+
+	private TuplePmmlAnalyticOutputDataMapper listMergingMapper;
+
+	private Tuple input;
+
+	private Map<FieldName, Object> modelOutput;
+
+	@Setup
+	public void setup() {
+
+		mapper = new TuplePmmlAnalyticOutputDataMapper(OUTPUT_FIELD_MAPPING);
+
+		// overriding addOutputEntriesFromModelOutput selects the list based merging
+		listMergingMapper = new TuplePmmlAnalyticOutputDataMapper(OUTPUT_FIELD_MAPPING) {
+
+			@Override
+			protected void addOutputEntriesFromModelOutput(Map<FieldName, ? super Object> modelOutput,
+					List<String> outputNames, List<Object> outputValues) {
+				super.addOutputEntriesFromModelOutput(modelOutput, outputNames, outputValues);
+			}
+		};
+
+		TupleBuilder builder = TupleBuilder.tuple();
+		for (int i = 0; i < additionalFields; i++) {
+			builder.put("field" + i, "value" + i);
+		}
+
+		input = builder.put("sepalLength", 6.4).put("sepalWidth", 3.2).put("petalLength", 4.5)
+				.put("petalWidth", 1.5).build();
+
+		modelOutput = new LinkedHashMap<FieldName, Object>();
+		modelOutput.put(new FieldName("Species"), "versicolor");
+		modelOutput.put(new FieldName("Predicted_Species"), "versicolor");
+		modelOutput.put(new FieldName("Probability_setosa"), 0.0);
+		modelOutput.put(new FieldName("Probability_versicolor"), 0.8);
+		modelOutput.put(new FieldName("Probability_virginica"), 0.2);
+	}
+
+	@Benchmark
+	public Tuple outputLayout() {
+		return mapper.mapOutput(null, input, modelOutput);
+	}
+
+	@Benchmark
+	public Tuple listMerging() {
+		return listMergingMapper.mapOutput(null, input, modelOutput);
+	}
+}
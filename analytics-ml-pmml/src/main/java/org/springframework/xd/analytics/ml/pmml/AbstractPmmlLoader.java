@@ -16,6 +16,11 @@
 
 package org.springframework.xd.analytics.ml.pmml;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import javax.xml.bind.Unmarshaller;
 import javax.xml.transform.sax.SAXSource;
 
 import org.apache.commons.logging.Log;
@@ -24,19 +29,47 @@ import org.dmg.pmml.PMML;
 import org.jpmml.model.ImportFilter;
 import org.jpmml.model.JAXBUtil;
 import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
 import org.xml.sax.InputSource;
 
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+
 /**
  * An abstract implementation of a {@link PmmlLoader} that can build a
  * {@link org.dmg.pmml.PMML} instance form a given {@link org.xml.sax.InputSource}. Sub-classes can customize the
  * resolving process by implementing the {@link #getPmmlText(String)} method.
+ * <p>
+ * With {@code compactModels} every PMML object is compacted by a {@link CompactingUnmarshallerListener} right after
+ * JAXB has unmarshalled it, which lowers the peak and steady-state memory of large models at the cost of a slower load.
+ * </p>
  * 
  * @author Thomas Darimont
  */
 public abstract class AbstractPmmlLoader implements PmmlLoader {
 
+	private static final HashFunction CONTENT_HASH_FUNCTION = Hashing.sha256();
+
 	protected final Log log = LogFactory.getLog(this.getClass());
 
+	private volatile boolean compactModels;
+
+	/**
+	 * @param compactModels whether to compact the PMML objects while the document is parsed.
+	 */
+	public void setCompactModels(boolean compactModels) {
+		this.compactModels = compactModels;
+	}
+
+	/**
+	 * @return whether the PMML objects are compacted while the document is parsed.
+	 */
+	public boolean isCompactModels() {
+		return compactModels;
+	}
+
 	/**
 	 * Performs the actual resolving process. Sub-classes should override this method to implement other resolve
 	 * mechanisms.
@@ -57,17 +90,166 @@ public abstract class AbstractPmmlLoader implements PmmlLoader {
 
 		Assert.notNull("modelLocation", modelLocation);
 
+		try {
+			return unmarshalPmml(getPmmlText(modelLocation));
+		}
+		catch (Exception ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Returns the prefix of the {@link PmmlModelCache} keys of the documents at the given {@code modelLocation} as
+	 * parsed by this loader, i.e. the loader type, its {@code compactModels} setting and the {@code modelLocation}.
+	 * 
+	 * @param modelLocation must not be {@literal null}.
+	 * @return
+	 */
+	String getModelLocationKey(String modelLocation) {
+		return getClass().getName() + (compactModels ? "(compact)" : "") + "@" + modelLocation;
+	}
+
+	/**
+	 * Returns a key that identifies the content of the {@link org.dmg.pmml.PMML} document at the given
+	 * {@code modelLocation} as parsed by this loader. The key consists of the {@link #getModelLocationKey(String)
+	 * location key} and the SHA-256 hash of the document, which is read completely but not parsed.
+	 * 
+	 * @param modelLocation must not be {@literal null}.
+	 * @return the key or {@literal null} if the document can not be read as a byte stream.
+	 */
+	public String getModelCacheKey(String modelLocation) {
+
+		Assert.notNull(modelLocation, "modelLocation");
+
 		try {
 
 			InputSource pmmlText = getPmmlText(modelLocation);
+			InputStream in = pmmlText.getByteStream();
 
-			// ImportFilter handles PMML version differences
-			SAXSource transformedSource = ImportFilter.apply(pmmlText);
+			if (in == null) {
+				closeQuietly(pmmlText.getCharacterStream());
+				return null;
+			}
 
-			return JAXBUtil.unmarshalPMML(transformedSource);
+			try {
+
+				HashingInputStream hashingIn = new HashingInputStream(CONTENT_HASH_FUNCTION, in);
+				ByteStreams.copy(hashingIn, ByteStreams.nullOutputStream());
+
+				return getModelLocationKey(modelLocation) + "@" + hashingIn.hash();
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (Exception ex) {
+
+			if (log.isDebugEnabled()) {
+				log.debug("Could not hash the pmml at modelLocation: " + modelLocation, ex);
+			}
+
+			return null;
+		}
+	}
+
+	/**
+	 * Parses the {@link org.dmg.pmml.PMML} document at the given {@code modelLocation} like {@link #loadPmml(String)}
+	 * and hashes it while it is streamed into the parser, so the returned key always identifies the parsed content even
+	 * if the document is changed concurrently.
+	 * 
+	 * @param modelLocation must not be {@literal null}.
+	 * @return the parsed document together with its {@link #getModelCacheKey(String) model cache key}, the key is
+	 *         {@literal null} if the document was not read as a byte stream.
+	 */
+	KeyedPmml loadKeyedPmml(String modelLocation) {
+
+		Assert.notNull(modelLocation, "modelLocation");
+
+		try {
+
+			InputSource pmmlText = getPmmlText(modelLocation);
+			InputStream in = pmmlText.getByteStream();
+
+			if (in == null) {
+				return new KeyedPmml(null, unmarshalPmml(pmmlText));
+			}
+
+			try {
+
+				HashingInputStream hashingIn = new HashingInputStream(CONTENT_HASH_FUNCTION, in);
+
+				// the parser may close the stream before it has read trailing content
+				pmmlText.setByteStream(StreamUtils.nonClosing(hashingIn));
+				PMML pmml = unmarshalPmml(pmmlText);
+				ByteStreams.copy(hashingIn, ByteStreams.nullOutputStream());
+
+				return new KeyedPmml(getModelLocationKey(modelLocation) + "@" + hashingIn.hash(), pmml);
+			}
+			finally {
+				in.close();
+			}
 		}
 		catch (Exception ex) {
 			throw new RuntimeException(ex);
 		}
 	}
+
+	private void closeQuietly(Reader reader) {
+
+		if (reader == null) {
+			return;
+		}
+
+		try {
+			reader.close();
+		}
+		catch (IOException ex) {
+			// ignore
+		}
+	}
+
+	/**
+	 * Parses the {@link org.dmg.pmml.PMML} document from the given {@code pmmlText}.
+	 * 
+	 * @param pmmlText must not be {@literal null}.
+	 * @return
+	 * @throws Exception
+	 */
+	protected PMML unmarshalPmml(InputSource pmmlText) throws Exception {
+
+		// ImportFilter handles PMML version differences
+		SAXSource transformedSource = ImportFilter.apply(pmmlText);
+
+		if (!compactModels) {
+			return JAXBUtil.unmarshalPMML(transformedSource);
+		}
+
+		CompactingUnmarshallerListener listener = new CompactingUnmarshallerListener();
+
+		Unmarshaller unmarshaller = JAXBUtil.createUnmarshaller();
+		unmarshaller.setListener(listener);
+
+		PMML pmml = (PMML) unmarshaller.unmarshal(transformedSource);
+
+		if (log.isDebugEnabled()) {
+			log.debug("Compacted " + listener.getCompactedObjectCount() + " PMML objects");
+		}
+
+		return pmml;
+	}
+
+	/**
+	 * A parsed {@link org.dmg.pmml.PMML} document together with the key of its content.
+	 */
+	static class KeyedPmml {
+
+		final String key;
+
+		final PMML pmml;
+
+		KeyedPmml(String key, PMML pmml) {
+			this.key = key;
+			this.pmml = pmml;
+		}
+	}
 }
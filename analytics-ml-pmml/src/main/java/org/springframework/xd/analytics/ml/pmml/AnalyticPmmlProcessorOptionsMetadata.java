@@ -16,15 +16,34 @@
 
 package org.springframework.xd.analytics.ml.pmml;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
 import org.hibernate.validator.constraints.NotBlank;
+import org.springframework.util.StringUtils;
 import org.springframework.xd.module.options.spi.ModuleOption;
+import org.springframework.xd.module.options.spi.ProfileNamesProvider;
 
 /**
  * Captures module options to the {@code analytic-pmml} module.
  * 
  * @author Eric Bottard
  */
-public class AnalyticPmmlProcessorOptionsMetadata {
+public class AnalyticPmmlProcessorOptionsMetadata implements ProfileNamesProvider {
+
+	static final String BATCH_PROFILE = "use-batch";
+
+	static final String MULTI_MODEL_PROFILE = "use-multi-model";
+
+	static final String COMPILED_MODELS_PROFILE = "use-compiled-models";
+
+	static final String WORKER_POOL_PROFILE = "use-worker-pool";
+
+	static final String INPUT_VALIDATION_PROFILE = "use-input-validation";
 
 	private String modelName;
 
@@ -34,6 +53,46 @@ public class AnalyticPmmlProcessorOptionsMetadata {
 
 	private String outputFieldMapping;
 
+	private int batchSize = 1;
+
+	private long batchTimeout = 1000;
+
+	private long reloadInterval;
+
+	private String httpCacheDirectory;
+
+	private int modelConcurrency = 1;
+
+	private long resultCacheSize;
+
+	private long resultCacheTimeToLive;
+
+	private boolean compileModels;
+
+	private boolean compactModels;
+
+	private int workers = 1;
+
+	private int workerQueueCapacity = 100;
+
+	private boolean preserveOrder = true;
+
+	private String shadowModelName;
+
+	private String shadowLocation;
+
+	private double shadowSamplePercentage = 10;
+
+	private int shadowQueueCapacity = 1000;
+
+	private int warmUpIterations;
+
+	private String warmUpSampleLocation;
+
+	private boolean validateInput;
+
+	private boolean rejectMissingValues;
+
 	public String getModelName() {
 		return modelName;
 	}
@@ -51,12 +110,104 @@ public class AnalyticPmmlProcessorOptionsMetadata {
 		return outputFieldMapping;
 	}
 
-	@ModuleOption("the name of the model to use, from the PMML document")
+	@Min(1)
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	@Min(1)
+	public long getBatchTimeout() {
+		return batchTimeout;
+	}
+
+	@Min(0)
+	public long getReloadInterval() {
+		return reloadInterval;
+	}
+
+	public String getHttpCacheDirectory() {
+		return httpCacheDirectory;
+	}
+
+	@Min(1)
+	public int getModelConcurrency() {
+		return modelConcurrency;
+	}
+
+	@Min(0)
+	public long getResultCacheSize() {
+		return resultCacheSize;
+	}
+
+	@Min(0)
+	public long getResultCacheTimeToLive() {
+		return resultCacheTimeToLive;
+	}
+
+	public boolean isCompileModels() {
+		return compileModels;
+	}
+
+	public boolean isCompactModels() {
+		return compactModels;
+	}
+
+	@Min(0)
+	public int getWorkers() {
+		return workers;
+	}
+
+	@Min(0)
+	public int getWorkerQueueCapacity() {
+		return workerQueueCapacity;
+	}
+
+	public boolean isPreserveOrder() {
+		return preserveOrder;
+	}
+
+	public String getShadowModelName() {
+		return shadowModelName;
+	}
+
+	public String getShadowLocation() {
+		return shadowLocation;
+	}
+
+	@Min(0)
+	@Max(100)
+	public double getShadowSamplePercentage() {
+		return shadowSamplePercentage;
+	}
+
+	@Min(1)
+	public int getShadowQueueCapacity() {
+		return shadowQueueCapacity;
+	}
+
+	@Min(0)
+	public int getWarmUpIterations() {
+		return warmUpIterations;
+	}
+
+	public String getWarmUpSampleLocation() {
+		return warmUpSampleLocation;
+	}
+
+	public boolean isValidateInput() {
+		return validateInput;
+	}
+
+	public boolean isRejectMissingValues() {
+		return rejectMissingValues;
+	}
+
+	@ModuleOption("the name of the model to use, from the PMML document, a comma separated list evaluates several models")
 	public void setModelName(String modelName) {
 		this.modelName = modelName;
 	}
 
-	@ModuleOption("the location of the PMML xml file")
+	@ModuleOption("the location of the PMML xml file, may be compressed as .gz or .zip")
 	public void setLocation(String location) {
 		this.location = location;
 	}
@@ -71,4 +222,146 @@ public class AnalyticPmmlProcessorOptionsMetadata {
 		this.outputFieldMapping = outputFieldMapping;
 	}
 
+	@ModuleOption("the number of tuples to evaluate as one batch, 1 disables batching")
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	@ModuleOption("the maximum time in ms to wait for a batch to fill up before it is evaluated")
+	public void setBatchTimeout(long batchTimeout) {
+		this.batchTimeout = batchTimeout;
+	}
+
+	@ModuleOption("the interval in ms to check the location for a changed PMML document, 0 disables reloading")
+	public void setReloadInterval(long reloadInterval) {
+		this.reloadInterval = reloadInterval;
+	}
+
+	@ModuleOption("the directory to cache PMML documents from http locations in, caching is disabled if not set")
+	public void setHttpCacheDirectory(String httpCacheDirectory) {
+		this.httpCacheDirectory = httpCacheDirectory;
+	}
+
+	@ModuleOption("the number of threads to evaluate several models with, 1 evaluates them sequentially")
+	public void setModelConcurrency(int modelConcurrency) {
+		this.modelConcurrency = modelConcurrency;
+	}
+
+	@ModuleOption("the maximum number of model results to cache for repeated model inputs, 0 disables the cache")
+	public void setResultCacheSize(long resultCacheSize) {
+		this.resultCacheSize = resultCacheSize;
+	}
+
+	@ModuleOption("the time in seconds after which a cached model result expires, 0 keeps results until they are evicted")
+	public void setResultCacheTimeToLive(long resultCacheTimeToLive) {
+		this.resultCacheTimeToLive = resultCacheTimeToLive;
+	}
+
+	@ModuleOption("whether to evaluate regression and k-means clustering models with compiled evaluators")
+	public void setCompileModels(boolean compileModels) {
+		this.compileModels = compileModels;
+	}
+
+	@ModuleOption("whether to compact the parsed PMML document to lower the memory footprint of large models")
+	public void setCompactModels(boolean compactModels) {
+		this.compactModels = compactModels;
+	}
+
+	@ModuleOption("the number of threads to evaluate tuples with, 1 evaluates on the caller thread, 0 uses one thread per processor")
+	public void setWorkers(int workers) {
+		this.workers = workers;
+	}
+
+	@ModuleOption("the number of tuples that may wait for a worker thread before the caller is blocked")
+	public void setWorkerQueueCapacity(int workerQueueCapacity) {
+		this.workerQueueCapacity = workerQueueCapacity;
+	}
+
+	@ModuleOption("whether worker threads emit the results in the order the tuples were received")
+	public void setPreserveOrder(boolean preserveOrder) {
+		this.preserveOrder = preserveOrder;
+	}
+
+	@ModuleOption("the name of the shadow model to compare the model with, from the PMML document at the shadowLocation")
+	public void setShadowModelName(String shadowModelName) {
+		this.shadowModelName = shadowModelName;
+	}
+
+	@ModuleOption("the location of the PMML xml file of a shadow model to compare the model with, disabled if not set")
+	public void setShadowLocation(String shadowLocation) {
+		this.shadowLocation = shadowLocation;
+	}
+
+	@ModuleOption("the percentage of tuples to evaluate with the shadow model as well")
+	public void setShadowSamplePercentage(double shadowSamplePercentage) {
+		this.shadowSamplePercentage = shadowSamplePercentage;
+	}
+
+	@ModuleOption("the number of tuples that may wait for the shadow model before further samples are dropped")
+	public void setShadowQueueCapacity(int shadowQueueCapacity) {
+		this.shadowQueueCapacity = shadowQueueCapacity;
+	}
+
+	@ModuleOption("the number of evaluations to warm up the model with before the module is started and after reloads, 0 disables the warm-up")
+	public void setWarmUpIterations(int warmUpIterations) {
+		this.warmUpIterations = warmUpIterations;
+	}
+
+	@ModuleOption("the location of a CSV file with a header of model field names to warm up the model with, if not set inputs are synthesized from the model")
+	public void setWarmUpSampleLocation(String warmUpSampleLocation) {
+		this.warmUpSampleLocation = warmUpSampleLocation;
+	}
+
+	@ModuleOption("whether to check tuples against the data dictionary of the model and send invalid ones as error messages to the errorChannel")
+	public void setValidateInput(boolean validateInput) {
+		this.validateInput = validateInput;
+	}
+
+	@ModuleOption("whether the input validation rejects tuples with missing values for fields without a missing value replacement")
+	public void setRejectMissingValues(boolean rejectMissingValues) {
+		this.rejectMissingValues = rejectMissingValues;
+	}
+
+	@AssertTrue(message = "shadowLocation can not be used with several models in modelName")
+	public boolean isShadowLocationWithSingleModel() {
+		return !StringUtils.hasText(shadowLocation) || !hasMultipleModels();
+	}
+
+	@AssertTrue(message = "validateInput can not be used with several models in modelName")
+	public boolean isValidateInputWithSingleModel() {
+		return !validateInput || !hasMultipleModels();
+	}
+
+	private boolean hasMultipleModels() {
+		return modelName != null && modelName.contains(",");
+	}
+
+	@Override
+	public String[] profilesToActivate() {
+
+		List<String> profiles = new ArrayList<String>();
+
+		if (batchSize > 1) {
+			profiles.add(BATCH_PROFILE);
+		}
+
+		if (hasMultipleModels()) {
+			profiles.add(MULTI_MODEL_PROFILE);
+		}
+
+		if (compileModels) {
+			profiles.add(COMPILED_MODELS_PROFILE);
+		}
+
+		if (validateInput) {
+			profiles.add(INPUT_VALIDATION_PROFILE);
+		}
+
+		if (workers != 1 && batchSize <= 1) {
+			profiles.add(WORKER_POOL_PROFILE);
+		}
+
+		return profiles.toArray(new String[profiles.size()]);
+	}
+
 }
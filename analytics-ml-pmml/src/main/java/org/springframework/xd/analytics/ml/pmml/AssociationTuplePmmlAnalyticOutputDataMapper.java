@@ -17,9 +17,15 @@
 package org.springframework.xd.analytics.ml.pmml;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.dmg.pmml.*;
 import org.jpmml.evaluator.Association;
@@ -30,23 +36,51 @@ import org.springframework.xd.tuple.Tuple;
  * An {@link TuplePmmlAnalyticOutputDataMapper} that can map the output of a {@link org.dmg.pmml.PMML} model evaluation of
  * an Association model to a {@link org.springframework.xd.tuple.Tuple}. Since it requires special output mapping as no
  * output fields are created in the model.
+ * <p>
+ * The item values of the consequents of all rules are resolved once per {@link AssociationModel} into an
+ * {@link AssociationRuleIndex}, so extracting the recommendations of an evaluation is a lookup. Like the
+ * {@code recommendation} algorithm of PMML, the rules whose antecedent is contained in the input and whose consequent is
+ * not are ranked by confidence and support, the items of the consequents of the {@code maxConsequents} best rules are
+ * recommended.
+ * </p>
  *
  * @author Thomas Darimont
  */
 public class AssociationTuplePmmlAnalyticOutputDataMapper extends TuplePmmlAnalyticOutputDataMapper {
 
+	private final int maxConsequents;
+
+	private volatile AssociationRuleIndex ruleIndex;
+
 	/**
-	 * Creates a new {@link AssociationTuplePmmlAnalyticOutputDataMapper}.
+	 * Creates a new {@link AssociationTuplePmmlAnalyticOutputDataMapper} that recommends the consequent of the best rule.
 	 *
 	 * @param outputFieldsNames
 	 */
 	public AssociationTuplePmmlAnalyticOutputDataMapper(List<String> outputFieldsNames) {
+		this(outputFieldsNames, 1);
+	}
+
+	/**
+	 * Creates a new {@link AssociationTuplePmmlAnalyticOutputDataMapper} that recommends the distinct items of the
+	 * consequents of the {@code maxConsequents} best rules.
+	 *
+	 * @param outputFieldsNames
+	 * @param maxConsequents the maximum number of rules to recommend the consequents of, must be greater than {@literal 0}.
+	 */
+	public AssociationTuplePmmlAnalyticOutputDataMapper(List<String> outputFieldsNames, int maxConsequents) {
+
 		super(outputFieldsNames);
+
+		Assert.isTrue(maxConsequents > 0, "maxConsequents must be greater than 0");
+
+		this.maxConsequents = maxConsequents;
 	}
 
 	/**
 	 * Extracts the item recommendations from the result of an association model evaluation. The outputFields must
-	 * contain exactly one field name. This field name will be used to store the list of the associated items.
+	 * contain exactly one field name. This field name will be used to store the unmodifiable list of the associated
+	 * items.
 	 *
 	 * @param analytic must not be {@literal null}
 	 * @param outputFields must not be {@literal null}
@@ -67,18 +101,152 @@ public class AssociationTuplePmmlAnalyticOutputDataMapper extends TuplePmmlAnaly
 			return super.enhanceResultIfNecessary(analytic, outputFields, modelOutput);
 		}
 
-		AssociationModel ass = (AssociationModel) pmmlModel;
-
 		Association assoc = (Association) modelOutput.get(null);
+		List<String> items = getRuleIndex((AssociationModel) pmmlModel).recommend(assoc.getAntecedentFlags(),
+				assoc.getConsequentFlags(), maxConsequents);
+
+		return Collections.<FieldName, Object>singletonMap(outputFields.iterator().next(), items);
+	}
+
+	/**
+	 * Returns the {@link AssociationRuleIndex} of the given {@link AssociationModel}, the index is rebuilt when the model
+	 * was reloaded.
+	 *
+	 * @param associationModel must not be {@literal null}
+	 * @return
+	 */
+	private AssociationRuleIndex getRuleIndex(AssociationModel associationModel) {
+
+		AssociationRuleIndex index = this.ruleIndex;
+		if (index == null || index.model != associationModel) {
+			index = new AssociationRuleIndex(associationModel);
+			this.ruleIndex = index;
+		}
+
+		return index;
+	}
+
+	/**
+	 * An immutable index of the {@link AssociationRule}s of an {@link AssociationModel} that holds the interned item
+	 * values of the consequent of each rule as well as the order of the rules by confidence and support.
+	 */
+	static class AssociationRuleIndex {
+
+		private final AssociationModel model;
 
-		List<String> itemIds = new ArrayList<String>();
-		String itemSetId = assoc.getAssociationRules().get(0).getConsequent();
-		for (ItemRef itemRef : assoc.getItemsetRegistry().get(itemSetId).getItemRefs()) {
+		private final List<List<String>> consequentItems;
 
-			Item item = assoc.getItemRegistry().get(itemRef.getItemRef());
-			itemIds.add(item.getValue());
+		private final int[] ranks;
+
+		private final int[] rulesByRank;
+
+		/**
+		 * Creates a new {@link AssociationRuleIndex}.
+		 *
+		 * @param model must not be {@literal null}
+		 */
+		AssociationRuleIndex(AssociationModel model) {
+
+			Assert.notNull(model, "model");
+
+			this.model = model;
+
+			Map<String, String> itemValues = new HashMap<String, String>();
+			for (Item item : model.getItems()) {
+				itemValues.put(item.getId(), item.getValue() != null ? item.getValue().intern() : null);
+			}
+
+			Map<String, List<String>> itemsets = new HashMap<String, List<String>>();
+			for (Itemset itemset : model.getItemsets()) {
+
+				String[] values = new String[itemset.getItemRefs().size()];
+				for (int i = 0; i < values.length; i++) {
+					values[i] = itemValues.get(itemset.getItemRefs().get(i).getItemRef());
+				}
+
+				itemsets.put(itemset.getId(), Collections.unmodifiableList(Arrays.asList(values)));
+			}
+
+			final List<AssociationRule> rules = model.getAssociationRules();
+
+			this.consequentItems = new ArrayList<List<String>>(rules.size());
+			for (AssociationRule rule : rules) {
+
+				List<String> items = itemsets.get(rule.getConsequent());
+				consequentItems.add(items != null ? items : Collections.<String>emptyList());
+			}
+
+			Integer[] order = new Integer[rules.size()];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+
+			//a stable sort keeps the model order of rules with the same confidence and support.
+			Arrays.sort(order, new Comparator<Integer>() {
+
+				@Override
+				public int compare(Integer left, Integer right) {
+
+					AssociationRule leftRule = rules.get(left);
+					AssociationRule rightRule = rules.get(right);
+
+					int result = Double.compare(rightRule.getConfidence(), leftRule.getConfidence());
+					if (result != 0) {
+						return result;
+					}
+
+					return Double.compare(rightRule.getSupport(), leftRule.getSupport());
+				}
+			});
+
+			this.rulesByRank = new int[order.length];
+			this.ranks = new int[order.length];
+			for (int rank = 0; rank < order.length; rank++) {
+				rulesByRank[rank] = order[rank];
+				ranks[order[rank]] = rank;
+			}
 		}
 
-		return Collections.<FieldName, Object>singletonMap(outputFields.iterator().next(), itemIds);
+		/**
+		 * Returns the distinct items of the consequents of the {@code maxConsequents} best rules whose antecedent is
+		 * contained in the model input and whose consequent is not.
+		 *
+		 * @param antecedentFlags the positions of the rules whose antecedent is contained in the model input, must not be
+		 *          {@literal null}.
+		 * @param consequentFlags the positions of the rules whose consequent is contained in the model input, must not be
+		 *          {@literal null}.
+		 * @param maxConsequents
+		 * @return an unmodifiable list of item values.
+		 */
+		List<String> recommend(BitSet antecedentFlags, BitSet consequentFlags, int maxConsequents) {
+
+			Assert.state(antecedentFlags.length() <= ranks.length, "rules do not belong to model " + model.getModelName());
+
+			if (maxConsequents == 1) {
+
+				int best = -1;
+				for (int rule = antecedentFlags.nextSetBit(0); rule >= 0; rule = antecedentFlags.nextSetBit(rule + 1)) {
+					if (!consequentFlags.get(rule) && (best < 0 || ranks[rule] < ranks[best])) {
+						best = rule;
+					}
+				}
+
+				return best >= 0 ? consequentItems.get(best) : Collections.<String>emptyList();
+			}
+
+			Set<String> items = new LinkedHashSet<String>();
+
+			int consequents = 0;
+			for (int rank = 0; rank < rulesByRank.length && consequents < maxConsequents; rank++) {
+
+				int rule = rulesByRank[rank];
+				if (antecedentFlags.get(rule) && !consequentFlags.get(rule)) {
+					items.addAll(consequentItems.get(rule));
+					consequents++;
+				}
+			}
+
+			return Collections.unmodifiableList(new ArrayList<String>(items));
+		}
 	}
 }
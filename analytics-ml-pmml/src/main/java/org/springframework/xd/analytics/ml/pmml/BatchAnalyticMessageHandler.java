@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.Collection;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.integration.handler.AbstractMessageHandler;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+import org.springframework.xd.analytics.ml.Analytic;
+
+/**
+ * A {@link org.springframework.messaging.MessageHandler} that evaluates a batch of messages collected by an aggregator,
+ * i.e. a message whose payload is the {@link Collection} of the collected {@link Message}s, with an {@link Analytic}.
+ * <p>
+ * Every result is sent to the output channel with the headers of the message it was computed from, in the order of the
+ * batch. A message that cannot be evaluated is passed to the {@link ErrorHandler} as {@link MessageHandlingException}
+ * on its own, the other messages of the batch are still evaluated and sent.
+ * </p>
+ */
+public class BatchAnalyticMessageHandler<I, O> extends AbstractMessageHandler {
+
+	private static final Log LOG = LogFactory.getLog(BatchAnalyticMessageHandler.class);
+
+	private final Analytic<I, O> analytic;
+
+	private final MessageChannel outputChannel;
+
+	private volatile ErrorHandler errorHandler = new ErrorHandler() {
+
+		@Override
+		public void handleError(Throwable t) {
+			LOG.error("Could not evaluate message", t);
+		}
+	};
+
+	/**
+	 * Creates a new {@link BatchAnalyticMessageHandler}.
+	 *
+	 * @param analytic must not be {@literal null}
+	 * @param outputChannel must not be {@literal null}
+	 */
+	public BatchAnalyticMessageHandler(Analytic<I, O> analytic, MessageChannel outputChannel) {
+
+		Assert.notNull(analytic, "analytic");
+		Assert.notNull(outputChannel, "outputChannel");
+
+		this.analytic = analytic;
+		this.outputChannel = outputChannel;
+	}
+
+	/**
+	 * @param errorHandler must not be {@literal null}
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+
+		Assert.notNull(errorHandler, "errorHandler");
+
+		this.errorHandler = errorHandler;
+	}
+
+	@Override
+	public String getComponentType() {
+		return "analytic-batch";
+	}
+
+	@Override
+	protected void handleMessageInternal(Message<?> batch) throws Exception {
+
+		Assert.isInstanceOf(Collection.class, batch.getPayload(), "The payload of a batch must be a collection of messages");
+
+		for (Object element : (Collection<?>) batch.getPayload()) {
+
+			Assert.isInstanceOf(Message.class, element, "The payload of a batch must be a collection of messages");
+
+			evaluate((Message<?>) element);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void evaluate(Message<?> message) {
+
+		O result;
+		try {
+			result = analytic.evaluate((I) message.getPayload());
+		}
+		catch (RuntimeException ex) {
+			errorHandler.handleError(new MessageHandlingException(message, "Could not evaluate message", ex));
+			return;
+		}
+
+		outputChannel.send(MessageBuilder.withPayload(result).copyHeaders(message.getHeaders()).build());
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+/**
+ * A batch of rows stored column by column, i.e. a header of column names together with one array per column. Columns
+ * may be {@code double[]}, {@code float[]}, {@code long[]}, {@code int[]}, {@code boolean[]} or arrays of objects, e.g.
+ * {@code String[]}, and all columns must have the same length. The arrays are used as they are, so a batch can be
+ * filled straight from a CSV or columnar file chunk and scored with a {@link ColumnarPmmlAnalytic} without creating a
+ * {@link org.springframework.xd.tuple.Tuple} per row.
+ */
+public class ColumnarBatch {
+
+	private final List<String> columnNames;
+
+	private final Object[] columns;
+
+	private final int rowCount;
+
+	/**
+	 * Creates a new {@link ColumnarBatch}.
+	 *
+	 * @param columnNames must not be {@literal null}
+	 * @param columns must not be {@literal null}, one array per column name, all of the same length.
+	 */
+	public ColumnarBatch(List<String> columnNames, Object... columns) {
+
+		Assert.notNull(columnNames, "columnNames");
+		Assert.notNull(columns, "columns");
+		Assert.isTrue(columnNames.size() == columns.length, "columnNames and columns must have the same size");
+
+		int rowCount = -1;
+		for (Object column : columns) {
+
+			Assert.isTrue(column != null && column.getClass().isArray(), "columns must be arrays");
+
+			int length = Array.getLength(column);
+			Assert.isTrue(rowCount == -1 || rowCount == length, "columns must have the same length");
+
+			rowCount = length;
+		}
+
+		this.columnNames = Collections.unmodifiableList(new ArrayList<String>(columnNames));
+		this.columns = columns.clone();
+		this.rowCount = Math.max(rowCount, 0);
+	}
+
+	/**
+	 * @return the column names of this batch.
+	 */
+	public List<String> getColumnNames() {
+		return columnNames;
+	}
+
+	/**
+	 * @return the number of rows of this batch.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @param columnName must not be {@literal null}
+	 * @return the array of the column with the given name.
+	 * @throws IllegalArgumentException if there is no column with the given name.
+	 */
+	public Object getColumn(String columnName) {
+
+		int index = columnNames.indexOf(columnName);
+		Assert.isTrue(index != -1, "No column named: " + columnName);
+
+		return columns[index];
+	}
+
+	/**
+	 * @param column the index of the column.
+	 * @return the array of the given column.
+	 */
+	public Object getColumn(int column) {
+		return columns[column];
+	}
+
+	/**
+	 * Returns the value of the given column in the given row, primitive values are boxed.
+	 *
+	 * @param column the index of the column.
+	 * @param row the index of the row.
+	 * @return
+	 */
+	public Object getValue(int column, int row) {
+
+		Object values = columns[column];
+
+		if (values instanceof double[]) {
+			return ((double[]) values)[row];
+		}
+
+		if (values instanceof Object[]) {
+			return ((Object[]) values)[row];
+		}
+
+		if (values instanceof long[]) {
+			return ((long[]) values)[row];
+		}
+
+		if (values instanceof int[]) {
+			return ((int[]) values)[row];
+		}
+
+		if (values instanceof float[]) {
+			return ((float[]) values)[row];
+		}
+
+		if (values instanceof boolean[]) {
+			return ((boolean[]) values)[row];
+		}
+
+		return Array.get(values, row);
+	}
+
+	@Override
+	public String toString() {
+		return "ColumnarBatch{" + "columnNames=" + columnNames + ", rowCount=" + rowCount + '}';
+	}
+
+	/**
+	 * A cursor over the rows of a {@link ColumnarBatch} that is moved from row to row instead of being created per row.
+	 * It also refers to the batch that receives the results of the current row.
+	 */
+	public static class Row {
+
+		private final ColumnarBatch batch;
+
+		private final ColumnarBatch results;
+
+		private int index;
+
+		/**
+		 * Creates a new {@link Row} positioned at the first row of the given {@code batch}.
+		 *
+		 * @param batch must not be {@literal null}
+		 * @param results must not be {@literal null}, must have at least as many rows as the {@code batch}.
+		 */
+		public Row(ColumnarBatch batch, ColumnarBatch results) {
+
+			Assert.notNull(batch, "batch");
+			Assert.notNull(results, "results");
+			Assert.isTrue(results.getRowCount() >= batch.getRowCount(), "results must provide a row for every row");
+
+			this.batch = batch;
+			this.results = results;
+		}
+
+		/**
+		 * Moves this cursor to the given row.
+		 *
+		 * @param index the index of the row.
+		 */
+		public void moveTo(int index) {
+			this.index = index;
+		}
+
+		/**
+		 * @return the index of the current row.
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * @return the {@link ColumnarBatch} this cursor iterates.
+		 */
+		public ColumnarBatch getBatch() {
+			return batch;
+		}
+
+		/**
+		 * @return the {@link ColumnarBatch} that receives the results of the rows.
+		 */
+		public ColumnarBatch getResults() {
+			return results;
+		}
+
+		/**
+		 * @param column the index of the column.
+		 * @return the value of the given column in the current row.
+		 */
+		public Object getValue(int column) {
+			return batch.getValue(column, index);
+		}
+
+		@Override
+		public String toString() {
+
+			Object[] values = new Object[batch.columns.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = getValue(i);
+			}
+
+			return "Row{" + "index=" + index + ", values=" + Arrays.toString(values) + '}';
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link PmmlAnalytic} that scores {@link ColumnarBatch}es, e.g. for the offline re-scoring of large data sets. The
+ * rows of a batch are visited with a single {@link ColumnarBatch.Row} cursor and the results are written into the
+ * columns of a result batch, so no {@link org.springframework.xd.tuple.Tuple} is created per row. Metrics, the result
+ * cache and the shadow model apply per row as for the other analytics.
+ */
+public class ColumnarPmmlAnalytic extends PmmlAnalytic<ColumnarBatch.Row, ColumnarBatch.Row> {
+
+	private final ColumnarPmmlAnalyticOutputDataMapper outputMapper;
+
+	/**
+	 * Creates a new {@link ColumnarPmmlAnalytic}.
+	 *
+	 * @param modelName may be {@literal null}
+	 * @param modelLocation must not be {@literal null}
+	 * @param pmmlLoader must not be {@literal null}
+	 * @param inputMapper must not be {@literal null}
+	 * @param outputMapper must not be {@literal null}
+	 */
+	public ColumnarPmmlAnalytic(String modelName, String modelLocation, PmmlLoader pmmlLoader,
+			ColumnarPmmlAnalyticInputDataMapper inputMapper, ColumnarPmmlAnalyticOutputDataMapper outputMapper) {
+
+		super(modelName, modelLocation, pmmlLoader, inputMapper, outputMapper);
+
+		this.outputMapper = outputMapper;
+	}
+
+	/**
+	 * Creates a new {@link ColumnarPmmlAnalytic} with comma-separated field mappings as described for
+	 * {@link TuplePmmlAnalytic#TuplePmmlAnalytic(String, String, PmmlLoader, String, String)}, with the columns of the
+	 * batches in place of the {@code Tuple} fields.
+	 *
+	 * @param modelName may be {@literal null}
+	 * @param modelLocation must not be {@literal null}
+	 * @param pmmlLoader must not be {@literal null}
+	 * @param inputFieldMappings
+	 * @param outputFieldMappings
+	 */
+	public ColumnarPmmlAnalytic(String modelName, String modelLocation, PmmlLoader pmmlLoader,
+			String inputFieldMappings, String outputFieldMappings) {
+		this(modelName, modelLocation, pmmlLoader, new ColumnarPmmlAnalyticInputDataMapper(
+				TuplePmmlAnalytic.splitFieldMappings(inputFieldMappings)), new ColumnarPmmlAnalyticOutputDataMapper(
+				TuplePmmlAnalytic.splitFieldMappings(outputFieldMappings)));
+	}
+
+	/**
+	 * Evaluates every row of the given {@code batch}.
+	 *
+	 * @param batch must not be {@literal null}
+	 * @return a batch with one column per result field and the results in the same row order as the given
+	 *         {@code batch}.
+	 */
+	public ColumnarBatch evaluateBatch(ColumnarBatch batch) {
+
+		Assert.notNull(batch, "batch");
+
+		ColumnarBatch results = outputMapper.createResults(getPmmlEvaluator(), batch.getRowCount());
+
+		ColumnarBatch.Row row = new ColumnarBatch.Row(batch, results);
+		for (int i = 0; i < batch.getRowCount(); i++) {
+
+			row.moveTo(i);
+			evaluate(row);
+		}
+
+		return results;
+	}
+}
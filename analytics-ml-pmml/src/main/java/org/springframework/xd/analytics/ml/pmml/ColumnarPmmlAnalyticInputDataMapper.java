@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dmg.pmml.FieldName;
+import org.springframework.util.Assert;
+import org.springframework.xd.analytics.ml.InputMapper;
+
+/**
+ * An {@link org.springframework.xd.analytics.ml.InputMapper} that maps the current row of a {@link ColumnarBatch} to
+ * an input for a {@link org.dmg.pmml.PMML} model evaluation. The field mapping is the same as the one of the
+ * {@link TuplePmmlAnalyticInputDataMapper}, with the columns of the batch in place of the {@code Tuple} fields, and the
+ * column positions are resolved once per batch header.
+ */
+public class ColumnarPmmlAnalyticInputDataMapper implements
+		InputMapper<ColumnarBatch.Row, PmmlAnalytic<ColumnarBatch.Row, ColumnarBatch.Row>, Map<FieldName, Object>>,
+		SchemaCacheAware {
+
+	private final TuplePmmlAnalyticInputDataMapper fieldMapping;
+
+	/**
+	 * Creates a new {@link ColumnarPmmlAnalyticInputDataMapper}.
+	 *
+	 * @param inputFieldNameMapping
+	 */
+	public ColumnarPmmlAnalyticInputDataMapper(List<String> inputFieldNameMapping) {
+		this.fieldMapping = new TuplePmmlAnalyticInputDataMapper(inputFieldNameMapping);
+	}
+
+	/**
+	 * Maps the current row of the given {@link ColumnarBatch.Row} into a model-input {@code Map} for the given
+	 * {@link PmmlAnalytic}.
+	 *
+	 * @param analytic must not be {@literal null}.
+	 * @param input must not be {@literal null}.
+	 * @return
+	 */
+	@Override
+	public Map<FieldName, Object> mapInput(PmmlAnalytic<ColumnarBatch.Row, ColumnarBatch.Row> analytic,
+			ColumnarBatch.Row input) {
+
+		Assert.notNull(analytic, "analytic");
+		Assert.notNull(input, "input");
+
+		TuplePmmlAnalyticInputDataMapper.BindingPlan plan = fieldMapping.getBindingPlan(analytic.getPmmlEvaluator());
+		int[] positions = fieldMapping.resolvePositions(plan, input.getBatch().getColumnNames());
+		TuplePmmlAnalyticInputDataMapper.FieldBinding[] bindings = plan.getBindings();
+
+		Map<FieldName, Object> inputData = new HashMap<FieldName, Object>(plan.getInputDataCapacity());
+		for (int i = 0; i < bindings.length; i++) {
+
+			int position = positions[i];
+			if (position == -1) {
+				//the batch doesn't provide a column for the model input field, so we skip it.
+				continue;
+			}
+
+			inputData.put(bindings[i].getModelInputFieldName(), bindings[i].prepare(input.getValue(position)));
+		}
+
+		return inputData;
+	}
+
+	@Override
+	public SchemaCache<?> getSchemaCache() {
+		return fieldMapping.getSchemaCache();
+	}
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.dmg.pmml.DataField;
+import org.dmg.pmml.DataType;
+import org.dmg.pmml.FieldName;
+import org.dmg.pmml.OutputField;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.EvaluatorUtil;
+import org.springframework.util.Assert;
+import org.springframework.xd.analytics.ml.AbstractFieldMappingAwareDataMapper;
+import org.springframework.xd.analytics.ml.OutputMapper;
+
+/**
+ * An {@link org.springframework.xd.analytics.ml.OutputMapper} that writes the output of a {@link org.dmg.pmml.PMML}
+ * model evaluation into the current row of a result {@link ColumnarBatch}. The result batch has one column per mapped
+ * result field, or per target and output field of the model if no mapping is given. Results of {@code double} and
+ * {@code float} fields are stored in {@code double[]} columns, with {@link Double#NaN} for missing values, all other
+ * results in {@code Object[]} columns.
+ */
+public class ColumnarPmmlAnalyticOutputDataMapper extends AbstractFieldMappingAwareDataMapper implements
+		OutputMapper<ColumnarBatch.Row, ColumnarBatch.Row, PmmlAnalytic<ColumnarBatch.Row, ColumnarBatch.Row>, Map<FieldName, Object>> {
+
+	private final List<FieldName> resultFields;
+
+	private final List<String> outputFieldNames;
+
+	private volatile ResultLayout resultLayout;
+
+	/**
+	 * Creates a new {@link ColumnarPmmlAnalyticOutputDataMapper}.
+	 *
+	 * @param resultFieldToOutputFieldNameMapping
+	 */
+	public ColumnarPmmlAnalyticOutputDataMapper(List<String> resultFieldToOutputFieldNameMapping) {
+
+		if (resultFieldToOutputFieldNameMapping == null || resultFieldToOutputFieldNameMapping.isEmpty()) {
+			this.resultFields = null;
+			this.outputFieldNames = null;
+			return;
+		}
+
+		Map<String, String> mapping = extractFieldNameMappingFrom(resultFieldToOutputFieldNameMapping);
+
+		this.resultFields = new ArrayList<FieldName>(mapping.size());
+		this.outputFieldNames = new ArrayList<String>(mapping.size());
+
+		for (Map.Entry<String, String> toFromMapping : mapping.entrySet()) {
+			this.resultFields.add(FieldName.create(toFromMapping.getKey()));
+			this.outputFieldNames.add(toFromMapping.getValue());
+		}
+	}
+
+	/**
+	 * Creates an empty result {@link ColumnarBatch} for the outputs of the given {@link Evaluator}.
+	 *
+	 * @param evaluator must not be {@literal null}
+	 * @param rowCount the number of rows of the result batch.
+	 * @return
+	 */
+	public ColumnarBatch createResults(Evaluator evaluator, int rowCount) {
+
+		ResultLayout layout = getResultLayout(evaluator);
+
+		Object[] columns = new Object[layout.fields.length];
+		for (int i = 0; i < columns.length; i++) {
+
+			if (layout.numeric[i]) {
+				double[] column = new double[rowCount];
+				Arrays.fill(column, Double.NaN);
+				columns[i] = column;
+			}
+			else {
+				columns[i] = new Object[rowCount];
+			}
+		}
+
+		return new ColumnarBatch(layout.columnNames, columns);
+	}
+
+	/**
+	 * Writes the given {@code modelOutput} into the row of the result batch of the given {@code input} row.
+	 *
+	 * @param analytic must not be {@literal null}.
+	 * @param input must not be {@literal null}.
+	 * @param modelOutput must not be {@literal null}.
+	 * @return the given {@code input} row.
+	 */
+	@Override
+	public ColumnarBatch.Row mapOutput(PmmlAnalytic<ColumnarBatch.Row, ColumnarBatch.Row> analytic,
+			ColumnarBatch.Row input, Map<FieldName, Object> modelOutput) {
+
+		Assert.notNull(analytic, "analytic");
+		Assert.notNull(input, "input");
+		Assert.notNull(modelOutput, "modelOutput");
+
+		ColumnarBatch results = input.getResults();
+
+		ResultLayout layout = getResultLayout(analytic.getPmmlEvaluator());
+		if (!layout.columnNames.equals(results.getColumnNames())) {
+			throw new IllegalStateException("The outputs of the model changed from " + results.getColumnNames()
+					+ " to " + layout.columnNames + " while the batch was evaluated");
+		}
+
+		int row = input.getIndex();
+		for (int i = 0; i < layout.fields.length; i++) {
+
+			Object value = EvaluatorUtil.decode(modelOutput.get(layout.fields[i]));
+
+			if (layout.numeric[i]) {
+				((double[]) results.getColumn(i))[row] = value == null ? Double.NaN : ((Number) value).doubleValue();
+			}
+			else {
+				((Object[]) results.getColumn(i))[row] = value;
+			}
+		}
+
+		return input;
+	}
+
+	/**
+	 * Returns the {@link ResultLayout} for the given {@link Evaluator}, resolving a new one if the {@code Evaluator}
+	 * changed since the last invocation.
+	 *
+	 * @param evaluator must not be {@literal null}.
+	 * @return
+	 */
+	private ResultLayout getResultLayout(Evaluator evaluator) {
+
+		Assert.notNull(evaluator, "evaluator");
+
+		ResultLayout layout = this.resultLayout;
+		if (layout == null || layout.evaluator != evaluator) {
+			layout = resolveResultLayout(evaluator);
+			this.resultLayout = layout;
+		}
+
+		return layout;
+	}
+
+	private ResultLayout resolveResultLayout(Evaluator evaluator) {
+
+		List<FieldName> fields = resultFields;
+		List<String> columnNames = outputFieldNames;
+
+		if (fields == null) {
+
+			fields = new ArrayList<FieldName>(evaluator.getTargetFields());
+			if (fields.isEmpty() && evaluator.getTargetField() != null) {
+				fields.add(evaluator.getTargetField());
+			}
+			fields.addAll(evaluator.getOutputFields());
+
+			columnNames = new ArrayList<String>(fields.size());
+			for (FieldName field : fields) {
+				columnNames.add(field.getValue());
+			}
+		}
+
+		boolean[] numeric = new boolean[fields.size()];
+		for (int i = 0; i < numeric.length; i++) {
+			numeric[i] = isFloatingPoint(getDataType(evaluator, fields.get(i)));
+		}
+
+		return new ResultLayout(evaluator, fields.toArray(new FieldName[fields.size()]), columnNames, numeric);
+	}
+
+	private static DataType getDataType(Evaluator evaluator, FieldName field) {
+
+		OutputField outputField = evaluator.getOutputField(field);
+		if (outputField != null) {
+			return outputField.getDataType();
+		}
+
+		DataField dataField = evaluator.getDataField(field);
+
+		return dataField == null ? null : dataField.getDataType();
+	}
+
+	private static boolean isFloatingPoint(DataType dataType) {
+		return dataType == DataType.DOUBLE || dataType == DataType.FLOAT;
+	}
+
+	/**
+	 * The result fields of an {@link Evaluator} together with the names and types of their result columns.
+	 */
+	static class ResultLayout {
+
+		private final Evaluator evaluator;
+
+		private final FieldName[] fields;
+
+		private final List<String> columnNames;
+
+		private final boolean[] numeric;
+
+		ResultLayout(Evaluator evaluator, FieldName[] fields, List<String> columnNames, boolean[] numeric) {
+			this.evaluator = evaluator;
+			this.fields = fields;
+			this.columnNames = columnNames;
+			this.numeric = numeric;
+		}
+	}
+}
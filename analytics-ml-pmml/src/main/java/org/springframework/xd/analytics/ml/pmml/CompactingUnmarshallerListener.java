@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+
+import javax.xml.bind.Unmarshaller;
+
+import org.dmg.pmml.PMMLObject;
+import org.jpmml.model.ReflectionUtil;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * An {@link Unmarshaller.Listener} that compacts every {@link PMMLObject} right after JAXB has unmarshalled it. JAXB
+ * still builds each element in full, and the listener then replaces repeated strings and numbers like node ids, scores
+ * and split values with shared instances by reflection, trims the backing arrays of lists to their size and drops the
+ * SAX {@link org.xml.sax.Locator}s. The uncompacted duplicates of an element become garbage as soon as it is compacted,
+ * so large documents, e.g. ensembles with thousands of {@link org.dmg.pmml.TreeModel}s, reach a lower peak heap than
+ * when the whole tree is compacted after the parse, but they are not avoided altogether.
+ */
+public class CompactingUnmarshallerListener extends Unmarshaller.Listener {
+
+	private static final Interner<Object> VALUES = Interners.newWeakInterner();
+
+	private long compactedObjectCount;
+
+	@Override
+	public void afterUnmarshal(Object target, Object parent) {
+
+		if (!(target instanceof PMMLObject)) {
+			return;
+		}
+
+		PMMLObject pmmlObject = (PMMLObject) target;
+		pmmlObject.setLocator(null);
+
+		for (Field field : ReflectionUtil.getAllInstanceFields(pmmlObject)) {
+
+			Object value = ReflectionUtil.getFieldValue(field, pmmlObject);
+
+			if (value instanceof String || value instanceof Double || value instanceof Integer) {
+
+				Object internedValue = VALUES.intern(value);
+				if (internedValue != value) {
+					ReflectionUtil.setFieldValue(field, pmmlObject, internedValue);
+				}
+			}
+			else if (value instanceof ArrayList) {
+				((ArrayList<?>) value).trimToSize();
+			}
+		}
+
+		compactedObjectCount++;
+	}
+
+	/**
+	 * @return the number of {@link PMMLObject}s that were compacted by this listener.
+	 */
+	public long getCompactedObjectCount() {
+		return compactedObjectCount;
+	}
+}
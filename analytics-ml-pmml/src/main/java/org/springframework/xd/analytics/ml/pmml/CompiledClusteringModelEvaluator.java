@@ -0,0 +1,242 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.dmg.pmml.Cluster;
+import org.dmg.pmml.ClusteringField;
+import org.dmg.pmml.ClusteringModel;
+import org.dmg.pmml.CompareFunctionType;
+import org.dmg.pmml.ComparisonMeasure;
+import org.dmg.pmml.Euclidean;
+import org.dmg.pmml.FieldName;
+import org.dmg.pmml.Measure;
+import org.dmg.pmml.MiningFunctionType;
+import org.dmg.pmml.PMML;
+import org.dmg.pmml.SquaredEuclidean;
+import org.jpmml.evaluator.ArrayUtil;
+import org.jpmml.evaluator.ClassificationMap;
+import org.jpmml.evaluator.ClusterClassificationMap;
+import org.jpmml.evaluator.ClusteringModelEvaluator;
+import org.jpmml.evaluator.FieldValue;
+import org.jpmml.evaluator.ModelEvaluationContext;
+import org.jpmml.evaluator.OutputUtil;
+
+import com.google.common.collect.BiMap;
+
+/**
+ * A {@link ClusteringModelEvaluator} that compiles center-based k-means models with a (squared) euclidean distance
+ * measure into a primitive array of cluster centers, so the distances to all clusters are computed in a tight loop
+ * over the model inputs. Output fields are still processed by jpmml. Models with other features as well as inputs with
+ * missing values are evaluated by jpmml.
+ */
+public class CompiledClusteringModelEvaluator extends ClusteringModelEvaluator {
+
+	private static final long serialVersionUID = 1L;
+
+	private final CompiledClusters compiledClusters;
+
+	/**
+	 * Creates a new {@link CompiledClusteringModelEvaluator}.
+	 *
+	 * @param pmml must not be {@literal null}
+	 * @param clusteringModel must not be {@literal null}
+	 */
+	public CompiledClusteringModelEvaluator(PMML pmml, ClusteringModel clusteringModel) {
+
+		super(pmml, clusteringModel);
+
+		this.compiledClusters = compile(clusteringModel, getActiveFields());
+	}
+
+	/**
+	 * @return whether the model could be compiled, otherwise all evaluations are performed by jpmml.
+	 */
+	public boolean isCompiled() {
+		return compiledClusters != null;
+	}
+
+	@Override
+	public Map<FieldName, ?> evaluate(ModelEvaluationContext context) {
+
+		CompiledClusters clusters = this.compiledClusters;
+		if (clusters == null) {
+			return super.evaluate(context);
+		}
+
+		FieldName[] fields = clusters.fields;
+		double[] values = new double[fields.length];
+
+		for (int i = 0; i < fields.length; i++) {
+
+			FieldValue value = context.getField(fields[i]);
+			if (value == null) {
+				//jpmml adjusts the distances for missing values.
+				return super.evaluate(context);
+			}
+
+			values[i] = value.asNumber().doubleValue();
+		}
+
+		double[] weights = clusters.fieldWeights;
+		double[] centers = clusters.centers;
+		double[] distances = new double[clusters.entities.length];
+
+		int winner = 0;
+		for (int c = 0, offset = 0; c < distances.length; c++, offset += fields.length) {
+
+			double sum = 0;
+			for (int i = 0; i < fields.length; i++) {
+
+				double difference = Math.abs(values[i] - centers[offset + i]);
+				sum += weights[i] * difference * difference;
+			}
+
+			distances[c] = clusters.squared ? sum : Math.sqrt(sum);
+
+			if (distances[c] < distances[winner]) {
+				winner = c;
+			}
+		}
+
+		ClusterClassificationMap result = new CompiledClusterClassificationMap(clusters.entities[winner]);
+		for (int c = 0; c < distances.length; c++) {
+			result.put(clusters.entityIds[c], distances[c]);
+		}
+
+		return OutputUtil.evaluate(Collections.singletonMap(getTargetField(), result), context);
+	}
+
+	/**
+	 * Compiles the given {@link ClusteringModel} or returns {@literal null} if the model uses features that are not
+	 * supported.
+	 *
+	 * @param clusteringModel must not be {@literal null}
+	 * @param activeFields must not be {@literal null}
+	 * @return
+	 */
+	private CompiledClusters compile(ClusteringModel clusteringModel, List<FieldName> activeFields) {
+
+		ComparisonMeasure comparisonMeasure = clusteringModel.getComparisonMeasure();
+		Measure measure = comparisonMeasure.getMeasure();
+
+		if (!clusteringModel.isScorable() || clusteringModel.getFunctionName() != MiningFunctionType.CLUSTERING
+				|| clusteringModel.getModelClass() != ClusteringModel.ModelClass.CENTER_BASED
+				|| clusteringModel.getCenterFields() != null || comparisonMeasure.getKind() != ComparisonMeasure.Kind.DISTANCE
+				|| !(measure instanceof SquaredEuclidean || measure instanceof Euclidean)
+				|| clusteringModel.getClusteringFields().isEmpty()) {
+			return null;
+		}
+
+		List<ClusteringField> clusteringFields = clusteringModel.getClusteringFields();
+
+		FieldName[] fields = new FieldName[clusteringFields.size()];
+		double[] fieldWeights = new double[clusteringFields.size()];
+
+		for (int i = 0; i < fields.length; i++) {
+
+			ClusteringField clusteringField = clusteringFields.get(i);
+
+			CompareFunctionType compareFunction = clusteringField.getCompareFunction() != null ? clusteringField
+					.getCompareFunction() : comparisonMeasure.getCompareFunction();
+
+			if (clusteringField.getCenterField() != ClusteringField.CenterField.TRUE
+					|| compareFunction != CompareFunctionType.ABS_DIFF || !activeFields.contains(clusteringField.getField())) {
+				return null;
+			}
+
+			fields[i] = clusteringField.getField();
+			fieldWeights[i] = clusteringField.getFieldWeight();
+		}
+
+		List<Cluster> clusters = clusteringModel.getClusters();
+		BiMap<Cluster, String> entityIds = getEntityRegistry().inverse();
+
+		Cluster[] entities = new Cluster[clusters.size()];
+		String[] ids = new String[clusters.size()];
+		double[] centers = new double[clusters.size() * fields.length];
+
+		for (int c = 0; c < entities.length; c++) {
+
+			Cluster cluster = clusters.get(c);
+			if (cluster.getArray() == null) {
+				return null;
+			}
+
+			double[] center = ArrayUtil.toArray(cluster.getArray());
+			if (center.length != fields.length) {
+				return null;
+			}
+
+			entities[c] = cluster;
+			ids[c] = entityIds.get(cluster);
+			System.arraycopy(center, 0, centers, c * fields.length, fields.length);
+		}
+
+		if (entities.length == 0) {
+			return null;
+		}
+
+		return new CompiledClusters(fields, fieldWeights, entities, ids, centers, measure instanceof SquaredEuclidean);
+	}
+
+	/**
+	 * The cluster centers of a {@link ClusteringModel} compiled into primitive arrays.
+	 */
+	static class CompiledClusters implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final FieldName[] fields;
+
+		private final double[] fieldWeights;
+
+		private final Cluster[] entities;
+
+		private final String[] entityIds;
+
+		private final double[] centers;
+
+		private final boolean squared;
+
+		CompiledClusters(FieldName[] fields, double[] fieldWeights, Cluster[] entities, String[] entityIds,
+				double[] centers, boolean squared) {
+			this.fields = fields;
+			this.fieldWeights = fieldWeights;
+			this.entities = entities;
+			this.entityIds = entityIds;
+			this.centers = centers;
+			this.squared = squared;
+		}
+	}
+
+	/**
+	 * A {@link ClusterClassificationMap} for a winning {@link Cluster} that was determined by the compiled evaluation.
+	 */
+	static class CompiledClusterClassificationMap extends ClusterClassificationMap {
+
+		private static final long serialVersionUID = 1L;
+
+		CompiledClusterClassificationMap(Cluster winner) {
+			super(ClassificationMap.Type.DISTANCE, winner);
+		}
+	}
+}
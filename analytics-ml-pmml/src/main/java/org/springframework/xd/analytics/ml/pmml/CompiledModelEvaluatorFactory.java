@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import org.dmg.pmml.ClusteringModel;
+import org.dmg.pmml.Model;
+import org.dmg.pmml.PMML;
+import org.dmg.pmml.RegressionModel;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.ModelEvaluatorFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Creates compiled {@link Evaluator}s for {@link RegressionModel}s and {@link ClusteringModel}s and the default jpmml
+ * {@link Evaluator}s for all other model types.
+ *
+ * @see CompiledRegressionModelEvaluator
+ * @see CompiledClusteringModelEvaluator
+ */
+public class CompiledModelEvaluatorFactory {
+
+	private CompiledModelEvaluatorFactory() {}
+
+	/**
+	 * Creates the {@link Evaluator} for the given {@link Model} of the given {@link PMML} document.
+	 *
+	 * @param pmml must not be {@literal null}
+	 * @param model must not be {@literal null}
+	 * @return
+	 */
+	public static Evaluator createModelEvaluator(PMML pmml, Model model) {
+
+		Assert.notNull(pmml, "pmml");
+		Assert.notNull(model, "model");
+
+		if (model instanceof RegressionModel) {
+			return new CompiledRegressionModelEvaluator(pmml, (RegressionModel) model);
+		}
+
+		if (model instanceof ClusteringModel) {
+			return new CompiledClusteringModelEvaluator(pmml, (ClusteringModel) model);
+		}
+
+		return ModelEvaluatorFactory.getInstance().getModelManager(pmml, model);
+	}
+}
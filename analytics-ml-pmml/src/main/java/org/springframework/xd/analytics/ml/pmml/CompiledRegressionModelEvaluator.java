@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.dmg.pmml.FieldName;
+import org.dmg.pmml.MiningFunctionType;
+import org.dmg.pmml.NumericPredictor;
+import org.dmg.pmml.PMML;
+import org.dmg.pmml.RegressionModel;
+import org.dmg.pmml.RegressionNormalizationMethodType;
+import org.dmg.pmml.RegressionTable;
+import org.jpmml.evaluator.FieldValue;
+import org.jpmml.evaluator.ModelEvaluationContext;
+import org.jpmml.evaluator.OutputUtil;
+import org.jpmml.evaluator.RegressionModelEvaluator;
+import org.jpmml.evaluator.TargetUtil;
+
+/**
+ * A {@link RegressionModelEvaluator} that compiles linear regression models with a single
+ * {@link org.dmg.pmml.RegressionTable} of {@link org.dmg.pmml.NumericPredictor}s into primitive coefficient arrays, so
+ * the prediction is computed in a tight loop over the model inputs. Targets and output fields are still processed by
+ * jpmml. Models with other features as well as inputs with missing values are evaluated by jpmml.
+ */
+public class CompiledRegressionModelEvaluator extends RegressionModelEvaluator {
+
+	private static final long serialVersionUID = 1L;
+
+	private final CompiledRegressionTable compiledTable;
+
+	/**
+	 * Creates a new {@link CompiledRegressionModelEvaluator}.
+	 *
+	 * @param pmml must not be {@literal null}
+	 * @param regressionModel must not be {@literal null}
+	 */
+	public CompiledRegressionModelEvaluator(PMML pmml, RegressionModel regressionModel) {
+
+		super(pmml, regressionModel);
+
+		this.compiledTable = compile(regressionModel, getActiveFields());
+	}
+
+	/**
+	 * @return whether the model could be compiled, otherwise all evaluations are performed by jpmml.
+	 */
+	public boolean isCompiled() {
+		return compiledTable != null;
+	}
+
+	@Override
+	public Map<FieldName, ?> evaluate(ModelEvaluationContext context) {
+
+		CompiledRegressionTable table = this.compiledTable;
+		if (table == null) {
+			return super.evaluate(context);
+		}
+
+		FieldName[] fields = table.fields;
+		double[] coefficients = table.coefficients;
+		int[] exponents = table.exponents;
+
+		double result = table.intercept;
+		for (int i = 0; i < fields.length; i++) {
+
+			FieldValue value = context.getField(fields[i]);
+			if (value == null) {
+				//jpmml applies the default of the target for missing values.
+				return super.evaluate(context);
+			}
+
+			double x = value.asNumber().doubleValue();
+			result += coefficients[i] * (exponents[i] == 1 ? x : Math.pow(x, exponents[i]));
+		}
+
+		Map<FieldName, ? extends Number> predictions = TargetUtil.evaluateRegression(
+				Collections.singletonMap(table.targetField, result), context);
+
+		return OutputUtil.evaluate(predictions, context);
+	}
+
+	/**
+	 * Compiles the given {@link RegressionModel} or returns {@literal null} if the model uses features that are not
+	 * supported.
+	 *
+	 * @param regressionModel must not be {@literal null}
+	 * @param activeFields must not be {@literal null}
+	 * @return
+	 */
+	private CompiledRegressionTable compile(RegressionModel regressionModel, List<FieldName> activeFields) {
+
+		if (!regressionModel.isScorable() || regressionModel.getFunctionName() != MiningFunctionType.REGRESSION
+				|| regressionModel.getNormalizationMethod() != RegressionNormalizationMethodType.NONE
+				|| regressionModel.getRegressionTables().size() != 1) {
+			return null;
+		}
+
+		RegressionTable regressionTable = regressionModel.getRegressionTables().get(0);
+		if (!regressionTable.getCategoricalPredictors().isEmpty() || !regressionTable.getPredictorTerms().isEmpty()) {
+			return null;
+		}
+
+		List<NumericPredictor> predictors = regressionTable.getNumericPredictors();
+
+		FieldName[] fields = new FieldName[predictors.size()];
+		double[] coefficients = new double[predictors.size()];
+		int[] exponents = new int[predictors.size()];
+
+		for (int i = 0; i < fields.length; i++) {
+
+			NumericPredictor predictor = predictors.get(i);
+			if (!activeFields.contains(predictor.getName())) {
+				//derived fields are evaluated by jpmml.
+				return null;
+			}
+
+			fields[i] = predictor.getName();
+			coefficients[i] = predictor.getCoefficient();
+			exponents[i] = predictor.getExponent();
+		}
+
+		FieldName targetField = regressionModel.getTargetFieldName() != null ? regressionModel.getTargetFieldName()
+				: getTargetField();
+
+		return new CompiledRegressionTable(targetField, regressionTable.getIntercept(), fields, coefficients, exponents);
+	}
+
+	/**
+	 * A {@link RegressionTable} compiled into primitive arrays.
+	 */
+	static class CompiledRegressionTable implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final FieldName targetField;
+
+		private final double intercept;
+
+		private final FieldName[] fields;
+
+		private final double[] coefficients;
+
+		private final int[] exponents;
+
+		CompiledRegressionTable(FieldName targetField, double intercept, FieldName[] fields, double[] coefficients,
+				int[] exponents) {
+			this.targetField = targetField;
+			this.intercept = intercept;
+			this.fields = fields;
+			this.coefficients = coefficients;
+			this.exponents = exponents;
+		}
+	}
+}
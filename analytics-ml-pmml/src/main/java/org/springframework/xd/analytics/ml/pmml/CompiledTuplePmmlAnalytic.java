@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.Map;
+
+import org.dmg.pmml.FieldName;
+import org.dmg.pmml.PMML;
+import org.jpmml.evaluator.Evaluator;
+import org.springframework.xd.analytics.ml.InputMapper;
+import org.springframework.xd.analytics.ml.OutputMapper;
+import org.springframework.xd.tuple.Tuple;
+
+/**
+ * A {@link TuplePmmlAnalytic} that evaluates regression and k-means clustering models with the compiled
+ * {@link Evaluator}s of the {@link CompiledModelEvaluatorFactory}. Other models are evaluated by jpmml.
+ */
+public class CompiledTuplePmmlAnalytic extends TuplePmmlAnalytic {
+
+	/**
+	 * Creates a new {@link CompiledTuplePmmlAnalytic}.
+	 *
+	 * @param modelName may be {@literal null}
+	 * @param modelLocation must not be {@literal null}
+	 * @param pmmlLoader must not be {@literal null}
+	 * @param inputMapper must not be {@literal null}
+	 * @param outputMapper must not be {@literal null}
+	 */
+	public CompiledTuplePmmlAnalytic(String modelName, String modelLocation, PmmlLoader pmmlLoader,
+			InputMapper<Tuple, PmmlAnalytic<Tuple, Tuple>, Map<FieldName, Object>> inputMapper,
+			OutputMapper<Tuple, Tuple, PmmlAnalytic<Tuple, Tuple>, Map<FieldName, Object>> outputMapper) {
+		super(modelName, modelLocation, pmmlLoader, inputMapper, outputMapper);
+	}
+
+	/**
+	 * Creates a new {@link CompiledTuplePmmlAnalytic}.
+	 *
+	 * @param modelName may be {@literal null}
+	 * @param modelLocation must not be {@literal null}
+	 * @param pmmlLoader must not be {@literal null}
+	 * @param inputFieldMappings
+	 * @param outputFieldMappings
+	 * @see TuplePmmlAnalytic#TuplePmmlAnalytic(String, String, PmmlLoader, String, String)
+	 */
+	public CompiledTuplePmmlAnalytic(String modelName, String modelLocation, PmmlLoader pmmlLoader,
+			String inputFieldMappings, String outputFieldMappings) {
+		super(modelName, modelLocation, pmmlLoader, inputFieldMappings, outputFieldMappings);
+	}
+
+	@Override
+	protected Evaluator createModelEvaluator(PMML pmml, String modelName) {
+		return CompiledModelEvaluatorFactory.createModelEvaluator(pmml, getModel(pmml, modelName));
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * A local on-disk cache for {@link org.dmg.pmml.PMML} documents at {@code http:} and {@code https:} locations. Every
+ * document is stored decoded, i.e. decompressed, next to the {@code ETag} and {@code Last-Modified} headers of the
+ * response. Subsequent loads, also after a restart, revalidate the cached document with a conditional request and only
+ * download and decode it again if it was changed. If the server can not be reached, the cached document is used.
+ */
+public class HttpPmmlCache {
+
+	private static final String CONTENT_SUFFIX = ".pmml.xml";
+
+	private static final String METADATA_SUFFIX = ".properties";
+
+	private static final String ETAG = "etag";
+
+	private static final String LAST_MODIFIED = "lastModified";
+
+	private final Log log = LogFactory.getLog(this.getClass());
+
+	private final File cacheDirectory;
+
+	private final AtomicLong downloadCount = new AtomicLong();
+
+	private final AtomicLong revalidationCount = new AtomicLong();
+
+	/**
+	 * Creates a new {@link HttpPmmlCache}.
+	 *
+	 * @param cacheDirectory must not be {@literal null}
+	 */
+	public HttpPmmlCache(File cacheDirectory) {
+
+		Assert.notNull(cacheDirectory, "cacheDirectory");
+
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/**
+	 * @param url must not be {@literal null}
+	 * @return whether documents at the given {@code url} are cached.
+	 */
+	public static boolean isCacheable(URL url) {
+		return "http".equalsIgnoreCase(url.getProtocol()) || "https".equalsIgnoreCase(url.getProtocol());
+	}
+
+	/**
+	 * Returns a stream of the decoded {@link org.dmg.pmml.PMML} document at the given {@code url}, the document is
+	 * downloaded if it is not cached or was changed.
+	 *
+	 * @param url must not be {@literal null}
+	 * @return
+	 * @throws IOException
+	 */
+	public InputStream open(URL url) throws IOException {
+
+		Assert.notNull(url, "url");
+
+		String key = Hashing.sha256().hashString(url.toExternalForm(), Charset.forName("UTF-8")).toString();
+		File contentFile = new File(cacheDirectory, key + CONTENT_SUFFIX);
+		File metadataFile = new File(cacheDirectory, key + METADATA_SUFFIX);
+
+		Properties metadata = contentFile.isFile() ? readMetadata(metadataFile) : null;
+
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		try {
+
+			if (metadata != null) {
+
+				if (metadata.getProperty(ETAG) != null) {
+					connection.setRequestProperty("If-None-Match", metadata.getProperty(ETAG));
+				}
+
+				if (metadata.getProperty(LAST_MODIFIED) != null) {
+					connection.setIfModifiedSince(Long.parseLong(metadata.getProperty(LAST_MODIFIED)));
+				}
+			}
+
+			int status;
+			try {
+				status = connection.getResponseCode();
+			}
+			catch (IOException ex) {
+
+				if (metadata == null) {
+					throw ex;
+				}
+
+				log.warn("Could not revalidate pmml from: " + url + ", using cached copy: " + contentFile, ex);
+
+				return open(contentFile);
+			}
+
+			if (status == HttpURLConnection.HTTP_NOT_MODIFIED && metadata != null) {
+
+				revalidationCount.incrementAndGet();
+
+				if (log.isDebugEnabled()) {
+					log.debug("Using cached pmml for: " + url + " from: " + contentFile);
+				}
+
+				return open(contentFile);
+			}
+
+			if (status != HttpURLConnection.HTTP_OK) {
+
+				if (metadata == null) {
+					throw new IOException("Could not load pmml from: " + url + ", server returned status: " + status);
+				}
+
+				log.warn("Could not revalidate pmml from: " + url + ", server returned status: " + status
+						+ ", using cached copy: " + contentFile);
+
+				return open(contentFile);
+			}
+
+			download(url, connection, contentFile, metadataFile);
+		}
+		finally {
+			connection.disconnect();
+		}
+
+		return open(contentFile);
+	}
+
+	/**
+	 * @return the number of documents that were downloaded.
+	 */
+	public long getDownloadCount() {
+		return downloadCount.get();
+	}
+
+	/**
+	 * @return the number of cached documents that the server confirmed to be unchanged.
+	 */
+	public long getRevalidationCount() {
+		return revalidationCount.get();
+	}
+
+	private void download(URL url, HttpURLConnection connection, File contentFile, File metadataFile)
+			throws IOException {
+
+		if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+			throw new IOException("Could not create pmml cache directory: " + cacheDirectory);
+		}
+
+		File tempFile = File.createTempFile(contentFile.getName(), ".tmp", cacheDirectory);
+
+		try {
+
+			InputStream in = ResourcePmmlLoader.decode(url.getPath(),
+					new BufferedInputStream(connection.getInputStream()));
+			try {
+
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile));
+				try {
+					StreamUtils.copy(in, out);
+				}
+				finally {
+					out.close();
+				}
+			}
+			finally {
+				in.close();
+			}
+
+			// the metadata is removed first, so a failed replace never pairs new metadata with old content
+			metadataFile.delete();
+			contentFile.delete();
+
+			if (!tempFile.renameTo(contentFile)) {
+				throw new IOException("Could not rename " + tempFile + " to " + contentFile);
+			}
+
+			writeMetadata(metadataFile, connection);
+
+			downloadCount.incrementAndGet();
+
+			if (log.isDebugEnabled()) {
+				log.debug("Downloaded pmml from: " + url + " to: " + contentFile);
+			}
+		}
+		finally {
+			if (tempFile.exists()) {
+				tempFile.delete();
+			}
+		}
+	}
+
+	private Properties readMetadata(File metadataFile) {
+
+		if (!metadataFile.isFile()) {
+			return null;
+		}
+
+		try {
+
+			InputStream in = new FileInputStream(metadataFile);
+			try {
+
+				Properties metadata = new Properties();
+				metadata.load(in);
+
+				return metadata;
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (IOException ex) {
+			log.warn("Could not read pmml cache metadata: " + metadataFile, ex);
+			return null;
+		}
+	}
+
+	private void writeMetadata(File metadataFile, HttpURLConnection connection) throws IOException {
+
+		Properties metadata = new Properties();
+
+		if (connection.getHeaderField("ETag") != null) {
+			metadata.setProperty(ETAG, connection.getHeaderField("ETag"));
+		}
+
+		if (connection.getLastModified() > 0) {
+			metadata.setProperty(LAST_MODIFIED, String.valueOf(connection.getLastModified()));
+		}
+
+		OutputStream out = new FileOutputStream(metadataFile);
+		try {
+			metadata.store(out, connection.getURL().toExternalForm());
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static InputStream open(File contentFile) throws IOException {
+		return new BufferedInputStream(new FileInputStream(contentFile));
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.util.Assert;
+
+/**
+ * A lock-free latency histogram with log-linear buckets in the spirit of HdrHistogram. Every power of two is split into
+ * {@value #SUB_BUCKET_COUNT} linear sub-buckets, so recorded values are kept with a relative error of at most 1/16
+ * while the whole range of {@code long} values fits into a fixed array of counters. Recording a value costs a few
+ * arithmetic operations and two atomic increments.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+
+	static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	private final AtomicLong totalCount = new AtomicLong();
+
+	private final AtomicLong totalValue = new AtomicLong();
+
+	private final AtomicLong maxValue = new AtomicLong();
+
+	/**
+	 * Records the given {@code value}, negative values are recorded as {@literal 0}.
+	 *
+	 * @param value
+	 */
+	public void record(long value) {
+
+		long normalizedValue = Math.max(0, value);
+
+		counts.incrementAndGet(bucketIndex(normalizedValue));
+		totalCount.incrementAndGet();
+		totalValue.addAndGet(normalizedValue);
+
+		long currentMax;
+		while (normalizedValue > (currentMax = maxValue.get())) {
+			if (maxValue.compareAndSet(currentMax, normalizedValue)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of recorded values.
+	 */
+	public long getCount() {
+		return totalCount.get();
+	}
+
+	/**
+	 * @return the mean of the recorded values or {@literal 0} if no values were recorded.
+	 */
+	public double getMean() {
+
+		long count = totalCount.get();
+
+		return count == 0 ? 0 : (double) totalValue.get() / count;
+	}
+
+	/**
+	 * @return the largest recorded value.
+	 */
+	public long getMax() {
+		return maxValue.get();
+	}
+
+	/**
+	 * Returns the value below which the given {@code percentile} of the recorded values fall. The result is the upper
+	 * bound of the bucket that contains the percentile, capped at the largest recorded value.
+	 *
+	 * @param percentile between {@literal 0} and {@literal 100}
+	 * @return
+	 */
+	public long getPercentile(double percentile) {
+
+		Assert.isTrue(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+
+		long[] snapshot = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = counts.get(i);
+			count += snapshot[i];
+		}
+
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long cumulativeCount = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+
+			cumulativeCount += snapshot[i];
+
+			if (cumulativeCount >= rank) {
+				return Math.min(highestValueInBucket(i), getMax());
+			}
+		}
+
+		return getMax();
+	}
+
+	/**
+	 * Resets all recorded values. Values that are recorded concurrently may be partially lost.
+	 */
+	public void reset() {
+
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0);
+		}
+
+		totalCount.set(0);
+		totalValue.set(0);
+		maxValue.set(0);
+	}
+
+	static int bucketIndex(long value) {
+
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+
+		return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	static long highestValueInBucket(int index) {
+
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+
+		int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+		long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+
+		return ((SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+	}
+}
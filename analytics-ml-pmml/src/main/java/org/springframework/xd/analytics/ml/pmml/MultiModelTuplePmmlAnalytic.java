@@ -0,0 +1,324 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.dmg.pmml.FieldName;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.xd.analytics.ml.Analytic;
+import org.springframework.xd.tuple.Tuple;
+import org.springframework.xd.tuple.TupleBuilder;
+
+/**
+ * An {@link org.springframework.xd.analytics.ml.Analytic} that evaluates several named models of one
+ * {@link org.dmg.pmml.PMML} document against the same input {@link org.springframework.xd.tuple.Tuple} and merges all
+ * model outputs into one result {@link org.springframework.xd.tuple.Tuple}. The output fields of every model are
+ * prefixed with {@code modelName.}. The document is parsed once and shared between the models through the
+ * {@link PmmlModelCache}.
+ * <p>
+ * With a {@code concurrency} greater than {@literal 1} the models are evaluated in parallel on a bounded pool of
+ * worker threads, one model is always evaluated on the calling thread. If all workers are busy the remaining models
+ * are evaluated on the calling thread as well.
+ */
+public class MultiModelTuplePmmlAnalytic implements Analytic<Tuple, Tuple>, ReloadablePmmlAnalytic, DisposableBean {
+
+	static final String MODEL_OUTPUT_PREFIX_SEPARATOR = ".";
+
+	private final String modelLocation;
+
+	private final List<TuplePmmlAnalytic> analytics;
+
+	private final List<TuplePmmlAnalyticOutputDataMapper> outputMappers;
+
+	private final PmmlAnalyticMetrics metrics = new PmmlAnalyticMetrics();
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Creates a new {@link MultiModelTuplePmmlAnalytic}.
+	 *
+	 * @param modelNames comma-separated list of model names, must not be {@literal null}
+	 * @param modelLocation must not be {@literal null}
+	 * @param pmmlLoader must not be {@literal null}
+	 * @param inputFieldMappings may be {@literal null}
+	 * @param outputFieldMappings may be {@literal null}, applied to the output of every model.
+	 * @param concurrency the number of threads to evaluate the models with, {@literal 1} evaluates them sequentially.
+	 */
+	public MultiModelTuplePmmlAnalytic(String modelNames, String modelLocation, PmmlLoader pmmlLoader,
+			String inputFieldMappings, String outputFieldMappings, int concurrency) {
+		this(modelNames, modelLocation, pmmlLoader, inputFieldMappings, outputFieldMappings, concurrency, false);
+	}
+
+	/**
+	 * Creates a new {@link MultiModelTuplePmmlAnalytic}.
+	 *
+	 * @param modelNames comma-separated list of model names, must not be {@literal null}
+	 * @param modelLocation must not be {@literal null}
+	 * @param pmmlLoader must not be {@literal null}
+	 * @param inputFieldMappings may be {@literal null}
+	 * @param outputFieldMappings may be {@literal null}, applied to the output of every model.
+	 * @param concurrency the number of threads to evaluate the models with, {@literal 1} evaluates them sequentially.
+	 * @param compileModels whether to evaluate the models with the compiled evaluators of the
+	 *          {@link CompiledModelEvaluatorFactory}.
+	 */
+	public MultiModelTuplePmmlAnalytic(String modelNames, String modelLocation, PmmlLoader pmmlLoader,
+			String inputFieldMappings, String outputFieldMappings, int concurrency, boolean compileModels) {
+
+		Assert.hasText(modelNames, "modelNames");
+		Assert.notNull(modelLocation, "modelLocation");
+		Assert.isTrue(concurrency > 0, "concurrency must be greater than 0");
+
+		List<String> names = TuplePmmlAnalytic.splitFieldMappings(modelNames);
+
+		this.modelLocation = modelLocation;
+		this.analytics = new ArrayList<TuplePmmlAnalytic>(names.size());
+		this.outputMappers = new ArrayList<TuplePmmlAnalyticOutputDataMapper>(names.size());
+
+		List<String> inputFieldMappingList = TuplePmmlAnalytic.splitFieldMappings(inputFieldMappings);
+		List<String> outputFieldMappingList = TuplePmmlAnalytic.splitFieldMappings(outputFieldMappings);
+
+		try {
+			for (String modelName : names) {
+
+				TuplePmmlAnalyticOutputDataMapper outputMapper = new TuplePmmlAnalyticOutputDataMapper(
+						outputFieldMappingList, modelName + MODEL_OUTPUT_PREFIX_SEPARATOR);
+				TuplePmmlAnalyticInputDataMapper inputMapper = new TuplePmmlAnalyticInputDataMapper(inputFieldMappingList);
+				TuplePmmlAnalytic analytic = compileModels ? new CompiledTuplePmmlAnalytic(modelName, modelLocation,
+						pmmlLoader, inputMapper, outputMapper) : new TuplePmmlAnalytic(modelName, modelLocation, pmmlLoader,
+						inputMapper, outputMapper);
+				analytic.setMetrics(metrics);
+
+				analytics.add(analytic);
+				outputMappers.add(outputMapper);
+			}
+		}
+		catch (RuntimeException ex) {
+			destroy();
+			throw ex;
+		}
+
+		this.executor = concurrency > 1 && names.size() > 1 ? createExecutor(concurrency) : null;
+	}
+
+	private static ThreadPoolExecutor createExecutor(int concurrency) {
+
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pmml-model-");
+		threadFactory.setDaemon(true);
+
+		return new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(concurrency), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * Evaluates all models against the given {@code input}.
+	 *
+	 * @param input must not be {@literal null}
+	 * @return the given {@code input} extended by the prefixed outputs of all models.
+	 */
+	@Override
+	public Tuple evaluate(Tuple input) {
+
+		Assert.notNull(input, "input");
+
+		try {
+
+			List<Map<FieldName, Object>> modelOutputs = executor == null ? evaluateSequentially(input)
+					: evaluateInParallel(input);
+
+			long start = System.nanoTime();
+
+			List<String> outputNames = new ArrayList<String>(input.getFieldNames());
+			List<Object> outputValues = new ArrayList<Object>(input.getValues());
+
+			for (int i = 0; i < analytics.size(); i++) {
+				outputMappers.get(i).addOutputEntries(analytics.get(i), modelOutputs.get(i), outputNames, outputValues);
+			}
+
+			Tuple output = TupleBuilder.tuple().ofNamesAndValues(outputNames, outputValues);
+
+			metrics.recordLatency(PmmlAnalyticMetrics.Phase.MAP_OUTPUT, System.nanoTime() - start);
+			metrics.recordEvaluation();
+
+			return output;
+		}
+		catch (RuntimeException ex) {
+			metrics.recordError();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Evaluates the given {@code inputs} one after another.
+	 *
+	 * @param inputs must not be {@literal null}
+	 * @return the outputs in the same order as the given {@code inputs}.
+	 */
+	public List<Tuple> evaluateAll(List<Tuple> inputs) {
+
+		Assert.notNull(inputs, "inputs");
+
+		List<Tuple> outputs = new ArrayList<Tuple>(inputs.size());
+		for (Tuple input : inputs) {
+			outputs.add(evaluate(input));
+		}
+
+		return outputs;
+	}
+
+	private List<Map<FieldName, Object>> evaluateSequentially(Tuple input) {
+
+		List<Map<FieldName, Object>> modelOutputs = new ArrayList<Map<FieldName, Object>>(analytics.size());
+		for (TuplePmmlAnalytic analytic : analytics) {
+			modelOutputs.add(analytic.evaluateModel(input));
+		}
+
+		return modelOutputs;
+	}
+
+	private List<Map<FieldName, Object>> evaluateInParallel(final Tuple input) {
+
+		List<Future<Map<FieldName, Object>>> futures = new ArrayList<Future<Map<FieldName, Object>>>(
+				analytics.size() - 1);
+
+		try {
+
+			for (int i = 1; i < analytics.size(); i++) {
+
+				final TuplePmmlAnalytic analytic = analytics.get(i);
+
+				futures.add(executor.submit(new Callable<Map<FieldName, Object>>() {
+
+					@Override
+					public Map<FieldName, Object> call() throws Exception {
+						return analytic.evaluateModel(input);
+					}
+				}));
+			}
+
+			List<Map<FieldName, Object>> modelOutputs = new ArrayList<Map<FieldName, Object>>(analytics.size());
+			modelOutputs.add(analytics.get(0).evaluateModel(input));
+
+			for (Future<Map<FieldName, Object>> future : futures) {
+				modelOutputs.add(future.get());
+			}
+
+			return modelOutputs;
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while evaluating models", ex);
+		}
+		catch (ExecutionException ex) {
+
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+
+			if (ex.getCause() instanceof Error) {
+				throw (Error) ex.getCause();
+			}
+
+			throw new IllegalStateException(ex.getCause());
+		}
+		finally {
+			for (Future<Map<FieldName, Object>> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Sets the {@link PmmlResultCache} to answer repeated model inputs of all models from.
+	 *
+	 * @param resultCache may be {@literal null} to evaluate every model input.
+	 */
+	public void setResultCache(PmmlResultCache resultCache) {
+
+		for (TuplePmmlAnalytic analytic : analytics) {
+			analytic.setResultCache(resultCache);
+		}
+	}
+
+	/**
+	 * Sets the {@link PmmlModelWarmer} that warms up all models.
+	 *
+	 * @param modelWarmer may be {@literal null} to disable the warm-up.
+	 */
+	public void setModelWarmer(PmmlModelWarmer modelWarmer) {
+
+		for (TuplePmmlAnalytic analytic : analytics) {
+			analytic.setModelWarmer(modelWarmer);
+		}
+	}
+
+	/**
+	 * Reloads the {@link org.dmg.pmml.PMML} document of all models.
+	 */
+	@Override
+	public void reload() {
+
+		for (TuplePmmlAnalytic analytic : analytics) {
+			analytic.reload();
+		}
+	}
+
+	@Override
+	public void destroy() {
+
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+
+		for (TuplePmmlAnalytic analytic : analytics) {
+			analytic.destroy();
+		}
+	}
+
+	@Override
+	public String getModelLocation() {
+		return modelLocation;
+	}
+
+	/**
+	 * Returns the {@link PmmlAnalyticMetrics} shared by all models. Input mapping and evaluation latencies are recorded
+	 * per model, the output mapping latency and the counters per input.
+	 *
+	 * @return
+	 */
+	public PmmlAnalyticMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the {@link TuplePmmlAnalytic}s of the evaluated models.
+	 */
+	List<TuplePmmlAnalytic> getAnalytics() {
+		return Collections.unmodifiableList(analytics);
+	}
+}
@@ -16,6 +16,8 @@
 
 package org.springframework.xd.analytics.ml.pmml;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -25,7 +27,9 @@ import org.dmg.pmml.FieldName;
 import org.dmg.pmml.Model;
 import org.dmg.pmml.PMML;
 import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.EvaluatorUtil;
 import org.jpmml.evaluator.ModelEvaluatorFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import org.springframework.xd.analytics.ml.InputMapper;
@@ -34,11 +38,14 @@ import org.springframework.xd.analytics.ml.OutputMapper;
 
 /**
  * A {@link org.springframework.xd.analytics.ml.MappedAnalytic} that can evaluate {@link org.dmg.pmml.PMML} models.
+ * Parsed models are shared with other analytics of the same module instance through the {@link PmmlModelCache}, so
+ * {@link #destroy()} must be called once the analytic is no longer used.
  * 
  * @author Thomas Darimont
  */
 public class PmmlAnalytic<I, O> extends
-		MappedAnalytic<I, O, Map<FieldName, Object>, Map<FieldName, Object>, PmmlAnalytic<I, O>> {
+		MappedAnalytic<I, O, Map<FieldName, Object>, Map<FieldName, Object>, PmmlAnalytic<I, O>> implements
+		ReloadablePmmlAnalytic, DisposableBean {
 
 	private final Log log = LogFactory.getLog(this.getClass());
 
@@ -46,9 +53,27 @@ public class PmmlAnalytic<I, O> extends
 
 	private final String modelLocation;
 
-	private final PMML pmml;
+	private final PmmlLoader pmmlLoader;
 
-	private final Evaluator pmmlEvaluator;
+	private final PmmlModelCache modelCache = PmmlModelCache.getSharedInstance();
+
+	private final Object reloadMonitor = new Object();
+
+	private volatile LoadedModel loadedModel;
+
+	private volatile WarmUp warmUp;
+
+	private final InputMapper<I, PmmlAnalytic<I, O>, Map<FieldName, Object>> inputMapper;
+
+	private final OutputMapper<I, O, PmmlAnalytic<I, O>, Map<FieldName, Object>> outputMapper;
+
+	private PmmlAnalyticMetrics metrics = new PmmlAnalyticMetrics();
+
+	private volatile PmmlResultCache resultCache;
+
+	private volatile PmmlShadowScorer shadowScorer;
+
+	private volatile PmmlModelWarmer modelWarmer;
 
 	/**
 	 * Creates a new {@link PmmlAnalytic}.
@@ -82,13 +107,15 @@ public class PmmlAnalytic<I, O> extends
 		Assert.notNull(modelLocation, "modelLocation");
 		Assert.notNull(pmmlLoader, "pmmlLoader");
 
+		this.inputMapper = inputMapper;
+		this.outputMapper = outputMapper;
 		this.modelName = StringUtils.trimAllWhitespace(modelName);
 		this.modelLocation = StringUtils.trimAllWhitespace(modelLocation);
 
-		PMML pmml = pmmlLoader.loadPmml(this.modelLocation);
+		this.pmmlLoader = pmmlLoader;
+		this.loadedModel = loadModel();
 
-		this.pmml = pmml;
-		this.pmmlEvaluator = createModelEvaluator(pmml, modelName);
+		addSchemaCaches(metrics);
 
 		if (log.isDebugEnabled()) {
 			log.debug(String.format("PmmlAnalytic created for model with modelName: %s and modelLocation: %s",
@@ -102,7 +129,148 @@ public class PmmlAnalytic<I, O> extends
 	 * @return
 	 */
 	protected Evaluator createModelEvaluator(PMML pmml, String modelName) {
-		return ModelEvaluatorFactory.getInstance().getModelManager(pmml, getModel(modelName));
+		return ModelEvaluatorFactory.getInstance().getModelManager(pmml, getModel(pmml, modelName));
+	}
+
+	/**
+	 * Reloads the {@link PMML} document from the configured {@code modelLocation} and atomically replaces the current
+	 * {@link org.jpmml.evaluator.Evaluator}. The new document is parsed on the calling thread, evaluations that are in
+	 * progress keep using the previous {@code Evaluator} and are never blocked. If a {@link PmmlModelWarmer} is
+	 * configured the new {@code Evaluator} is warmed up before it replaces the current one. If the new document cannot
+	 * be loaded or warmed up the current model is retained.
+	 */
+	@Override
+	public void reload() {
+
+		synchronized (reloadMonitor) {
+
+			LoadedModel previousModel = this.loadedModel;
+			LoadedModel newModel = loadModel();
+
+			boolean replaced = false;
+			try {
+
+				PmmlModelWarmer warmer = this.modelWarmer;
+				if (warmer != null && newModel.evaluator != previousModel.evaluator) {
+					warmUp(warmer, newModel);
+				}
+
+				this.loadedModel = newModel;
+				replaced = true;
+			}
+			finally {
+				if (!replaced) {
+					newModel.handle.release();
+				}
+			}
+
+			PmmlResultCache cache = this.resultCache;
+			if (cache != null) {
+				cache.invalidate(previousModel.evaluator);
+			}
+
+			previousModel.handle.release();
+
+			if (log.isInfoEnabled()) {
+				log.info(String.format("Reloaded model with modelName: %s from modelLocation: %s", modelName,
+						modelLocation));
+			}
+		}
+	}
+
+	/**
+	 * Loads the {@link PMML} document and creates the {@link org.jpmml.evaluator.Evaluator} for the selected model.
+	 *
+	 * @return
+	 */
+	private LoadedModel loadModel() {
+
+		PmmlModelCache.Handle handle = modelCache.acquire(this.modelLocation, this.pmmlLoader);
+
+		try {
+
+			// evaluators are shared per analytic type since sub-classes may customize their creation
+			Evaluator evaluator = handle.getEvaluator(getClass().getName() + ":" + this.modelName, this.modelName,
+					new PmmlModelCache.EvaluatorFactory() {
+
+						@Override
+						public Evaluator createEvaluator(PMML pmml, String modelName) {
+							return createModelEvaluator(pmml, modelName);
+						}
+					});
+
+			return new LoadedModel(handle, evaluator);
+		}
+		catch (RuntimeException ex) {
+			handle.release();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Releases the reference to the shared {@link PMML} document of this analytic.
+	 */
+	@Override
+	public void destroy() {
+
+		synchronized (reloadMonitor) {
+			this.loadedModel.handle.release();
+		}
+	}
+
+	/**
+	 * Evaluates the given {@code input} and records the latencies of the individual phases in the
+	 * {@link PmmlAnalyticMetrics}.
+	 * 
+	 * @param input must not be {@literal null}
+	 * @return
+	 */
+	@Override
+	public O evaluate(I input) {
+
+		Assert.notNull(input, "input");
+
+		try {
+
+			Map<FieldName, Object> modelOutput = evaluateModel(input);
+
+			long evaluated = System.nanoTime();
+			O output = outputMapper.mapOutput(this, input, modelOutput);
+
+			metrics.recordLatency(PmmlAnalyticMetrics.Phase.MAP_OUTPUT, System.nanoTime() - evaluated);
+			metrics.recordEvaluation();
+
+			return output;
+		}
+		catch (RuntimeException ex) {
+			metrics.recordError();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Maps the given {@code input} and evaluates it without mapping the result back, so that callers can combine the
+	 * outputs of several models. The latencies of the map-input and evaluate phases are recorded in the
+	 * {@link PmmlAnalyticMetrics}.
+	 * 
+	 * @param input must not be {@literal null}
+	 * @return the raw model output.
+	 */
+	public Map<FieldName, Object> evaluateModel(I input) {
+
+		Assert.notNull(input, "input");
+
+		long start = System.nanoTime();
+		Map<FieldName, Object> modelInput = inputMapper.mapInput(this, input);
+
+		long inputMapped = System.nanoTime();
+		metrics.recordLatency(PmmlAnalyticMetrics.Phase.MAP_INPUT, inputMapped - start);
+
+		Map<FieldName, Object> modelOutput = evaluateInternal(modelInput);
+
+		metrics.recordLatency(PmmlAnalyticMetrics.Phase.EVALUATE, System.nanoTime() - inputMapped);
+
+		return modelOutput;
 	}
 
 	/**
@@ -112,7 +280,6 @@ public class PmmlAnalytic<I, O> extends
 	 * @return
 	 */
 	@Override
-	@SuppressWarnings("unchecked")
 	protected Map<FieldName, Object> evaluateInternal(Map<FieldName, Object> modelInput) {
 
 		Assert.notNull(modelInput, "modelInput");
@@ -121,7 +288,7 @@ public class PmmlAnalytic<I, O> extends
 			log.debug("Before pmml evaluation - input: " + modelInput);
 		}
 
-		Map<FieldName, Object> result = (Map<FieldName, Object>) this.pmmlEvaluator.evaluate(modelInput);
+		Map<FieldName, Object> result = evaluateModel(getPmmlEvaluator(), modelInput);
 
 		if (log.isDebugEnabled()) {
 			log.debug("After pmml evaluation - result: " + result);
@@ -130,6 +297,125 @@ public class PmmlAnalytic<I, O> extends
 		return result;
 	}
 
+	/**
+	 * Evaluates the given {@code inputs} as a single batch. The inputs are mapped, evaluated against the same
+	 * {@link org.jpmml.evaluator.Evaluator} and mapped back in one pass, so the per-message overhead is paid once per
+	 * batch instead of once per input.
+	 * 
+	 * @param inputs must not be {@literal null}
+	 * @return the outputs in the same order as the given {@code inputs}.
+	 */
+	public List<O> evaluateAll(List<I> inputs) {
+
+		Assert.notNull(inputs, "inputs");
+
+		try {
+
+			List<Map<FieldName, Object>> modelInputs = new ArrayList<Map<FieldName, Object>>(inputs.size());
+			for (I input : inputs) {
+
+				Assert.notNull(input, "input");
+
+				long start = System.nanoTime();
+				modelInputs.add(inputMapper.mapInput(this, input));
+				metrics.recordLatency(PmmlAnalyticMetrics.Phase.MAP_INPUT, System.nanoTime() - start);
+			}
+
+			List<Map<FieldName, Object>> modelOutputs = evaluateAllInternal(modelInputs);
+
+			List<O> outputs = new ArrayList<O>(inputs.size());
+			for (int i = 0; i < inputs.size(); i++) {
+
+				long start = System.nanoTime();
+				outputs.add(outputMapper.mapOutput(this, inputs.get(i), modelOutputs.get(i)));
+				metrics.recordLatency(PmmlAnalyticMetrics.Phase.MAP_OUTPUT, System.nanoTime() - start);
+				metrics.recordEvaluation();
+			}
+
+			return outputs;
+		}
+		catch (RuntimeException ex) {
+			metrics.recordError();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Evaluates the given batch of {@code modelInputs} with the analytic provided by {@link PMML} definition.
+	 * 
+	 * @param modelInputs must not be {@literal null}
+	 * @return the model outputs in the same order as the given {@code modelInputs}.
+	 */
+	protected List<Map<FieldName, Object>> evaluateAllInternal(List<Map<FieldName, Object>> modelInputs) {
+
+		Assert.notNull(modelInputs, "modelInputs");
+
+		boolean debugEnabled = log.isDebugEnabled();
+		if (debugEnabled) {
+			log.debug("Before pmml batch evaluation - batch size: " + modelInputs.size());
+		}
+
+		Evaluator evaluator = getPmmlEvaluator();
+
+		List<Map<FieldName, Object>> results = new ArrayList<Map<FieldName, Object>>(modelInputs.size());
+		for (Map<FieldName, Object> modelInput : modelInputs) {
+
+			long start = System.nanoTime();
+			results.add(evaluateModel(evaluator, modelInput));
+			metrics.recordLatency(PmmlAnalyticMetrics.Phase.EVALUATE, System.nanoTime() - start);
+		}
+
+		if (debugEnabled) {
+			log.debug("After pmml batch evaluation - results: " + results);
+		}
+
+		return results;
+	}
+
+	/**
+	 * Evaluates the given {@code modelInput} with the given {@link Evaluator} or returns the cached result if a
+	 * {@link PmmlResultCache} is configured. Sampled inputs are handed on to the {@link PmmlShadowScorer}, if one is
+	 * configured, and evaluated with the candidate model asynchronously. Only the evaluation with the model is timed
+	 * for the comparison, a cached result is passed on without a latency.
+	 * 
+	 * @param evaluator must not be {@literal null}
+	 * @param modelInput must not be {@literal null}
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<FieldName, Object> evaluateModel(Evaluator evaluator, Map<FieldName, Object> modelInput) {
+
+		PmmlShadowScorer scorer = this.shadowScorer;
+		boolean shadowing = scorer != null && scorer.sample();
+
+		PmmlResultCache cache = this.resultCache;
+		PmmlResultCache.ResultKey key = cache != null && cache.isEnabled() ? cache.createKey(evaluator, modelInput)
+				: null;
+
+		Map<FieldName, Object> result = key != null ? cache.get(key) : null;
+		long primaryNanos = -1;
+
+		if (result == null) {
+
+			long start = shadowing ? System.nanoTime() : 0;
+			result = (Map<FieldName, Object>) evaluator.evaluate(modelInput);
+
+			if (shadowing) {
+				primaryNanos = System.nanoTime() - start;
+			}
+
+			if (key != null) {
+				cache.put(key, result);
+			}
+		}
+
+		if (shadowing) {
+			scorer.submit(evaluator, modelInput, result, primaryNanos);
+		}
+
+		return result;
+	}
+
 	/**
 	 * Returns the {@link org.dmg.pmml.Model} for the given {@code modelName}.
 	 * 
@@ -137,16 +423,27 @@ public class PmmlAnalytic<I, O> extends
 	 * @return
 	 */
 	Model getModel(String modelName) {
+		return getModel(currentModel().handle.getPmml(), modelName);
+	}
+
+	/**
+	 * Returns the {@link org.dmg.pmml.Model} for the given {@code modelName} from the given {@link PMML} document.
+	 * 
+	 * @param pmml must not be {@literal null}
+	 * @param modelName may be {@literal null}
+	 * @return
+	 */
+	Model getModel(PMML pmml, String modelName) {
 
 		// if no model name given try returning default name
 		if (!StringUtils.hasText(modelName)) {
-			return getDefaultModel();
+			return getDefaultModel(pmml);
 		}
 
-		if (!this.pmml.getModels().isEmpty()) {
+		if (!pmml.getModels().isEmpty()) {
 
 			// look for a model with the given name
-			for (Model model : this.pmml.getModels()) {
+			for (Model model : pmml.getModels()) {
 
 				if (model.getModelName() == null) {
 					continue;
@@ -179,8 +476,12 @@ public class PmmlAnalytic<I, O> extends
 	 * @return
 	 */
 	Model getDefaultModel() {
+		return getDefaultModel(currentModel().handle.getPmml());
+	}
 
-		List<Model> models = this.pmml.getModels();
+	private Model getDefaultModel(PMML pmml) {
+
+		List<Model> models = pmml.getModels();
 
 		if (models.isEmpty()) {
 			throw new IllegalStateException(String.format(
@@ -196,7 +497,186 @@ public class PmmlAnalytic<I, O> extends
 	 * @return
 	 */
 	public Evaluator getPmmlEvaluator() {
-		return pmmlEvaluator;
+		return currentModel().evaluator;
+	}
+
+	/**
+	 * Returns the model that is being warmed up if called from the warming thread, the loaded model otherwise.
+	 * 
+	 * @return
+	 */
+	private LoadedModel currentModel() {
+
+		WarmUp currentWarmUp = this.warmUp;
+		if (currentWarmUp != null && currentWarmUp.thread == Thread.currentThread()) {
+			return currentWarmUp.model;
+		}
+
+		return loadedModel;
+	}
+
+	/**
+	 * Warms up the given {@code model} with the given {@link PmmlModelWarmer} through the pipeline of this analytic,
+	 * i.e. every warm-up input is mapped with the {@link InputMapper}, evaluated and mapped back with the
+	 * {@link OutputMapper}. While the model is warmed up it is used by the calling thread only, the metrics, the
+	 * {@link PmmlResultCache} and the {@link PmmlShadowScorer} are bypassed. Models whose inputs can not be created by
+	 * {@link #createWarmUpInput(Map)} are only evaluated.
+	 * 
+	 * @param warmer must not be {@literal null}
+	 * @param model must not be {@literal null}
+	 */
+	private void warmUp(PmmlModelWarmer warmer, final LoadedModel model) {
+
+		this.warmUp = new WarmUp(Thread.currentThread(), model);
+		try {
+
+			warmer.warmUp(model.evaluator, new PmmlModelWarmer.WarmUpTarget() {
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public void evaluate(Map<FieldName, Object> modelInput) {
+
+					Map<FieldName, Object> rawModelInput = new HashMap<FieldName, Object>();
+					for (Map.Entry<FieldName, Object> entry : modelInput.entrySet()) {
+						rawModelInput.put(entry.getKey(), EvaluatorUtil.decode(entry.getValue()));
+					}
+
+					I input = createWarmUpInput(rawModelInput);
+					if (input == null) {
+						model.evaluator.evaluate(modelInput);
+						return;
+					}
+
+					Map<FieldName, Object> mappedInput = inputMapper.mapInput(PmmlAnalytic.this, input);
+					Map<FieldName, Object> modelOutput = (Map<FieldName, Object>) model.evaluator.evaluate(mappedInput);
+					outputMapper.mapOutput(PmmlAnalytic.this, input, modelOutput);
+				}
+			});
+		}
+		finally {
+			this.warmUp = null;
+		}
+	}
+
+	/**
+	 * Creates an input of this analytic from the given raw values of the model input fields, so that models can be
+	 * warmed up through the whole pipeline. Sub-classes should override this method if they can create inputs, the
+	 * default implementation returns {@literal null}.
+	 * 
+	 * @param rawModelInput must not be {@literal null}
+	 * @return the input or {@literal null} if no input can be created.
+	 */
+	protected I createWarmUpInput(Map<FieldName, Object> rawModelInput) {
+		return null;
+	}
+
+	/**
+	 * Returns the {@link PmmlAnalyticMetrics} of this analytic.
+	 * 
+	 * @return
+	 */
+	public PmmlAnalyticMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Replaces the {@link PmmlAnalyticMetrics} of this analytic, must be called before the analytic is used.
+	 * 
+	 * @param metrics must not be {@literal null}
+	 */
+	void setMetrics(PmmlAnalyticMetrics metrics) {
+
+		Assert.notNull(metrics, "metrics");
+
+		this.metrics = metrics;
+
+		addSchemaCaches(metrics);
+
+		if (resultCache != null) {
+			metrics.addResultCache(resultCache);
+		}
+
+		if (shadowScorer != null) {
+			metrics.addShadowScorer(shadowScorer);
+		}
+	}
+
+	/**
+	 * Sets the {@link PmmlResultCache} to answer repeated model inputs from.
+	 * 
+	 * @param resultCache may be {@literal null} to evaluate every model input.
+	 */
+	public void setResultCache(PmmlResultCache resultCache) {
+
+		this.resultCache = resultCache;
+
+		if (resultCache != null) {
+			metrics.addResultCache(resultCache);
+		}
+	}
+
+	/**
+	 * @return the {@link PmmlResultCache} of this analytic or {@literal null} if none is configured.
+	 */
+	public PmmlResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Sets the {@link PmmlShadowScorer} that evaluates a sample of the model inputs with a candidate model.
+	 * 
+	 * @param shadowScorer may be {@literal null} to disable shadow scoring.
+	 */
+	public void setShadowScorer(PmmlShadowScorer shadowScorer) {
+
+		this.shadowScorer = shadowScorer;
+
+		if (shadowScorer != null) {
+			metrics.addShadowScorer(shadowScorer);
+		}
+	}
+
+	/**
+	 * @return the {@link PmmlShadowScorer} of this analytic or {@literal null} if none is configured.
+	 */
+	public PmmlShadowScorer getShadowScorer() {
+		return shadowScorer;
+	}
+
+	/**
+	 * Sets the {@link PmmlModelWarmer} and warms up the current model right away, so that it is warm before the module
+	 * is started. Reloaded models are warmed up before they replace the current one.
+	 * 
+	 * @param modelWarmer may be {@literal null} to disable the warm-up.
+	 */
+	public void setModelWarmer(PmmlModelWarmer modelWarmer) {
+
+		synchronized (reloadMonitor) {
+
+			this.modelWarmer = modelWarmer;
+
+			if (modelWarmer != null) {
+				warmUp(modelWarmer, loadedModel);
+			}
+		}
+	}
+
+	/**
+	 * @return the {@link PmmlModelWarmer} of this analytic or {@literal null} if none is configured.
+	 */
+	public PmmlModelWarmer getModelWarmer() {
+		return modelWarmer;
+	}
+
+	private void addSchemaCaches(PmmlAnalyticMetrics metrics) {
+
+		if (inputMapper instanceof SchemaCacheAware) {
+			metrics.addSchemaCache(((SchemaCacheAware) inputMapper).getSchemaCache());
+		}
+
+		if (outputMapper instanceof SchemaCacheAware) {
+			metrics.addSchemaCache(((SchemaCacheAware) outputMapper).getSchemaCache());
+		}
 	}
 
 	/**
@@ -204,13 +684,63 @@ public class PmmlAnalytic<I, O> extends
 	 * 
 	 * @return
 	 */
+	@Override
 	public String getModelLocation() {
 		return modelLocation;
 	}
 
+	/**
+	 * Returns the {@link InputMapper} of this analytic.
+	 * 
+	 * @return
+	 */
+	InputMapper<I, PmmlAnalytic<I, O>, Map<FieldName, Object>> getInputMapper() {
+		return inputMapper;
+	}
+
+	/**
+	 * Returns the {@link PmmlModelCache} key of the current {@link PMML} document.
+	 * 
+	 * @return
+	 */
+	String getModelCacheKey() {
+		return loadedModel.handle.getKey();
+	}
+
 	@Override
 	public String toString() {
 		return "PmmlAnalytic{" + "modelName='" + modelName + '\'' + '}' + "@"
 				+ Integer.toHexString(System.identityHashCode(this));
 	}
+
+	/**
+	 * Holds the {@link PmmlModelCache.Handle} of a loaded {@link PMML} document together with the
+	 * {@link org.jpmml.evaluator.Evaluator} of the selected model, so that both can be replaced atomically.
+	 */
+	static class LoadedModel {
+
+		private final PmmlModelCache.Handle handle;
+
+		private final Evaluator evaluator;
+
+		LoadedModel(PmmlModelCache.Handle handle, Evaluator evaluator) {
+			this.handle = handle;
+			this.evaluator = evaluator;
+		}
+	}
+
+	/**
+	 * A model that is warmed up by the given thread before it is used by other threads.
+	 */
+	static class WarmUp {
+
+		private final Thread thread;
+
+		private final LoadedModel model;
+
+		WarmUp(Thread thread, LoadedModel model) {
+			this.thread = thread;
+			this.model = model;
+		}
+	}
 }
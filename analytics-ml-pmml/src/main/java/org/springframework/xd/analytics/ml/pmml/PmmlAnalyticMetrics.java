@@ -0,0 +1,421 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+
+/**
+ * Collects the evaluation count, error count and the latencies of the map-input, evaluate and map-output phases of a
+ * {@link PmmlAnalytic}. Latencies are recorded in nanoseconds and reported in microseconds. The hit and miss counts of
+ * the {@link SchemaCache}s of the mappers and of the {@link PmmlResultCache}s as well as the agreement of a
+ * {@link PmmlShadowScorer} and the rejections of a {@link PmmlInputValidator} are reported too. Instances are exported as MBean of the owning module if
+ * JMX is enabled in the container.
+ */
+@ManagedResource(description = "Evaluation metrics of a PMML analytic")
+public class PmmlAnalyticMetrics {
+
+	private static final double NANOS_PER_MICRO = 1000d;
+
+	/**
+	 * The phases of an evaluation.
+	 */
+	public enum Phase {
+		MAP_INPUT, EVALUATE, MAP_OUTPUT
+	}
+
+	private final AtomicLong evaluationCount = new AtomicLong();
+
+	private final AtomicLong errorCount = new AtomicLong();
+
+	private final LatencyHistogram[] latencies = new LatencyHistogram[Phase.values().length];
+
+	private final List<SchemaCache<?>> schemaCaches = new CopyOnWriteArrayList<SchemaCache<?>>();
+
+	private final Set<PmmlResultCache> resultCaches = new CopyOnWriteArraySet<PmmlResultCache>();
+
+	private final Set<PmmlShadowScorer> shadowScorers = new CopyOnWriteArraySet<PmmlShadowScorer>();
+
+	private final Set<PmmlInputValidator> inputValidators = new CopyOnWriteArraySet<PmmlInputValidator>();
+
+	public PmmlAnalyticMetrics() {
+
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Records a successful evaluation.
+	 */
+	public void recordEvaluation() {
+		evaluationCount.incrementAndGet();
+	}
+
+	/**
+	 * Records a failed evaluation.
+	 */
+	public void recordError() {
+		errorCount.incrementAndGet();
+	}
+
+	/**
+	 * Records the latency of the given {@link Phase}.
+	 *
+	 * @param phase must not be {@literal null}
+	 * @param nanos
+	 */
+	public void recordLatency(Phase phase, long nanos) {
+		latencies[phase.ordinal()].record(nanos);
+	}
+
+	/**
+	 * Includes the hit and miss counts of the given {@link SchemaCache} in the reported schema cache counts.
+	 *
+	 * @param schemaCache must not be {@literal null}
+	 */
+	public void addSchemaCache(SchemaCache<?> schemaCache) {
+
+		Assert.notNull(schemaCache, "schemaCache");
+
+		schemaCaches.add(schemaCache);
+	}
+
+	/**
+	 * Includes the hit and miss counts of the given {@link PmmlResultCache} in the reported result cache counts. A
+	 * {@code PmmlResultCache} that is shared by several analytics is only counted once.
+	 *
+	 * @param resultCache must not be {@literal null}
+	 */
+	public void addResultCache(PmmlResultCache resultCache) {
+
+		Assert.notNull(resultCache, "resultCache");
+
+		resultCaches.add(resultCache);
+	}
+
+	/**
+	 * Includes the comparisons of the given {@link PmmlShadowScorer} in the reported shadow counts.
+	 *
+	 * @param shadowScorer must not be {@literal null}
+	 */
+	public void addShadowScorer(PmmlShadowScorer shadowScorer) {
+
+		Assert.notNull(shadowScorer, "shadowScorer");
+
+		shadowScorers.add(shadowScorer);
+	}
+
+	/**
+	 * Includes the rejections of the given {@link PmmlInputValidator} in the reported validation counts.
+	 *
+	 * @param inputValidator must not be {@literal null}
+	 */
+	public void addInputValidator(PmmlInputValidator inputValidator) {
+
+		Assert.notNull(inputValidator, "inputValidator");
+
+		inputValidators.add(inputValidator);
+	}
+
+	/**
+	 * @param phase must not be {@literal null}
+	 * @return the {@link LatencyHistogram} of the given {@link Phase}.
+	 */
+	public LatencyHistogram getLatencyHistogram(Phase phase) {
+		return latencies[phase.ordinal()];
+	}
+
+	@ManagedAttribute(description = "The number of successful evaluations")
+	public long getEvaluationCount() {
+		return evaluationCount.get();
+	}
+
+	@ManagedAttribute(description = "The number of failed evaluations")
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	@ManagedAttribute(description = "The number of tuples whose schema resolution was found in a schema cache")
+	public long getSchemaCacheHitCount() {
+
+		long count = 0;
+		for (SchemaCache<?> schemaCache : schemaCaches) {
+			count += schemaCache.getHitCount();
+		}
+
+		return count;
+	}
+
+	@ManagedAttribute(description = "The number of tuples whose schema had to be resolved")
+	public long getSchemaCacheMissCount() {
+
+		long count = 0;
+		for (SchemaCache<?> schemaCache : schemaCaches) {
+			count += schemaCache.getMissCount();
+		}
+
+		return count;
+	}
+
+	@ManagedAttribute(description = "The number of model inputs whose result was found in the result cache")
+	public long getResultCacheHitCount() {
+
+		long count = 0;
+		for (PmmlResultCache resultCache : resultCaches) {
+			count += resultCache.getHitCount();
+		}
+
+		return count;
+	}
+
+	@ManagedAttribute(description = "The number of model inputs that had to be evaluated despite the result cache")
+	public long getResultCacheMissCount() {
+
+		long count = 0;
+		for (PmmlResultCache resultCache : resultCaches) {
+			count += resultCache.getMissCount();
+		}
+
+		return count;
+	}
+
+	@ManagedAttribute(description = "The ratio of model inputs whose result was found in the result cache")
+	public double getResultCacheHitRate() {
+
+		long hitCount = getResultCacheHitCount();
+		long requestCount = hitCount + getResultCacheMissCount();
+
+		return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+	}
+
+	@ManagedAttribute(description = "The number of model inputs that were evaluated with the shadow model")
+	public long getShadowComparisonCount() {
+
+		long count = 0;
+		for (PmmlShadowScorer shadowScorer : shadowScorers) {
+			count += shadowScorer.getComparisonCount();
+		}
+
+		return count;
+	}
+
+	@ManagedAttribute(description = "The ratio of shadow evaluations that agreed with the prediction of the model")
+	public double getShadowAgreementRate() {
+
+		long agreementCount = 0;
+		for (PmmlShadowScorer shadowScorer : shadowScorers) {
+			agreementCount += shadowScorer.getAgreementCount();
+		}
+
+		long comparisonCount = getShadowComparisonCount();
+
+		return comparisonCount == 0 ? 0 : (double) agreementCount / comparisonCount;
+	}
+
+	@ManagedAttribute(description = "The number of sampled model inputs that were dropped by the busy shadow model")
+	public long getShadowDroppedCount() {
+
+		long count = 0;
+		for (PmmlShadowScorer shadowScorer : shadowScorers) {
+			count += shadowScorer.getDroppedCount();
+		}
+
+		return count;
+	}
+
+	@ManagedAttribute(description = "The number of failed shadow evaluations")
+	public long getShadowErrorCount() {
+
+		long count = 0;
+		for (PmmlShadowScorer shadowScorer : shadowScorers) {
+			count += shadowScorer.getErrorCount();
+		}
+
+		return count;
+	}
+
+	@ManagedAttribute(description = "The mean latency of the shadow model minus the latency of the model in microseconds")
+	public double getShadowMeanLatencyDelta() {
+
+		double deltaSum = 0;
+		long deltaCount = 0;
+		for (PmmlShadowScorer shadowScorer : shadowScorers) {
+			deltaSum += shadowScorer.getMeanLatencyDelta() * shadowScorer.getLatencyDeltaCount();
+			deltaCount += shadowScorer.getLatencyDeltaCount();
+		}
+
+		return deltaCount == 0 ? 0 : toMicros(deltaSum / deltaCount);
+	}
+
+	@ManagedAttribute(description = "The 99th percentile of the shadow model latency in microseconds")
+	public double getShadow99thPercentileLatency() {
+
+		long latency = 0;
+		for (PmmlShadowScorer shadowScorer : shadowScorers) {
+			latency = Math.max(latency, shadowScorer.getLatencyHistogram().getPercentile(99));
+		}
+
+		return toMicros(latency);
+	}
+
+	@ManagedAttribute(description = "The number of tuples that were rejected by the input validation")
+	public long getRejectedInputCount() {
+
+		long count = 0;
+		for (PmmlInputValidator inputValidator : inputValidators) {
+			count += inputValidator.getRejectedCount();
+		}
+
+		return count;
+	}
+
+	@ManagedAttribute(description = "The rejected values per model field and failure, as field:failure=count")
+	public String getInputValidationFailures() {
+
+		StringBuilder failures = new StringBuilder();
+		for (PmmlInputValidator inputValidator : inputValidators) {
+			for (String fieldName : new TreeSet<String>(inputValidator.getFieldNames())) {
+				for (PmmlInputValidator.Failure failure : PmmlInputValidator.Failure.values()) {
+
+					long count = inputValidator.getFailureCount(fieldName, failure);
+					if (count > 0) {
+						failures.append(failures.length() == 0 ? "" : ", ").append(fieldName).append(':')
+								.append(failure).append('=').append(count);
+					}
+				}
+			}
+		}
+
+		return failures.toString();
+	}
+
+	/**
+	 * @param fieldName the name of the model field
+	 * @param failure one of {@literal MISSING_VALUE}, {@literal INVALID_TYPE} or {@literal INVALID_VALUE}
+	 * @return the number of rejected values.
+	 */
+	@ManagedOperation(description = "Returns the number of values of the given model field rejected for the given failure")
+	public long getInputValidationFailureCount(String fieldName, String failure) {
+
+		PmmlInputValidator.Failure inputFailure = PmmlInputValidator.Failure.valueOf(failure.trim().toUpperCase());
+
+		long count = 0;
+		for (PmmlInputValidator inputValidator : inputValidators) {
+			count += inputValidator.getFailureCount(fieldName.trim(), inputFailure);
+		}
+
+		return count;
+	}
+
+	@ManagedAttribute(description = "The mean map-input latency in microseconds")
+	public double getMapInputMeanLatency() {
+		return toMicros(getLatencyHistogram(Phase.MAP_INPUT).getMean());
+	}
+
+	@ManagedAttribute(description = "The 99th percentile of the map-input latency in microseconds")
+	public double getMapInput99thPercentileLatency() {
+		return toMicros(getLatencyHistogram(Phase.MAP_INPUT).getPercentile(99));
+	}
+
+	@ManagedAttribute(description = "The maximum map-input latency in microseconds")
+	public double getMapInputMaxLatency() {
+		return toMicros(getLatencyHistogram(Phase.MAP_INPUT).getMax());
+	}
+
+	@ManagedAttribute(description = "The mean evaluate latency in microseconds")
+	public double getEvaluateMeanLatency() {
+		return toMicros(getLatencyHistogram(Phase.EVALUATE).getMean());
+	}
+
+	@ManagedAttribute(description = "The 99th percentile of the evaluate latency in microseconds")
+	public double getEvaluate99thPercentileLatency() {
+		return toMicros(getLatencyHistogram(Phase.EVALUATE).getPercentile(99));
+	}
+
+	@ManagedAttribute(description = "The maximum evaluate latency in microseconds")
+	public double getEvaluateMaxLatency() {
+		return toMicros(getLatencyHistogram(Phase.EVALUATE).getMax());
+	}
+
+	@ManagedAttribute(description = "The mean map-output latency in microseconds")
+	public double getMapOutputMeanLatency() {
+		return toMicros(getLatencyHistogram(Phase.MAP_OUTPUT).getMean());
+	}
+
+	@ManagedAttribute(description = "The 99th percentile of the map-output latency in microseconds")
+	public double getMapOutput99thPercentileLatency() {
+		return toMicros(getLatencyHistogram(Phase.MAP_OUTPUT).getPercentile(99));
+	}
+
+	@ManagedAttribute(description = "The maximum map-output latency in microseconds")
+	public double getMapOutputMaxLatency() {
+		return toMicros(getLatencyHistogram(Phase.MAP_OUTPUT).getMax());
+	}
+
+	/**
+	 * Returns the given {@code percentile} of the latency of the given {@code phase}.
+	 *
+	 * @param phase one of {@literal MAP_INPUT}, {@literal EVALUATE} or {@literal MAP_OUTPUT}
+	 * @param percentile between {@literal 0} and {@literal 100}
+	 * @return the latency in microseconds.
+	 */
+	@ManagedOperation(description = "Returns the given percentile of the latency of the given phase in microseconds")
+	public double getLatencyPercentile(String phase, double percentile) {
+		return toMicros(getLatencyHistogram(Phase.valueOf(phase.trim().toUpperCase())).getPercentile(percentile));
+	}
+
+	@ManagedOperation(description = "Resets all counters and latencies")
+	public void reset() {
+
+		evaluationCount.set(0);
+		errorCount.set(0);
+
+		for (LatencyHistogram latency : latencies) {
+			latency.reset();
+		}
+
+		for (SchemaCache<?> schemaCache : schemaCaches) {
+			schemaCache.resetCounts();
+		}
+
+		for (PmmlResultCache resultCache : resultCaches) {
+			resultCache.resetCounts();
+		}
+
+		for (PmmlShadowScorer shadowScorer : shadowScorers) {
+			shadowScorer.resetCounts();
+		}
+
+		for (PmmlInputValidator inputValidator : inputValidators) {
+			inputValidator.resetCounts();
+		}
+	}
+
+	private static double toMicros(double nanos) {
+		return nanos / NANOS_PER_MICRO;
+	}
+}
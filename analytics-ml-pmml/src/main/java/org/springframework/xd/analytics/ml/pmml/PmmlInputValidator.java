@@ -0,0 +1,528 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.dmg.pmml.DataField;
+import org.dmg.pmml.DataType;
+import org.dmg.pmml.Interval;
+import org.dmg.pmml.InvalidValueTreatmentMethodType;
+import org.dmg.pmml.MiningField;
+import org.dmg.pmml.OpType;
+import org.dmg.pmml.Value;
+import org.springframework.integration.MessageRejectedException;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.util.Assert;
+import org.springframework.xd.analytics.ml.InputMapper;
+import org.springframework.xd.tuple.Tuple;
+
+/**
+ * Checks the input {@link Tuple}s of a {@link TuplePmmlAnalytic} against the {@code DataDictionary} of its model before
+ * they are evaluated, so that bursts of bad data are rejected without the cost of the exceptions jpmml raises for
+ * them. The checks are compiled once per {@link org.jpmml.evaluator.Evaluator}: valid categories are kept in hash sets
+ * and intervals as plain bounds, numbers given as strings are checked without parsing them twice.
+ * <p>
+ * A tuple is rejected if a value does not match the data type of its field, or is not valid for the field while the
+ * field returns invalid values as errors, which is the default invalid value treatment. Missing values are only
+ * rejected if configured and the field declares no replacement for them. Rejections are counted per model field and
+ * {@link Failure}. Rejected messages can be wrapped in an {@link ErrorMessage} that names the failures with
+ * {@link #reject(Message)}.
+ * </p>
+ */
+public class PmmlInputValidator {
+
+	/**
+	 * The reasons a model input value is rejected for.
+	 */
+	public enum Failure {
+
+		/**
+		 * The value is missing.
+		 */
+		MISSING_VALUE,
+
+		/**
+		 * The value cannot be converted to the data type of the field.
+		 */
+		INVALID_TYPE,
+
+		/**
+		 * The value is not one of the valid categories or not within the valid intervals of the field.
+		 */
+		INVALID_VALUE
+	}
+
+	private final TuplePmmlAnalytic analytic;
+
+	private final TuplePmmlAnalyticInputDataMapper inputMapper;
+
+	private final boolean rejectMissingValues;
+
+	private final ConcurrentMap<String, AtomicLongArray> failureCounts = new ConcurrentHashMap<String, AtomicLongArray>();
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	private volatile ValidationPlan validationPlan;
+
+	/**
+	 * Creates a new {@link PmmlInputValidator} that reports its counts in the {@link PmmlAnalyticMetrics} of the given
+	 * {@code analytic}.
+	 *
+	 * @param analytic must not be {@literal null}
+	 * @param rejectMissingValues whether inputs with missing values should be rejected.
+	 */
+	public PmmlInputValidator(TuplePmmlAnalytic analytic, boolean rejectMissingValues) {
+
+		Assert.notNull(analytic, "analytic");
+
+		InputMapper<Tuple, PmmlAnalytic<Tuple, Tuple>, ?> inputMapper = analytic.getInputMapper();
+		Assert.isInstanceOf(TuplePmmlAnalyticInputDataMapper.class, inputMapper);
+
+		this.analytic = analytic;
+		this.inputMapper = (TuplePmmlAnalyticInputDataMapper) inputMapper;
+		this.rejectMissingValues = rejectMissingValues;
+
+		analytic.getMetrics().addInputValidator(this);
+	}
+
+	/**
+	 * Checks every model input value of the given {@code input}.
+	 *
+	 * @param input must not be {@literal null}
+	 * @return {@literal true} if the input can be evaluated, {@literal false} if it is rejected.
+	 */
+	public boolean accept(Tuple input) {
+
+		Assert.notNull(input, "input");
+
+		TuplePmmlAnalyticInputDataMapper.BindingPlan bindingPlan = inputMapper.getBindingPlan(analytic
+				.getPmmlEvaluator());
+		ValidationPlan plan = getValidationPlan(bindingPlan);
+		int[] positions = inputMapper.resolvePositions(bindingPlan, input.getFieldNames());
+
+		boolean valid = true;
+		for (int i = 0; i < plan.rules.length; i++) {
+
+			FieldRule rule = plan.rules[i];
+			Failure failure = rule.check(positions[i] == -1 ? null : input.getValue(positions[i]));
+
+			if (failure != null) {
+				rule.failureCounts.incrementAndGet(failure.ordinal());
+				valid = false;
+			}
+		}
+
+		if (!valid) {
+			rejectedCount.incrementAndGet();
+		}
+
+		return valid;
+	}
+
+	/**
+	 * Wraps the given rejected {@code message} in an {@link ErrorMessage} with a {@link MessageRejectedException} that
+	 * names the failed model fields and their {@link Failure}s. The failures are not counted again.
+	 *
+	 * @param message must not be {@literal null}
+	 * @return
+	 */
+	public ErrorMessage reject(Message<Tuple> message) {
+
+		Assert.notNull(message, "message");
+
+		return new ErrorMessage(new MessageRejectedException(message, "Invalid model input - "
+				+ describeFailures(message.getPayload())));
+	}
+
+	/**
+	 * @param input must not be {@literal null}
+	 * @return the failed model fields of the given {@code input} with their {@link Failure}s, e.g.
+	 *         {@code Sepal.Length:INVALID_VALUE}.
+	 */
+	String describeFailures(Tuple input) {
+
+		TuplePmmlAnalyticInputDataMapper.BindingPlan bindingPlan = inputMapper.getBindingPlan(analytic
+				.getPmmlEvaluator());
+		ValidationPlan plan = getValidationPlan(bindingPlan);
+		int[] positions = inputMapper.resolvePositions(bindingPlan, input.getFieldNames());
+
+		StringBuilder failures = new StringBuilder();
+		for (int i = 0; i < plan.rules.length; i++) {
+
+			Failure failure = plan.rules[i].check(positions[i] == -1 ? null : input.getValue(positions[i]));
+			if (failure == null) {
+				continue;
+			}
+
+			if (failures.length() > 0) {
+				failures.append(", ");
+			}
+
+			failures.append(plan.modelFieldNames[i]).append(':').append(failure);
+		}
+
+		return failures.toString();
+	}
+
+	/**
+	 * @return the number of rejected inputs.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * @param modelFieldName must not be {@literal null}
+	 * @param failure must not be {@literal null}
+	 * @return the number of values of the given model field that were rejected for the given {@link Failure}.
+	 */
+	public long getFailureCount(String modelFieldName, Failure failure) {
+
+		Assert.notNull(modelFieldName, "modelFieldName");
+		Assert.notNull(failure, "failure");
+
+		AtomicLongArray counts = failureCounts.get(modelFieldName);
+		return counts == null ? 0 : counts.get(failure.ordinal());
+	}
+
+	/**
+	 * @return the names of the model fields that are checked.
+	 */
+	public Set<String> getFieldNames() {
+		return failureCounts.keySet();
+	}
+
+	/**
+	 * Resets all counts.
+	 */
+	public void resetCounts() {
+
+		rejectedCount.set(0);
+
+		for (AtomicLongArray counts : failureCounts.values()) {
+			for (int i = 0; i < counts.length(); i++) {
+				counts.set(i, 0);
+			}
+		}
+	}
+
+	private ValidationPlan getValidationPlan(TuplePmmlAnalyticInputDataMapper.BindingPlan bindingPlan) {
+
+		ValidationPlan plan = this.validationPlan;
+		if (plan == null || plan.bindingPlan != bindingPlan) {
+			plan = compileValidationPlan(bindingPlan);
+			this.validationPlan = plan;
+		}
+
+		return plan;
+	}
+
+	private ValidationPlan compileValidationPlan(TuplePmmlAnalyticInputDataMapper.BindingPlan bindingPlan) {
+
+		TuplePmmlAnalyticInputDataMapper.FieldBinding[] bindings = bindingPlan.getBindings();
+		FieldRule[] rules = new FieldRule[bindings.length];
+		String[] modelFieldNames = new String[bindings.length];
+
+		for (int i = 0; i < bindings.length; i++) {
+
+			String modelFieldName = bindings[i].getModelInputFieldName().getValue();
+			modelFieldNames[i] = modelFieldName;
+
+			// counts are kept per field name, so they survive model reloads
+			AtomicLongArray counts = failureCounts.get(modelFieldName);
+			if (counts == null) {
+				failureCounts.putIfAbsent(modelFieldName, new AtomicLongArray(Failure.values().length));
+				counts = failureCounts.get(modelFieldName);
+			}
+
+			rules[i] = new FieldRule(bindings[i].getDataField(), bindings[i].getMiningField(), rejectMissingValues,
+					counts);
+		}
+
+		return new ValidationPlan(bindingPlan, rules, modelFieldNames);
+	}
+
+	/**
+	 * The {@link FieldRule}s for the fields of a {@link TuplePmmlAnalyticInputDataMapper.BindingPlan}.
+	 */
+	static class ValidationPlan {
+
+		private final TuplePmmlAnalyticInputDataMapper.BindingPlan bindingPlan;
+
+		private final FieldRule[] rules;
+
+		private final String[] modelFieldNames;
+
+		ValidationPlan(TuplePmmlAnalyticInputDataMapper.BindingPlan bindingPlan, FieldRule[] rules,
+				String[] modelFieldNames) {
+			this.bindingPlan = bindingPlan;
+			this.rules = rules;
+			this.modelFieldNames = modelFieldNames;
+		}
+	}
+
+	/**
+	 * The checks of a single model input field, mirroring {@link org.jpmml.evaluator.ArgumentUtil}.
+	 */
+	static class FieldRule {
+
+		private final boolean numeric;
+
+		private final boolean integral;
+
+		private final Set<Object> validValues;
+
+		private final Set<Object> invalidValues;
+
+		private final Set<Object> missingValues;
+
+		private final double[] intervalBounds;
+
+		private final boolean[] intervalClosures;
+
+		private final boolean rejectInvalidValues;
+
+		private final boolean rejectMissingValues;
+
+		private final AtomicLongArray failureCounts;
+
+		FieldRule(DataField dataField, MiningField miningField, boolean rejectMissingValues,
+				AtomicLongArray failureCounts) {
+
+			DataType dataType = dataField.getDataType();
+
+			this.numeric = dataType == DataType.DOUBLE || dataType == DataType.FLOAT || dataType == DataType.INTEGER;
+			this.integral = dataType == DataType.INTEGER;
+			this.failureCounts = failureCounts;
+
+			Set<Object> validValues = new HashSet<Object>();
+			Set<Object> invalidValues = new HashSet<Object>();
+			Set<Object> missingValues = new HashSet<Object>();
+
+			for (Value value : dataField.getValues()) {
+
+				Object key = normalize(value.getValue());
+				if (key == null) {
+					continue;
+				}
+
+				if (value.getProperty() == Value.Property.INVALID) {
+					invalidValues.add(key);
+				}
+				else if (value.getProperty() == Value.Property.MISSING) {
+					missingValues.add(key);
+				}
+				else {
+					validValues.add(key);
+				}
+			}
+
+			OpType opType = miningField != null && miningField.getOpType() != null ? miningField.getOpType()
+					: dataField.getOpType();
+			List<Interval> intervals = opType == OpType.CONTINUOUS ? dataField.getIntervals() : new ArrayList<Interval>();
+
+			this.intervalBounds = new double[intervals.size() * 2];
+			this.intervalClosures = new boolean[intervals.size() * 2];
+			for (int i = 0; i < intervals.size(); i++) {
+
+				Interval interval = intervals.get(i);
+				Interval.Closure closure = interval.getClosure();
+
+				intervalBounds[2 * i] = interval.getLeftMargin() != null ? interval.getLeftMargin()
+						: Double.NEGATIVE_INFINITY;
+				intervalBounds[2 * i + 1] = interval.getRightMargin() != null ? interval.getRightMargin()
+						: Double.POSITIVE_INFINITY;
+				intervalClosures[2 * i] = closure == Interval.Closure.CLOSED_OPEN
+						|| closure == Interval.Closure.CLOSED_CLOSED;
+				intervalClosures[2 * i + 1] = closure == Interval.Closure.OPEN_CLOSED
+						|| closure == Interval.Closure.CLOSED_CLOSED;
+			}
+
+			this.validValues = intervals.isEmpty() ? validValues : new HashSet<Object>();
+			this.invalidValues = invalidValues;
+			this.missingValues = missingValues;
+
+			InvalidValueTreatmentMethodType invalidValueTreatment = miningField != null ? miningField
+					.getInvalidValueTreatment() : null;
+			this.rejectInvalidValues = invalidValueTreatment == null
+					|| invalidValueTreatment == InvalidValueTreatmentMethodType.RETURN_INVALID;
+			this.rejectMissingValues = rejectMissingValues
+					&& (miningField == null || miningField.getMissingValueReplacement() == null);
+		}
+
+		/**
+		 * @param value may be {@literal null}
+		 * @return the {@link Failure} of the given value or {@literal null} if it is accepted.
+		 */
+		Failure check(Object value) {
+
+			if (value instanceof Collection) {
+				// multi-valued inputs are prepared element-wise by jpmml
+				return null;
+			}
+
+			if (value == null) {
+				return rejectMissingValues ? Failure.MISSING_VALUE : null;
+			}
+
+			Object key;
+			if (numeric) {
+
+				if (value instanceof Number) {
+					key = ((Number) value).doubleValue();
+				}
+				else if (isNumber(value.toString(), integral)) {
+					key = Double.valueOf(value.toString().trim());
+				}
+				else if (missingValues.contains(value.toString())) {
+					return rejectMissingValues ? Failure.MISSING_VALUE : null;
+				}
+				else {
+					return Failure.INVALID_TYPE;
+				}
+			}
+			else {
+				key = value.toString();
+			}
+
+			if (missingValues.contains(key)) {
+				return rejectMissingValues ? Failure.MISSING_VALUE : null;
+			}
+
+			if (!rejectInvalidValues) {
+				return null;
+			}
+
+			if (invalidValues.contains(key)) {
+				return Failure.INVALID_VALUE;
+			}
+
+			if (intervalBounds.length > 0) {
+				return isWithinIntervals((Double) key) ? null : Failure.INVALID_VALUE;
+			}
+
+			return validValues.isEmpty() || validValues.contains(key) ? null : Failure.INVALID_VALUE;
+		}
+
+		private boolean isWithinIntervals(double value) {
+
+			for (int i = 0; i < intervalBounds.length; i += 2) {
+
+				boolean aboveLeft = intervalClosures[i] ? value >= intervalBounds[i] : value > intervalBounds[i];
+				boolean belowRight = intervalClosures[i + 1] ? value <= intervalBounds[i + 1]
+						: value < intervalBounds[i + 1];
+
+				if (aboveLeft && belowRight) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		private Object normalize(String value) {
+
+			if (value == null) {
+				return null;
+			}
+
+			return numeric && isNumber(value, false) ? (Object) Double.valueOf(value.trim()) : value;
+		}
+
+		/**
+		 * Checks whether the given {@code value} is a decimal number with an optional exponent, without the exception
+		 * {@link Double#parseDouble(String)} would raise.
+		 *
+		 * @param value must not be {@literal null}
+		 * @param integral whether only integral numbers are accepted.
+		 * @return
+		 */
+		static boolean isNumber(String value, boolean integral) {
+
+			int length = value.length();
+			int i = 0;
+
+			while (i < length && Character.isWhitespace(value.charAt(i))) {
+				i++;
+			}
+
+			while (length > i && Character.isWhitespace(value.charAt(length - 1))) {
+				length--;
+			}
+
+			if (i < length && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+				i++;
+			}
+
+			int digits = 0;
+			while (i < length && isDigit(value.charAt(i))) {
+				i++;
+				digits++;
+			}
+
+			if (integral) {
+				return digits > 0 && i == length;
+			}
+
+			if (i < length && value.charAt(i) == '.') {
+				i++;
+				while (i < length && isDigit(value.charAt(i))) {
+					i++;
+					digits++;
+				}
+			}
+
+			if (digits == 0) {
+				return false;
+			}
+
+			if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+
+				i++;
+				if (i < length && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+					i++;
+				}
+
+				int exponentDigits = 0;
+				while (i < length && isDigit(value.charAt(i))) {
+					i++;
+					exponentDigits++;
+				}
+
+				if (exponentDigits == 0) {
+					return false;
+				}
+			}
+
+			return i == length;
+		}
+
+		private static boolean isDigit(char c) {
+			return c >= '0' && c <= '9';
+		}
+	}
+}
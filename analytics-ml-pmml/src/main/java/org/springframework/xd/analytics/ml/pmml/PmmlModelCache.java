@@ -0,0 +1,306 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dmg.pmml.PMML;
+import org.jpmml.evaluator.Evaluator;
+import org.springframework.util.Assert;
+
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * A cache of parsed {@link org.dmg.pmml.PMML} documents and their {@link org.jpmml.evaluator.Evaluator}s. Documents
+ * are keyed by the {@link AbstractPmmlLoader#getModelCacheKey(String) model cache key} of their loader, i.e. the
+ * loader configuration, the {@code modelLocation} and the SHA-256 hash of the document content. A document is hashed
+ * while it is streamed into the parser, so a key always matches the parsed content. If documents from the same
+ * location are already cached, the document is only hashed first, which is much cheaper than parsing it, and an
+ * unchanged document is shared instead of being parsed again. Cache entries are reference counted, an entry is evicted
+ * as soon as the last {@link Handle} referencing it was released.
+ * <p>
+ * Documents can only be shared if they are loaded through an {@link AbstractPmmlLoader} that reads them as a byte
+ * stream, documents from other {@link PmmlLoader}s are loaded for every {@link Handle}.
+ * <p>
+ * The {@link #getSharedInstance() shared instance} is held by a static field, so it is only shared among the
+ * analytics whose classes were loaded by the same classloader. Spring XD loads every module instance with its own
+ * classloader, so documents are shared inside one module instance, e.g. between the models of a
+ * {@link MultiModelTuplePmmlAnalytic} or across reloads of an unchanged document, but never between module instances.
+ */
+public class PmmlModelCache {
+
+	private static final PmmlModelCache SHARED_INSTANCE = new PmmlModelCache();
+
+	private final Log log = LogFactory.getLog(this.getClass());
+
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	private final Striped<Lock> locationLocks = Striped.lazyWeakLock(64);
+
+	/**
+	 * Returns the {@link PmmlModelCache} that is shared by all analytics of the classloader of this class, i.e. of one
+	 * module instance.
+	 *
+	 * @return
+	 */
+	public static PmmlModelCache getSharedInstance() {
+		return SHARED_INSTANCE;
+	}
+
+	/**
+	 * Returns a {@link Handle} to the {@link org.dmg.pmml.PMML} document at the given {@code modelLocation}. The document
+	 * is only parsed if no other {@link Handle} references a document with the same content. The returned
+	 * {@link Handle} must be released via {@link Handle#release()} once it is no longer used.
+	 *
+	 * @param modelLocation must not be {@literal null}
+	 * @param pmmlLoader must not be {@literal null}
+	 * @return
+	 */
+	public Handle acquire(String modelLocation, PmmlLoader pmmlLoader) {
+
+		Assert.notNull(modelLocation, "modelLocation");
+		Assert.notNull(pmmlLoader, "pmmlLoader");
+
+		if (!(pmmlLoader instanceof AbstractPmmlLoader)) {
+			return newUnsharedHandle(pmmlLoader.loadPmml(modelLocation));
+		}
+
+		AbstractPmmlLoader loader = (AbstractPmmlLoader) pmmlLoader;
+		String locationKey = loader.getModelLocationKey(modelLocation);
+
+		// a document is parsed by one thread at a time, other threads wait for it to be cached
+		Lock locationLock = locationLocks.get(locationKey);
+		locationLock.lock();
+		try {
+
+			if (containsLocation(locationKey)) {
+
+				Handle handle = acquireCached(loader.getModelCacheKey(modelLocation));
+				if (handle != null) {
+					return handle;
+				}
+			}
+
+			AbstractPmmlLoader.KeyedPmml keyedPmml = loader.loadKeyedPmml(modelLocation);
+
+			if (keyedPmml.key == null) {
+				return newUnsharedHandle(keyedPmml.pmml);
+			}
+
+			synchronized (entries) {
+
+				// the document may have changed to a cached content after it was hashed
+				Entry entry = entries.get(keyedPmml.key);
+				if (entry == null) {
+					entry = new Entry(keyedPmml.key, keyedPmml.pmml);
+					entries.put(keyedPmml.key, entry);
+				}
+
+				entry.referenceCount++;
+
+				return new Handle(this, entry);
+			}
+		}
+		finally {
+			locationLock.unlock();
+		}
+	}
+
+	private Handle newUnsharedHandle(PMML pmml) {
+
+		Entry entry = new Entry(null, pmml);
+		entry.referenceCount++;
+
+		return new Handle(this, entry);
+	}
+
+	private Handle acquireCached(String key) {
+
+		if (key == null) {
+			return null;
+		}
+
+		synchronized (entries) {
+
+			Entry entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+
+			entry.referenceCount++;
+
+			return new Handle(this, entry);
+		}
+	}
+
+	private boolean containsLocation(String locationKey) {
+
+		String keyPrefix = locationKey + "@";
+
+		synchronized (entries) {
+
+			for (String key : entries.keySet()) {
+				if (key.startsWith(keyPrefix)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * Returns whether a {@link org.dmg.pmml.PMML} document with the given {@code key} is currently cached.
+	 *
+	 * @param key
+	 * @return
+	 */
+	boolean contains(String key) {
+
+		synchronized (entries) {
+			return entries.containsKey(key);
+		}
+	}
+
+	private void release(Entry entry) {
+
+		synchronized (entries) {
+
+			entry.referenceCount--;
+
+			if (entry.referenceCount == 0 && entry.key != null) {
+
+				entries.remove(entry.key);
+
+				if (log.isDebugEnabled()) {
+					log.debug("Evicted pmml with key: " + entry.key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates the {@link org.jpmml.evaluator.Evaluator} for a model of a cached {@link org.dmg.pmml.PMML} document.
+	 */
+	public interface EvaluatorFactory {
+
+		/**
+		 * @param pmml will never be {@literal null}
+		 * @param modelName may be {@literal null}
+		 * @return
+		 */
+		Evaluator createEvaluator(PMML pmml, String modelName);
+	}
+
+	/**
+	 * A reference to a cached {@link org.dmg.pmml.PMML} document.
+	 */
+	public static class Handle {
+
+		private final PmmlModelCache cache;
+
+		private final Entry entry;
+
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		Handle(PmmlModelCache cache, Entry entry) {
+			this.cache = cache;
+			this.entry = entry;
+		}
+
+		/**
+		 * Returns the cache key of the referenced {@link org.dmg.pmml.PMML} document or {@literal null} if the document
+		 * is not shared.
+		 *
+		 * @return
+		 */
+		public String getKey() {
+			return entry.key;
+		}
+
+		/**
+		 * @return the referenced {@link org.dmg.pmml.PMML} document.
+		 */
+		public PMML getPmml() {
+			return entry.pmml;
+		}
+
+		/**
+		 * Returns the {@link org.jpmml.evaluator.Evaluator} registered under the given {@code evaluatorKey}, the
+		 * {@link org.jpmml.evaluator.Evaluator} is created with the given {@link EvaluatorFactory} on first access.
+		 *
+		 * @param evaluatorKey must not be {@literal null}
+		 * @param modelName may be {@literal null}
+		 * @param evaluatorFactory must not be {@literal null}
+		 * @return
+		 */
+		public Evaluator getEvaluator(String evaluatorKey, String modelName, EvaluatorFactory evaluatorFactory) {
+
+			Assert.notNull(evaluatorKey, "evaluatorKey");
+			Assert.notNull(evaluatorFactory, "evaluatorFactory");
+
+			Evaluator evaluator = entry.evaluators.get(evaluatorKey);
+			if (evaluator != null) {
+				return evaluator;
+			}
+
+			evaluator = evaluatorFactory.createEvaluator(entry.pmml, modelName);
+
+			Evaluator existingEvaluator = entry.evaluators.putIfAbsent(evaluatorKey, evaluator);
+
+			return existingEvaluator != null ? existingEvaluator : evaluator;
+		}
+
+		/**
+		 * Releases this {@link Handle}, the referenced {@link org.dmg.pmml.PMML} document is evicted from the cache once
+		 * all of its {@link Handle}s were released. Releasing a {@link Handle} more than once has no effect.
+		 */
+		public void release() {
+
+			if (released.compareAndSet(false, true)) {
+				cache.release(entry);
+			}
+		}
+	}
+
+	/**
+	 * A cached {@link org.dmg.pmml.PMML} document together with the {@link org.jpmml.evaluator.Evaluator}s created for
+	 * it. The reference count is guarded by the {@code entries} of the owning {@link PmmlModelCache}.
+	 */
+	static class Entry {
+
+		private final String key;
+
+		private final ConcurrentMap<String, Evaluator> evaluators = new ConcurrentHashMap<String, Evaluator>();
+
+		private final PMML pmml;
+
+		private int referenceCount;
+
+		Entry(String key, PMML pmml) {
+			this.key = key;
+			this.pmml = pmml;
+		}
+	}
+}
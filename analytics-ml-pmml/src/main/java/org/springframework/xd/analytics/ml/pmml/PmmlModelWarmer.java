@@ -0,0 +1,342 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dmg.pmml.DataField;
+import org.dmg.pmml.DataType;
+import org.dmg.pmml.FieldName;
+import org.dmg.pmml.Interval;
+import org.dmg.pmml.Value;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.EvaluatorUtil;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Warms up the {@link Evaluator} of a freshly loaded model before it receives traffic, so the first messages after a
+ * deployment or reload are not slowed down by cold jpmml caches and interpreted code. The model is evaluated a
+ * configurable number of times with inputs that are either replayed from a sample file or synthesized from the
+ * {@code DataDictionary} of the model: valid values of categorical fields, values within the intervals of continuous
+ * fields, or values between {@literal 0} and {@literal 10} if no interval is declared.
+ * <p>
+ * A sample file is a CSV file with a header line of model field names followed by one input per line, empty cells are
+ * passed as missing values. Failing warm-up evaluations are counted but never fail the model.
+ * </p>
+ */
+public class PmmlModelWarmer {
+
+	static final int SYNTHESIZED_INPUT_COUNT = 64;
+
+	private static final double DEFAULT_LOWER_BOUND = 0;
+
+	private static final double DEFAULT_UPPER_BOUND = 10;
+
+	private final Log log = LogFactory.getLog(this.getClass());
+
+	private final int iterations;
+
+	private final String sampleLocation;
+
+	/**
+	 * Creates a new {@link PmmlModelWarmer}.
+	 *
+	 * @param iterations the number of warm-up evaluations, {@literal 0} disables the warm-up.
+	 * @param sampleLocation may be {@literal null} to synthesize the inputs from the model.
+	 */
+	public PmmlModelWarmer(int iterations, String sampleLocation) {
+
+		Assert.isTrue(iterations >= 0, "iterations must not be negative");
+
+		this.iterations = iterations;
+		this.sampleLocation = StringUtils.hasText(sampleLocation) ? sampleLocation.trim() : null;
+	}
+
+	/**
+	 * @return whether models are warmed up at all.
+	 */
+	public boolean isEnabled() {
+		return iterations > 0;
+	}
+
+	/**
+	 * Evaluates the given {@link Evaluator} with the warm-up inputs for the configured number of iterations.
+	 *
+	 * @param evaluator must not be {@literal null}
+	 * @return the number of successful evaluations.
+	 */
+	public int warmUp(Evaluator evaluator) {
+		return warmUp(evaluator, null);
+	}
+
+	/**
+	 * Hands the warm-up inputs of the given {@link Evaluator} to the given {@link WarmUpTarget} for the configured
+	 * number of iterations, so that the code around the model evaluation is warmed up as well.
+	 *
+	 * @param evaluator must not be {@literal null}
+	 * @param target may be {@literal null} to evaluate the inputs with the {@link Evaluator} only.
+	 * @return the number of successful evaluations.
+	 */
+	public int warmUp(Evaluator evaluator, WarmUpTarget target) {
+
+		Assert.notNull(evaluator, "evaluator");
+
+		if (!isEnabled()) {
+			return 0;
+		}
+
+		long start = System.nanoTime();
+
+		List<Map<FieldName, Object>> inputs = sampleLocation != null ? readSampleInputs(evaluator)
+				: synthesizeInputs(evaluator);
+
+		if (inputs.isEmpty()) {
+			log.warn("No warm-up inputs available for model, skipping warm-up");
+			return 0;
+		}
+
+		int successCount = 0;
+		RuntimeException lastError = null;
+
+		for (int i = 0; i < iterations; i++) {
+
+			try {
+
+				Map<FieldName, Object> input = inputs.get(i % inputs.size());
+
+				if (target != null) {
+					target.evaluate(input);
+				}
+				else {
+					evaluator.evaluate(input);
+				}
+
+				successCount++;
+			}
+			catch (RuntimeException ex) {
+				lastError = ex;
+			}
+		}
+
+		if (lastError != null && log.isDebugEnabled()) {
+			log.debug((iterations - successCount) + " warm-up evaluations failed, the last with:", lastError);
+		}
+
+		if (log.isInfoEnabled()) {
+			log.info(String.format("Warmed up model with %d of %d evaluations of %d inputs in %d ms", successCount,
+					iterations, inputs.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+		}
+
+		return successCount;
+	}
+
+	/**
+	 * Synthesizes {@link #SYNTHESIZED_INPUT_COUNT} inputs for the active fields of the given {@link Evaluator}.
+	 *
+	 * @param evaluator must not be {@literal null}
+	 * @return
+	 */
+	List<Map<FieldName, Object>> synthesizeInputs(Evaluator evaluator) {
+
+		Random random = new Random(SYNTHESIZED_INPUT_COUNT);
+
+		Map<FieldName, List<Object>> candidates = new HashMap<FieldName, List<Object>>();
+		for (FieldName activeField : evaluator.getActiveFields()) {
+
+			List<Object> values = candidateValues(evaluator.getDataField(activeField), random);
+			if (!values.isEmpty()) {
+				candidates.put(activeField, values);
+			}
+		}
+
+		List<Map<FieldName, Object>> inputs = new ArrayList<Map<FieldName, Object>>(SYNTHESIZED_INPUT_COUNT);
+		for (int i = 0; i < SYNTHESIZED_INPUT_COUNT; i++) {
+
+			Map<FieldName, Object> rawInput = new HashMap<FieldName, Object>();
+			for (Map.Entry<FieldName, List<Object>> entry : candidates.entrySet()) {
+				rawInput.put(entry.getKey(), entry.getValue().get(random.nextInt(entry.getValue().size())));
+			}
+
+			Map<FieldName, Object> input = prepare(evaluator, rawInput);
+			if (input != null) {
+				inputs.add(input);
+			}
+		}
+
+		return inputs;
+	}
+
+	/**
+	 * Reads the inputs from the configured sample file.
+	 *
+	 * @param evaluator must not be {@literal null}
+	 * @return
+	 */
+	List<Map<FieldName, Object>> readSampleInputs(Evaluator evaluator) {
+
+		Resource resource = new DefaultResourceLoader().getResource(sampleLocation);
+		List<Map<FieldName, Object>> inputs = new ArrayList<Map<FieldName, Object>>();
+
+		try {
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), "UTF-8"));
+			try {
+
+				String header = reader.readLine();
+				if (header == null) {
+					return inputs;
+				}
+
+				List<FieldName> fields = new ArrayList<FieldName>();
+				for (String name : StringUtils.commaDelimitedListToStringArray(header)) {
+					fields.add(FieldName.create(name.trim()));
+				}
+
+				String line;
+				while ((line = reader.readLine()) != null) {
+
+					if (!StringUtils.hasText(line)) {
+						continue;
+					}
+
+					List<String> cells = Arrays.asList(StringUtils.commaDelimitedListToStringArray(line));
+
+					Map<FieldName, Object> rawInput = new HashMap<FieldName, Object>();
+					for (int i = 0; i < fields.size() && i < cells.size(); i++) {
+						rawInput.put(fields.get(i), StringUtils.hasText(cells.get(i)) ? cells.get(i).trim() : null);
+					}
+
+					Map<FieldName, Object> input = prepare(evaluator, rawInput);
+					if (input != null) {
+						inputs.add(input);
+					}
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+		catch (IOException ex) {
+			log.warn("Could not read warm-up samples from: " + sampleLocation, ex);
+		}
+
+		return inputs;
+	}
+
+	/**
+	 * Prepares the given raw input for the active fields of the given {@link Evaluator}.
+	 *
+	 * @param evaluator
+	 * @param rawInput
+	 * @return the prepared input or {@literal null} if a value is not valid for the model.
+	 */
+	private Map<FieldName, Object> prepare(Evaluator evaluator, Map<FieldName, Object> rawInput) {
+
+		Map<FieldName, Object> input = new HashMap<FieldName, Object>();
+
+		try {
+			for (FieldName activeField : evaluator.getActiveFields()) {
+				input.put(activeField, EvaluatorUtil.prepare(evaluator, activeField, rawInput.get(activeField)));
+			}
+		}
+		catch (RuntimeException ex) {
+
+			if (log.isDebugEnabled()) {
+				log.debug("Skipping warm-up input: " + rawInput, ex);
+			}
+
+			return null;
+		}
+
+		return input;
+	}
+
+	private static List<Object> candidateValues(DataField dataField, Random random) {
+
+		List<Object> values = new ArrayList<Object>();
+		if (dataField == null) {
+			return values;
+		}
+
+		for (Value value : dataField.getValues()) {
+			if (value.getProperty() == null || value.getProperty() == Value.Property.VALID) {
+				values.add(value.getValue());
+			}
+		}
+
+		if (!values.isEmpty()) {
+			return values;
+		}
+
+		DataType dataType = dataField.getDataType();
+
+		if (dataType == DataType.DOUBLE || dataType == DataType.FLOAT || dataType == DataType.INTEGER) {
+
+			List<Interval> intervals = dataField.getIntervals();
+
+			for (int i = 0; i < SYNTHESIZED_INPUT_COUNT; i++) {
+
+				double lower = DEFAULT_LOWER_BOUND;
+				double upper = DEFAULT_UPPER_BOUND;
+
+				if (!intervals.isEmpty()) {
+
+					Interval interval = intervals.get(random.nextInt(intervals.size()));
+
+					lower = interval.getLeftMargin() != null ? interval.getLeftMargin()
+							: interval.getRightMargin() != null ? interval.getRightMargin() - DEFAULT_UPPER_BOUND
+									: DEFAULT_LOWER_BOUND;
+					upper = interval.getRightMargin() != null ? interval.getRightMargin() : lower + DEFAULT_UPPER_BOUND;
+				}
+
+				double value = lower + random.nextDouble() * (upper - lower);
+				values.add(dataType == DataType.INTEGER ? (Object) Math.round(value) : (Object) value);
+			}
+		}
+		else if (dataType == DataType.BOOLEAN) {
+			values.add(Boolean.TRUE);
+			values.add(Boolean.FALSE);
+		}
+
+		return values;
+	}
+
+	/**
+	 * Evaluates the warm-up inputs of a model, e.g. through the whole pipeline of a {@link PmmlAnalytic}.
+	 */
+	public interface WarmUpTarget {
+
+		/**
+		 * @param modelInput the prepared values of the active model fields, never {@literal null}.
+		 */
+		void evaluate(Map<FieldName, Object> modelInput);
+	}
+}
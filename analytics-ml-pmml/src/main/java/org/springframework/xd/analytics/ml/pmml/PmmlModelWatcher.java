@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * Periodically checks the last modification time of the {@code modelLocation} of a {@link ReloadablePmmlAnalytic} and
+ * triggers a {@link ReloadablePmmlAnalytic#reload()} when the {@link org.dmg.pmml.PMML} document changed. The document
+ * is parsed on the watcher thread, so the evaluation of messages is never blocked by a reload.
+ * 
+ */
+public class PmmlModelWatcher implements InitializingBean, DisposableBean {
+
+	private final Log log = LogFactory.getLog(this.getClass());
+
+	private final ReloadablePmmlAnalytic analytic;
+
+	private final long checkInterval;
+
+	private volatile long lastModified;
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Creates a new {@link PmmlModelWatcher}.
+	 * 
+	 * @param analytic must not be {@literal null}
+	 * @param checkInterval the interval in milliseconds between two checks, a value {@code <= 0} disables the watcher.
+	 */
+	public PmmlModelWatcher(ReloadablePmmlAnalytic analytic, long checkInterval) {
+
+		Assert.notNull(analytic, "analytic");
+
+		this.analytic = analytic;
+		this.checkInterval = checkInterval;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+
+		if (checkInterval <= 0) {
+			return;
+		}
+
+		this.lastModified = getLastModified();
+
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pmml-model-watcher-");
+		threadFactory.setDaemon(true);
+
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		this.scheduler.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				checkForModification();
+			}
+		}, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+
+		if (log.isInfoEnabled()) {
+			log.info(String.format("Watching modelLocation: %s for changes every %d ms", analytic.getModelLocation(),
+					checkInterval));
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reloads the model of the {@link ReloadablePmmlAnalytic} if the {@code modelLocation} was modified since the last
+	 * check. The modification is only recorded after a successful reload, so a partially written document is picked up
+	 * again with the next check.
+	 * 
+	 * @return {@literal true} if the model was reloaded.
+	 */
+	boolean checkForModification() {
+
+		try {
+
+			long currentLastModified = getLastModified();
+			if (currentLastModified == lastModified) {
+				return false;
+			}
+
+			analytic.reload();
+
+			this.lastModified = currentLastModified;
+
+			return true;
+		}
+		catch (Exception ex) {
+			log.warn(String.format("Could not reload model from modelLocation: %s, keeping the current model.",
+					analytic.getModelLocation()), ex);
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the last modification time of the {@code modelLocation}. {@code file:} locations are checked on the file
+	 * system, for locations inside a {@code jar:} or {@code zip:} archive the modification time of the archive is used
+	 * and {@code http:} locations are checked with a {@code HEAD} request. Other locations can not be watched.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private long getLastModified() throws IOException {
+
+		URL url = ResourceUtils.getURL(analytic.getModelLocation());
+
+		if (ResourceUtils.isJarURL(url)) {
+			url = ResourceUtils.extractJarFileURL(url);
+		}
+
+		if (ResourceUtils.isFileURL(url)) {
+			return ResourceUtils.getFile(url).lastModified();
+		}
+
+		if (!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol())) {
+			throw new IllegalArgumentException(String.format(
+					"Can not watch modelLocation: %s, only file:, jar: and http: locations can be reloaded",
+					analytic.getModelLocation()));
+		}
+
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		try {
+			connection.setRequestMethod("HEAD");
+			return connection.getLastModified();
+		}
+		finally {
+			connection.disconnect();
+		}
+	}
+}
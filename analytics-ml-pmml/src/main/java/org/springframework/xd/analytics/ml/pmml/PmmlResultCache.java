@@ -0,0 +1,260 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dmg.pmml.FieldName;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.FieldValue;
+import org.springframework.util.Assert;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A size-bounded cache for the results of {@link org.jpmml.evaluator.Evaluator}s, keyed by the {@code Evaluator} and
+ * the prepared model input. PMML models are deterministic, so inputs that repeat, e.g. for models with only
+ * categorical input fields, can be answered without evaluating the model again. Entries of an {@code Evaluator} are
+ * invalidated when the model is reloaded.
+ * <p>
+ * A cache with {@code maxEntries} of {@literal 0} is disabled.
+ * </p>
+ */
+public class PmmlResultCache {
+
+	private final long maxEntries;
+
+	private final Cache<ResultKey, Map<FieldName, ?>> results;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * Creates a new {@link PmmlResultCache}.
+	 *
+	 * @param maxEntries the maximum number of cached results, {@literal 0} disables the cache.
+	 * @param timeToLiveSeconds the time in seconds after which a cached result expires, {@literal 0} keeps results
+	 *          until they are evicted.
+	 */
+	public PmmlResultCache(long maxEntries, long timeToLiveSeconds) {
+
+		Assert.isTrue(maxEntries >= 0, "maxEntries must not be negative");
+		Assert.isTrue(timeToLiveSeconds >= 0, "timeToLiveSeconds must not be negative");
+
+		this.maxEntries = maxEntries;
+
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maxEntries);
+		if (timeToLiveSeconds > 0) {
+			builder.expireAfterWrite(timeToLiveSeconds, TimeUnit.SECONDS);
+		}
+
+		this.results = builder.build();
+	}
+
+	/**
+	 * @return whether results are cached at all.
+	 */
+	public boolean isEnabled() {
+		return maxEntries > 0;
+	}
+
+	/**
+	 * Creates the key of the result of the given {@code evaluator} for the given {@code modelInput}. The key holds a
+	 * normalized copy of the input, so it should be created once per evaluation and used for both
+	 * {@link #get(ResultKey)} and {@link #put(ResultKey, Map)}.
+	 *
+	 * @param evaluator must not be {@literal null}
+	 * @param modelInput must not be {@literal null}
+	 * @return
+	 */
+	public ResultKey createKey(Evaluator evaluator, Map<FieldName, ?> modelInput) {
+		return new ResultKey(evaluator, modelInput);
+	}
+
+	/**
+	 * Returns a copy of the result cached under the given {@code key}.
+	 *
+	 * @param key must not be {@literal null}
+	 * @return the cached result or {@literal null} if no result is cached.
+	 */
+	public Map<FieldName, Object> get(ResultKey key) {
+
+		Assert.notNull(key, "key");
+
+		Map<FieldName, ?> result = results.getIfPresent(key);
+		if (result == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+
+		hitCount.incrementAndGet();
+
+		return new LinkedHashMap<FieldName, Object>(result);
+	}
+
+	/**
+	 * Caches the given {@code result} under the given {@code key}.
+	 *
+	 * @param key must not be {@literal null}
+	 * @param result must not be {@literal null}
+	 */
+	public void put(ResultKey key, Map<FieldName, ?> result) {
+
+		Assert.notNull(key, "key");
+		Assert.notNull(result, "result");
+
+		results.put(key, new LinkedHashMap<FieldName, Object>(result));
+	}
+
+	/**
+	 * Removes all results of the given {@code evaluator}.
+	 *
+	 * @param evaluator must not be {@literal null}
+	 */
+	public void invalidate(Evaluator evaluator) {
+
+		Assert.notNull(evaluator, "evaluator");
+
+		List<ResultKey> keys = new ArrayList<ResultKey>();
+		for (ResultKey key : results.asMap().keySet()) {
+			if (key.evaluator == evaluator) {
+				keys.add(key);
+			}
+		}
+
+		results.invalidateAll(keys);
+	}
+
+	/**
+	 * Removes all results.
+	 */
+	public void invalidateAll() {
+		results.invalidateAll();
+	}
+
+	/**
+	 * @return the number of lookups that found a cached result.
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of lookups that did not find a cached result.
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Resets the hit and miss counts.
+	 */
+	public void resetCounts() {
+		hitCount.set(0);
+		missCount.set(0);
+	}
+
+	/**
+	 * @return the number of cached results.
+	 */
+	public long getSize() {
+		return results.size();
+	}
+
+	/**
+	 * The key of a cached result. The prepared {@link FieldValue}s of the model input don't implement
+	 * {@link Object#equals(Object)}, so they are compared by their type and value.
+	 */
+	public static final class ResultKey {
+
+		private final Evaluator evaluator;
+
+		private final Map<FieldName, Object> input;
+
+		private final int hash;
+
+		ResultKey(Evaluator evaluator, Map<FieldName, ?> modelInput) {
+
+			Assert.notNull(evaluator, "evaluator");
+			Assert.notNull(modelInput, "modelInput");
+
+			this.evaluator = evaluator;
+			this.input = new HashMap<FieldName, Object>((int) (modelInput.size() / 0.75f) + 1);
+
+			for (Map.Entry<FieldName, ?> entry : modelInput.entrySet()) {
+				input.put(entry.getKey(), normalize(entry.getValue()));
+			}
+
+			this.hash = 31 * System.identityHashCode(evaluator) + input.hashCode();
+		}
+
+		private static Object normalize(Object value) {
+
+			if (value instanceof FieldValue) {
+
+				FieldValue fieldValue = (FieldValue) value;
+
+				return Arrays.asList(fieldValue.getOpType(), fieldValue.getDataType(), fieldValue.getValue());
+			}
+
+			if (value instanceof Collection) {
+
+				Collection<?> values = (Collection<?>) value;
+
+				List<Object> normalizedValues = new ArrayList<Object>(values.size());
+				for (Object element : values) {
+					normalizedValues.add(normalize(element));
+				}
+
+				return normalizedValues;
+			}
+
+			return value;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+
+			if (this == obj) {
+				return true;
+			}
+
+			if (!(obj instanceof ResultKey)) {
+				return false;
+			}
+
+			ResultKey that = (ResultKey) obj;
+
+			return this.evaluator == that.evaluator && this.hash == that.hash && this.input.equals(that.input);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dmg.pmml.FieldName;
+import org.dmg.pmml.Model;
+import org.dmg.pmml.PMML;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.EvaluatorUtil;
+import org.jpmml.evaluator.FieldValue;
+import org.jpmml.evaluator.ModelEvaluatorFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Evaluates a candidate model in the shadow of the model of a {@link PmmlAnalytic}, e.g. to verify a new model version
+ * against live traffic before it is rolled out. A configurable percentage of the model inputs is evaluated a second
+ * time with the candidate model on a single low-priority thread, the predictions of both models are compared and the
+ * agreement rate as well as the latency difference are reported in the {@link PmmlAnalyticMetrics}. The output of the
+ * analytic is never affected: shadow evaluations are queued without waiting and dropped if the queue is full, failures
+ * of the candidate model are only counted.
+ * <p>
+ * A scorer without {@code modelLocation} is disabled.
+ * </p>
+ */
+public class PmmlShadowScorer implements DisposableBean {
+
+	private static final double NUMERIC_TOLERANCE = 1e-9;
+
+	private final Log log = LogFactory.getLog(this.getClass());
+
+	private final String modelLocation;
+
+	private final double samplePercentage;
+
+	private final PmmlModelCache.Handle handle;
+
+	private final Evaluator evaluator;
+
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong comparisonCount = new AtomicLong();
+
+	private final AtomicLong agreementCount = new AtomicLong();
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private final AtomicLong errorCount = new AtomicLong();
+
+	private final AtomicLong latencyDeltaSum = new AtomicLong();
+
+	private final AtomicLong latencyDeltaCount = new AtomicLong();
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	/**
+	 * Creates a new {@link PmmlShadowScorer}.
+	 *
+	 * @param modelName may be {@literal null} to use the first model of the candidate document.
+	 * @param modelLocation may be {@literal null} to disable the scorer.
+	 * @param pmmlLoader must not be {@literal null}
+	 * @param samplePercentage the percentage of model inputs to evaluate with the candidate model, between {@literal 0}
+	 *          and {@literal 100}.
+	 * @param queueCapacity the maximum number of pending shadow evaluations.
+	 */
+	public PmmlShadowScorer(String modelName, String modelLocation, PmmlLoader pmmlLoader, double samplePercentage,
+			int queueCapacity) {
+
+		Assert.notNull(pmmlLoader, "pmmlLoader");
+		Assert.isTrue(samplePercentage >= 0 && samplePercentage <= 100, "samplePercentage must be between 0 and 100");
+		Assert.isTrue(queueCapacity > 0, "queueCapacity must be greater than 0");
+
+		this.modelLocation = StringUtils.trimAllWhitespace(modelLocation);
+		this.samplePercentage = samplePercentage;
+
+		if (!StringUtils.hasText(this.modelLocation)) {
+
+			this.handle = null;
+			this.evaluator = null;
+			this.executor = null;
+
+			return;
+		}
+
+		this.handle = PmmlModelCache.getSharedInstance().acquire(this.modelLocation, pmmlLoader);
+
+		try {
+			this.evaluator = handle.getEvaluator(getClass().getName() + ":" + modelName,
+					StringUtils.trimAllWhitespace(modelName), new PmmlModelCache.EvaluatorFactory() {
+
+						@Override
+						public Evaluator createEvaluator(PMML pmml, String modelName) {
+							return ModelEvaluatorFactory.getInstance().getModelManager(pmml, getModel(pmml, modelName));
+						}
+					});
+		}
+		catch (RuntimeException ex) {
+			handle.release();
+			throw ex;
+		}
+
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pmml-shadow-");
+		threadFactory.setDaemon(true);
+		threadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+
+		this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+				queueCapacity), threadFactory, new RejectedExecutionHandler() {
+
+			@Override
+			public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+				droppedCount.incrementAndGet();
+			}
+		});
+
+		if (log.isInfoEnabled()) {
+			log.info(String.format("Shadow scoring %.2f%% of the inputs with modelName: %s from modelLocation: %s",
+					samplePercentage, modelName, this.modelLocation));
+		}
+	}
+
+	/**
+	 * @return whether model inputs are evaluated with a candidate model at all.
+	 */
+	public boolean isEnabled() {
+		return evaluator != null && samplePercentage > 0;
+	}
+
+	/**
+	 * Decides whether the next model input should be evaluated with the candidate model.
+	 *
+	 * @return
+	 */
+	public boolean sample() {
+		return isEnabled()
+				&& (samplePercentage >= 100 || ThreadLocalRandom.current().nextDouble() * 100 < samplePercentage);
+	}
+
+	/**
+	 * Queues the evaluation of the given {@code modelInput} with the candidate model and returns immediately. The
+	 * evaluation is dropped if too many evaluations are pending.
+	 *
+	 * @param primaryEvaluator must not be {@literal null}
+	 * @param modelInput must not be {@literal null}, must not be modified afterwards.
+	 * @param primaryResult must not be {@literal null}
+	 * @param primaryNanos the time it took to evaluate the {@code modelInput} with the {@code primaryEvaluator} or a
+	 *          negative value if the {@code primaryResult} was not evaluated, e.g. because it was cached.
+	 */
+	public void submit(Evaluator primaryEvaluator, final Map<FieldName, ?> modelInput,
+			Map<FieldName, ?> primaryResult, final long primaryNanos) {
+
+		Assert.notNull(primaryEvaluator, "primaryEvaluator");
+		Assert.notNull(modelInput, "modelInput");
+		Assert.notNull(primaryResult, "primaryResult");
+
+		if (!isEnabled()) {
+			return;
+		}
+
+		// the prediction is extracted right away so the result can be handed on without being shared
+		final Object primaryPrediction = EvaluatorUtil.decode(primaryResult.get(primaryEvaluator.getTargetField()));
+
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				compare(modelInput, primaryPrediction, primaryNanos);
+			}
+		});
+	}
+
+	/**
+	 * Evaluates the given {@code modelInput} with the candidate model on the calling thread and records whether its
+	 * prediction agrees with the given {@code primaryPrediction}.
+	 *
+	 * @param modelInput must not be {@literal null}
+	 * @param primaryPrediction may be {@literal null}
+	 * @param primaryNanos negative if the latency of the primary model is not known.
+	 */
+	void compare(Map<FieldName, ?> modelInput, Object primaryPrediction, long primaryNanos) {
+
+		try {
+
+			Map<FieldName, Object> input = prepareInput(modelInput);
+
+			// only the evaluation is timed, like the evaluation with the primary model
+			long start = System.nanoTime();
+			Map<FieldName, ?> result = evaluator.evaluate(input);
+			long nanos = System.nanoTime() - start;
+
+			Object prediction = EvaluatorUtil.decode(result.get(evaluator.getTargetField()));
+
+			latency.record(nanos);
+			comparisonCount.incrementAndGet();
+
+			if (primaryNanos >= 0) {
+				latencyDeltaSum.addAndGet(nanos - primaryNanos);
+				latencyDeltaCount.incrementAndGet();
+			}
+
+			if (agree(primaryPrediction, prediction)) {
+				agreementCount.incrementAndGet();
+			}
+			else if (log.isDebugEnabled()) {
+				log.debug("Shadow model disagrees - input: " + modelInput + " primary: " + primaryPrediction
+						+ " shadow: " + prediction);
+			}
+		}
+		catch (RuntimeException ex) {
+
+			errorCount.incrementAndGet();
+
+			if (log.isDebugEnabled()) {
+				log.debug("Shadow evaluation failed - input: " + modelInput, ex);
+			}
+		}
+	}
+
+	/**
+	 * Prepares the model input of the primary model for the candidate model, whose fields may be declared differently.
+	 *
+	 * @param modelInput
+	 * @return
+	 */
+	private Map<FieldName, Object> prepareInput(Map<FieldName, ?> modelInput) {
+
+		Map<FieldName, Object> input = new LinkedHashMap<FieldName, Object>();
+
+		for (FieldName activeField : evaluator.getActiveFields()) {
+			input.put(activeField, EvaluatorUtil.prepare(evaluator, activeField, rawValue(modelInput.get(activeField))));
+		}
+
+		return input;
+	}
+
+	private static Object rawValue(Object value) {
+
+		if (value instanceof FieldValue) {
+			return ((FieldValue) value).getValue();
+		}
+
+		if (value instanceof Collection) {
+
+			List<Object> values = new ArrayList<Object>(((Collection<?>) value).size());
+			for (Object element : (Collection<?>) value) {
+				values.add(rawValue(element));
+			}
+
+			return values;
+		}
+
+		return value;
+	}
+
+	private static boolean agree(Object primaryPrediction, Object prediction) {
+
+		if (primaryPrediction instanceof Number && prediction instanceof Number) {
+
+			double primary = ((Number) primaryPrediction).doubleValue();
+			double shadow = ((Number) prediction).doubleValue();
+
+			return Math.abs(primary - shadow) <= NUMERIC_TOLERANCE
+					* Math.max(1, Math.max(Math.abs(primary), Math.abs(shadow)));
+		}
+
+		return ObjectUtils.nullSafeEquals(primaryPrediction, prediction);
+	}
+
+	private static Model getModel(PMML pmml, String modelName) {
+
+		for (Model model : pmml.getModels()) {
+
+			if (!StringUtils.hasText(modelName) || modelName.equals(model.getModelName())) {
+				return model;
+			}
+		}
+
+		throw new IllegalStateException("Analytical model: " + modelName + " not found!");
+	}
+
+	/**
+	 * @return the number of model inputs that were evaluated with the candidate model.
+	 */
+	public long getComparisonCount() {
+		return comparisonCount.get();
+	}
+
+	/**
+	 * @return the number of model inputs for which both models predicted the same value.
+	 */
+	public long getAgreementCount() {
+		return agreementCount.get();
+	}
+
+	/**
+	 * @return the number of sampled model inputs that were dropped because too many evaluations were pending.
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * @return the number of model inputs that could not be evaluated with the candidate model.
+	 */
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	/**
+	 * @return the number of comparisons for which the latency of the primary model was known.
+	 */
+	public long getLatencyDeltaCount() {
+		return latencyDeltaCount.get();
+	}
+
+	/**
+	 * @return the mean difference in nanoseconds between the latency of the candidate and the primary model, positive
+	 *         if the candidate model is slower. Comparisons with a cached primary result are not included.
+	 */
+	public double getMeanLatencyDelta() {
+
+		long count = latencyDeltaCount.get();
+
+		return count == 0 ? 0 : (double) latencyDeltaSum.get() / count;
+	}
+
+	/**
+	 * @return the {@link LatencyHistogram} of the candidate model evaluations.
+	 */
+	public LatencyHistogram getLatencyHistogram() {
+		return latency;
+	}
+
+	/**
+	 * Resets all counters and latencies.
+	 */
+	public void resetCounts() {
+
+		comparisonCount.set(0);
+		agreementCount.set(0);
+		droppedCount.set(0);
+		errorCount.set(0);
+		latencyDeltaSum.set(0);
+		latencyDeltaCount.set(0);
+		latency.reset();
+	}
+
+	/**
+	 * Stops the shadow evaluations and releases the candidate model.
+	 */
+	@Override
+	public void destroy() {
+
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+
+		if (handle != null) {
+			handle.release();
+		}
+	}
+}
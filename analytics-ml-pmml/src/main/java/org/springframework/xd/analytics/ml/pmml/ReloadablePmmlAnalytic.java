@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+/**
+ * An analytic backed by a {@link org.dmg.pmml.PMML} document that can be reloaded from its {@code modelLocation}.
+ * 
+ */
+public interface ReloadablePmmlAnalytic {
+
+	/**
+	 * @return the location of the {@link org.dmg.pmml.PMML} document.
+	 */
+	String getModelLocation();
+
+	/**
+	 * Reloads the {@link org.dmg.pmml.PMML} document from the {@code modelLocation}.
+	 */
+	void reload();
+}
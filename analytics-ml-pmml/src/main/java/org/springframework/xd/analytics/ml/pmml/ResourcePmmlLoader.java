@@ -16,20 +16,53 @@
 package org.springframework.xd.analytics.ml.pmml;
 
 import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import org.springframework.util.Assert;
 import org.springframework.util.ResourceUtils;
+import org.springframework.util.StringUtils;
 import org.xml.sax.InputSource;
 
 /**
  * An {@link AbstractPmmlLoader} that can load
  * PMML documents from a {@code modelLocation} given as resource URI.
+ * <p>
+ * Locations ending with {@code .gz} are decompressed and for locations ending with {@code .zip} the first file in the
+ * archive is read, both while the document is parsed. If a {@code httpCacheDirectory} is set, documents at
+ * {@code http:} locations are cached there by a {@link HttpPmmlCache}.
+ * </p>
  *
  * @author Thomas Darimont
  */
 public class ResourcePmmlLoader extends AbstractPmmlLoader {
 
+	private static final int DECOMPRESSION_BUFFER_SIZE = 64 * 1024;
+
+	private volatile HttpPmmlCache httpCache;
+
+	/**
+	 * @param httpCacheDirectory the directory to cache documents from {@code http:} locations in, may be {@literal null}
+	 *          or empty, which disables the cache.
+	 */
+	public void setHttpCacheDirectory(String httpCacheDirectory) {
+		this.httpCache = StringUtils.hasText(httpCacheDirectory) ? new HttpPmmlCache(new File(httpCacheDirectory.trim()))
+				: null;
+	}
+
+	/**
+	 * @return the cache for documents from {@code http:} locations or {@literal null} if no cache is used.
+	 */
+	public HttpPmmlCache getHttpCache() {
+		return httpCache;
+	}
+
 	/**
 	 * @param modelLocation must not be {@literal null}
 	 * @return
@@ -46,6 +79,49 @@ public class ResourcePmmlLoader extends AbstractPmmlLoader {
 			log.debug("Trying to load pmml from modelLocation: " + modelLocation);
 		}
 
-		return new InputSource(new BufferedInputStream(url.openStream()));
+		HttpPmmlCache cache = this.httpCache;
+		if (cache != null && HttpPmmlCache.isCacheable(url)) {
+			return new InputSource(cache.open(url));
+		}
+
+		return new InputSource(decode(url.getPath(), new BufferedInputStream(url.openStream())));
+	}
+
+	/**
+	 * Decompresses the given {@code in} stream if the given {@code path} denotes a {@code .gz} or {@code .zip} file.
+	 *
+	 * @param path must not be {@literal null}
+	 * @param in must not be {@literal null}
+	 * @return
+	 * @throws IOException
+	 */
+	static InputStream decode(String path, InputStream in) throws IOException {
+
+		String lowerCasePath = path.toLowerCase(Locale.ENGLISH);
+
+		try {
+
+			if (lowerCasePath.endsWith(".gz")) {
+				return new GZIPInputStream(in, DECOMPRESSION_BUFFER_SIZE);
+			}
+
+			if (lowerCasePath.endsWith(".zip")) {
+
+				ZipInputStream zipIn = new ZipInputStream(in);
+				for (ZipEntry entry = zipIn.getNextEntry(); entry != null; entry = zipIn.getNextEntry()) {
+					if (!entry.isDirectory()) {
+						return zipIn;
+					}
+				}
+
+				throw new IOException("No pmml document found in: " + path);
+			}
+		}
+		catch (IOException ex) {
+			in.close();
+			throw ex;
+		}
+
+		return in;
 	}
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.util.Assert;
+
+/**
+ * A small bounded cache for values that are resolved per {@link org.springframework.xd.tuple.Tuple} schema, i.e. per
+ * list of field names. Lookups compare the hash of the field names first and only check the equality of entries with
+ * the same hash. When the cache is full the oldest entry is replaced, which keeps streams with a handful of interleaved
+ * schemas free of repeated resolutions.
+ */
+public class SchemaCache<V> {
+
+	static final int DEFAULT_CAPACITY = 16;
+
+	private final AtomicReferenceArray<Entry<V>> entries;
+
+	private final AtomicInteger nextSlot = new AtomicInteger();
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * Creates a new {@link SchemaCache} with the {@link #DEFAULT_CAPACITY}.
+	 */
+	public SchemaCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new {@link SchemaCache}.
+	 *
+	 * @param capacity the maximum number of cached schemas, must be greater than {@literal 0}.
+	 */
+	public SchemaCache(int capacity) {
+
+		Assert.isTrue(capacity > 0, "capacity must be greater than 0");
+
+		this.entries = new AtomicReferenceArray<Entry<V>>(capacity);
+	}
+
+	/**
+	 * Returns the value cached for the given {@code fieldNames}.
+	 *
+	 * @param fieldNames must not be {@literal null}
+	 * @return the cached value or {@literal null} if the schema is not cached.
+	 */
+	public V get(List<String> fieldNames) {
+
+		int hash = fieldNames.hashCode();
+
+		for (int i = 0; i < entries.length(); i++) {
+
+			Entry<V> entry = entries.get(i);
+			if (entry != null && entry.hash == hash && entry.fieldNames.equals(fieldNames)) {
+				hitCount.incrementAndGet();
+				return entry.value;
+			}
+		}
+
+		missCount.incrementAndGet();
+
+		return null;
+	}
+
+	/**
+	 * Caches the given {@code value} for the given {@code fieldNames}. An existing entry for the same field names is
+	 * replaced, otherwise the oldest entry is replaced if the cache is full.
+	 *
+	 * @param fieldNames must not be {@literal null}
+	 * @param value must not be {@literal null}
+	 */
+	public void put(List<String> fieldNames, V value) {
+
+		Assert.notNull(fieldNames, "fieldNames");
+		Assert.notNull(value, "value");
+
+		int hash = fieldNames.hashCode();
+		Entry<V> newEntry = new Entry<V>(fieldNames, hash, value);
+
+		for (int i = 0; i < entries.length(); i++) {
+
+			Entry<V> entry = entries.get(i);
+			if (entry != null && entry.hash == hash && entry.fieldNames.equals(fieldNames)) {
+				entries.set(i, newEntry);
+				return;
+			}
+		}
+
+		int slot = (nextSlot.getAndIncrement() & Integer.MAX_VALUE) % entries.length();
+
+		entries.set(slot, newEntry);
+	}
+
+	/**
+	 * Resets the hit and miss counts.
+	 */
+	public void resetCounts() {
+		hitCount.set(0);
+		missCount.set(0);
+	}
+
+	/**
+	 * Removes all cached values, the hit and miss counts are retained.
+	 */
+	public void clear() {
+
+		for (int i = 0; i < entries.length(); i++) {
+			entries.set(i, null);
+		}
+	}
+
+	/**
+	 * @return the number of lookups that found a cached value.
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of lookups that did not find a cached value.
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	private static class Entry<V> {
+
+		private final List<String> fieldNames;
+
+		private final int hash;
+
+		private final V value;
+
+		Entry(List<String> fieldNames, int hash, V value) {
+			this.fieldNames = fieldNames;
+			this.hash = hash;
+			this.value = value;
+		}
+	}
+}
@@ -124,6 +124,24 @@ public class TuplePmmlAnalytic extends PmmlAnalytic<Tuple, Tuple> {
 				new TuplePmmlAnalyticOutputDataMapper(splitFieldMappings(outputFieldMappings)));
 	}
 
+	/**
+	 * Creates the warm-up input through the {@link TuplePmmlAnalyticInputDataMapper}, which knows the input field names
+	 * of the model input fields.
+	 * 
+	 * @param rawModelInput must not be {@literal null}
+	 * @return the input or {@literal null} if another {@link InputMapper} is used.
+	 */
+	@Override
+	protected Tuple createWarmUpInput(Map<FieldName, Object> rawModelInput) {
+
+		InputMapper<Tuple, PmmlAnalytic<Tuple, Tuple>, Map<FieldName, Object>> inputMapper = getInputMapper();
+		if (!(inputMapper instanceof TuplePmmlAnalyticInputDataMapper)) {
+			return null;
+		}
+
+		return ((TuplePmmlAnalyticInputDataMapper) inputMapper).createInput(getPmmlEvaluator(), rawModelInput);
+	}
+
 	/**
 	 * Splits the field mappings of the form {@literal inputField1:outputField1,inputField1:outputField1} into a
 	 * {@link java.util.List}.
@@ -132,7 +150,7 @@ public class TuplePmmlAnalytic extends PmmlAnalytic<Tuple, Tuple> {
 	 * @return a {@link java.util.List} containing the field mappings as elements or an empty {@code List} if
 	 * {@code fieldMappings} were {@literal null}.
 	 */
-	private static List<String> splitFieldMappings(String fieldMappings) {
+	static List<String> splitFieldMappings(String fieldMappings) {
 
 		if (!StringUtils.hasText(fieldMappings)) {
 			return Collections.<String> emptyList();
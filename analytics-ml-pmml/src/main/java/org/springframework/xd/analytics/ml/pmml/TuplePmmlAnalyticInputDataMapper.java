@@ -16,29 +16,51 @@
 
 package org.springframework.xd.analytics.ml.pmml;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.dmg.pmml.DataField;
 import org.dmg.pmml.FieldName;
+import org.dmg.pmml.MiningField;
+import org.jpmml.evaluator.ArgumentUtil;
+import org.jpmml.evaluator.Evaluator;
 import org.jpmml.evaluator.EvaluatorUtil;
 import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.xd.analytics.ml.AbstractFieldMappingAwareDataMapper;
 import org.springframework.xd.analytics.ml.InputMapper;
 import org.springframework.xd.tuple.Tuple;
+import org.springframework.xd.tuple.TupleBuilder;
 
 /**
  * An {@link org.springframework.xd.analytics.ml.InputMapper} that can map the
  * {@link org.springframework.xd.tuple.Tuple} to a to an appropriate input for a {@link org.dmg.pmml.PMML} model
  * evaluation.
+ * <p>
+ * The field resolution is compiled once per {@link org.jpmml.evaluator.Evaluator} into a {@link BindingPlan} that holds
+ * the model input fields together with their pre-resolved {@link org.dmg.pmml.DataField} and
+ * {@link org.dmg.pmml.MiningField}, so mapping a {@code Tuple} only requires positional lookups. The field positions
+ * are resolved once per {@code Tuple} schema and kept in a {@link SchemaCache}.
+ * </p>
  *
  * @author Thomas Darimont
  */
 public class TuplePmmlAnalyticInputDataMapper extends AbstractFieldMappingAwareDataMapper implements
-		InputMapper<Tuple, PmmlAnalytic<Tuple, Tuple>, Map<FieldName, Object>> {
+		InputMapper<Tuple, PmmlAnalytic<Tuple, Tuple>, Map<FieldName, Object>>, SchemaCacheAware {
 
 	private final Map<String, String> inputFieldToModelInputNameMapping;
 
+	private final boolean customModelInputValuePreparation;
+
+	private final SchemaCache<SchemaPositions> schemaCache = new SchemaCache<SchemaPositions>();
+
+	private volatile BindingPlan bindingPlan;
+
 	/**
 	 * Creates a new {@link TuplePmmlAnalyticInputDataMapper}.
 	 *
@@ -46,6 +68,10 @@ public class TuplePmmlAnalyticInputDataMapper extends AbstractFieldMappingAwareD
 	 */
 	public TuplePmmlAnalyticInputDataMapper(List<String> inputFieldNameMapping) {
 
+		//sub-classes that customize the value preparation bypass the pre-resolved field bindings.
+		this.customModelInputValuePreparation = ReflectionUtils.findMethod(getClass(), "prepareModelInputValue",
+				PmmlAnalytic.class, FieldName.class, Object.class).getDeclaringClass() != TuplePmmlAnalyticInputDataMapper.class;
+
 		if (inputFieldNameMapping == null || inputFieldNameMapping.isEmpty()) {
 			this.inputFieldToModelInputNameMapping = null;
 			return;
@@ -83,29 +109,146 @@ public class TuplePmmlAnalyticInputDataMapper extends AbstractFieldMappingAwareD
 		Assert.notNull(analytic, "analytic");
 		Assert.notNull(input, "input");
 
-		Map<FieldName, Object> inputData = new HashMap<FieldName, Object>();
-		for (String fieldName : input.getFieldNames()) {
+		BindingPlan plan = getBindingPlan(analytic.getPmmlEvaluator());
+		int[] positions = resolvePositions(plan, input.getFieldNames());
+		FieldBinding[] bindings = plan.bindings;
 
-			//inputFieldToModelInputNameMapping is null we map all input fields to
-			String modelInputFieldNameToUse = inputFieldToModelInputNameMapping == null ? fieldName
-					: inputFieldToModelInputNameMapping.get(fieldName);
+		Map<FieldName, Object> inputData = new HashMap<FieldName, Object>(plan.inputDataCapacity);
+		for (int i = 0; i < bindings.length; i++) {
 
-			if (modelInputFieldNameToUse == null) {
-				//there is no implicit or explicit mapping available for the current fieldName, so we skip it.
+			int position = positions[i];
+			if (position == -1) {
+				//the current tuple doesn't provide a value for the model input field, so we skip it.
 				continue;
 			}
 
-			Object rawModelInputValue = input.getValue(fieldName);
-			FieldName modelInputFieldName = new FieldName(modelInputFieldNameToUse);
+			FieldBinding binding = bindings[i];
+			Object rawModelInputValue = input.getValue(position);
 
-			Object modelInputValue = prepareModelInputValue(analytic, modelInputFieldName, rawModelInputValue);
+			Object modelInputValue = customModelInputValuePreparation ? prepareModelInputValue(analytic,
+					binding.modelInputFieldName, rawModelInputValue) : binding.prepare(rawModelInputValue);
 
-			inputData.put(modelInputFieldName, modelInputValue);
+			inputData.put(binding.modelInputFieldName, modelInputValue);
 		}
 
 		return inputData;
 	}
 
+	/**
+	 * Returns the {@link BindingPlan} for the given {@link Evaluator}, compiling a new one if the {@code Evaluator}
+	 * changed since the last invocation.
+	 *
+	 * @param evaluator must not be {@literal null}.
+	 * @return
+	 */
+	BindingPlan getBindingPlan(Evaluator evaluator) {
+
+		BindingPlan plan = this.bindingPlan;
+		if (plan == null || plan.evaluator != evaluator) {
+			plan = compileBindingPlan(evaluator);
+			this.bindingPlan = plan;
+			schemaCache.clear();
+		}
+
+		return plan;
+	}
+
+	/**
+	 * Returns the position of each field bound by the given {@link BindingPlan} within the given {@code fieldNames} or
+	 * {@code -1} if the field is not present.
+	 *
+	 * @param plan must not be {@literal null}.
+	 * @param fieldNames must not be {@literal null}.
+	 * @return
+	 */
+	int[] resolvePositions(BindingPlan plan, List<String> fieldNames) {
+
+		SchemaPositions schemaPositions = schemaCache.get(fieldNames);
+		if (schemaPositions != null && schemaPositions.plan == plan) {
+			return schemaPositions.positions;
+		}
+
+		FieldBinding[] bindings = plan.bindings;
+		int[] positions = new int[bindings.length];
+		for (int i = 0; i < bindings.length; i++) {
+			positions[i] = fieldNames.indexOf(bindings[i].inputFieldName);
+		}
+
+		schemaCache.put(fieldNames, new SchemaPositions(plan, positions));
+
+		return positions;
+	}
+
+	/**
+	 * Creates an input {@link Tuple} that holds the given raw model input values under the input field names that the
+	 * {@link BindingPlan} of the given {@link Evaluator} maps to the model input fields, e.g. to warm up a model with
+	 * synthesized inputs.
+	 *
+	 * @param evaluator must not be {@literal null}.
+	 * @param rawModelInput must not be {@literal null}.
+	 * @return
+	 */
+	Tuple createInput(Evaluator evaluator, Map<FieldName, ?> rawModelInput) {
+
+		FieldBinding[] bindings = getBindingPlan(evaluator).bindings;
+
+		List<String> names = new ArrayList<String>(bindings.length);
+		List<Object> values = new ArrayList<Object>(bindings.length);
+		for (FieldBinding binding : bindings) {
+
+			if (rawModelInput.containsKey(binding.modelInputFieldName)) {
+				names.add(binding.inputFieldName);
+				values.add(rawModelInput.get(binding.modelInputFieldName));
+			}
+		}
+
+		return TupleBuilder.tuple().ofNamesAndValues(names, values);
+	}
+
+	@Override
+	public SchemaCache<?> getSchemaCache() {
+		return schemaCache;
+	}
+
+	/**
+	 * Compiles the {@link BindingPlan} for the active and group fields of the given {@link Evaluator}.
+	 *
+	 * @param evaluator must not be {@literal null}.
+	 * @return
+	 */
+	private BindingPlan compileBindingPlan(Evaluator evaluator) {
+
+		Assert.notNull(evaluator, "evaluator");
+
+		Map<String, String> modelInputToInputFieldNameMapping = null;
+		if (inputFieldToModelInputNameMapping != null) {
+			modelInputToInputFieldNameMapping = new HashMap<String, String>(inputFieldToModelInputNameMapping.size());
+			for (Map.Entry<String, String> entry : inputFieldToModelInputNameMapping.entrySet()) {
+				modelInputToInputFieldNameMapping.put(entry.getValue(), entry.getKey());
+			}
+		}
+
+		Set<FieldName> modelInputFieldNames = new LinkedHashSet<FieldName>(evaluator.getActiveFields());
+		modelInputFieldNames.addAll(evaluator.getGroupFields());
+
+		List<FieldBinding> bindings = new ArrayList<FieldBinding>(modelInputFieldNames.size());
+		for (FieldName modelInputFieldName : modelInputFieldNames) {
+
+			String inputFieldName = modelInputToInputFieldNameMapping == null ? modelInputFieldName.getValue()
+					: modelInputToInputFieldNameMapping.get(modelInputFieldName.getValue());
+
+			if (inputFieldName == null) {
+				//there is no implicit or explicit mapping available for the current model field, so we skip it.
+				continue;
+			}
+
+			bindings.add(new FieldBinding(evaluator, inputFieldName, FieldName.create(modelInputFieldName.getValue()),
+					evaluator.getDataField(modelInputFieldName), evaluator.getMiningField(modelInputFieldName)));
+		}
+
+		return new BindingPlan(evaluator, bindings.toArray(new FieldBinding[bindings.size()]));
+	}
+
 	/**
 	 * Potentially transforms the given {@code rawModelInputValue} to a more suitable form for the model, e.g.:
 	 * <ol>
@@ -127,4 +270,101 @@ public class TuplePmmlAnalyticInputDataMapper extends AbstractFieldMappingAwareD
 
 		return EvaluatorUtil.prepare(analytic.getPmmlEvaluator(), modelInputFieldName, rawModelInputValue);
 	}
+
+	/**
+	 * A pre-compiled mapping of {@link org.springframework.xd.tuple.Tuple} fields to the model input fields of an
+	 * {@link Evaluator}.
+	 */
+	static class BindingPlan {
+
+		private final Evaluator evaluator;
+
+		private final FieldBinding[] bindings;
+
+		private final int inputDataCapacity;
+
+		BindingPlan(Evaluator evaluator, FieldBinding[] bindings) {
+			this.evaluator = evaluator;
+			this.bindings = bindings;
+			this.inputDataCapacity = (int) (bindings.length / 0.75f) + 1;
+		}
+
+		FieldBinding[] getBindings() {
+			return bindings;
+		}
+
+		int getInputDataCapacity() {
+			return inputDataCapacity;
+		}
+	}
+
+	/**
+	 * The resolved field positions of a {@link BindingPlan} for a particular {@link org.springframework.xd.tuple.Tuple}
+	 * schema.
+	 */
+	static class SchemaPositions {
+
+		private final BindingPlan plan;
+
+		private final int[] positions;
+
+		SchemaPositions(BindingPlan plan, int[] positions) {
+			this.plan = plan;
+			this.positions = positions;
+		}
+	}
+
+	/**
+	 * Binds a {@link org.springframework.xd.tuple.Tuple} field to a model input field.
+	 */
+	static class FieldBinding {
+
+		private final Evaluator evaluator;
+
+		private final String inputFieldName;
+
+		private final FieldName modelInputFieldName;
+
+		private final DataField dataField;
+
+		private final MiningField miningField;
+
+		FieldBinding(Evaluator evaluator, String inputFieldName, FieldName modelInputFieldName, DataField dataField,
+				MiningField miningField) {
+			this.evaluator = evaluator;
+			this.inputFieldName = inputFieldName;
+			this.modelInputFieldName = modelInputFieldName;
+			this.dataField = dataField;
+			this.miningField = miningField;
+		}
+
+		FieldName getModelInputFieldName() {
+			return modelInputFieldName;
+		}
+
+		DataField getDataField() {
+			return dataField;
+		}
+
+		MiningField getMiningField() {
+			return miningField;
+		}
+
+		/**
+		 * Equivalent to {@link EvaluatorUtil#prepare(Evaluator, FieldName, Object)} with the field lookups already
+		 * performed.
+		 *
+		 * @param rawModelInputValue may be {@literal null}
+		 * @return
+		 */
+		Object prepare(Object rawModelInputValue) {
+
+			if (rawModelInputValue instanceof Collection) {
+				//multi-valued inputs, e.g. the items of an association model, are prepared element-wise by jpmml.
+				return EvaluatorUtil.prepare(evaluator, modelInputFieldName, rawModelInputValue);
+			}
+
+			return ArgumentUtil.prepare(dataField, miningField, rawModelInputValue);
+		}
+	}
 }
@@ -19,7 +19,9 @@ package org.springframework.xd.analytics.ml.pmml;
 import java.util.*;
 
 import org.dmg.pmml.FieldName;
+import org.jpmml.evaluator.Evaluator;
 import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.xd.analytics.ml.AbstractFieldMappingAwareDataMapper;
 import org.springframework.xd.analytics.ml.OutputMapper;
 import org.springframework.xd.tuple.Tuple;
@@ -28,26 +30,60 @@ import org.springframework.xd.tuple.TupleBuilder;
 /**
  * An {@link org.springframework.xd.analytics.ml.OutputMapper} that can map the output of a {@link org.dmg.pmml.PMML}
  * model evaluation to a {@link org.springframework.xd.tuple.Tuple}.
+ * <p>
+ * The model result fields and their output field names are resolved once per set of result fields and the positions
+ * of the output fields within the result {@code Tuple} are resolved once per input {@code Tuple} schema into an
+ * {@link OutputLayout} that is kept in a {@link SchemaCache}, so the result is assembled in a single pass over the
+ * input values.
+ * </p>
  * 
  * @author Thomas Darimont
  */
 public class TuplePmmlAnalyticOutputDataMapper extends AbstractFieldMappingAwareDataMapper implements
-		OutputMapper<Tuple, Tuple, PmmlAnalytic<Tuple, Tuple>, Map<FieldName, Object>> {
+		OutputMapper<Tuple, Tuple, PmmlAnalytic<Tuple, Tuple>, Map<FieldName, Object>>, SchemaCacheAware {
 
 	private final Map<String, String> resultFieldToOutputFieldNameMapping;
 
 	private final List<FieldName> resultFields;
 
+	private final String outputFieldPrefix;
+
+	private final ResultFields mappedResultFields;
+
+	private volatile ResultFields modelResultFields;
+
+	private final boolean customOutputEntryMapping;
+
+	private final SchemaCache<OutputLayout> schemaCache = new SchemaCache<OutputLayout>();
+
 	/**
 	 * Creates a new {@link TuplePmmlAnalyticOutputDataMapper}.
 	 * 
 	 * @param resultFieldToOutputFieldNameMapping
 	 */
 	public TuplePmmlAnalyticOutputDataMapper(List<String> resultFieldToOutputFieldNameMapping) {
+		this(resultFieldToOutputFieldNameMapping, null);
+	}
+
+	/**
+	 * Creates a new {@link TuplePmmlAnalyticOutputDataMapper} that prepends the given {@code outputFieldPrefix} to the
+	 * names of all output fields.
+	 * 
+	 * @param resultFieldToOutputFieldNameMapping
+	 * @param outputFieldPrefix may be {@literal null}
+	 */
+	public TuplePmmlAnalyticOutputDataMapper(List<String> resultFieldToOutputFieldNameMapping, String outputFieldPrefix) {
+
+		this.outputFieldPrefix = outputFieldPrefix;
+
+		//sub-classes that customize the output entries bypass the pre-resolved output layout.
+		this.customOutputEntryMapping = ReflectionUtils.findMethod(getClass(), "addOutputEntriesFromModelOutput",
+				Map.class, List.class, List.class).getDeclaringClass() != TuplePmmlAnalyticOutputDataMapper.class;
 
 		if (resultFieldToOutputFieldNameMapping == null || resultFieldToOutputFieldNameMapping.isEmpty()) {
 			this.resultFieldToOutputFieldNameMapping = null;
 			this.resultFields = null;
+			this.mappedResultFields = null;
 			return;
 		}
 
@@ -56,6 +92,8 @@ public class TuplePmmlAnalyticOutputDataMapper extends AbstractFieldMappingAware
 		this.resultFields = new ArrayList<FieldName>(resultFieldToOutputFieldNameMapping.size());
 
 		registerOutputFieldMapping(resultFieldToOutputFieldNameMapping);
+
+		this.mappedResultFields = new ResultFields(resultFields, getOutputFieldNames(resultFields));
 	}
 
 	/**
@@ -81,14 +119,123 @@ public class TuplePmmlAnalyticOutputDataMapper extends AbstractFieldMappingAware
 	@Override
 	public Tuple mapOutput(PmmlAnalytic<Tuple, Tuple> analytic, Tuple input, Map<FieldName, Object> modelOutput) {
 
-		List<String> outputNames = new ArrayList<String>(input.getFieldNames());
-		List<Object> outputValues = new ArrayList<Object>(input.getValues());
+		if (customOutputEntryMapping) {
+
+			List<String> outputNames = new ArrayList<String>(input.getFieldNames());
+			List<Object> outputValues = new ArrayList<Object>(input.getValues());
+
+			addOutputEntries(analytic, modelOutput, outputNames, outputValues);
+
+			return TupleBuilder.tuple().ofNamesAndValues(outputNames, outputValues);
+		}
+
+		Map<FieldName, Object> enhancedModelOutput = enhanceResultIfNecessary(analytic, resultFields, modelOutput);
+
+		ResultFields fields = mappedResultFields != null ? mappedResultFields
+				: getModelResultFields(enhancedModelOutput);
+		List<FieldName> resultFieldNames = fields.resultFieldNames;
+
+		List<Object> inputValues = input.getValues();
+		OutputLayout layout = getOutputLayout(input.getFieldNames(), fields.outputFieldNames);
+
+		Object[] outputValues = new Object[layout.outputNames.size()];
+		for (int i = 0; i < inputValues.size(); i++) {
+			outputValues[i] = inputValues.get(i);
+		}
+
+		int[] positions = layout.positions;
+		for (int i = 0; i < positions.length; i++) {
+			outputValues[positions[i]] = enhancedModelOutput.get(resultFieldNames.get(i));
+		}
+
+		return TupleBuilder.tuple().ofNamesAndValues(layout.outputNames, Arrays.asList(outputValues));
+	}
+
+	/**
+	 * Returns the result fields of the given {@code modelOutput} without an output field mapping. The result fields are
+	 * resolved from the first output and reused as long as the outputs have the same fields, so another
+	 * {@link Evaluator} or a model that produces other fields is detected by the fields themselves.
+	 * 
+	 * @param modelOutput must not be {@literal null}.
+	 * @return
+	 */
+	private ResultFields getModelResultFields(Map<FieldName, Object> modelOutput) {
+
+		ResultFields fields = modelResultFields;
+		if (fields != null && fields.matches(modelOutput)) {
+			return fields;
+		}
+
+		List<FieldName> resultFieldNames = new ArrayList<FieldName>(modelOutput.keySet());
+
+		fields = new ResultFields(resultFieldNames, getOutputFieldNames(resultFieldNames));
+		modelResultFields = fields;
+
+		return fields;
+	}
+
+	/**
+	 * Returns the {@link OutputLayout} for the given input and output field names, resolving a new one if the input
+	 * {@link org.springframework.xd.tuple.Tuple} schema is not cached yet or the output fields changed. Output field
+	 * names are resolved once per set of result fields, so other output fields are detected by the identity of the
+	 * given {@code outputFieldNames}.
+	 * 
+	 * @param inputFieldNames must not be {@literal null}.
+	 * @param outputFieldNames must not be {@literal null}.
+	 * @return
+	 */
+	OutputLayout getOutputLayout(List<String> inputFieldNames, List<String> outputFieldNames) {
+
+		OutputLayout layout = schemaCache.get(inputFieldNames);
+		if (layout == null || layout.outputFieldNames != outputFieldNames) {
+			layout = new OutputLayout(inputFieldNames, outputFieldNames);
+			schemaCache.put(inputFieldNames, layout);
+		}
+
+		return layout;
+	}
+
+	@Override
+	public SchemaCache<?> getSchemaCache() {
+		return schemaCache;
+	}
+
+	/**
+	 * Returns the output field names for the given {@code resultFieldNames} with the mapping and prefix applied.
+	 * 
+	 * @param resultFieldNames must not be {@literal null}.
+	 * @return
+	 */
+	private List<String> getOutputFieldNames(List<FieldName> resultFieldNames) {
+
+		List<String> names = new ArrayList<String>(resultFieldNames.size());
+		for (FieldName resultField : resultFieldNames) {
+
+			String outputFieldName = resultFieldToOutputFieldNameMapping == null ? resultField.getValue()
+					: resultFieldToOutputFieldNameMapping.get(resultField.getValue());
+
+			names.add(outputFieldPrefix == null ? outputFieldName : outputFieldPrefix + outputFieldName);
+		}
+
+		return names;
+	}
+
+	/**
+	 * Adds the entries of the given {@code modelOutput} to the given {@code outputNames} and {@code outputValues}
+	 * {@link List}s, so that the outputs of several models can be collected into one
+	 * {@link org.springframework.xd.tuple.Tuple}.
+	 * 
+	 * @param analytic
+	 * @param modelOutput
+	 * @param outputNames
+	 * @param outputValues
+	 */
+	void addOutputEntries(PmmlAnalytic<Tuple, Tuple> analytic, Map<FieldName, Object> modelOutput,
+			List<String> outputNames, List<Object> outputValues) {
 
 		Map<FieldName,Object> enhancedModelOutput = enhanceResultIfNecessary(analytic, resultFields, modelOutput);
 
 		addOutputEntriesFromModelOutput(enhancedModelOutput, outputNames, outputValues);
-
-		return TupleBuilder.tuple().ofNamesAndValues(outputNames, outputValues);
 	}
 
 	/**
@@ -124,6 +271,10 @@ public class TuplePmmlAnalyticOutputDataMapper extends AbstractFieldMappingAware
 			String outputFieldName = resultFieldToOutputFieldNameMapping == null ? resultField.getValue()
 					: resultFieldToOutputFieldNameMapping.get(resultField.getValue());
 
+			if (outputFieldPrefix != null) {
+				outputFieldName = outputFieldPrefix + outputFieldName;
+			}
+
 			int fieldIndex = outputNames.indexOf(outputFieldName);
 			if (fieldIndex != -1) {
 				outputValues.set(fieldIndex, outputValue);
@@ -134,4 +285,95 @@ public class TuplePmmlAnalyticOutputDataMapper extends AbstractFieldMappingAware
 			}
 		}
 	}
+
+	/**
+	 * The result fields of a model together with their output field names.
+	 */
+	static class ResultFields {
+
+		private final List<FieldName> resultFieldNames;
+
+		private final List<String> outputFieldNames;
+
+		ResultFields(List<FieldName> resultFieldNames, List<String> outputFieldNames) {
+			this.resultFieldNames = resultFieldNames;
+			this.outputFieldNames = outputFieldNames;
+		}
+
+		/**
+		 * @param modelOutput must not be {@literal null}.
+		 * @return whether the given {@code modelOutput} has exactly these result fields.
+		 */
+		boolean matches(Map<FieldName, Object> modelOutput) {
+
+			if (resultFieldNames.size() != modelOutput.size()) {
+				return false;
+			}
+
+			for (int i = 0; i < resultFieldNames.size(); i++) {
+				if (!modelOutput.containsKey(resultFieldNames.get(i))) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+
+	/**
+	 * The positions of the output fields within the result {@link org.springframework.xd.tuple.Tuple} for a particular
+	 * input {@code Tuple} schema. Output fields that are already present in the input overwrite the input value, all
+	 * other output fields are appended in order.
+	 */
+	static class OutputLayout {
+
+		private final List<String> outputFieldNames;
+
+		private final List<String> outputNames;
+
+		private final int[] positions;
+
+		OutputLayout(List<String> inputFieldNames, List<String> outputFieldNames) {
+
+			this.outputFieldNames = outputFieldNames;
+
+			Map<String, Integer> namePositions = new HashMap<String, Integer>((int) ((inputFieldNames.size() + outputFieldNames
+					.size()) / 0.75f) + 1);
+			List<String> names = new ArrayList<String>(inputFieldNames.size() + outputFieldNames.size());
+
+			for (String inputFieldName : inputFieldNames) {
+
+				if (!namePositions.containsKey(inputFieldName)) {
+					namePositions.put(inputFieldName, names.size());
+				}
+
+				names.add(inputFieldName);
+			}
+
+			this.positions = new int[outputFieldNames.size()];
+			for (int i = 0; i < positions.length; i++) {
+
+				String outputFieldName = outputFieldNames.get(i);
+
+				Integer position = namePositions.get(outputFieldName);
+				if (position == null) {
+					position = names.size();
+					namePositions.put(outputFieldName, position);
+					names.add(outputFieldName);
+				}
+
+				positions[i] = position;
+			}
+
+			this.outputNames = Collections.unmodifiableList(names);
+		}
+
+		List<String> getOutputNames() {
+			return outputNames;
+		}
+
+		int[] getPositions() {
+			return positions;
+		}
+	}
 }
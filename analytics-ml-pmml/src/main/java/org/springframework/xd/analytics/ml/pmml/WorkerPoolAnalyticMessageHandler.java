@@ -0,0 +1,356 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.integration.handler.AbstractMessageHandler;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+import org.springframework.xd.analytics.ml.Analytic;
+
+/**
+ * A {@link org.springframework.messaging.MessageHandler} that evaluates the payloads of incoming messages with an
+ * {@link Analytic} on a bounded pool of worker threads and sends the results to an output channel, so a single module
+ * instance can use all cores while the caller thread is free to receive the next message.
+ * <p>
+ * At most {@code workers + queueCapacity} messages are in flight, further messages block the caller until a result was
+ * sent, which propagates backpressure to the upstream consumer. With {@code preserveOrder} the results are sent in the
+ * order the messages were received, otherwise as soon as they are available. Evaluation errors are passed to the
+ * {@link ErrorHandler} as {@link MessageHandlingException}s.
+ * </p>
+ * <p>
+ * On {@link #destroy()} the queued messages are still evaluated for up to {@code shutdownTimeout} milliseconds, the
+ * messages that were not evaluated by then are dropped and passed to the {@link ErrorHandler}.
+ * </p>
+ */
+public class WorkerPoolAnalyticMessageHandler<I, O> extends AbstractMessageHandler implements DisposableBean {
+
+	private static final Log LOG = LogFactory.getLog(WorkerPoolAnalyticMessageHandler.class);
+
+	static final long DEFAULT_SHUTDOWN_TIMEOUT = 10000;
+
+	private final Analytic<I, O> analytic;
+
+	private final MessageChannel outputChannel;
+
+	private final boolean preserveOrder;
+
+	private final ThreadPoolExecutor executor;
+
+	private final int maxInFlight;
+
+	private final Semaphore permits;
+
+	private final Queue<PendingEvaluation> pendingEvaluations = new ArrayDeque<PendingEvaluation>();
+
+	//guarded by the monitor of the pending evaluations, only one thread sends the results in order at a time.
+	private boolean sendingInOrder;
+
+	private volatile long shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
+
+	private volatile ErrorHandler errorHandler = new ErrorHandler() {
+
+		@Override
+		public void handleError(Throwable t) {
+			LOG.error("Could not evaluate message", t);
+		}
+	};
+
+	/**
+	 * Creates a new {@link WorkerPoolAnalyticMessageHandler}.
+	 *
+	 * @param analytic must not be {@literal null}
+	 * @param outputChannel must not be {@literal null}
+	 * @param workers the number of worker threads, {@literal 0} uses one thread per available processor.
+	 * @param queueCapacity the number of messages that may wait for a worker before the caller is blocked.
+	 * @param preserveOrder whether to send the results in the order the messages were received.
+	 */
+	public WorkerPoolAnalyticMessageHandler(Analytic<I, O> analytic, MessageChannel outputChannel, int workers,
+			int queueCapacity, boolean preserveOrder) {
+
+		Assert.notNull(analytic, "analytic");
+		Assert.notNull(outputChannel, "outputChannel");
+		Assert.isTrue(workers >= 0, "workers must not be negative");
+		Assert.isTrue(queueCapacity >= 0, "queueCapacity must not be negative");
+
+		int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+
+		this.analytic = analytic;
+		this.outputChannel = outputChannel;
+		this.preserveOrder = preserveOrder;
+		this.maxInFlight = threads + queueCapacity;
+		this.permits = new Semaphore(maxInFlight);
+
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pmml-worker-");
+		threadFactory.setDaemon(true);
+
+		//the permits bound the number of queued evaluations.
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), threadFactory);
+	}
+
+	/**
+	 * @param errorHandler must not be {@literal null}
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+
+		Assert.notNull(errorHandler, "errorHandler");
+
+		this.errorHandler = errorHandler;
+	}
+
+	/**
+	 * @param shutdownTimeout the time in milliseconds to wait for the evaluation of queued messages on
+	 *          {@link #destroy()}, must not be negative.
+	 */
+	public void setShutdownTimeout(long shutdownTimeout) {
+
+		Assert.isTrue(shutdownTimeout >= 0, "shutdownTimeout must not be negative");
+
+		this.shutdownTimeout = shutdownTimeout;
+	}
+
+	/**
+	 * @return the number of worker threads.
+	 */
+	public int getWorkers() {
+		return executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * @return the number of messages that were received but whose result was not sent yet.
+	 */
+	public int getInFlightCount() {
+		return maxInFlight - permits.availablePermits();
+	}
+
+	@Override
+	public String getComponentType() {
+		return "analytic-worker-pool";
+	}
+
+	@Override
+	protected void handleMessageInternal(Message<?> message) throws Exception {
+
+		permits.acquire();
+
+		PendingEvaluation evaluation = new PendingEvaluation(message);
+
+		try {
+
+			if (preserveOrder) {
+				synchronized (pendingEvaluations) {
+					pendingEvaluations.add(evaluation);
+					executor.execute(evaluation);
+				}
+			}
+			else {
+				executor.execute(evaluation);
+			}
+		}
+		catch (RejectedExecutionException ex) {
+
+			if (preserveOrder) {
+				synchronized (pendingEvaluations) {
+					pendingEvaluations.remove(evaluation);
+				}
+			}
+
+			permits.release();
+
+			throw new MessageHandlingException(message, "Worker pool is shut down", ex);
+		}
+	}
+
+	/**
+	 * Sends the results of all completed evaluations at the head of the pending evaluations. The evaluations are polled
+	 * under the monitor of the pending evaluations but sent outside of it, so that workers can complete further
+	 * evaluations while a result is sent. If another thread is already sending, it also sends the results completed in
+	 * the meantime.
+	 */
+	private void sendCompletedInOrder() {
+
+		synchronized (pendingEvaluations) {
+
+			if (sendingInOrder) {
+				return;
+			}
+
+			sendingInOrder = true;
+		}
+
+		try {
+
+			for (;;) {
+
+				PendingEvaluation evaluation;
+				synchronized (pendingEvaluations) {
+
+					evaluation = pendingEvaluations.peek();
+					if (evaluation == null || !evaluation.completed) {
+						sendingInOrder = false;
+						return;
+					}
+
+					pendingEvaluations.poll();
+				}
+
+				send(evaluation);
+			}
+		}
+		catch (RuntimeException ex) {
+
+			synchronized (pendingEvaluations) {
+				sendingInOrder = false;
+			}
+
+			throw ex;
+		}
+	}
+
+	private void send(PendingEvaluation evaluation) {
+
+		try {
+
+			if (evaluation.error != null) {
+				errorHandler.handleError(new MessageHandlingException(evaluation.message, "Could not evaluate message",
+						evaluation.error));
+			}
+			else {
+				outputChannel.send(MessageBuilder.withPayload(evaluation.result).copyHeaders(evaluation.message.getHeaders())
+						.build());
+			}
+		}
+		catch (RuntimeException ex) {
+			errorHandler.handleError(new MessageHandlingException(evaluation.message, "Could not send result", ex));
+		}
+		finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Stops accepting messages and waits up to {@code shutdownTimeout} milliseconds for the queued messages to be
+	 * evaluated. Messages that were not evaluated by then are dropped and passed to the {@link ErrorHandler}.
+	 */
+	@Override
+	public void destroy() {
+
+		executor.shutdown();
+
+		try {
+			if (executor.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS)) {
+				return;
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+
+		List<Runnable> dropped = executor.shutdownNow();
+		if (dropped.isEmpty()) {
+			return;
+		}
+
+		LOG.warn(String.format("Dropped %d queued messages that were not evaluated within %d ms after shutdown",
+				dropped.size(), shutdownTimeout));
+
+		for (Runnable task : dropped) {
+			((WorkerPoolAnalyticMessageHandler<?, ?>.PendingEvaluation) task).complete(null,
+					new IllegalStateException("Worker pool was shut down before the message was evaluated"));
+		}
+	}
+
+	/**
+	 * The evaluation of a single {@link Message}.
+	 */
+	private class PendingEvaluation implements Runnable {
+
+		private final Message<?> message;
+
+		private Object result;
+
+		private Throwable error;
+
+		//guarded by the monitor of the pending evaluations.
+		private boolean completed;
+
+		PendingEvaluation(Message<?> message) {
+			this.message = message;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void run() {
+
+			Object evaluationResult = null;
+			Throwable evaluationError = null;
+
+			try {
+				evaluationResult = analytic.evaluate((I) message.getPayload());
+			}
+			catch (Throwable t) {
+				evaluationError = t;
+			}
+
+			complete(evaluationResult, evaluationError);
+		}
+
+		/**
+		 * Records the outcome of this evaluation and sends it, with {@code preserveOrder} once all earlier evaluations
+		 * were sent.
+		 *
+		 * @param evaluationResult
+		 * @param evaluationError
+		 */
+		void complete(Object evaluationResult, Throwable evaluationError) {
+
+			if (!preserveOrder) {
+
+				this.result = evaluationResult;
+				this.error = evaluationError;
+
+				send(this);
+				return;
+			}
+
+			synchronized (pendingEvaluations) {
+				this.result = evaluationResult;
+				this.error = evaluationError;
+				this.completed = true;
+			}
+
+			sendCompletedInOrder();
+		}
+	}
+}
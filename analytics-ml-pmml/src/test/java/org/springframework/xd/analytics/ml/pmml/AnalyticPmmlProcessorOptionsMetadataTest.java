@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class AnalyticPmmlProcessorOptionsMetadataTest {
+
+	@Test
+	public void testShadowLocationShouldBeRejectedWithSeveralModels() {
+
+		AnalyticPmmlProcessorOptionsMetadata options = new AnalyticPmmlProcessorOptionsMetadata();
+		options.setShadowLocation("classpath:candidate.pmml.xml");
+
+		options.setModelName("first");
+		assertThat(options.isShadowLocationWithSingleModel(), is(true));
+
+		options.setModelName("first,second");
+		assertThat(options.isShadowLocationWithSingleModel(), is(false));
+
+		options.setShadowLocation(null);
+		assertThat(options.isShadowLocationWithSingleModel(), is(true));
+	}
+
+	@Test
+	public void testInputValidationShouldBeRejectedWithSeveralModels() {
+
+		AnalyticPmmlProcessorOptionsMetadata options = new AnalyticPmmlProcessorOptionsMetadata();
+		options.setValidateInput(true);
+
+		options.setModelName("first");
+		assertThat(options.isValidateInputWithSingleModel(), is(true));
+		assertThat(Arrays.asList(options.profilesToActivate()),
+				contains(AnalyticPmmlProcessorOptionsMetadata.INPUT_VALIDATION_PROFILE));
+
+		options.setModelName("first,second");
+		assertThat(options.isValidateInputWithSingleModel(), is(false));
+
+		options.setValidateInput(false);
+		assertThat(options.isValidateInputWithSingleModel(), is(true));
+	}
+}
@@ -51,4 +51,66 @@ public class AssociationAnalysisPmmlAnalyticTest extends AbstractPmmlAnalyticTes
 		Collection<String> predicted = (Collection<String>) output.getValue("Predicted_item");
 		assertThat(predicted, hasItems("Pencil"));
 	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testEvaluateAssociationRulesShouldRecommendConsequentsOfBestRules() {
+
+		Analytic<Tuple, Tuple> analytic = useAnalytic("shopping-association-rules-2",null,
+				new TuplePmmlAnalyticInputDataMapper(null),
+				new AssociationTuplePmmlAnalyticOutputDataMapper(Arrays.asList("Predicted_item"), 2));
+
+		Tuple output = analytic.evaluate(objectToTuple(new Object() {
+
+			Collection<String> item = Arrays.asList("Choclates");
+		}));
+
+		Collection<String> predicted = (Collection<String>) output.getValue("Predicted_item");
+		assertThat(predicted, is((Collection<String>) Arrays.asList("Pencil", "Coke", "Cookies")));
+
+		output = analytic.evaluate(objectToTuple(new Object() {
+
+			Collection<String> item = Arrays.asList("Eraser");
+		}));
+
+		predicted = (Collection<String>) output.getValue("Predicted_item");
+		assertThat(predicted.isEmpty(), is(true));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testEvaluateAssociationRulesShouldRecommendConsequentOfBestRuleByDefault() {
+
+		Analytic<Tuple, Tuple> analytic = useAnalytic("shopping-association-rules-2",null,
+				new TuplePmmlAnalyticInputDataMapper(null),
+				new AssociationTuplePmmlAnalyticOutputDataMapper(Arrays.asList("Predicted_item")));
+
+		Tuple output = analytic.evaluate(objectToTuple(new Object() {
+
+			Collection<String> item = Arrays.asList("Choclates");
+		}));
+
+		Collection<String> predicted = (Collection<String>) output.getValue("Predicted_item");
+		assertThat(predicted, is((Collection<String>) Arrays.asList("Pencil")));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testEvaluateAssociationRulesShouldNotRecommendItemsOfTheInput() {
+
+		Analytic<Tuple, Tuple> analytic = useAnalytic("shopping-association-rules-2",null,
+				new TuplePmmlAnalyticInputDataMapper(null),
+				new AssociationTuplePmmlAnalyticOutputDataMapper(Arrays.asList("Predicted_item")));
+
+		Tuple output = analytic.evaluate(objectToTuple(new Object() {
+
+			Collection<String> item = Arrays.asList("Choclates", "Pencil");
+		}));
+
+		// the best rule Choclates -> Pencil is skipped since Pencil is already part of the input, Pencil -> Eraser is next
+		Collection<String> predicted = (Collection<String>) output.getValue("Predicted_item");
+		assertThat(predicted, is((Collection<String>) Arrays.asList("Eraser")));
+		assertThat(predicted, not(hasItems("Choclates")));
+		assertThat(predicted, not(hasItems("Pencil")));
+	}
 }
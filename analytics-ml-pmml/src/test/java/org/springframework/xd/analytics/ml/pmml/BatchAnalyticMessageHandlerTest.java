@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.ErrorHandler;
+import org.springframework.xd.analytics.ml.Analytic;
+
+public class BatchAnalyticMessageHandlerTest {
+
+	private final QueueChannel output = new QueueChannel();
+
+	@Test
+	public void testShouldEmitOneResultPerMessageWithItsHeaders() {
+
+		BatchAnalyticMessageHandler<Integer, Integer> handler = new BatchAnalyticMessageHandler<Integer, Integer>(
+				new NegatingAnalytic(), output);
+
+		handler.handleMessage(batchOf(1, 2, 3));
+
+		for (int i = 1; i <= 3; i++) {
+
+			Message<?> result = output.receive(0);
+			assertThat(result.getPayload(), is((Object) (-i)));
+			assertThat(result.getHeaders().get("input"), is((Object) i));
+		}
+
+		assertThat(output.receive(0), is(nullValue()));
+	}
+
+	@Test
+	public void testShouldPassOnlyTheFailedMessageToTheErrorHandler() {
+
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+		BatchAnalyticMessageHandler<Integer, Integer> handler = new BatchAnalyticMessageHandler<Integer, Integer>(
+				new NegatingAnalytic(), output);
+		handler.setErrorHandler(new ErrorHandler() {
+
+			@Override
+			public void handleError(Throwable t) {
+				errors.add(t);
+			}
+		});
+
+		handler.handleMessage(batchOf(1, 0, 3));
+
+		assertThat(output.receive(0).getPayload(), is((Object) (-1)));
+		assertThat(output.receive(0).getPayload(), is((Object) (-3)));
+		assertThat(output.receive(0), is(nullValue()));
+
+		assertThat(errors.size(), is(1));
+		assertThat(errors.get(0), is(instanceOf(MessageHandlingException.class)));
+
+		Message<?> failedMessage = ((MessageHandlingException) errors.get(0)).getFailedMessage();
+		assertThat(failedMessage.getPayload(), is((Object) 0));
+		assertThat(failedMessage.getHeaders().get("input"), is((Object) 0));
+	}
+
+	private static Message<List<Message<Integer>>> batchOf(int... inputs) {
+
+		List<Message<Integer>> messages = new ArrayList<Message<Integer>>(inputs.length);
+		for (int input : inputs) {
+			messages.add(MessageBuilder.withPayload(input).setHeader("input", input).build());
+		}
+
+		return MessageBuilder.withPayload(messages).build();
+	}
+
+	/**
+	 * Negates its input and rejects {@literal 0}.
+	 */
+	static class NegatingAnalytic implements Analytic<Integer, Integer> {
+
+		@Override
+		public Integer evaluate(Integer input) {
+
+			if (input == 0) {
+				throw new IllegalArgumentException("zero");
+			}
+
+			return -input;
+		}
+	}
+}
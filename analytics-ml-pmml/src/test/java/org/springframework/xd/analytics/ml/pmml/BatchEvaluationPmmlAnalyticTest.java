@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.xd.tuple.TupleBuilder.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.xd.tuple.Tuple;
+
+public class BatchEvaluationPmmlAnalyticTest extends AbstractPmmlAnalyticTest {
+
+	@Test
+	public void testEvaluateAllShouldReturnOutputsInInputOrder() {
+
+		TuplePmmlAnalytic analytic = (TuplePmmlAnalytic) useAnalytic("iris-flower-classification-naive-bayes-1", null,
+				Arrays.asList("Predicted_Species:predictedSpecies"));
+
+		List<Tuple> inputs = new ArrayList<Tuple>();
+		inputs.add(tuple().of("Sepal.Length", 6.4, "Sepal.Width", 3.2, "Petal.Length", 4.5, "Petal.Width", 1.5));
+		inputs.add(tuple().of("Sepal.Length", 6.9, "Sepal.Width", 3.1, "Petal.Length", 5.4, "Petal.Width", 2.1));
+		inputs.add(tuple().of("Sepal.Length", 6.4, "Sepal.Width", 3.2, "Petal.Length", 4.5, "Petal.Width", 1.5));
+
+		List<Tuple> outputs = analytic.evaluateAll(inputs);
+
+		assertThat(outputs.size(), is(3));
+		assertThat(outputs.get(0).getString("predictedSpecies"), is("versicolor"));
+		assertThat(outputs.get(1).getString("predictedSpecies"), is("virginica"));
+		assertThat(outputs.get(2).getString("predictedSpecies"), is("versicolor"));
+	}
+
+	@Test
+	public void testEvaluateAllShouldProduceSameResultsAsSingleEvaluation() {
+
+		TuplePmmlAnalytic analytic = (TuplePmmlAnalytic) useAnalytic("interest-rate-simple-linear-regression-1", null,
+				Arrays.asList("rate"));
+
+		List<Tuple> inputs = new ArrayList<Tuple>();
+		for (int year = 2000; year < 2020; year++) {
+			inputs.add(tuple().of("year", year));
+		}
+
+		List<Tuple> outputs = analytic.evaluateAll(inputs);
+
+		for (int i = 0; i < inputs.size(); i++) {
+			assertEquals(analytic.evaluate(inputs.get(i)).getDouble("rate"), outputs.get(i).getDouble("rate"), 0.0);
+		}
+	}
+
+	@Test
+	public void testEvaluateAllShouldHandleEmptyBatch() {
+
+		TuplePmmlAnalytic analytic = (TuplePmmlAnalytic) useAnalytic("interest-rate-simple-linear-regression-1", null,
+				Arrays.asList("rate"));
+
+		assertThat(analytic.evaluateAll(Collections.<Tuple> emptyList()).isEmpty(), is(true));
+	}
+}
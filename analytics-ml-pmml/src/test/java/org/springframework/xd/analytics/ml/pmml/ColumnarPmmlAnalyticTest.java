@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.xd.tuple.TupleBuilder.*;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ColumnarPmmlAnalyticTest extends AbstractPmmlAnalyticTest {
+
+	private ColumnarPmmlAnalytic analytic;
+
+	@After
+	public void tearDown() {
+
+		if (analytic != null) {
+			analytic.destroy();
+		}
+	}
+
+	@Test
+	public void testShouldScoreColumnsLikeTuples() {
+
+		analytic = new ColumnarPmmlAnalytic("iris-flower-classification-naive-bayes-1",
+				"classpath:analytics/pmml/iris-flower-classification-naive-bayes-1.pmml.xml", new ResourcePmmlLoader(),
+				"sepalLength:Sepal.Length,sepalWidth:Sepal.Width,petalLength:Petal.Length,petalWidth:Petal.Width",
+				"Predicted_Species:predictedSpecies");
+
+		double[] sepalLength = { 6.4, 5.1, 6.3 };
+		double[] sepalWidth = { 3.2, 3.5, 3.3 };
+		double[] petalLength = { 4.5, 1.4, 6.0 };
+		double[] petalWidth = { 1.5, 0.2, 2.5 };
+
+		ColumnarBatch results = analytic.evaluateBatch(new ColumnarBatch(Arrays.asList("sepalLength", "sepalWidth",
+				"petalLength", "petalWidth"), sepalLength, sepalWidth, petalLength, petalWidth));
+
+		TuplePmmlAnalytic tupleAnalytic = (TuplePmmlAnalytic) useAnalytic("iris-flower-classification-naive-bayes-1",
+				Arrays.asList("sepalLength:Sepal.Length", "sepalWidth:Sepal.Width", "petalLength:Petal.Length",
+						"petalWidth:Petal.Width"), Arrays.asList("Predicted_Species:predictedSpecies"));
+		try {
+
+			Object[] predictedSpecies = (Object[]) results.getColumn("predictedSpecies");
+			for (int i = 0; i < sepalLength.length; i++) {
+				assertThat(predictedSpecies[i], is((Object) tupleAnalytic.evaluate(
+						tuple().of("sepalLength", sepalLength[i], "sepalWidth", sepalWidth[i], "petalLength",
+								petalLength[i], "petalWidth", petalWidth[i])).getString("predictedSpecies")));
+			}
+		}
+		finally {
+			tupleAnalytic.destroy();
+		}
+
+		assertThat(results.getColumnNames(), contains("predictedSpecies"));
+		assertThat(analytic.getMetrics().getEvaluationCount(), is(3L));
+	}
+
+	@Test
+	public void testShouldWriteFloatingPointResultsToPrimitiveColumns() {
+
+		analytic = new ColumnarPmmlAnalytic(null,
+				"classpath:analytics/pmml/interest-rate-simple-linear-regression-1.pmml.xml", new ResourcePmmlLoader(),
+				(String) null, (String) null);
+
+		ColumnarBatch results = analytic.evaluateBatch(new ColumnarBatch(Arrays.asList("year"), new int[] { 2015,
+				2016 }));
+
+		assertThat(results.getColumnNames(), contains("rate", "Predicted_rate"));
+		assertThat(results.getColumn("rate"), is(instanceOf(double[].class)));
+		assertEquals(-1.367, ((double[]) results.getColumn("rate"))[0], 0.0001);
+		assertThat(results.getValue(1, 1), is(results.getValue(0, 1)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testColumnsOfDifferentLengthShouldBeRejected() {
+		new ColumnarBatch(Arrays.asList("a", "b"), new double[2], new String[3]);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.dmg.pmml.FieldName;
+import org.dmg.pmml.MiningModel;
+import org.dmg.pmml.Node;
+import org.dmg.pmml.PMML;
+import org.dmg.pmml.TreeModel;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.EvaluatorUtil;
+import org.jpmml.evaluator.ModelEvaluatorFactory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompactingUnmarshallerListenerTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private String modelLocation;
+
+	@Before
+	public void setup() throws Exception {
+
+		File ensemble = temporaryFolder.newFile("tree-ensemble.pmml.xml");
+		new TreeEnsembleGenerator(50, 4).writeTo(ensemble);
+
+		modelLocation = ensemble.toURI().toString();
+	}
+
+	@Test
+	public void testCompactedModelShouldEvaluateLikeParsedModel() {
+
+		Evaluator parsed = createEvaluator(loadPmml(false));
+		Evaluator compacted = createEvaluator(loadPmml(true));
+
+		Random random = new Random(42);
+		for (int i = 0; i < 200; i++) {
+
+			Map<FieldName, Object> input = new HashMap<FieldName, Object>();
+			for (FieldName activeField : parsed.getActiveFields()) {
+				input.put(activeField, EvaluatorUtil.prepare(parsed, activeField, random.nextDouble() * 10));
+			}
+
+			assertThat(compacted.evaluate(input), is((Object) parsed.evaluate(input)));
+		}
+	}
+
+	@Test
+	public void testCompactedModelShouldShareRepeatedValues() {
+
+		MiningModel compacted = (MiningModel) loadPmml(true).getModels().get(0);
+		MiningModel parsed = (MiningModel) loadPmml(false).getModels().get(0);
+
+		Node firstCompactedRoot = ((TreeModel) compacted.getSegmentation().getSegments().get(0).getModel()).getNode();
+		Node secondCompactedRoot = ((TreeModel) compacted.getSegmentation().getSegments().get(1).getModel()).getNode();
+
+		assertThat(firstCompactedRoot.getId(), is(sameInstance(secondCompactedRoot.getId())));
+		assertThat(firstCompactedRoot.getLocator(), is(nullValue()));
+
+		Node firstParsedRoot = ((TreeModel) parsed.getSegmentation().getSegments().get(0).getModel()).getNode();
+		Node secondParsedRoot = ((TreeModel) parsed.getSegmentation().getSegments().get(1).getModel()).getNode();
+
+		assertThat(firstParsedRoot.getId(), is(secondParsedRoot.getId()));
+		assertThat(firstParsedRoot.getId(), is(not(sameInstance(secondParsedRoot.getId()))));
+	}
+
+	private PMML loadPmml(boolean compactModels) {
+
+		ResourcePmmlLoader loader = new ResourcePmmlLoader();
+		loader.setCompactModels(compactModels);
+
+		return loader.loadPmml(modelLocation);
+	}
+
+	private static Evaluator createEvaluator(PMML pmml) {
+		return (Evaluator) ModelEvaluatorFactory.getInstance().getModelManager(pmml, pmml.getModels().get(0));
+	}
+}
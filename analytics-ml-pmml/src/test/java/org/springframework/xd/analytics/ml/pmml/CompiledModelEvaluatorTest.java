@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.xd.tuple.TupleBuilder.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.dmg.pmml.FieldName;
+import org.dmg.pmml.Model;
+import org.dmg.pmml.PMML;
+import org.jpmml.evaluator.ClassificationMap;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.EvaluatorUtil;
+import org.jpmml.evaluator.ModelEvaluatorFactory;
+import org.junit.Test;
+import org.springframework.xd.tuple.Tuple;
+
+/**
+ * Compares the results of the compiled {@link Evaluator}s with the results of jpmml.
+ */
+public class CompiledModelEvaluatorTest {
+
+	private static final int INPUT_COUNT = 500;
+
+	@Test
+	public void testCompiledRegressionShouldMatchJpmml() {
+
+		assertCompiledMatchesJpmml("interest-rate-simple-linear-regression-1", null, 1900, 2100);
+		assertCompiledMatchesJpmml("iris-flower-simple-linear-regression-1", null, 0, 8);
+	}
+
+	@Test
+	public void testCompiledClusteringShouldMatchJpmml() {
+
+		assertCompiledMatchesJpmml("iris-kmeans-clustering-1", null, 0, 8);
+		assertCompiledMatchesJpmml("multiple-models", "KMeans_Model1", 0, 8);
+		assertCompiledMatchesJpmml("multiple-models", "KMeans_Model2", 0, 8);
+	}
+
+	@Test
+	public void testCompiledEvaluatorShouldDelegateMissingValuesToJpmml() {
+
+		Evaluator compiled = createEvaluator("iris-kmeans-clustering-1", null, true);
+		Evaluator jpmml = createEvaluator("iris-kmeans-clustering-1", null, false);
+
+		Map<FieldName, Object> input = new HashMap<FieldName, Object>();
+		input.put(new FieldName("Sepal.Length"), EvaluatorUtil.prepare(compiled, new FieldName("Sepal.Length"), 5.1));
+		input.put(new FieldName("Petal.Length"), EvaluatorUtil.prepare(compiled, new FieldName("Petal.Length"), 1.4));
+
+		assertSameResult(compiled.evaluate(input), jpmml.evaluate(input));
+	}
+
+	@Test
+	public void testShouldUseJpmmlForOtherModelTypes() {
+
+		Evaluator evaluator = createEvaluator("iris-flower-classification-naive-bayes-1", null, true);
+
+		assertThat(evaluator, is(not(instanceOf(CompiledRegressionModelEvaluator.class))));
+		assertThat(evaluator, is(not(instanceOf(CompiledClusteringModelEvaluator.class))));
+	}
+
+	@Test
+	public void testCompiledAnalyticShouldProduceSameOutput() {
+
+		String location = "classpath:analytics/pmml/iris-kmeans-clustering-1.pmml.xml";
+		String outputMapping = "predictedValue:cluster,clusterAffinity_1:affinity";
+
+		TuplePmmlAnalytic jpmml = new TuplePmmlAnalytic(null, location, new ResourcePmmlLoader(), null, outputMapping);
+		CompiledTuplePmmlAnalytic compiled = new CompiledTuplePmmlAnalytic(null, location, new ResourcePmmlLoader(),
+				null, outputMapping);
+
+		try {
+			assertThat(compiled.getPmmlEvaluator(), is(instanceOf(CompiledClusteringModelEvaluator.class)));
+			assertThat(((CompiledClusteringModelEvaluator) compiled.getPmmlEvaluator()).isCompiled(), is(true));
+
+			Tuple input = tuple().of("Sepal.Length", 6.4, "Sepal.Width", 3.2, "Petal.Length", 4.5, "Petal.Width", 1.5);
+
+			assertThat(compiled.evaluate(input).getValues(), is(jpmml.evaluate(input).getValues()));
+		}
+		finally {
+			jpmml.destroy();
+			compiled.destroy();
+		}
+	}
+
+	private void assertCompiledMatchesJpmml(String document, String modelName, double min, double max) {
+
+		Evaluator compiled = createEvaluator(document, modelName, true);
+		Evaluator jpmml = createEvaluator(document, modelName, false);
+
+		assertThat(compiled.getClass().getSimpleName(), startsWith("Compiled"));
+		assertThat(compiled instanceof CompiledRegressionModelEvaluator ? ((CompiledRegressionModelEvaluator) compiled)
+				.isCompiled() : ((CompiledClusteringModelEvaluator) compiled).isCompiled(), is(true));
+
+		Random random = new Random(42);
+		for (int i = 0; i < INPUT_COUNT; i++) {
+
+			Map<FieldName, Object> input = new HashMap<FieldName, Object>();
+			for (FieldName activeField : jpmml.getActiveFields()) {
+				input.put(activeField, EvaluatorUtil.prepare(jpmml, activeField, min + random.nextDouble() * (max - min)));
+			}
+
+			assertSameResult(compiled.evaluate(input), jpmml.evaluate(input));
+		}
+	}
+
+	private static void assertSameResult(Map<FieldName, ?> actual, Map<FieldName, ?> expected) {
+
+		assertThat(actual.keySet(), is(expected.keySet()));
+
+		for (Map.Entry<FieldName, ?> entry : expected.entrySet()) {
+
+			Object actualValue = actual.get(entry.getKey());
+			Object expectedValue = entry.getValue();
+
+			if (expectedValue instanceof Double) {
+				assertEquals((Double) expectedValue, (Double) actualValue, 1e-9);
+			}
+			else if (expectedValue instanceof ClassificationMap) {
+
+				ClassificationMap<?> actualMap = (ClassificationMap<?>) actualValue;
+				ClassificationMap<?> expectedMap = (ClassificationMap<?>) expectedValue;
+
+				assertThat(actualMap.getResult(), is(expectedMap.getResult()));
+				assertThat(actualMap.keySet(), is((Object) expectedMap.keySet()));
+
+				for (Object key : expectedMap.keySet()) {
+					assertEquals(expectedMap.get(key), actualMap.get(key), 1e-9);
+				}
+			}
+			else {
+				assertThat(actualValue, is((Object) expectedValue));
+			}
+		}
+	}
+
+	private static Evaluator createEvaluator(String document, String modelName, boolean compiled) {
+
+		PMML pmml = new ResourcePmmlLoader().loadPmml("classpath:analytics/pmml/" + document + ".pmml.xml");
+
+		Model model = pmml.getModels().get(0);
+		if (modelName != null) {
+			for (Model candidate : pmml.getModels()) {
+				if (modelName.equals(candidate.getModelName())) {
+					model = candidate;
+				}
+			}
+		}
+
+		return compiled ? CompiledModelEvaluatorFactory.createModelEvaluator(pmml, model) : (Evaluator) ModelEvaluatorFactory
+				.getInstance().getModelManager(pmml, model);
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.dmg.pmml.PMML;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.StreamUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the loading of compressed documents and the {@link HttpPmmlCache} against a local HTTP server.
+ */
+public class HttpPmmlCacheTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private byte[] kmeansContent;
+
+	private byte[] multipleModelsContent;
+
+	private HttpServer server;
+
+	private volatile byte[] servedContent;
+
+	private volatile String servedEtag;
+
+	private final AtomicInteger fullResponseCount = new AtomicInteger();
+
+	@Before
+	public void setup() throws Exception {
+
+		kmeansContent = readTestModel("iris-kmeans-clustering-1");
+		multipleModelsContent = readTestModel("multiple-models");
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+
+				try {
+
+					if (servedEtag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+						exchange.sendResponseHeaders(304, -1);
+						return;
+					}
+
+					byte[] content = exchange.getRequestURI().getPath().endsWith(".gz") ? gzip(servedContent)
+							: servedContent;
+
+					fullResponseCount.incrementAndGet();
+
+					exchange.getResponseHeaders().set("ETag", servedEtag);
+					exchange.sendResponseHeaders(200, content.length);
+					exchange.getResponseBody().write(content);
+				}
+				finally {
+					exchange.close();
+				}
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+
+		if (server != null) {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void testShouldLoadCompressedDocuments() throws Exception {
+
+		File gzFile = temporaryFolder.newFile("kmeans.pmml.xml.gz");
+		FileOutputStream gzOut = new FileOutputStream(gzFile);
+		try {
+			gzOut.write(gzip(kmeansContent));
+		}
+		finally {
+			gzOut.close();
+		}
+
+		File zipFile = temporaryFolder.newFile("kmeans.zip");
+		ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(zipFile));
+		try {
+			zipOut.putNextEntry(new ZipEntry("models/"));
+			zipOut.putNextEntry(new ZipEntry("models/kmeans.pmml.xml"));
+			zipOut.write(kmeansContent);
+		}
+		finally {
+			zipOut.close();
+		}
+
+		ResourcePmmlLoader loader = new ResourcePmmlLoader();
+
+		assertThat(modelName(loader.loadPmml(gzFile.toURI().toString())), is("iris-kmeans-clustering-1"));
+		assertThat(modelName(loader.loadPmml(zipFile.toURI().toString())), is("iris-kmeans-clustering-1"));
+		assertThat(StreamUtils.copyToByteArray(loader.getPmmlText(gzFile.toURI().toString()).getByteStream()),
+				is(kmeansContent));
+	}
+
+	@Test
+	public void testShouldRevalidateCachedDocumentAcrossLoaders() throws Exception {
+
+		servedContent = kmeansContent;
+		servedEtag = "\"v1\"";
+
+		String location = serverUrl("/models/kmeans.pmml.xml.gz");
+		String cacheDirectory = temporaryFolder.newFolder("http-cache").getAbsolutePath();
+
+		ResourcePmmlLoader loader = new ResourcePmmlLoader();
+		loader.setHttpCacheDirectory(cacheDirectory);
+
+		assertThat(modelName(loader.loadPmml(location)), is("iris-kmeans-clustering-1"));
+
+		//a restarted container uses a new loader with the same cache directory.
+		ResourcePmmlLoader restartedLoader = new ResourcePmmlLoader();
+		restartedLoader.setHttpCacheDirectory(cacheDirectory);
+
+		assertThat(modelName(restartedLoader.loadPmml(location)), is("iris-kmeans-clustering-1"));
+		assertThat(restartedLoader.getHttpCache().getRevalidationCount(), is(1L));
+		assertThat(fullResponseCount.get(), is(1));
+
+		servedContent = multipleModelsContent;
+		servedEtag = "\"v2\"";
+
+		assertThat(modelName(restartedLoader.loadPmml(location)), is("KMeans_Model1"));
+		assertThat(restartedLoader.getHttpCache().getDownloadCount(), is(1L));
+		assertThat(fullResponseCount.get(), is(2));
+	}
+
+	@Test
+	public void testShouldUseCachedDocumentIfServerIsUnavailable() throws Exception {
+
+		servedContent = kmeansContent;
+		servedEtag = "\"v1\"";
+
+		String location = serverUrl("/models/kmeans.pmml.xml");
+
+		ResourcePmmlLoader loader = new ResourcePmmlLoader();
+		loader.setHttpCacheDirectory(temporaryFolder.newFolder("http-cache").getAbsolutePath());
+		loader.loadPmml(location);
+
+		server.stop(0);
+		server = null;
+
+		assertThat(modelName(loader.loadPmml(location)), is("iris-kmeans-clustering-1"));
+		assertThat(loader.getHttpCache().getDownloadCount(), is(1L));
+	}
+
+	private static String modelName(PMML pmml) {
+		return pmml.getModels().get(0).getModelName();
+	}
+
+	private String serverUrl(String path) {
+		return "http://localhost:" + server.getAddress().getPort() + path;
+	}
+
+	private static byte[] readTestModel(String model) throws IOException {
+		return StreamUtils.copyToByteArray(HttpPmmlCacheTest.class.getResourceAsStream("/analytics/pmml/" + model
+				+ ".pmml.xml"));
+	}
+
+	private static byte[] gzip(byte[] content) throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		OutputStream out = new GZIPOutputStream(bytes);
+		try {
+			out.write(content);
+		}
+		finally {
+			out.close();
+		}
+
+		return bytes.toByteArray();
+	}
+}
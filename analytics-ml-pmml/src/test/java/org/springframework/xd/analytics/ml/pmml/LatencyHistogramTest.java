@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	LatencyHistogram histogram = new LatencyHistogram();
+
+	@Test
+	public void testBucketsShouldCoverValuesWithBoundedRelativeError() {
+
+		long[] values = { 0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE };
+
+		for (long value : values) {
+
+			long highestValue = LatencyHistogram.highestValueInBucket(LatencyHistogram.bucketIndex(value));
+
+			assertThat(highestValue, is(greaterThanOrEqualTo(value)));
+			assertThat((double) (highestValue - value), is(lessThanOrEqualTo(value / 16d)));
+		}
+	}
+
+	@Test
+	public void testShouldReportPercentiles() {
+
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+
+		assertThat(histogram.getCount(), is(1000L));
+		assertThat(histogram.getMax(), is(1000000L));
+		assertEquals(500500d, histogram.getMean(), 0.001);
+		assertEquals(500000d, histogram.getPercentile(50), 500000 / 16d);
+		assertEquals(990000d, histogram.getPercentile(99), 990000 / 16d);
+		assertThat(histogram.getPercentile(100), is(1000000L));
+	}
+
+	@Test
+	public void testEmptyHistogramShouldReportZero() {
+
+		assertThat(histogram.getPercentile(99), is(0L));
+		assertThat(histogram.getMean(), is(0d));
+	}
+
+	@Test
+	public void testShouldRecordNegativeValuesAsZero() {
+
+		histogram.record(-5);
+
+		assertThat(histogram.getCount(), is(1L));
+		assertThat(histogram.getPercentile(50), is(0L));
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.xd.tuple.TupleBuilder.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.springframework.xd.tuple.Tuple;
+
+public class MultiModelTuplePmmlAnalyticTest {
+
+	private static final String MODEL_LOCATION = "classpath:analytics/pmml/multiple-models.pmml.xml";
+
+	@Rule
+	public ExpectedException expectedException = ExpectedException.none();
+
+	private MultiModelTuplePmmlAnalytic analytic;
+
+	@After
+	public void tearDown() {
+
+		if (analytic != null) {
+			analytic.destroy();
+		}
+	}
+
+	@Test
+	public void testShouldMergeOutputsOfAllModelsUnderModelPrefix() {
+
+		analytic = new MultiModelTuplePmmlAnalytic("KMeans_Model1, KMeans_Model2", MODEL_LOCATION,
+				new ResourcePmmlLoader(), null, "predictedValue:cluster", 1);
+
+		Tuple output = analytic.evaluate(iris(6.4, 3.2, 4.5, 1.5));
+
+		assertThat(output.getFieldNames(), hasItems("Sepal.Length", "KMeans_Model1.cluster", "KMeans_Model2.cluster"));
+		assertThat(output.getFieldCount(), is(6));
+		assertThat(output.getString("KMeans_Model1.cluster"), is(notNullValue()));
+		assertThat(analytic.getMetrics().getEvaluationCount(), is(1L));
+	}
+
+	@Test
+	public void testShouldShareDocumentBetweenModels() {
+
+		analytic = new MultiModelTuplePmmlAnalytic("KMeans_Model1,KMeans_Model2", MODEL_LOCATION,
+				new ResourcePmmlLoader(), null, null, 1);
+
+		List<TuplePmmlAnalytic> analytics = analytic.getAnalytics();
+
+		assertThat(analytics.get(0).getModelCacheKey(), is(analytics.get(1).getModelCacheKey()));
+		assertThat(analytics.get(0).getSelectedModel().getModelName(), is("KMeans_Model1"));
+		assertThat(analytics.get(1).getSelectedModel().getModelName(), is("KMeans_Model2"));
+	}
+
+	@Test
+	public void testParallelEvaluationShouldProduceSameResultsAsSequentialEvaluation() {
+
+		MultiModelTuplePmmlAnalytic sequential = new MultiModelTuplePmmlAnalytic("KMeans_Model1,KMeans_Model2",
+				MODEL_LOCATION, new ResourcePmmlLoader(), null, "predictedValue,clusterAffinity_1", 1);
+		analytic = new MultiModelTuplePmmlAnalytic("KMeans_Model1,KMeans_Model2", MODEL_LOCATION,
+				new ResourcePmmlLoader(), null, "predictedValue,clusterAffinity_1", 2);
+
+		try {
+
+			List<Tuple> inputs = new ArrayList<Tuple>();
+			for (int i = 0; i < 50; i++) {
+				inputs.add(iris(4.5 + i * 0.05, 3.2, 1.0 + i * 0.1, 0.2 + i * 0.04));
+			}
+
+			List<Tuple> parallelOutputs = analytic.evaluateAll(inputs);
+			List<Tuple> sequentialOutputs = sequential.evaluateAll(inputs);
+
+			for (int i = 0; i < inputs.size(); i++) {
+				assertThat(parallelOutputs.get(i).getFieldNames(), is(sequentialOutputs.get(i).getFieldNames()));
+				assertThat(parallelOutputs.get(i).getValues(), is(sequentialOutputs.get(i).getValues()));
+			}
+		}
+		finally {
+			sequential.destroy();
+		}
+	}
+
+	@Test
+	public void testShouldPropagateEvaluationErrorsOfParallelModels() {
+
+		analytic = new MultiModelTuplePmmlAnalytic("KMeans_Model1,KMeans_Model2", MODEL_LOCATION,
+				new ResourcePmmlLoader(), null, null, 2);
+
+		try {
+			analytic.evaluate(tuple().of("Sepal.Length", "invalid", "Sepal.Width", 3.2, "Petal.Length", 4.5,
+					"Petal.Width", 1.5));
+			fail("Expected evaluation of invalid value to fail");
+		}
+		catch (RuntimeException expected) {}
+
+		assertThat(analytic.getMetrics().getErrorCount(), is(1L));
+	}
+
+	@Test
+	public void testShouldThrowExceptionForUnknownModelName() {
+
+		expectedException.expect(RuntimeException.class);
+		expectedException.expectMessage("UNKNOWN_MODEL_NAME");
+
+		new MultiModelTuplePmmlAnalytic("KMeans_Model1,UNKNOWN_MODEL_NAME", MODEL_LOCATION, new ResourcePmmlLoader(),
+				null, null, 2);
+	}
+
+	private static Tuple iris(double sepalLength, double sepalWidth, double petalLength, double petalWidth) {
+		return tuple().of("Sepal.Length", sepalLength, "Sepal.Width", sepalWidth, "Petal.Length", petalLength,
+				"Petal.Width", petalWidth);
+	}
+}
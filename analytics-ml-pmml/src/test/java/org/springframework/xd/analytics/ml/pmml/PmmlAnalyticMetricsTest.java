@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.xd.tuple.TupleBuilder.*;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.xd.analytics.ml.pmml.PmmlAnalyticMetrics.Phase;
+import org.springframework.xd.tuple.Tuple;
+
+public class PmmlAnalyticMetricsTest extends AbstractPmmlAnalyticTest {
+
+	private TuplePmmlAnalytic analytic;
+
+	private PmmlAnalyticMetrics metrics;
+
+	@Before
+	public void setup() {
+
+		analytic = (TuplePmmlAnalytic) useAnalytic("interest-rate-simple-linear-regression-1", null,
+				Arrays.asList("rate"));
+		metrics = analytic.getMetrics();
+	}
+
+	@Test
+	public void testShouldRecordEvaluationsAndLatencies() {
+
+		for (int year = 2000; year < 2010; year++) {
+			analytic.evaluate(tuple().of("year", year));
+		}
+
+		analytic.evaluateAll(Arrays.asList(tuple().of("year", 2010), tuple().of("year", 2011)));
+
+		assertThat(metrics.getEvaluationCount(), is(12L));
+		assertThat(metrics.getErrorCount(), is(0L));
+
+		for (Phase phase : Phase.values()) {
+			assertThat(metrics.getLatencyHistogram(phase).getCount(), is(12L));
+		}
+
+		assertThat(metrics.getEvaluateMeanLatency(), is(greaterThan(0d)));
+		assertThat(metrics.getEvaluate99thPercentileLatency(), is(lessThanOrEqualTo(metrics.getEvaluateMaxLatency())));
+		assertThat(metrics.getLatencyPercentile("evaluate", 99), is(metrics.getEvaluate99thPercentileLatency()));
+	}
+
+	@Test
+	public void testShouldRecordErrors() {
+
+		Tuple input = tuple().of("year", "not-a-year");
+
+		try {
+			analytic.evaluate(input);
+			fail("Expected evaluation of invalid value to fail");
+		}
+		catch (RuntimeException expected) {}
+
+		try {
+			analytic.evaluateAll(Arrays.asList(input));
+			fail("Expected evaluation of invalid value to fail");
+		}
+		catch (RuntimeException expected) {}
+
+		assertThat(metrics.getEvaluationCount(), is(0L));
+		assertThat(metrics.getErrorCount(), is(2L));
+	}
+
+	@Test
+	public void testShouldResolveInterleavedSchemasOncePerMapper() {
+
+		for (int year = 2000; year < 2010; year++) {
+			analytic.evaluate(tuple().of("year", year));
+			analytic.evaluate(tuple().of("year", year, "month", 1));
+		}
+
+		//two schemas, resolved once by the input and once by the output mapper.
+		assertThat(metrics.getSchemaCacheMissCount(), is(4L));
+		assertThat(metrics.getSchemaCacheHitCount(), is(36L));
+	}
+
+	@Test
+	public void testResetShouldClearCountersAndLatencies() {
+
+		analytic.evaluate(tuple().of("year", 2015));
+
+		metrics.reset();
+
+		assertThat(metrics.getEvaluationCount(), is(0L));
+		assertThat(metrics.getLatencyHistogram(Phase.EVALUATE).getCount(), is(0L));
+		assertThat(metrics.getEvaluateMaxLatency(), is(0d));
+		assertThat(metrics.getSchemaCacheMissCount(), is(0L));
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.xd.tuple.TupleBuilder.*;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.dmg.pmml.DataField;
+import org.dmg.pmml.DataType;
+import org.dmg.pmml.FieldName;
+import org.dmg.pmml.OpType;
+import org.dmg.pmml.Value;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.integration.MessageRejectedException;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.xd.analytics.ml.pmml.PmmlInputValidator.Failure;
+import org.springframework.xd.tuple.Tuple;
+
+public class PmmlInputValidatorTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private TuplePmmlAnalytic analytic;
+
+	@After
+	public void tearDown() {
+
+		if (analytic != null) {
+			analytic.destroy();
+		}
+	}
+
+	@Test
+	public void testShouldRejectValuesJpmmlWouldFailOn() throws Exception {
+
+		PmmlInputValidator validator = new PmmlInputValidator(useAnalyticWithIntervals(), false);
+
+		assertThat(validator.accept(iris(6.4, 3.2)), is(true));
+		assertThat(validator.accept(iris("6.4", 42)), is(true));
+		assertThat(validator.accept(tuple().of("petalLength", 4.5, "petalWidth", 1.5)), is(true));
+
+		Tuple invalidType = iris("six", 3.2);
+		Tuple invalidValue = iris(42, 3.2);
+
+		assertThat(validator.accept(invalidType), is(false));
+		assertThat(validator.accept(invalidValue), is(false));
+		assertThat(validator.accept(iris(8.0001, 3.2)), is(false));
+
+		assertThat(analytic.getMetrics().getRejectedInputCount(), is(3L));
+		assertThat(analytic.getMetrics().getInputValidationFailureCount("Sepal.Length", "invalid_value"), is(2L));
+		assertThat(analytic.getMetrics().getInputValidationFailures(),
+				is("Sepal.Length:INVALID_TYPE=1, Sepal.Length:INVALID_VALUE=2"));
+
+		assertFailsToEvaluate(invalidType);
+		assertFailsToEvaluate(invalidValue);
+		analytic.evaluate(iris("6.4", 42));
+
+		analytic.getMetrics().reset();
+
+		assertThat(validator.getFailureCount("Sepal.Length", Failure.INVALID_VALUE), is(0L));
+	}
+
+	@Test
+	public void testRejectShouldWrapMessageWithFailures() throws Exception {
+
+		PmmlInputValidator validator = new PmmlInputValidator(useAnalyticWithIntervals(), false);
+
+		Message<Tuple> message = MessageBuilder.withPayload(iris(42, "wide")).build();
+		assertThat(validator.accept(message.getPayload()), is(false));
+
+		ErrorMessage errorMessage = validator.reject(message);
+
+		assertThat(errorMessage.getPayload(), is(instanceOf(MessageRejectedException.class)));
+		assertThat(((MessageRejectedException) errorMessage.getPayload()).getFailedMessage(),
+				is(sameInstance((Message<?>) message)));
+		assertThat(errorMessage.getPayload().getMessage(),
+				is("Invalid model input - Sepal.Length:INVALID_VALUE, Sepal.Width:INVALID_TYPE"));
+		assertThat(analytic.getMetrics().getRejectedInputCount(), is(1L));
+	}
+
+	@Test
+	public void testShouldRejectMissingValuesIfConfigured() throws Exception {
+
+		PmmlInputValidator validator = new PmmlInputValidator(useAnalyticWithIntervals(), true);
+
+		assertThat(validator.accept(tuple().of("sepalWidth", 3.2, "petalLength", 4.5, "petalWidth", 1.5)), is(false));
+		assertThat(validator.accept(iris(null, 3.2)), is(false));
+		assertThat(validator.getFailureCount("Sepal.Length", Failure.MISSING_VALUE), is(2L));
+		assertThat(validator.getFailureCount("Sepal.Width", Failure.MISSING_VALUE), is(0L));
+	}
+
+	@Test
+	public void testShouldCheckCategoriesAndNumbersWithoutParsing() {
+
+		DataField color = new DataField(FieldName.create("color"), OpType.CATEGORICAL, DataType.STRING);
+		color.getValues().add(new Value("red"));
+		color.getValues().add(new Value("green"));
+		color.getValues().add(new Value("?").withProperty(Value.Property.MISSING));
+
+		PmmlInputValidator.FieldRule rule = new PmmlInputValidator.FieldRule(color, null, true, new AtomicLongArray(
+				Failure.values().length));
+
+		assertThat(rule.check("red"), is(nullValue()));
+		assertThat(rule.check("blue"), is(Failure.INVALID_VALUE));
+		assertThat(rule.check("?"), is(Failure.MISSING_VALUE));
+
+		assertThat(PmmlInputValidator.FieldRule.isNumber(" -1.5e3 ", false), is(true));
+		assertThat(PmmlInputValidator.FieldRule.isNumber(".5", false), is(true));
+		assertThat(PmmlInputValidator.FieldRule.isNumber("1.5", true), is(false));
+		assertThat(PmmlInputValidator.FieldRule.isNumber("1e", false), is(false));
+		assertThat(PmmlInputValidator.FieldRule.isNumber("-", false), is(false));
+	}
+
+	/**
+	 * Uses the k-means model with a valid interval of {@literal [4, 8]} for {@code Sepal.Length} and
+	 * {@code Sepal.Width}, invalid values of the latter are passed as they are.
+	 */
+	private TuplePmmlAnalytic useAnalyticWithIntervals() throws Exception {
+
+		String content = new String(FileCopyUtils.copyToByteArray(new ClassPathResource(
+				"analytics/pmml/iris-kmeans-clustering-1.pmml.xml").getInputStream()), "UTF-8");
+
+		String interval = "><Interval closure=\"closedClosed\" leftMargin=\"4\" rightMargin=\"8\"/></DataField>";
+		content = content
+				.replace("<DataField name=\"Sepal.Length\" optype=\"continuous\" dataType=\"double\"/>",
+						"<DataField name=\"Sepal.Length\" optype=\"continuous\" dataType=\"double\"" + interval)
+				.replace("<DataField name=\"Sepal.Width\" optype=\"continuous\" dataType=\"double\"/>",
+						"<DataField name=\"Sepal.Width\" optype=\"continuous\" dataType=\"double\"" + interval)
+				.replace("<MiningField name=\"Sepal.Width\"/>",
+						"<MiningField name=\"Sepal.Width\" invalidValueTreatment=\"asIs\"/>");
+
+		File model = temporaryFolder.newFile("iris-kmeans-intervals.pmml.xml");
+		FileCopyUtils.copy(content.getBytes("UTF-8"), model);
+
+		analytic = new TuplePmmlAnalytic(null, model.toURI().toString(), new ResourcePmmlLoader(),
+				"sepalLength:Sepal.Length,sepalWidth:Sepal.Width,petalLength:Petal.Length,petalWidth:Petal.Width",
+				"predictedValue:cluster");
+
+		return analytic;
+	}
+
+	private void assertFailsToEvaluate(Tuple input) {
+
+		try {
+			analytic.evaluate(input);
+			fail("Expected evaluation of " + input + " to fail");
+		}
+		catch (RuntimeException expected) {}
+	}
+
+	private static Tuple iris(Object sepalLength, Object sepalWidth) {
+		return tuple().of("sepalLength", sepalLength, "sepalWidth", sepalWidth, "petalLength", 4.5, "petalWidth", 1.5);
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dmg.pmml.PMML;
+import org.jpmml.evaluator.Evaluator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.FileCopyUtils;
+import org.xml.sax.InputSource;
+
+public class PmmlModelCacheTest extends AbstractPmmlAnalyticTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private PmmlModelCache modelCache = PmmlModelCache.getSharedInstance();
+
+	private String modelLocation;
+
+	@Before
+	public void setup() throws Exception {
+
+		File pmmlFile = temporaryFolder.newFile("iris.pmml.xml");
+		FileCopyUtils.copy(new ClassPathResource("analytics/pmml/iris-flower-classification-naive-bayes-1.pmml.xml")
+				.getInputStream(), new FileOutputStream(pmmlFile));
+
+		modelLocation = pmmlFile.toURI().toString();
+	}
+
+	@Test
+	public void testShouldShareModelBetweenAnalytics() throws Exception {
+
+		CountingPmmlLoader pmmlLoader = new CountingPmmlLoader();
+
+		TuplePmmlAnalytic first = new TuplePmmlAnalytic(null, modelLocation, pmmlLoader, (String) null, null);
+		TuplePmmlAnalytic second = new TuplePmmlAnalytic(null, modelLocation, pmmlLoader, (String) null, null);
+
+		assertThat(pmmlLoader.parseCount.get(), is(1));
+		assertThat(second.getPmmlEvaluator(), is(sameInstance(first.getPmmlEvaluator())));
+		assertThat(second.getModelCacheKey(), is(first.getModelCacheKey()));
+
+		first.destroy();
+
+		assertThat(modelCache.contains(second.getModelCacheKey()), is(true));
+
+		second.destroy();
+
+		assertThat(modelCache.contains(second.getModelCacheKey()), is(false));
+	}
+
+	@Test
+	public void testShouldParseModelAgainAfterEviction() throws Exception {
+
+		CountingPmmlLoader pmmlLoader = new CountingPmmlLoader();
+
+		TuplePmmlAnalytic first = new TuplePmmlAnalytic(null, modelLocation, pmmlLoader, (String) null, null);
+		first.destroy();
+		first.destroy();
+
+		TuplePmmlAnalytic second = new TuplePmmlAnalytic(null, modelLocation, pmmlLoader, (String) null, null);
+
+		assertThat(pmmlLoader.parseCount.get(), is(2));
+		assertThat(second.getPmmlEvaluator(), is(not(sameInstance(first.getPmmlEvaluator()))));
+
+		second.destroy();
+	}
+
+	@Test
+	public void testShouldNotShareModelsWithDifferentContent() throws Exception {
+
+		TuplePmmlAnalytic first = new TuplePmmlAnalytic(null, modelLocation, (String) null, null);
+
+		FileCopyUtils.copy(" ".getBytes("UTF-8"), new FileOutputStream(new File(temporaryFolder.getRoot(),
+				"iris.pmml.xml"), true));
+
+		TuplePmmlAnalytic second = new TuplePmmlAnalytic(null, modelLocation, (String) null, null);
+
+		assertThat(second.getModelCacheKey(), is(not(first.getModelCacheKey())));
+		assertThat(second.getPmmlEvaluator(), is(not(sameInstance(first.getPmmlEvaluator()))));
+
+		first.destroy();
+		second.destroy();
+	}
+
+	@Test
+	public void testShouldNotShareModelsRewrittenWithSameLengthAndModificationTime() throws Exception {
+
+		CountingPmmlLoader pmmlLoader = new CountingPmmlLoader();
+
+		TuplePmmlAnalytic first = new TuplePmmlAnalytic(null, modelLocation, pmmlLoader, (String) null, null);
+
+		File pmmlFile = new File(temporaryFolder.getRoot(), "iris.pmml.xml");
+		long lastModified = pmmlFile.lastModified();
+		String pmml = new String(FileCopyUtils.copyToByteArray(pmmlFile), "UTF-8");
+
+		FileCopyUtils.copy(pmml.replace("\"tom\"", "\"bob\"").getBytes("UTF-8"), pmmlFile);
+		pmmlFile.setLastModified(lastModified);
+
+		TuplePmmlAnalytic second = new TuplePmmlAnalytic(null, modelLocation, pmmlLoader, (String) null, null);
+
+		assertThat(pmmlLoader.parseCount.get(), is(2));
+		assertThat(second.getModelCacheKey(), is(not(first.getModelCacheKey())));
+		assertThat(second.getPmmlEvaluator(), is(not(sameInstance(first.getPmmlEvaluator()))));
+
+		first.destroy();
+		second.destroy();
+	}
+
+	@Test
+	public void testShouldShareUnchangedModelOnReloadWithoutParsingIt() throws Exception {
+
+		CountingPmmlLoader pmmlLoader = new CountingPmmlLoader();
+
+		TuplePmmlAnalytic analytic = new TuplePmmlAnalytic(null, modelLocation, pmmlLoader, (String) null, null);
+
+		new File(temporaryFolder.getRoot(), "iris.pmml.xml").setLastModified(System.currentTimeMillis() + 60000);
+
+		analytic.reload();
+
+		assertThat(pmmlLoader.parseCount.get(), is(1));
+
+		analytic.destroy();
+	}
+
+	@Test
+	public void testShouldNotShareModelsOfDifferentLoaderConfigurations() throws Exception {
+
+		ResourcePmmlLoader compactingLoader = new ResourcePmmlLoader();
+		compactingLoader.setCompactModels(true);
+
+		TuplePmmlAnalytic first = new TuplePmmlAnalytic(null, modelLocation, new ResourcePmmlLoader(), (String) null,
+				null);
+		TuplePmmlAnalytic second = new TuplePmmlAnalytic(null, modelLocation, compactingLoader, (String) null, null);
+		TuplePmmlAnalytic third = new TuplePmmlAnalytic(null, modelLocation, new ResourcePmmlLoader() {},
+				(String) null, null);
+
+		assertThat(second.getModelCacheKey(), is(not(first.getModelCacheKey())));
+		assertThat(third.getModelCacheKey(), is(not(first.getModelCacheKey())));
+		assertThat(third.getModelCacheKey(), is(not(second.getModelCacheKey())));
+		assertThat(second.getPmmlEvaluator(), is(not(sameInstance(first.getPmmlEvaluator()))));
+
+		first.destroy();
+		second.destroy();
+		third.destroy();
+	}
+
+	@Test
+	public void testShouldReleaseReplacedModelOnReload() throws Exception {
+
+		TuplePmmlAnalytic analytic = (TuplePmmlAnalytic) useAnalytic(null, modelLocation, null,
+				Arrays.asList("Predicted_Species"));
+
+		String modelCacheKey = analytic.getModelCacheKey();
+
+		analytic.reload();
+
+		assertThat(analytic.getModelCacheKey(), is(modelCacheKey));
+		assertThat(modelCache.contains(modelCacheKey), is(true));
+
+		analytic.destroy();
+
+		assertThat(modelCache.contains(modelCacheKey), is(false));
+	}
+
+	@Test
+	public void testShouldReleaseNewModelIfWarmUpFailsOnReload() throws Exception {
+
+		TuplePmmlAnalytic analytic = new TuplePmmlAnalytic(null, modelLocation, new ResourcePmmlLoader(),
+				(String) null, null);
+		String modelCacheKey = analytic.getModelCacheKey();
+
+		final AtomicInteger warmUpCount = new AtomicInteger();
+		analytic.setModelWarmer(new PmmlModelWarmer(1, null) {
+
+			@Override
+			public int warmUp(Evaluator evaluator, WarmUpTarget target) {
+
+				// the current model is warmed up when the warmer is set, the reloaded one fails
+				if (warmUpCount.incrementAndGet() > 1) {
+					throw new IllegalStateException("warm-up failed");
+				}
+
+				return super.warmUp(evaluator, target);
+			}
+		});
+
+		FileCopyUtils.copy(" ".getBytes("UTF-8"), new FileOutputStream(new File(temporaryFolder.getRoot(),
+				"iris.pmml.xml"), true));
+		String newModelCacheKey = new ResourcePmmlLoader().getModelCacheKey(modelLocation);
+
+		try {
+			analytic.reload();
+			fail("Expected the reload to fail");
+		}
+		catch (IllegalStateException expected) {}
+
+		assertThat(analytic.getModelCacheKey(), is(modelCacheKey));
+		assertThat(newModelCacheKey, is(not(modelCacheKey)));
+		assertThat(modelCache.contains(newModelCacheKey), is(false));
+
+		analytic.destroy();
+	}
+
+	@Test
+	public void testShouldNotShareModelsOfLoadersWithoutContent() throws Exception {
+
+		PmmlLoader pmmlLoader = new PmmlLoader() {
+
+			@Override
+			public PMML loadPmml(String modelLocation) {
+				return new ResourcePmmlLoader().loadPmml(modelLocation);
+			}
+		};
+
+		TuplePmmlAnalytic first = new TuplePmmlAnalytic(null, modelLocation, pmmlLoader, (String) null, null);
+		TuplePmmlAnalytic second = new TuplePmmlAnalytic(null, modelLocation, pmmlLoader, (String) null, null);
+
+		assertThat(first.getModelCacheKey(), is(nullValue()));
+		assertThat(second.getPmmlEvaluator(), is(not(sameInstance(first.getPmmlEvaluator()))));
+
+		first.destroy();
+		second.destroy();
+	}
+
+	static class CountingPmmlLoader extends ResourcePmmlLoader {
+
+		final AtomicInteger parseCount = new AtomicInteger();
+
+		@Override
+		protected PMML unmarshalPmml(InputSource pmmlText) throws Exception {
+
+			parseCount.incrementAndGet();
+
+			return super.unmarshalPmml(pmmlText);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.List;
+import java.util.Map;
+
+import org.dmg.pmml.FieldName;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.util.FileCopyUtils;
+
+public class PmmlModelWarmerTest extends AbstractPmmlAnalyticTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private TuplePmmlAnalytic analytic;
+
+	@After
+	public void tearDown() {
+
+		if (analytic != null) {
+			analytic.destroy();
+		}
+	}
+
+	@Test
+	public void testShouldWarmUpWithInputsSynthesizedFromModel() {
+
+		analytic = newAnalytic("iris-kmeans-clustering-1");
+
+		PmmlModelWarmer warmer = new PmmlModelWarmer(200, null);
+		List<Map<FieldName, Object>> inputs = warmer.synthesizeInputs(analytic.getPmmlEvaluator());
+
+		assertThat(inputs, hasSize(PmmlModelWarmer.SYNTHESIZED_INPUT_COUNT));
+		assertThat(inputs.get(0).keySet(), containsInAnyOrder(analytic.getPmmlEvaluator().getActiveFields().toArray()));
+
+		analytic.setModelWarmer(warmer);
+
+		assertThat(warmer.warmUp(analytic.getPmmlEvaluator()), is(200));
+		assertThat(analytic.getMetrics().getEvaluationCount(), is(0L));
+	}
+
+	@Test
+	public void testShouldWarmUpThroughAnalyticPipeline() {
+
+		analytic = new TuplePmmlAnalytic("iris-flower-classification-naive-bayes-1",
+				"classpath:analytics/pmml/iris-flower-classification-naive-bayes-1.pmml.xml", new ResourcePmmlLoader(),
+				"sepalLength:Sepal.Length,sepalWidth:Sepal.Width,petalLength:Petal.Length,petalWidth:Petal.Width",
+				null);
+
+		TuplePmmlAnalyticInputDataMapper inputMapper = (TuplePmmlAnalyticInputDataMapper) analytic.getInputMapper();
+
+		analytic.setModelWarmer(new PmmlModelWarmer(20, null));
+
+		assertThat(inputMapper.getSchemaCache().getMissCount(), is(1L));
+		assertThat(inputMapper.getSchemaCache().getHitCount(), is(19L));
+		assertThat(analytic.getMetrics().getEvaluationCount(), is(0L));
+	}
+
+	@Test
+	public void testShouldWarmUpWithSampleFile() throws Exception {
+
+		analytic = newAnalytic("iris-flower-classification-naive-bayes-1");
+
+		File samples = temporaryFolder.newFile("samples.csv");
+		FileCopyUtils.copy("Sepal.Length,Sepal.Width,Petal.Length,Petal.Width\n" //
+				+ "6.4,3.2,4.5,1.5\n" //
+				+ "\n" //
+				+ "5.1,3.5,1.4,\n" //
+				+ "not-a-number,3.5,1.4,0.2\n", new FileWriter(samples));
+
+		PmmlModelWarmer warmer = new PmmlModelWarmer(10, "file:" + samples.getAbsolutePath());
+
+		assertThat(warmer.readSampleInputs(analytic.getPmmlEvaluator()), hasSize(2));
+		assertThat(warmer.warmUp(analytic.getPmmlEvaluator()), is(10));
+	}
+
+	@Test
+	public void testMissingSampleFileShouldNotFailWarmUp() {
+
+		analytic = newAnalytic("iris-flower-classification-naive-bayes-1");
+
+		PmmlModelWarmer warmer = new PmmlModelWarmer(10, "file:" + temporaryFolder.getRoot() + "/missing.csv");
+		analytic.setModelWarmer(warmer);
+
+		assertThat(warmer.warmUp(analytic.getPmmlEvaluator()), is(0));
+		assertThat(new PmmlModelWarmer(0, null).warmUp(analytic.getPmmlEvaluator()), is(0));
+	}
+
+	private TuplePmmlAnalytic newAnalytic(String modelName) {
+		return new TuplePmmlAnalytic(modelName, "classpath:analytics/pmml/" + modelName + ".pmml.xml",
+				new ResourcePmmlLoader(), (String) null, (String) null);
+	}
+}
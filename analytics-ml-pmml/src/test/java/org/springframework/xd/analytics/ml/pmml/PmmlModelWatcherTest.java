@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.xd.tuple.TupleBuilder.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jpmml.evaluator.Evaluator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.FileCopyUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class PmmlModelWatcherTest extends AbstractPmmlAnalyticTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private String pmmlText;
+
+	private File pmmlFile;
+
+	@Before
+	public void setup() throws Exception {
+
+		pmmlText = FileCopyUtils.copyToString(new InputStreamReader(new ClassPathResource(
+				"analytics/pmml/interest-rate-simple-linear-regression-1.pmml.xml").getInputStream(), "UTF-8"));
+
+		pmmlFile = temporaryFolder.newFile("interest-rate.pmml.xml");
+		FileCopyUtils.copy(pmmlText.getBytes("UTF-8"), pmmlFile);
+	}
+
+	@Test
+	public void testShouldReloadModifiedModel() throws Exception {
+
+		TuplePmmlAnalytic analytic = (TuplePmmlAnalytic) useAnalytic(null, pmmlFile.toURI().toString(), null,
+				Arrays.asList("rate"));
+		PmmlModelWatcher watcher = new PmmlModelWatcher(analytic, 60000);
+		watcher.afterPropertiesSet();
+
+		try {
+			assertEquals(-1.367, analytic.evaluate(tuple().of("year", 2015)).getDouble("rate"), 0.0001);
+			assertThat(watcher.checkForModification(), is(false));
+
+			Evaluator previousEvaluator = analytic.getPmmlEvaluator();
+
+			modifyPmml(pmmlText.replace("intercept=\"1419.20800000015\"", "intercept=\"1420.20800000015\""));
+
+			assertThat(watcher.checkForModification(), is(true));
+			assertThat(analytic.getPmmlEvaluator(), is(not(sameInstance(previousEvaluator))));
+			assertEquals(-0.367, analytic.evaluate(tuple().of("year", 2015)).getDouble("rate"), 0.0001);
+		}
+		finally {
+			watcher.destroy();
+		}
+	}
+
+	@Test
+	public void testShouldKeepCurrentModelIfModifiedModelIsInvalid() throws Exception {
+
+		TuplePmmlAnalytic analytic = (TuplePmmlAnalytic) useAnalytic(null, pmmlFile.toURI().toString(), null,
+				Arrays.asList("rate"));
+		PmmlModelWatcher watcher = new PmmlModelWatcher(analytic, 60000);
+		watcher.afterPropertiesSet();
+
+		try {
+			modifyPmml(pmmlText.substring(0, pmmlText.length() / 2));
+
+			assertThat(watcher.checkForModification(), is(false));
+			assertEquals(-1.367, analytic.evaluate(tuple().of("year", 2015)).getDouble("rate"), 0.0001);
+
+			modifyPmml(pmmlText.replace("intercept=\"1419.20800000015\"", "intercept=\"1420.20800000015\""));
+
+			assertThat(watcher.checkForModification(), is(true));
+			assertEquals(-0.367, analytic.evaluate(tuple().of("year", 2015)).getDouble("rate"), 0.0001);
+		}
+		finally {
+			watcher.destroy();
+		}
+	}
+
+	@Test
+	public void testShouldCheckHttpLocationWithHeadRequests() throws Exception {
+
+		final List<String> requestMethods = Collections.synchronizedList(new ArrayList<String>());
+
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+
+				try {
+					requestMethods.add(exchange.getRequestMethod());
+					exchange.getResponseHeaders().set("Last-Modified", "Thu, 01 Jan 2015 00:00:00 GMT");
+					exchange.sendResponseHeaders(200, -1);
+				}
+				finally {
+					exchange.close();
+				}
+			}
+		});
+		server.start();
+
+		PmmlModelWatcher watcher = new PmmlModelWatcher(new FixedLocationAnalytic("http://localhost:"
+				+ server.getAddress().getPort() + "/interest-rate.pmml.xml"), 60000);
+		try {
+			watcher.afterPropertiesSet();
+
+			assertThat(watcher.checkForModification(), is(false));
+			assertThat(requestMethods, is(Arrays.asList("HEAD", "HEAD")));
+		}
+		finally {
+			watcher.destroy();
+			server.stop(0);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShouldRejectLocationsThatCanNotBeWatched() throws Exception {
+		new PmmlModelWatcher(new FixedLocationAnalytic("ftp://localhost/interest-rate.pmml.xml"), 60000)
+				.afterPropertiesSet();
+	}
+
+	private void modifyPmml(String text) throws Exception {
+
+		long previousLastModified = pmmlFile.lastModified();
+
+		FileCopyUtils.copy(text.getBytes("UTF-8"), pmmlFile);
+		pmmlFile.setLastModified(previousLastModified + 1000);
+	}
+
+	static class FixedLocationAnalytic implements ReloadablePmmlAnalytic {
+
+		private final String modelLocation;
+
+		FixedLocationAnalytic(String modelLocation) {
+			this.modelLocation = modelLocation;
+		}
+
+		@Override
+		public String getModelLocation() {
+			return modelLocation;
+		}
+
+		@Override
+		public void reload() {}
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.xd.tuple.TupleBuilder.*;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.FileCopyUtils;
+
+public class PmmlResultCacheTest extends AbstractPmmlAnalyticTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testShouldAnswerRepeatedInputsFromCache() {
+
+		TuplePmmlAnalytic analytic = (TuplePmmlAnalytic) useAnalytic("iris-flower-classification-naive-bayes-1",
+				Arrays.asList("sepalLength:Sepal.Length", "sepalWidth:Sepal.Width", "petalLength:Petal.Length",
+						"petalWidth:Petal.Width"), Arrays.asList("Predicted_Species:predictedSpecies"));
+		PmmlResultCache resultCache = new PmmlResultCache(100, 0);
+		analytic.setResultCache(resultCache);
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(analytic.evaluate(tuple().of("sepalLength", 6.4, "sepalWidth", 3.2, "petalLength", 4.5,
+					"petalWidth", 1.5)).getString("predictedSpecies"), is("versicolor"));
+			assertThat(analytic.evaluate(tuple().of("sepalLength", 5.1, "sepalWidth", 3.5, "petalLength", 1.4,
+					"petalWidth", 0.2)).getString("predictedSpecies"), is("setosa"));
+		}
+
+		assertThat(resultCache.getSize(), is(2L));
+		assertThat(resultCache.getMissCount(), is(2L));
+		assertThat(resultCache.getHitCount(), is(4L));
+		assertThat(analytic.getMetrics().getResultCacheHitRate(), is(closeTo(4d / 6, 0.0001)));
+	}
+
+	@Test
+	public void testShouldCacheResultsOfBatchEvaluation() {
+
+		TuplePmmlAnalytic analytic = (TuplePmmlAnalytic) useAnalytic("interest-rate-simple-linear-regression-1", null,
+				Arrays.asList("rate"));
+		PmmlResultCache resultCache = new PmmlResultCache(100, 0);
+		analytic.setResultCache(resultCache);
+
+		analytic.evaluateAll(Arrays.asList(tuple().of("year", 2015), tuple().of("year", 2015), tuple().of("year", 2016)));
+
+		assertThat(resultCache.getMissCount(), is(2L));
+		assertThat(resultCache.getHitCount(), is(1L));
+	}
+
+	@Test
+	public void testDisabledCacheShouldEvaluateEveryInput() {
+
+		TuplePmmlAnalytic analytic = (TuplePmmlAnalytic) useAnalytic("interest-rate-simple-linear-regression-1", null,
+				Arrays.asList("rate"));
+		PmmlResultCache resultCache = new PmmlResultCache(0, 0);
+		analytic.setResultCache(resultCache);
+
+		analytic.evaluate(tuple().of("year", 2015));
+		analytic.evaluate(tuple().of("year", 2015));
+
+		assertThat(resultCache.isEnabled(), is(false));
+		assertThat(resultCache.getSize(), is(0L));
+		assertThat(resultCache.getHitCount() + resultCache.getMissCount(), is(0L));
+	}
+
+	@Test
+	public void testReloadShouldInvalidateCachedResults() throws Exception {
+
+		String pmmlText = FileCopyUtils.copyToString(new InputStreamReader(new ClassPathResource(
+				"analytics/pmml/interest-rate-simple-linear-regression-1.pmml.xml").getInputStream(), "UTF-8"));
+		File pmmlFile = temporaryFolder.newFile("interest-rate.pmml.xml");
+		FileCopyUtils.copy(pmmlText.getBytes("UTF-8"), pmmlFile);
+
+		TuplePmmlAnalytic analytic = (TuplePmmlAnalytic) useAnalytic(null, pmmlFile.toURI().toString(), null,
+				Arrays.asList("rate"));
+		PmmlResultCache resultCache = new PmmlResultCache(100, 0);
+		analytic.setResultCache(resultCache);
+
+		try {
+			assertEquals(-1.367, analytic.evaluate(tuple().of("year", 2015)).getDouble("rate"), 0.0001);
+			assertThat(resultCache.getSize(), is(1L));
+
+			FileCopyUtils.copy(pmmlText.replace("intercept=\"1419.20800000015\"", "intercept=\"1420.20800000015\"")
+					.getBytes("UTF-8"), pmmlFile);
+			analytic.reload();
+
+			assertThat(resultCache.getSize(), is(0L));
+			assertEquals(-0.367, analytic.evaluate(tuple().of("year", 2015)).getDouble("rate"), 0.0001);
+		}
+		finally {
+			analytic.destroy();
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.xd.tuple.TupleBuilder.*;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.xd.tuple.Tuple;
+
+public class PmmlShadowScorerTest extends AbstractPmmlAnalyticTest {
+
+	private static final String NAIVE_BAYES = "iris-flower-classification-naive-bayes-1";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private TuplePmmlAnalytic analytic;
+
+	private PmmlShadowScorer shadowScorer;
+
+	@After
+	public void tearDown() {
+
+		if (shadowScorer != null) {
+			shadowScorer.destroy();
+		}
+
+		if (analytic != null) {
+			analytic.destroy();
+		}
+	}
+
+	@Test
+	public void testIdenticalShadowModelShouldAlwaysAgree() throws Exception {
+
+		useShadowModel("classpath:analytics/pmml/" + NAIVE_BAYES + ".pmml.xml", 100);
+
+		for (int i = 0; i < 10; i++) {
+			assertThat(analytic.evaluate(versicolor()).getString("predictedSpecies"), is("versicolor"));
+			assertThat(analytic.evaluate(setosa()).getString("predictedSpecies"), is("setosa"));
+		}
+
+		awaitComparisons(20);
+
+		assertThat(analytic.getMetrics().getShadowAgreementRate(), is(1d));
+		assertThat(analytic.getMetrics().getShadowErrorCount(), is(0L));
+		assertThat(shadowScorer.getLatencyHistogram().getCount(), is(20L));
+	}
+
+	@Test
+	public void testShadowModelShouldNotChangeOutput() throws Exception {
+
+		// the candidate swaps two of the species, so only virginica is predicted alike
+		File candidate = temporaryFolder.newFile("candidate.pmml.xml");
+		String content = new String(FileCopyUtils.copyToByteArray(new ClassPathResource("analytics/pmml/"
+				+ NAIVE_BAYES + ".pmml.xml").getInputStream()), "UTF-8");
+		FileCopyUtils.copy(content.replace("setosa", "_swap_").replace("versicolor", "setosa")
+				.replace("_swap_", "versicolor").getBytes("UTF-8"), candidate);
+
+		useShadowModel(candidate.toURI().toString(), 100);
+
+		assertThat(analytic.evaluateAll(Arrays.asList(versicolor(), setosa(), virginica())).get(1)
+				.getString("predictedSpecies"), is("setosa"));
+
+		awaitComparisons(3);
+
+		assertThat(analytic.getMetrics().getShadowAgreementRate(), is(closeTo(1d / 3, 0.0001)));
+	}
+
+	@Test
+	public void testCachedResultsShouldNotContributeToLatencyDelta() throws Exception {
+
+		useShadowModel("classpath:analytics/pmml/" + NAIVE_BAYES + ".pmml.xml", 100);
+		analytic.setResultCache(new PmmlResultCache(100, 0));
+
+		for (int i = 0; i < 10; i++) {
+			analytic.evaluate(versicolor());
+			analytic.evaluate(setosa());
+		}
+
+		awaitComparisons(20);
+
+		assertThat(analytic.getMetrics().getShadowAgreementRate(), is(1d));
+		assertThat(shadowScorer.getLatencyDeltaCount(), is(2L));
+	}
+
+	@Test
+	public void testScorerWithoutLocationShouldBeDisabled() {
+
+		useShadowModel(null, 100);
+
+		assertThat(shadowScorer.isEnabled(), is(false));
+		assertThat(analytic.evaluate(setosa()).getString("predictedSpecies"), is("setosa"));
+		assertThat(analytic.getMetrics().getShadowComparisonCount(), is(0L));
+	}
+
+	private void useShadowModel(String shadowLocation, double samplePercentage) {
+
+		analytic = (TuplePmmlAnalytic) useAnalytic(NAIVE_BAYES, Arrays.asList("sepalLength:Sepal.Length",
+				"sepalWidth:Sepal.Width", "petalLength:Petal.Length", "petalWidth:Petal.Width"),
+				Arrays.asList("Predicted_Species:predictedSpecies"));
+
+		shadowScorer = new PmmlShadowScorer(null, shadowLocation, new ResourcePmmlLoader(), samplePercentage, 100);
+		analytic.setShadowScorer(shadowScorer);
+	}
+
+	private void awaitComparisons(long count) throws InterruptedException {
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (shadowScorer.getComparisonCount() + shadowScorer.getErrorCount() < count
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertThat(shadowScorer.getComparisonCount(), is(count));
+	}
+
+	private static Tuple setosa() {
+		return tuple().of("sepalLength", 5.1, "sepalWidth", 3.5, "petalLength", 1.4, "petalWidth", 0.2);
+	}
+
+	private static Tuple versicolor() {
+		return tuple().of("sepalLength", 6.4, "sepalWidth", 3.2, "petalLength", 4.5, "petalWidth", 1.5);
+	}
+
+	private static Tuple virginica() {
+		return tuple().of("sepalLength", 6.3, "sepalWidth", 3.3, "petalLength", 6.0, "petalWidth", 2.5);
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SchemaCacheTest {
+
+	@Test
+	public void testShouldFindInterleavedSchemas() {
+
+		SchemaCache<String> cache = new SchemaCache<String>();
+
+		List<String> first = Arrays.asList("year", "month");
+		List<String> second = Arrays.asList("year", "rate");
+
+		assertThat(cache.get(first), is(nullValue()));
+		cache.put(first, "first");
+		assertThat(cache.get(second), is(nullValue()));
+		cache.put(second, "second");
+
+		for (int i = 0; i < 10; i++) {
+			assertThat(cache.get(first), is("first"));
+			assertThat(cache.get(new ArrayList<String>(second)), is("second"));
+		}
+
+		assertThat(cache.getMissCount(), is(2L));
+		assertThat(cache.getHitCount(), is(20L));
+	}
+
+	@Test
+	public void testShouldReplaceOldestEntryWhenFull() {
+
+		SchemaCache<Integer> cache = new SchemaCache<Integer>(2);
+
+		cache.put(Arrays.asList("a"), 1);
+		cache.put(Arrays.asList("b"), 2);
+		cache.put(Arrays.asList("c"), 3);
+
+		assertThat(cache.get(Arrays.asList("a")), is(nullValue()));
+		assertThat(cache.get(Arrays.asList("b")), is(2));
+		assertThat(cache.get(Arrays.asList("c")), is(3));
+	}
+
+	@Test
+	public void testShouldReplaceEntryOfSameSchema() {
+
+		SchemaCache<Integer> cache = new SchemaCache<Integer>(2);
+
+		cache.put(Arrays.asList("a"), 1);
+		cache.put(Arrays.asList("a"), 2);
+		cache.put(Arrays.asList("b"), 3);
+
+		assertThat(cache.get(Arrays.asList("a")), is(2));
+		assertThat(cache.get(Arrays.asList("b")), is(3));
+	}
+
+	@Test
+	public void testClearShouldRemoveEntriesButRetainCounts() {
+
+		SchemaCache<Integer> cache = new SchemaCache<Integer>();
+
+		cache.put(Arrays.asList("a"), 1);
+		cache.get(Arrays.asList("a"));
+		cache.clear();
+
+		assertThat(cache.get(Arrays.asList("a")), is(nullValue()));
+		assertThat(cache.getHitCount(), is(1L));
+		assertThat(cache.getMissCount(), is(1L));
+	}
+}
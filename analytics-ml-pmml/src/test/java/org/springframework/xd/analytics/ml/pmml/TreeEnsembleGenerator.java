@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Writes synthetic PMML documents of a gradient-boosted regression ensemble, i.e. a {@code MiningModel} that sums up
+ * the scores of many binary {@code TreeModel}s, to test and benchmark the loading of large models.
+ */
+class TreeEnsembleGenerator {
+
+	static final int FIELD_COUNT = 10;
+
+	private final int treeCount;
+
+	private final int treeDepth;
+
+	/**
+	 * @param treeCount the number of trees in the ensemble.
+	 * @param treeDepth the depth of the complete binary trees.
+	 */
+	TreeEnsembleGenerator(int treeCount, int treeDepth) {
+		this.treeCount = treeCount;
+		this.treeDepth = treeDepth;
+	}
+
+	/**
+	 * Writes the ensemble to the given {@code file}.
+	 *
+	 * @param file must not be {@literal null}
+	 * @throws IOException
+	 */
+	void writeTo(File file) throws IOException {
+
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+
+		try {
+			write(writer);
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	private void write(Writer writer) throws IOException {
+
+		Random random = new Random(42);
+
+		writer.write("<PMML version=\"4.2\" xmlns=\"http://www.dmg.org/PMML-4_2\">\n");
+		writer.write("<Header description=\"synthetic tree ensemble\"/>\n");
+
+		writer.write("<DataDictionary numberOfFields=\"" + (FIELD_COUNT + 1) + "\">\n");
+		for (int i = 0; i < FIELD_COUNT; i++) {
+			writer.write("<DataField name=\"x" + i + "\" optype=\"continuous\" dataType=\"double\"/>\n");
+		}
+		writer.write("<DataField name=\"y\" optype=\"continuous\" dataType=\"double\"/>\n");
+		writer.write("</DataDictionary>\n");
+
+		writer.write("<MiningModel modelName=\"tree-ensemble\" functionName=\"regression\">\n");
+		writeMiningSchema(writer);
+		writer.write("<Segmentation multipleModelMethod=\"sum\">\n");
+
+		for (int tree = 0; tree < treeCount; tree++) {
+
+			writer.write("<Segment id=\"" + (tree + 1) + "\"><True/>\n");
+			writer.write("<TreeModel functionName=\"regression\" splitCharacteristic=\"binarySplit\">\n");
+			writeMiningSchema(writer);
+			writeNode(writer, random, 1, 0, "<True/>");
+			writer.write("</TreeModel>\n</Segment>\n");
+		}
+
+		writer.write("</Segmentation>\n</MiningModel>\n</PMML>\n");
+	}
+
+	private void writeMiningSchema(Writer writer) throws IOException {
+
+		writer.write("<MiningSchema>");
+		for (int i = 0; i < FIELD_COUNT; i++) {
+			writer.write("<MiningField name=\"x" + i + "\"/>");
+		}
+		writer.write("<MiningField name=\"y\" usageType=\"predicted\"/>");
+		writer.write("</MiningSchema>\n");
+	}
+
+	private void writeNode(Writer writer, Random random, int id, int depth, String predicate) throws IOException {
+
+		//scores and split values are drawn from small sets, as in models trained on binned features.
+		String score = String.valueOf(random.nextInt(200) / 100.0 - 1.0);
+
+		writer.write("<Node id=\"" + id + "\" score=\"" + score + "\">" + predicate);
+
+		if (depth < treeDepth) {
+
+			String field = "x" + random.nextInt(FIELD_COUNT);
+			String value = String.valueOf(random.nextInt(100) / 10.0);
+
+			writeNode(writer, random, 2 * id, depth + 1, "<SimplePredicate field=\"" + field
+					+ "\" operator=\"lessThan\" value=\"" + value + "\"/>");
+			writeNode(writer, random, 2 * id + 1, depth + 1, "<SimplePredicate field=\"" + field
+					+ "\" operator=\"greaterOrEqual\" value=\"" + value + "\"/>");
+		}
+
+		writer.write("</Node>\n");
+	}
+}
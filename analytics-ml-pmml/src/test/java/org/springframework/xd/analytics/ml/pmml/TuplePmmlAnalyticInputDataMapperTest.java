@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.xd.tuple.TupleBuilder.*;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.dmg.pmml.FieldName;
+import org.jpmml.evaluator.FieldValue;
+import org.junit.Test;
+import org.springframework.xd.tuple.Tuple;
+
+public class TuplePmmlAnalyticInputDataMapperTest {
+
+	@Test
+	public void testMapInputShouldOnlyBindModelInputFields() {
+
+		TuplePmmlAnalyticInputDataMapper mapper = new TuplePmmlAnalyticInputDataMapper(null);
+		TuplePmmlAnalytic analytic = newAnalytic(mapper);
+
+		Map<FieldName, Object> modelInput = mapper.mapInput(analytic,
+				tuple().of("comment", "not a model field", "Petal.Length", 4.5));
+
+		assertThat(modelInput.size(), is(1));
+		assertThat(((FieldValue) modelInput.get(FieldName.create("Petal.Length"))).asNumber().doubleValue(), is(4.5));
+	}
+
+	@Test
+	public void testMapInputShouldApplyInputFieldMapping() {
+
+		TuplePmmlAnalyticInputDataMapper mapper = new TuplePmmlAnalyticInputDataMapper(
+				Arrays.asList("petalLength:Petal.Length"));
+		TuplePmmlAnalytic analytic = newAnalytic(mapper);
+
+		Map<FieldName, Object> modelInput = mapper.mapInput(analytic, tuple().of("petalLength", 4.5));
+
+		assertThat(((FieldValue) modelInput.get(FieldName.create("Petal.Length"))).asNumber().doubleValue(), is(4.5));
+	}
+
+	@Test
+	public void testMapInputShouldResolveFieldPositionsPerTupleSchema() {
+
+		TuplePmmlAnalyticInputDataMapper mapper = new TuplePmmlAnalyticInputDataMapper(null);
+		TuplePmmlAnalytic analytic = newAnalytic(mapper);
+
+		Tuple first = tuple().of("Petal.Length", 4.5, "id", 1);
+		Tuple second = tuple().of("id", 2, "Petal.Length", 1.4);
+		Tuple third = tuple().of("id", 3);
+
+		assertThat(((FieldValue) mapper.mapInput(analytic, first).get(FieldName.create("Petal.Length"))).asNumber()
+				.doubleValue(), is(4.5));
+		assertThat(((FieldValue) mapper.mapInput(analytic, second).get(FieldName.create("Petal.Length"))).asNumber()
+				.doubleValue(), is(1.4));
+		assertThat(mapper.mapInput(analytic, third).isEmpty(), is(true));
+	}
+
+	@Test
+	public void testMapInputShouldInvokeCustomValuePreparation() {
+
+		TuplePmmlAnalyticInputDataMapper mapper = new TuplePmmlAnalyticInputDataMapper(null) {
+
+			@Override
+			protected Object prepareModelInputValue(PmmlAnalytic<Tuple, Tuple> analytic,
+					FieldName modelInputFieldName, Object rawModelInputValue) {
+				return super.prepareModelInputValue(analytic, modelInputFieldName, 2.0);
+			}
+		};
+		TuplePmmlAnalytic analytic = newAnalytic(mapper);
+
+		Map<FieldName, Object> modelInput = mapper.mapInput(analytic, tuple().of("Petal.Length", 4.5));
+
+		assertThat(((FieldValue) modelInput.get(FieldName.create("Petal.Length"))).asNumber().doubleValue(), is(2.0));
+	}
+
+	private TuplePmmlAnalytic newAnalytic(TuplePmmlAnalyticInputDataMapper mapper) {
+		return new TuplePmmlAnalytic(null, "classpath:analytics/pmml/iris-flower-simple-linear-regression-1.pmml.xml",
+				mapper, new TuplePmmlAnalyticOutputDataMapper(Arrays.asList("Petal.Width")));
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import static org.springframework.xd.tuple.TupleBuilder.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dmg.pmml.FieldName;
+import org.junit.Test;
+import org.springframework.xd.tuple.Tuple;
+
+public class TuplePmmlAnalyticOutputDataMapperTest {
+
+	@Test
+	public void testShouldOverwriteExistingAndAppendNewOutputFields() {
+
+		TuplePmmlAnalyticOutputDataMapper mapper = new TuplePmmlAnalyticOutputDataMapper(Arrays.asList("rate",
+				"Predicted_rate:predictedRate"));
+
+		Tuple output = mapper.mapOutput(null, tuple().of("year", 2015, "rate", "unknown"),
+				modelOutput("rate", 1.5, "Predicted_rate", 1.5));
+
+		assertThat(output.getFieldNames(), is(Arrays.asList("year", "rate", "predictedRate")));
+		assertThat(output.getValues(), is(Arrays.<Object> asList(2015, 1.5, 1.5)));
+	}
+
+	@Test
+	public void testShouldMapAllModelOutputsWithoutMapping() {
+
+		TuplePmmlAnalyticOutputDataMapper mapper = new TuplePmmlAnalyticOutputDataMapper(null, "model.");
+
+		Tuple output = mapper.mapOutput(null, tuple().of("year", 2015), modelOutput("rate", 1.5, "Predicted_rate", 1.5));
+
+		assertThat(output.getFieldNames(), is(Arrays.asList("year", "model.rate", "model.Predicted_rate")));
+	}
+
+	@Test
+	public void testShouldReuseOutputLayoutForSameSchema() {
+
+		TuplePmmlAnalyticOutputDataMapper mapper = new TuplePmmlAnalyticOutputDataMapper(Arrays.asList("rate"));
+		List<String> outputFieldNames = Collections.singletonList("rate");
+
+		TuplePmmlAnalyticOutputDataMapper.OutputLayout layout = mapper.getOutputLayout(
+				tuple().of("year", 2015).getFieldNames(), outputFieldNames);
+
+		assertThat(mapper.getOutputLayout(tuple().of("year", 2016).getFieldNames(), outputFieldNames),
+				is(sameInstance(layout)));
+		assertThat(mapper.getOutputLayout(tuple().of("month", 1).getFieldNames(), outputFieldNames),
+				is(not(sameInstance(layout))));
+	}
+
+	@Test
+	public void testShouldReuseModelResultFieldsWithoutMapping() {
+
+		TuplePmmlAnalyticOutputDataMapper mapper = new TuplePmmlAnalyticOutputDataMapper(null);
+
+		mapper.mapOutput(null, tuple().of("year", 2015), modelOutput("rate", 1.5));
+		Tuple output = mapper.mapOutput(null, tuple().of("year", 2016), modelOutput("rate", 2.5));
+
+		assertThat(output.getValues(), is(Arrays.<Object> asList(2016, 2.5)));
+		assertThat(mapper.getSchemaCache().getMissCount(), is(1L));
+		assertThat(mapper.getSchemaCache().getHitCount(), is(1L));
+	}
+
+	@Test
+	public void testShouldResolveModelResultFieldsAgainIfModelOutputChanges() {
+
+		TuplePmmlAnalyticOutputDataMapper mapper = new TuplePmmlAnalyticOutputDataMapper(null);
+
+		mapper.mapOutput(null, tuple().of("year", 2015), modelOutput("rate", 1.5));
+		Tuple output = mapper.mapOutput(null, tuple().of("year", 2016), modelOutput("rate", 2.5, "Predicted_rate", 2.5));
+
+		assertThat(output.getFieldNames(), is(Arrays.asList("year", "rate", "Predicted_rate")));
+		assertThat(output.getValues(), is(Arrays.<Object> asList(2016, 2.5, 2.5)));
+	}
+
+	@Test
+	public void testShouldResolveModelResultFieldsAgainIfModelOutputHasOtherFieldsOfSameCount() {
+
+		TuplePmmlAnalyticOutputDataMapper mapper = new TuplePmmlAnalyticOutputDataMapper(null);
+
+		mapper.mapOutput(null, tuple().of("year", 2015), modelOutput("rate", 1.5));
+		Tuple output = mapper.mapOutput(null, tuple().of("year", 2016), modelOutput("Predicted_rate", 2.5));
+
+		assertThat(output.getFieldNames(), is(Arrays.asList("year", "Predicted_rate")));
+		assertThat(output.getValues(), is(Arrays.<Object> asList(2016, 2.5)));
+	}
+
+	@Test
+	public void testShouldProduceSameOutputAsCustomOutputEntryMapping() {
+
+		List<String> mapping = Arrays.asList("Predicted_rate:rate", "rate:year");
+		Tuple input = tuple().of("year", 2015, "month", 3, "rate", 0.5);
+		Map<FieldName, Object> modelOutput = modelOutput("rate", 1.5, "Predicted_rate", 2.5);
+
+		Tuple output = new TuplePmmlAnalyticOutputDataMapper(mapping).mapOutput(null, input, modelOutput);
+		Tuple expected = new TuplePmmlAnalyticOutputDataMapper(mapping) {
+
+			@Override
+			protected void addOutputEntriesFromModelOutput(Map<FieldName, ? super Object> modelOutput,
+					List<String> outputNames, List<Object> outputValues) {
+				super.addOutputEntriesFromModelOutput(modelOutput, outputNames, outputValues);
+			}
+		}.mapOutput(null, input, modelOutput);
+
+		assertThat(output.getFieldNames(), is(expected.getFieldNames()));
+		assertThat(output.getValues(), is(expected.getValues()));
+	}
+
+	private static Map<FieldName, Object> modelOutput(Object... namesAndValues) {
+
+		Map<FieldName, Object> modelOutput = new LinkedHashMap<FieldName, Object>();
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			modelOutput.put(new FieldName((String) namesAndValues[i]), namesAndValues[i + 1]);
+		}
+
+		return modelOutput;
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.ml.pmml;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.ErrorHandler;
+import org.springframework.xd.analytics.ml.Analytic;
+
+public class WorkerPoolAnalyticMessageHandlerTest {
+
+	private static final int MESSAGE_COUNT = 200;
+
+	private final QueueChannel output = new QueueChannel();
+
+	private WorkerPoolAnalyticMessageHandler<Integer, Integer> handler;
+
+	@After
+	public void tearDown() {
+
+		if (handler != null) {
+			handler.destroy();
+		}
+	}
+
+	@Test
+	public void testShouldEmitResultsInReceiveOrder() {
+
+		handler = new WorkerPoolAnalyticMessageHandler<Integer, Integer>(new SquaringAnalytic(), output, 4, 8, true);
+
+		for (int i = 0; i < MESSAGE_COUNT; i++) {
+			handler.handleMessage(MessageBuilder.withPayload(i).build());
+		}
+
+		for (int i = 0; i < MESSAGE_COUNT; i++) {
+			assertThat(output.receive(5000).getPayload(), is((Object) (i * i)));
+		}
+	}
+
+	@Test
+	public void testShouldEmitAllResultsWithoutOrder() {
+
+		handler = new WorkerPoolAnalyticMessageHandler<Integer, Integer>(new SquaringAnalytic(), output, 4, 8, false);
+
+		for (int i = 0; i < MESSAGE_COUNT; i++) {
+			handler.handleMessage(MessageBuilder.withPayload(i).build());
+		}
+
+		List<Integer> results = new ArrayList<Integer>();
+		for (int i = 0; i < MESSAGE_COUNT; i++) {
+			results.add((Integer) output.receive(5000).getPayload());
+		}
+
+		Collections.sort(results);
+
+		for (int i = 0; i < MESSAGE_COUNT; i++) {
+			assertThat(results.get(i), is(i * i));
+		}
+	}
+
+	@Test
+	public void testShouldBlockCallerWhenQueueIsFull() throws Exception {
+
+		final CountDownLatch release = new CountDownLatch(1);
+
+		handler = new WorkerPoolAnalyticMessageHandler<Integer, Integer>(new Analytic<Integer, Integer>() {
+
+			@Override
+			public Integer evaluate(Integer input) {
+
+				try {
+					release.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				return input;
+			}
+		}, output, 2, 3, true);
+
+		final AtomicInteger sent = new AtomicInteger();
+		Thread producer = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+
+				for (int i = 0; i < 10; i++) {
+					handler.handleMessage(MessageBuilder.withPayload(i).build());
+					sent.incrementAndGet();
+				}
+			}
+		});
+		producer.start();
+
+		Thread.sleep(200);
+
+		assertThat(sent.get(), is(5));
+		assertThat(handler.getInFlightCount(), is(5));
+
+		release.countDown();
+		producer.join(5000);
+
+		for (int i = 0; i < 10; i++) {
+			assertThat(output.receive(5000).getPayload(), is((Object) i));
+		}
+
+		assertThat(sent.get(), is(10));
+	}
+
+	@Test
+	public void testShouldPassErrorsToErrorHandlerAndKeepOrder() {
+
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+		handler = new WorkerPoolAnalyticMessageHandler<Integer, Integer>(new Analytic<Integer, Integer>() {
+
+			@Override
+			public Integer evaluate(Integer input) {
+
+				if (input == 3) {
+					throw new IllegalArgumentException("not-a-year");
+				}
+
+				return input;
+			}
+		}, output, 4, 8, true);
+		handler.setErrorHandler(new ErrorHandler() {
+
+			@Override
+			public void handleError(Throwable t) {
+				errors.add(t);
+			}
+		});
+
+		for (int i = 0; i < 6; i++) {
+			handler.handleMessage(MessageBuilder.withPayload(i).build());
+		}
+
+		for (int i = 0; i < 6; i++) {
+
+			if (i == 3) {
+				continue;
+			}
+
+			Message<?> result = output.receive(5000);
+			assertThat(result.getPayload(), is((Object) i));
+		}
+
+		assertThat(errors.size(), is(1));
+		assertThat(errors.get(0), is(instanceOf(MessageHandlingException.class)));
+		assertThat(((MessageHandlingException) errors.get(0)).getFailedMessage().getPayload(), is((Object) 3));
+
+		// a worker releases its slot only after the result was sent, destroy waits for the workers to finish
+		handler.destroy();
+
+		assertThat(handler.getInFlightCount(), is(0));
+	}
+
+	@Test
+	public void testShouldEvaluateQueuedMessagesOnDestroy() {
+
+		handler = new WorkerPoolAnalyticMessageHandler<Integer, Integer>(new SquaringAnalytic(), output, 1, 8, true);
+
+		for (int i = 0; i < 6; i++) {
+			handler.handleMessage(MessageBuilder.withPayload(i).build());
+		}
+
+		handler.destroy();
+
+		for (int i = 0; i < 6; i++) {
+			assertThat(output.receive(0).getPayload(), is((Object) (i * i)));
+		}
+
+		assertThat(handler.getInFlightCount(), is(0));
+	}
+
+	@Test
+	public void testShouldReportMessagesDroppedAfterShutdownTimeout() throws Exception {
+
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch reported = new CountDownLatch(3);
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+		handler = new WorkerPoolAnalyticMessageHandler<Integer, Integer>(new Analytic<Integer, Integer>() {
+
+			@Override
+			public Integer evaluate(Integer input) {
+
+				try {
+					release.await();
+				}
+				catch (InterruptedException e) {
+					throw new IllegalStateException("interrupted");
+				}
+
+				return input;
+			}
+		}, output, 1, 4, true);
+		handler.setShutdownTimeout(50);
+		handler.setErrorHandler(new ErrorHandler() {
+
+			@Override
+			public void handleError(Throwable t) {
+				errors.add(t);
+				reported.countDown();
+			}
+		});
+
+		for (int i = 0; i < 3; i++) {
+			handler.handleMessage(MessageBuilder.withPayload(i).build());
+		}
+
+		// the worker is interrupted while it evaluates the first message, the queued ones are dropped
+		handler.destroy();
+
+		assertThat(reported.await(5, TimeUnit.SECONDS), is(true));
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(((MessageHandlingException) errors.get(i)).getFailedMessage().getPayload(), is((Object) i));
+		}
+
+		handler.destroy();
+
+		assertThat(handler.getInFlightCount(), is(0));
+	}
+
+	/**
+	 * Squares its input after a random delay, so later inputs regularly overtake earlier ones.
+	 */
+	static class SquaringAnalytic implements Analytic<Integer, Integer> {
+
+		@Override
+		public Integer evaluate(Integer input) {
+
+			try {
+				TimeUnit.MICROSECONDS.sleep((input * 7919) % 500);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			return input * input;
+		}
+	}
+}
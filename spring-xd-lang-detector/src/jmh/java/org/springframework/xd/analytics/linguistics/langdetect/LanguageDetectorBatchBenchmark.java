@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.linguistics.langdetect;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.xd.tuple.Tuple;
+import org.springframework.xd.tuple.TupleBuilder;
+
+/**
+ * Compares detecting the languages of a batch of tweet-sized and long texts one {@link Tuple} at a time with
+ * {@link LanguageDetector#processAll(List)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LanguageDetectorBatchBenchmark {
+
+	private static final String[] TEXTS = { Texts.SHORT_ENGLISH_1, Texts.SHORT_GERMAN_1, Texts.SHORT_ITALIAN_1,
+			Texts.SHORT_ENGLISH_FRENCH_MIX_1, Texts.SHORT_ENGLISH_2, Texts.LONG_ENGLISH_1, Texts.LONG_GERMAN_1,
+			Texts.LONG_ITALIAN_1 };
+
+	@Param({"1000"})
+	public int batchSize;
+
+	private LanguageDetector languageDetector;
+
+	private List<Tuple> batch;
+
+	@Setup
+	public void setup() throws Exception {
+
+		languageDetector = new LanguageDetector();
+		languageDetector.setReturnMostLikelyLanguage(true);
+		languageDetector.setTextModel(TextModel.SHORTTEXT);
+		languageDetector.setInputTextContentPropertyName("text");
+		languageDetector.setMostLikelyLanguageOutputPropertyName("pred_lang");
+		languageDetector.setDeterministicLanguageDetection(true);
+		languageDetector.afterPropertiesSet();
+
+		batch = new ArrayList<Tuple>(batchSize);
+		for (int i = 0; i < batchSize; i++) {
+			batch.add(TupleBuilder.tuple().of("text", TEXTS[i % TEXTS.length]));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		languageDetector.destroy();
+	}
+
+	@Benchmark
+	public List<Tuple> sequential() throws Exception {
+
+		List<Tuple> outputs = new ArrayList<Tuple>(batch.size());
+		for (Tuple input : batch) {
+			outputs.add(languageDetector.process(input));
+		}
+
+		return outputs;
+	}
+
+	@Benchmark
+	public List<DetectionResult<Tuple>> processAll() throws Exception {
+		return languageDetector.processAll(batch);
+	}
+}
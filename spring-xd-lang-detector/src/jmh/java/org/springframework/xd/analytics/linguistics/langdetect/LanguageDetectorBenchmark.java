@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.linguistics.langdetect;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.cybozu.labs.langdetect.Detector;
+import com.cybozu.labs.langdetect.DetectorFactory;
+import com.cybozu.labs.langdetect.Language;
+import com.cybozu.labs.langdetect.util.LangProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.xd.tuple.Tuple;
+import org.springframework.xd.tuple.TupleBuilder;
+
+/**
+ * Compares detecting the language of a tweet-sized and a long text with the {@link LanguageDetector} and its
+ * {@link ProfileTableDetector} against the {@link Detector} of the langdetect library, all with the same profiles,
+ * priorities and seed, as well as with a {@code LanguageDetector} with an adaptive language detection. Run with
+ * {@code -prof gc}, the default of the {@code jmh} task, to see the allocations per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LanguageDetectorBenchmark {
+
+	private static final String LANGUAGE_PRIORITIES = "en:0.5,de:0.3,fr:0.2";
+
+	@Param({"SHORT", "LONG"})
+	public String text;
+
+	private LanguageDetector languageDetector;
+
+	private LanguageDetector adaptiveLanguageDetector;
+
+	private ProfileTableDetector profileTableDetector;
+
+	private HashMap<String, Double> languagePriorityMap;
+
+	private Tuple input;
+
+	@Setup
+	public void setup() throws Exception {
+
+		languageDetector = new LanguageDetector();
+		languageDetector.setReturnMostLikelyLanguage(true);
+		languageDetector.setTextModel(TextModel.SHORTTEXT);
+		languageDetector.setInputTextContentPropertyName("text");
+		languageDetector.setMostLikelyLanguageOutputPropertyName("pred_lang");
+		languageDetector.setLanguagePriorities(LANGUAGE_PRIORITIES);
+		languageDetector.setDeterministicLanguageDetection(true);
+		languageDetector.afterPropertiesSet();
+
+		adaptiveLanguageDetector = new LanguageDetector();
+		adaptiveLanguageDetector.setReturnMostLikelyLanguage(true);
+		adaptiveLanguageDetector.setTextModel(TextModel.SHORTTEXT);
+		adaptiveLanguageDetector.setInputTextContentPropertyName("text");
+		adaptiveLanguageDetector.setMostLikelyLanguageOutputPropertyName("pred_lang");
+		adaptiveLanguageDetector.setLanguagePriorities(LANGUAGE_PRIORITIES);
+		adaptiveLanguageDetector.setDeterministicLanguageDetection(true);
+		adaptiveLanguageDetector.setAdaptiveLanguageDetection(true);
+		adaptiveLanguageDetector.afterPropertiesSet();
+
+		profileTableDetector = languageDetector.newDetector();
+
+		languagePriorityMap = new HashMap<String, Double>(new LanguagePriorityParser()
+				.parseToLanguagePriorityMap(LANGUAGE_PRIORITIES));
+
+		List<String> profiles = new ArrayList<String>();
+		for (String language : profileTableDetector.getLanguages()) {
+			try (InputStream is = LangProfile.class.getClassLoader().getResourceAsStream("profiles/shorttext/" + language)) {
+				profiles.add(FileCopyUtils.copyToString(new InputStreamReader(is, "UTF-8")));
+			}
+		}
+
+		DetectorFactory.clear();
+		DetectorFactory.loadProfile(profiles);
+		DetectorFactory.setSeed(0L);
+
+		input = TupleBuilder.tuple().of("text", "LONG".equals(text) ? Texts.LONG_ENGLISH_1 : Texts.SHORT_ENGLISH_2);
+	}
+
+	@TearDown
+	public void tearDown() {
+		DetectorFactory.clear();
+	}
+
+	@Benchmark
+	public Tuple languageDetector() throws Exception {
+		return languageDetector.process(input);
+	}
+
+	@Benchmark
+	public Tuple adaptiveLanguageDetector() throws Exception {
+		return adaptiveLanguageDetector.process(input);
+	}
+
+	@Benchmark
+	public List<Language> profileTableDetector() throws Exception {
+		return profileTableDetector.getProbabilities(input.getString("text"));
+	}
+
+	@Benchmark
+	public List<Language> libraryDetector() throws Exception {
+
+		Detector detector = DetectorFactory.create();
+		detector.setPriorMap(languagePriorityMap);
+		detector.append(input.getString("text"));
+
+		return detector.getProbabilities();
+	}
+}
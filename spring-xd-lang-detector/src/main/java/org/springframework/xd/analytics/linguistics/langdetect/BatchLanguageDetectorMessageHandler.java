@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.linguistics.langdetect;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.integration.handler.AbstractMessageHandler;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+import org.springframework.xd.tuple.Tuple;
+
+/**
+ * A {@link org.springframework.messaging.MessageHandler} that detects the languages of a batch of messages collected by
+ * an aggregator, i.e. a message whose payload is the {@link Collection} of the collected {@link Message}s, with
+ * {@link LanguageDetector#processAll(List)}.
+ * <p>
+ * Every result is sent to the output channel with the headers of the message it was computed from, in the order of the
+ * batch. A message whose language cannot be detected is passed to the {@link ErrorHandler} as
+ * {@link MessageHandlingException} on its own, the other messages of the batch are still sent.
+ * </p>
+ */
+public class BatchLanguageDetectorMessageHandler extends AbstractMessageHandler {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BatchLanguageDetectorMessageHandler.class);
+
+	private final LanguageDetector languageDetector;
+
+	private final MessageChannel outputChannel;
+
+	private volatile ErrorHandler errorHandler = new ErrorHandler() {
+
+		@Override
+		public void handleError(Throwable t) {
+			LOG.error("Could not detect the language of message", t);
+		}
+	};
+
+	/**
+	 * Creates a new {@link BatchLanguageDetectorMessageHandler}.
+	 *
+	 * @param languageDetector must not be {@literal null}
+	 * @param outputChannel must not be {@literal null}
+	 */
+	public BatchLanguageDetectorMessageHandler(LanguageDetector languageDetector, MessageChannel outputChannel) {
+
+		Assert.notNull(languageDetector, "languageDetector");
+		Assert.notNull(outputChannel, "outputChannel");
+
+		this.languageDetector = languageDetector;
+		this.outputChannel = outputChannel;
+	}
+
+	/**
+	 * @param errorHandler must not be {@literal null}
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+
+		Assert.notNull(errorHandler, "errorHandler");
+
+		this.errorHandler = errorHandler;
+	}
+
+	@Override
+	public String getComponentType() {
+		return "lang-detector-batch";
+	}
+
+	@Override
+	protected void handleMessageInternal(Message<?> batch) throws Exception {
+
+		Assert.isInstanceOf(Collection.class, batch.getPayload(), "The payload of a batch must be a collection of messages");
+
+		Collection<?> elements = (Collection<?>) batch.getPayload();
+		List<Message<?>> messages = new ArrayList<Message<?>>(elements.size());
+		List<Tuple> inputs = new ArrayList<Tuple>(elements.size());
+
+		for (Object element : elements) {
+
+			Assert.isInstanceOf(Message.class, element, "The payload of a batch must be a collection of messages");
+
+			Message<?> message = (Message<?>) element;
+			Assert.isInstanceOf(Tuple.class, message.getPayload(), "The payload of a message must be a tuple");
+
+			messages.add(message);
+			inputs.add((Tuple) message.getPayload());
+		}
+
+		List<DetectionResult<Tuple>> results = languageDetector.processAll(inputs);
+
+		for (int i = 0; i < messages.size(); i++) {
+
+			Message<?> message = messages.get(i);
+			DetectionResult<Tuple> result = results.get(i);
+
+			if (result.isFailed()) {
+				errorHandler.handleError(new MessageHandlingException(message, "Could not detect the language of message",
+						result.getError()));
+			} else {
+				outputChannel.send(MessageBuilder.withPayload(result.getValue()).copyHeaders(message.getHeaders()).build());
+			}
+		}
+	}
+}
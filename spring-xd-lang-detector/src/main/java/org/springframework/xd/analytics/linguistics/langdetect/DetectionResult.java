@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.linguistics.langdetect;
+
+import com.cybozu.labs.langdetect.LangDetectException;
+
+/**
+ * The outcome of the language detection for one text of a batch, either the detected value or the
+ * {@link LangDetectException} that was raised for that text.
+ *
+ * @param <T> the type of the detected value
+ */
+public final class DetectionResult<T> {
+
+	private final T value;
+
+	private final LangDetectException error;
+
+	private DetectionResult(T value, LangDetectException error) {
+		this.value = value;
+		this.error = error;
+	}
+
+	static <T> DetectionResult<T> success(T value) {
+		return new DetectionResult<T>(value, null);
+	}
+
+	static <T> DetectionResult<T> failure(LangDetectException error) {
+		return new DetectionResult<T>(null, error);
+	}
+
+	/**
+	 * @return {@literal true} if the language of the text could not be detected.
+	 */
+	public boolean isFailed() {
+		return error != null;
+	}
+
+	/**
+	 * @return the detected value or {@literal null} if the detection failed.
+	 */
+	public T getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the reason why the detection failed or {@literal null} if it succeeded.
+	 */
+	public LangDetectException getError() {
+		return error;
+	}
+}
@@ -17,23 +17,24 @@ package org.springframework.xd.analytics.linguistics.langdetect;
 
 import static org.springframework.util.StringUtils.*;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
 
-import com.cybozu.labs.langdetect.Detector;
-import com.cybozu.labs.langdetect.DetectorFactory;
 import com.cybozu.labs.langdetect.LangDetectException;
+import com.cybozu.labs.langdetect.Language;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.io.Resource;
-import org.springframework.util.CollectionUtils;
-import org.springframework.util.FileCopyUtils;
-import org.springframework.util.ReflectionUtils;
+import org.springframework.util.Assert;
 import org.springframework.xd.tuple.Tuple;
 import org.springframework.xd.tuple.TupleBuilder;
 
@@ -41,8 +42,6 @@ import org.springframework.xd.tuple.TupleBuilder;
  * A processor that can predict the language of a piece of text extracted from a {@link org.springframework.xd.tuple.Tuple}.
  * <p>
  * Language prediction is supported for short and long texts via different language models.
- * Note since the {@code langdetect} library holds the language model as static state one
- * can only deal with one model instance per {@link java.lang.ClassLoader} at a time.
  * </p>
  * The langdetect library has the following characteristics.
  * <ul>
@@ -51,13 +50,36 @@ import org.springframework.xd.tuple.TupleBuilder;
  * <li>99% over precision for 53 languages</li>
  * </ul>
  * More details can be found the the <a href="https://code.google.com/p/language-detection/wiki/FrequentlyAskedQuestion">langdetect FAQ</a>.
+ * <p>
+ * The language profiles of the langdetect library are read by a {@link LanguageProfileLoader} into a
+ * {@link LanguageProfileTable} per instance, so unlike with the global {@link com.cybozu.labs.langdetect.DetectorFactory}
+ * several instances can use different models in the same {@link java.lang.ClassLoader}. The texts are scored by
+ * pooled {@link ProfileTableDetector}s. The table can be written to and memory-mapped from the file given by
+ * {@link #setLanguageProfileTableLocation(String)}.
+ * </p>
+ * <p>
+ * Batches of texts, e.g. the output of an aggregator, can be scored with {@link #processAll(List)} and
+ * {@link #detectAll(List)}, which split the batch across a {@link ForkJoinPool} and keep the order of the inputs.
+ * </p>
+ * <p>
+ * With {@link #setAdaptiveLanguageDetection(boolean)} the detectors stop sampling once the most likely language
+ * reaches the {@link #setConfidenceThreshold(double) confidence threshold} or stops changing, instead of always running
+ * all trials. The trials and iterations used are reported by the {@link LanguageDetectorMetrics}.
+ * </p>
  *
  * @author Thomas Darimont
  */
-public class LanguageDetector implements InitializingBean {
+public class LanguageDetector implements InitializingBean, DisposableBean {
 
 	private static final Logger LOG = LoggerFactory.getLogger(LanguageDetector.class);
 
+	private static final int DETECTOR_POOL_CAPACITY = Runtime.getRuntime().availableProcessors() * 4;
+
+	/**
+	 * The number of texts below which a batch is not split any further but scored by a single detector.
+	 */
+	private static final int MIN_TEXTS_PER_TASK = 8;
+
 	private String languageProfileLocation;
 
 	private TextModel textModel;
@@ -76,13 +98,26 @@ public class LanguageDetector implements InitializingBean {
 
 	private String languagePriorities;
 
-	//we need to use concrete types here since Detector requires them :-(
-	private HashMap<String,Double> languagePriorityMap;
+	private String languageProfileTableLocation;
 
-	private DetectorFactoryState detectorFactoryState;
+	private boolean adaptiveLanguageDetection;
+
+	private double confidenceThreshold = 0.99;
 
 	private LanguagePriorityParser languagePriorityParser = new LanguagePriorityParser();
 
+	private LanguageProfileTable languageProfileTable;
+
+	private double[] languagePriors;
+
+	private final BlockingQueue<ProfileTableDetector> detectorPool = new ArrayBlockingQueue<ProfileTableDetector>(
+			DETECTOR_POOL_CAPACITY);
+
+	//the worker threads are only started by the first batch.
+	private final ForkJoinPool batchPool = new ForkJoinPool();
+
+	private final LanguageDetectorMetrics metrics = new LanguageDetectorMetrics();
+
 	/**
 	 * Performs the language prediction based on text extracted from the given {@link org.springframework.xd.tuple.Tuple}.
 	 * <p>
@@ -96,141 +131,274 @@ public class LanguageDetector implements InitializingBean {
 	 */
 	public Tuple process(Tuple input) throws LangDetectException {
 
+		assertNotDestroyed();
+
 		if (!isLanguageDetectionEnabled()) {
 			return input;
 		}
 
 		String text = input.getString(getInputTextContentPropertyName());
 
-		Detector detector = newDetector(this.detectorFactoryState);
+		ProfileTableDetector detector = acquireDetector();
+
+		try {
+			return createOutput(input, detect(detector, text));
+		} finally {
+			releaseDetector(detector);
+		}
+	}
+
+	/**
+	 * Performs the language prediction for each of the given {@link Tuple}s like {@link #process(Tuple)}, scoring the
+	 * texts in parallel. A text whose language cannot be detected does not fail the other texts of the batch.
+	 *
+	 * @param inputs must not be {@literal null}
+	 * @return a {@link DetectionResult} with a new {@code Tuple} with the predicted language information or the
+	 *         {@link LangDetectException} for each of the given {@code inputs}, in the same order.
+	 */
+	public List<DetectionResult<Tuple>> processAll(List<Tuple> inputs) {
+
+		Assert.notNull(inputs, "inputs");
+
+		List<DetectionResult<Tuple>> outputs = new ArrayList<DetectionResult<Tuple>>(inputs.size());
+
+		if (!isLanguageDetectionEnabled()) {
+			for (Tuple input : inputs) {
+				outputs.add(DetectionResult.success(input));
+			}
+			return outputs;
+		}
+
+		List<String> texts = new ArrayList<String>(inputs.size());
+		for (Tuple input : inputs) {
+			texts.add(input.getString(getInputTextContentPropertyName()));
+		}
+
+		List<DetectionResult<List<Language>>> probabilities = detectAll(texts);
+
+		for (int i = 0; i < inputs.size(); i++) {
+			DetectionResult<List<Language>> result = probabilities.get(i);
+			outputs.add(result.isFailed() ? DetectionResult.<Tuple> failure(result.getError()) : DetectionResult
+					.success(createOutput(inputs.get(i), result.getValue())));
+		}
+
+		return outputs;
+	}
+
+	/**
+	 * Detects the language probabilities of the given texts. Batches with more than a few texts are split into ranges
+	 * that are scored on the threads of a {@link ForkJoinPool}, each range with its own pooled
+	 * {@link ProfileTableDetector}. A text whose language cannot be detected does not fail the other texts of the
+	 * batch.
+	 *
+	 * @param texts must not be {@literal null}
+	 * @return a {@link DetectionResult} with the language probabilities or the {@link LangDetectException} for each of
+	 *         the given {@code texts}, in the same order.
+	 * @throws IllegalStateException if this detector was destroyed.
+	 */
+	public List<DetectionResult<List<Language>>> detectAll(List<String> texts) {
+
+		Assert.notNull(texts, "texts");
+
+		assertNotDestroyed();
+
+		//the tasks only set the results of their own range.
+		List<DetectionResult<List<Language>>> results = new ArrayList<DetectionResult<List<Language>>>(
+				Collections.<DetectionResult<List<Language>>> nCopies(texts.size(), null));
+		DetectionTask task = new DetectionTask(texts, results, 0, texts.size());
+
+		if (texts.size() <= MIN_TEXTS_PER_TASK || batchPool.getParallelism() == 1) {
+			task.compute();
+		} else {
+			try {
+				batchPool.invoke(task);
+			} catch (RejectedExecutionException ex) {
+				throw new IllegalStateException("LanguageDetector was destroyed", ex);
+			}
+		}
+
+		return results;
+	}
+
+	private List<Language> detect(ProfileTableDetector detector, String text) throws LangDetectException {
+
+		try {
+			List<Language> probabilities = detector.getProbabilities(text);
+			metrics.recordDetection(detector);
+			return probabilities;
+		} catch (LangDetectException ex) {
+			metrics.recordError();
+			throw ex;
+		}
+	}
 
-		detector.append(text);
+	private Tuple createOutput(Tuple input, List<Language> probabilities) {
 
-		List<String> names = new ArrayList<String>();
-		List<Object> values = new ArrayList<Object>();
+		List<String> names = new ArrayList<String>(input.size() + 2);
+		List<Object> values = new ArrayList<Object>(input.size() + 2);
 
 		names.addAll(input.getFieldNames());
 		values.addAll(input.getValues());
 
 		if (isReturnMostLikelyLanguage()) {
 			names.add(getMostLikelyLanguageOutputPropertyName());
-			values.add(detector.detect());
+			values.add(ProfileTableDetector.mostLikelyLanguage(probabilities));
 		}
 
 		if (isReturnLanguageProbabilities()) {
 			names.add(getLanguageProbabilitiesOutputPropertyName());
-			values.add(detector.getProbabilities());
+			values.add(probabilities);
 		}
 
 		return TupleBuilder.tuple().ofNamesAndValues(names, values);
 	}
 
 	/**
-	 * This creates a new {@link com.cybozu.labs.langdetect.Detector} instance.
-	 * We have to create the instance ourselves to avoid problems with the shared state inside {@link com.cybozu.labs.langdetect.DetectorFactory}.
+	 * Takes a {@link ProfileTableDetector} from the pool or creates a new one if the pool is empty.
 	 *
-	 * @param detectorFactoryState
 	 * @return
 	 */
-	private Detector newDetector(DetectorFactoryState detectorFactoryState) throws LangDetectException {
-
-		Detector detector = new Detector(detectorFactoryState.getWordLangProbMap(), detectorFactoryState.getLanguageList(), detectorFactoryState.getSeed());
+	ProfileTableDetector acquireDetector() {
 
-		if (!CollectionUtils.isEmpty(languagePriorityMap)) {
-			detector.setPriorMap(languagePriorityMap);
-		}
+		ProfileTableDetector detector = detectorPool.poll();
 
-		return detector;
+		return detector != null ? detector : newDetector();
 	}
 
-	private boolean isLanguageDetectionEnabled() {
-		return isReturnMostLikelyLanguage() || isReturnLanguageProbabilities();
+	/**
+	 * Returns the given {@link ProfileTableDetector} to the pool. Detectors that do not fit into the pool anymore are
+	 * left to the garbage collector.
+	 *
+	 * @param detector
+	 */
+	void releaseDetector(ProfileTableDetector detector) {
+		detectorPool.offer(detector);
 	}
 
-	@Override
-	public void afterPropertiesSet() throws Exception {
+	/**
+	 * Creates a new {@link ProfileTableDetector} for the current language profiles.
+	 *
+	 * @return
+	 */
+	ProfileTableDetector newDetector() {
+		return new ProfileTableDetector(languageProfileTable, languagePriors, isDeterministicLanguageDetection() ? 0L : null,
+				isAdaptiveLanguageDetection() ? confidenceThreshold : null);
+	}
 
-		this.languagePriorityMap = new HashMap<String,Double>(languagePriorityParser.parseToLanguagePriorityMap(languagePriorities));
+	/**
+	 * @return the {@link LanguageDetectorMetrics} of this detector.
+	 */
+	public LanguageDetectorMetrics getMetrics() {
+		return metrics;
+	}
 
-		loadLanguageProfiles();
+	private void assertNotDestroyed() {
 
-		this.detectorFactoryState = captureDetectorFactoryState();
+		if (batchPool.isShutdown()) {
+			throw new IllegalStateException("LanguageDetector was destroyed");
+		}
+	}
 
-		LOG.info("Loaded language profiles from {}.", languageProfileLocation);
+	private boolean isLanguageDetectionEnabled() {
+		return isReturnMostLikelyLanguage() || isReturnLanguageProbabilities();
 	}
 
-	private void loadLanguageProfiles() throws LangDetectException, IOException {
+	@Override
+	public void afterPropertiesSet() throws Exception {
 
-		if (isEmpty(this.languageProfileLocation)) {
-			LOG.info("Using embedded language profiles.");
-			loadEmbeddedLangaugeProfiles();
-			return;
-		}
+		Map<String, Double> languagePriorityMap = languagePriorityParser.parseToLanguagePriorityMap(languagePriorities);
 
-		LOG.info("Using language profiles from {}.", languageProfileLocation);
-		loadExternalLanguageProfiles();
-	}
+		this.languageProfileTable = loadLanguageProfileTable();
+		this.languagePriors = ProfileTableDetector.toPriors(languageProfileTable.getLanguages(), languagePriorityMap);
 
-	private void loadExternalLanguageProfiles() throws LangDetectException, IOException {
-		Resource languageProfileResource = new DefaultResourceLoader(getClass().getClassLoader()).getResource(languageProfileLocation);
-		DetectorFactory.loadProfile(languageProfileResource.getFile());
+		//pooled detectors refer to the previous language profiles.
+		this.detectorPool.clear();
 	}
 
-	private void loadEmbeddedLangaugeProfiles() throws LangDetectException {
-		DetectorFactory.loadProfile(extractEmbeddedLanguageModels());
+	/**
+	 * Shuts down the threads that score batches, the detector can not be used afterwards.
+	 */
+	@Override
+	public void destroy() {
+		batchPool.shutdown();
 	}
 
 	/**
-	 * Captures the current state of the {@link com.cybozu.labs.langdetect.DetectorFactory} to make sure
-	 * that state cannot be overridden by concurrent initializations later on.
-	 * <p>This is necessary since, the state in the {@code DetectorFactory} is stored globally.</p>
+	 * Maps the {@link LanguageProfileTable} from the configured {@link #languageProfileTableLocation} if the file exists.
+	 * Otherwise the table is built from the language profiles and written to that location, if any, to be mapped on the
+	 * next start. A mapped table is rebuilt if it cannot be read, if it was built from other language profiles than the
+	 * configured {@link #textModel} or {@link #languageProfileLocation}, or from other contents of them, or if it has
+	 * the other precision, since deterministic detection uses a table with {@code double} probabilities, which scores
+	 * exactly like the {@link com.cybozu.labs.langdetect.Detector}.
 	 *
 	 * @return
+	 * @throws LangDetectException
+	 * @throws IOException
 	 */
-	@SuppressWarnings("unchecked")
-	private DetectorFactoryState captureDetectorFactoryState() {
+	private LanguageProfileTable loadLanguageProfileTable() throws LangDetectException, IOException {
 
-		Field detectorFactoryInstanceField = ReflectionUtils.findField(DetectorFactory.class, "instance_");
-		ReflectionUtils.makeAccessible(detectorFactoryInstanceField);
+		File tableFile = isEmpty(languageProfileTableLocation) ? null : new File(languageProfileTableLocation);
+		LanguageProfileLoader loader = new LanguageProfileLoader(isDeterministicLanguageDetection());
 
-		Field detectorFactoryWordLangProbMapField = ReflectionUtils.findField(DetectorFactory.class, "wordLangProbMap");
-		ReflectionUtils.makeAccessible(detectorFactoryWordLangProbMapField);
+		if (tableFile != null && tableFile.exists()) {
 
-		DetectorFactory instance = (DetectorFactory) ReflectionUtils.getField(detectorFactoryInstanceField, null);
-		HashMap<String, double[]> wordLangProbMap = (HashMap<String, double[]>) ReflectionUtils.getField(detectorFactoryWordLangProbMapField, instance);
-		ArrayList<String> languageList = new ArrayList<>(DetectorFactory.getLangList());
+			LOG.info("Mapping language profile table from {}.", tableFile);
+			LanguageProfileTable table = mapLanguageProfileTable(tableFile);
 
-		return new DetectorFactoryState(languageList, wordLangProbMap, isDeterministicLanguageDetection() ? 0L : null);
-	}
+			if (table != null && table.isDoublePrecision() == isDeterministicLanguageDetection()
+					&& table.getSource().equals(getLanguageProfilesSource(loader))) {
+				return table;
+			}
 
-	private List<String> extractEmbeddedLanguageModels() {
+			LOG.info("Rebuilding language profile table {} for the language profiles and precision of the language detection.",
+					tableFile);
+		}
 
-		List<String> languageModels = new ArrayList<String>();
+		LanguageProfileTable table = loadLanguageProfiles(loader);
 
-		Set<String> supportedLanguages = new TreeSet<String>();
-		for (Locale locale : Locale.getAvailableLocales()) {
+		LOG.info("Built language profile table with {} n-grams of {} languages.", table.size(), table.getLanguages().size());
 
-			if (locale.getLanguage().isEmpty()) {
-				continue;
-			}
+		if (tableFile != null) {
+			LOG.info("Writing language profile table to {}.", tableFile);
+			table.write(tableFile);
+		}
+
+		return table;
+	}
+
+	private static LanguageProfileTable mapLanguageProfileTable(File tableFile) {
 
-			supportedLanguages.add(locale.getLanguage().toLowerCase());
+		try {
+			return LanguageProfileTable.map(tableFile);
+		} catch (IOException ex) {
+			LOG.warn("Could not map language profile table from {}: {}", tableFile, ex.getMessage());
+			return null;
 		}
+	}
 
-		//added these manually since they were not present in the available Locales.
-		supportedLanguages.add("zh-cn");
-		supportedLanguages.add("zh-tw");
+	private LanguageProfileTable loadLanguageProfiles(LanguageProfileLoader loader) throws LangDetectException,
+			IOException {
 
-		for (String lang : supportedLanguages) {
-			try (InputStream is = DetectorFactory.class.getClassLoader().getResourceAsStream("profiles/" + getTextModel().name().toLowerCase() + "/" + lang)) {
-				String json = FileCopyUtils.copyToString(new InputStreamReader(is));
-				languageModels.add(json);
-			} catch (Exception ex) {
-				continue;
-			}
+		if (isEmpty(this.languageProfileLocation)) {
+			LOG.info("Using embedded language profiles.");
+			return loader.loadEmbeddedProfiles(getTextModel());
 		}
 
-		return languageModels;
+		LOG.info("Using language profiles from {}.", languageProfileLocation);
+
+		return loader.loadProfiles(getLanguageProfileDirectory());
+	}
+
+	private String getLanguageProfilesSource(LanguageProfileLoader loader) throws LangDetectException, IOException {
+
+		return isEmpty(this.languageProfileLocation) ? loader.getEmbeddedProfilesSource(getTextModel()) : loader
+				.getProfilesSource(getLanguageProfileDirectory());
+	}
+
+	private File getLanguageProfileDirectory() throws IOException {
+
+		Resource languageProfileResource = new DefaultResourceLoader(getClass().getClassLoader()).getResource(languageProfileLocation);
+		return languageProfileResource.getFile();
 	}
 
 	public String getLanguageProfileLocation() {
@@ -305,32 +473,76 @@ public class LanguageDetector implements InitializingBean {
 		this.languagePriorities = languagePriorities;
 	}
 
+	public String getLanguageProfileTableLocation() {
+		return languageProfileTableLocation;
+	}
+
+	public void setLanguageProfileTableLocation(String languageProfileTableLocation) {
+		this.languageProfileTableLocation = languageProfileTableLocation;
+	}
+
+	public boolean isAdaptiveLanguageDetection() {
+		return adaptiveLanguageDetection;
+	}
+
+	public void setAdaptiveLanguageDetection(boolean adaptiveLanguageDetection) {
+		this.adaptiveLanguageDetection = adaptiveLanguageDetection;
+	}
+
+	public double getConfidenceThreshold() {
+		return confidenceThreshold;
+	}
+
+	public void setConfidenceThreshold(double confidenceThreshold) {
+		this.confidenceThreshold = confidenceThreshold;
+	}
+
 	/**
-	 * Holds the configured state of the {@link com.cybozu.labs.langdetect.DetectorFactory} at construction time to avoid
-	 * sudden value changes in between. This is necessary since the DetectorFactory state is stored on a global singleton.
+	 * Scores a range of a batch of texts, either with one {@link ProfileTableDetector} or by splitting the range in
+	 * halves. A {@link LangDetectException} is recorded as the result of its text and the range is scored on.
 	 */
-	static class DetectorFactoryState {
+	@SuppressWarnings("serial")
+	private class DetectionTask extends RecursiveAction {
 
-		private final ArrayList<String> languageList;
-		private final HashMap<String, double[]> wordLangProbMap;
-		private final Long seed;
+		private final List<String> texts;
 
-		public DetectorFactoryState(ArrayList<String> languageList, HashMap<String, double[]> wordLangProbMap, Long seed) {
-			this.languageList = languageList;
-			this.wordLangProbMap = wordLangProbMap;
-			this.seed = seed;
-		}
+		private final List<DetectionResult<List<Language>>> results;
 
-		public ArrayList<String> getLanguageList() {
-			return languageList;
-		}
+		private final int from;
+
+		private final int to;
 
-		public HashMap<String, double[]> getWordLangProbMap() {
-			return wordLangProbMap;
+		DetectionTask(List<String> texts, List<DetectionResult<List<Language>>> results, int from, int to) {
+
+			this.texts = texts;
+			this.results = results;
+			this.from = from;
+			this.to = to;
 		}
 
-		public Long getSeed() {
-			return seed;
+		@Override
+		protected void compute() {
+
+			if (to - from > MIN_TEXTS_PER_TASK) {
+
+				int middle = (from + to) >>> 1;
+				invokeAll(new DetectionTask(texts, results, from, middle), new DetectionTask(texts, results, middle, to));
+				return;
+			}
+
+			ProfileTableDetector detector = acquireDetector();
+
+			try {
+				for (int i = from; i < to; i++) {
+					try {
+						results.set(i, DetectionResult.success(detect(detector, texts.get(i))));
+					} catch (LangDetectException ex) {
+						results.set(i, DetectionResult.<List<Language>> failure(ex));
+					}
+				}
+			} finally {
+				releaseDetector(detector);
+			}
 		}
 	}
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.linguistics.langdetect;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Collects the number of detected texts and failed detections of a {@link LanguageDetector} together with the sampling
+ * trials and iterations the {@link ProfileTableDetector}s needed for them, which shows how much sampling an adaptive
+ * language detection saves. Instances are exported as MBean of the owning module if JMX is enabled in the container.
+ */
+@ManagedResource(description = "Detection metrics of a language detector")
+public class LanguageDetectorMetrics {
+
+	private final AtomicLong detectionCount = new AtomicLong();
+
+	private final AtomicLong errorCount = new AtomicLong();
+
+	private final AtomicLong earlyExitCount = new AtomicLong();
+
+	private final AtomicLong trialCount = new AtomicLong();
+
+	private final AtomicLong iterationCount = new AtomicLong();
+
+	/**
+	 * Records the detection of a text with the trial and iteration counts of the given {@link ProfileTableDetector}.
+	 *
+	 * @param detector must not be {@literal null}
+	 */
+	public void recordDetection(ProfileTableDetector detector) {
+
+		detectionCount.incrementAndGet();
+		trialCount.addAndGet(detector.getTrialCount());
+		iterationCount.addAndGet(detector.getIterationCount());
+
+		if (detector.getTrialCount() < ProfileTableDetector.N_TRIAL) {
+			earlyExitCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Records a text whose language could not be detected.
+	 */
+	public void recordError() {
+		errorCount.incrementAndGet();
+	}
+
+	@ManagedAttribute(description = "The number of texts whose language was detected")
+	public long getDetectionCount() {
+		return detectionCount.get();
+	}
+
+	@ManagedAttribute(description = "The number of texts whose language could not be detected")
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	@ManagedAttribute(description = "The number of detections that stopped sampling before the last trial")
+	public long getEarlyExitCount() {
+		return earlyExitCount.get();
+	}
+
+	@ManagedAttribute(description = "The number of sampling trials of all detections")
+	public long getTrialCount() {
+		return trialCount.get();
+	}
+
+	@ManagedAttribute(description = "The number of sampled n-grams of all detections")
+	public long getIterationCount() {
+		return iterationCount.get();
+	}
+
+	@ManagedAttribute(description = "The average number of sampling trials per detection")
+	public double getAverageTrialCount() {
+
+		long detections = detectionCount.get();
+		return detections == 0 ? 0 : (double) trialCount.get() / detections;
+	}
+
+	@ManagedAttribute(description = "The average number of sampled n-grams per detection")
+	public double getAverageIterationCount() {
+
+		long detections = detectionCount.get();
+		return detections == 0 ? 0 : (double) iterationCount.get() / detections;
+	}
+}
@@ -15,16 +15,22 @@
  */
 package org.springframework.xd.analytics.linguistics.langdetect;
 
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.springframework.xd.module.options.spi.ModuleOption;
+import org.springframework.xd.module.options.spi.ProfileNamesProvider;
 
 /**
  * Documents the options of the langdetect module.
  *
  * @author Thomas Darimont
  */
-public class LanguageDetectorOptionsMetadata {
+public class LanguageDetectorOptionsMetadata implements ProfileNamesProvider {
+
+	static final String BATCH_PROFILE = "use-batch";
 
 	private String languageProfileLocation = "";
 
@@ -44,6 +50,16 @@ public class LanguageDetectorOptionsMetadata {
 
 	private String languagePriorities;
 
+	private String languageProfileTableLocation = "";
+
+	private int batchSize = 1;
+
+	private long batchTimeout = 1000;
+
+	private boolean adaptiveLanguageDetection;
+
+	private double confidenceThreshold = 0.99;
+
 	public String getLanguageProfileLocation() {
 		return languageProfileLocation;
 	}
@@ -128,4 +144,58 @@ public class LanguageDetectorOptionsMetadata {
 	public void setLanguagePriorities(String languagePriorities) {
 		this.languagePriorities = languagePriorities;
 	}
+
+	public String getLanguageProfileTableLocation() {
+		return languageProfileTableLocation;
+	}
+
+	@ModuleOption("the file the language profile table is mapped from, or written to if it does not exist yet")
+	public void setLanguageProfileTableLocation(String languageProfileTableLocation) {
+		this.languageProfileTableLocation = languageProfileTableLocation;
+	}
+
+	@Min(1)
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	@ModuleOption("the number of texts to detect the language of as one batch, 1 disables batching")
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	@Min(1)
+	public long getBatchTimeout() {
+		return batchTimeout;
+	}
+
+	@ModuleOption("the maximum time in ms to wait for a batch to fill up before the languages are detected")
+	public void setBatchTimeout(long batchTimeout) {
+		this.batchTimeout = batchTimeout;
+	}
+
+	public boolean isAdaptiveLanguageDetection() {
+		return adaptiveLanguageDetection;
+	}
+
+	@ModuleOption("stops sampling a text early once its most likely language is certain enough if enabled")
+	public void setAdaptiveLanguageDetection(boolean adaptiveLanguageDetection) {
+		this.adaptiveLanguageDetection = adaptiveLanguageDetection;
+	}
+
+	@DecimalMin("0")
+	@DecimalMax("1")
+	public double getConfidenceThreshold() {
+		return confidenceThreshold;
+	}
+
+	@ModuleOption("the probability of the most likely language at which an adaptive detection stops sampling")
+	public void setConfidenceThreshold(double confidenceThreshold) {
+		this.confidenceThreshold = confidenceThreshold;
+	}
+
+	@Override
+	public String[] profilesToActivate() {
+		return batchSize > 1 ? new String[] { BATCH_PROFILE } : new String[0];
+	}
 }
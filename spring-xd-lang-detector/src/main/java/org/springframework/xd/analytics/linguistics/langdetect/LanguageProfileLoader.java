@@ -0,0 +1,272 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.linguistics.langdetect;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.cybozu.labs.langdetect.ErrorCode;
+import com.cybozu.labs.langdetect.LangDetectException;
+import com.cybozu.labs.langdetect.util.LangProfile;
+import net.arnx.jsonic.JSON;
+import net.arnx.jsonic.JSONException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Reads the JSON language profiles of the {@code langdetect} library into a {@link LanguageProfileTable}.
+ * <p>
+ * The n-gram probabilities are computed the same way as {@link com.cybozu.labs.langdetect.DetectorFactory} does, but
+ * are collected per loader instead of in the global state of the {@code DetectorFactory}, so several modules can load
+ * different profiles at the same time. The languages keep the order the {@code DetectorFactory} would load them in,
+ * which keeps the results of a seeded detection the same. Each table records the source of its profiles, i.e. the
+ * text model or directory they were loaded from and a SHA-256 hash of their contents.
+ * </p>
+ */
+public class LanguageProfileLoader {
+
+	private static final Logger LOG = LoggerFactory.getLogger(LanguageProfileLoader.class);
+
+	private final boolean doublePrecision;
+
+	/**
+	 * Creates a new {@link LanguageProfileLoader}.
+	 *
+	 * @param doublePrecision whether the loaded tables store the probabilities as {@code double}s.
+	 */
+	public LanguageProfileLoader(boolean doublePrecision) {
+		this.doublePrecision = doublePrecision;
+	}
+
+	/**
+	 * Loads the profiles of the given {@link TextModel} that are shipped with the {@code langdetect} library for every
+	 * language of the available {@link Locale}s.
+	 *
+	 * @param textModel must not be {@literal null}
+	 * @return a table with the {@link #getEmbeddedProfilesSource(TextModel) source} of the profiles.
+	 * @throws LangDetectException if a profile cannot be read.
+	 */
+	public LanguageProfileTable loadEmbeddedProfiles(TextModel textModel) throws LangDetectException {
+
+		Assert.notNull(textModel, "textModel");
+
+		LanguageProfileTable.Builder builder = new LanguageProfileTable.Builder();
+
+		return builder.build(doublePrecision, readEmbeddedProfiles(textModel, builder));
+	}
+
+	/**
+	 * Identifies the profiles that {@link #loadEmbeddedProfiles(TextModel)} would load by the text model and the hash of
+	 * their contents, without parsing them.
+	 *
+	 * @param textModel must not be {@literal null}
+	 * @return
+	 * @throws LangDetectException if a profile cannot be read.
+	 */
+	public String getEmbeddedProfilesSource(TextModel textModel) throws LangDetectException {
+
+		Assert.notNull(textModel, "textModel");
+
+		return readEmbeddedProfiles(textModel, null);
+	}
+
+	/**
+	 * Loads the profiles of the given directory, one file per language.
+	 *
+	 * @param profileDirectory must not be {@literal null}
+	 * @return a table with the {@link #getProfilesSource(File) source} of the profiles.
+	 * @throws LangDetectException if the directory or a profile cannot be read.
+	 */
+	public LanguageProfileTable loadProfiles(File profileDirectory) throws LangDetectException {
+
+		Assert.notNull(profileDirectory, "profileDirectory");
+
+		LanguageProfileTable.Builder builder = new LanguageProfileTable.Builder();
+
+		return builder.build(doublePrecision, readProfiles(profileDirectory, builder));
+	}
+
+	/**
+	 * Identifies the profiles that {@link #loadProfiles(File)} would load by the directory and the hash of their
+	 * contents, without parsing them.
+	 *
+	 * @param profileDirectory must not be {@literal null}
+	 * @return
+	 * @throws LangDetectException if the directory or a profile cannot be read.
+	 */
+	public String getProfilesSource(File profileDirectory) throws LangDetectException {
+
+		Assert.notNull(profileDirectory, "profileDirectory");
+
+		return readProfiles(profileDirectory, null);
+	}
+
+	/**
+	 * Reads the embedded profiles of the given {@link TextModel} and adds them to the given builder, if any.
+	 *
+	 * @return the source of the profiles.
+	 */
+	private static String readEmbeddedProfiles(TextModel textModel, LanguageProfileTable.Builder builder)
+			throws LangDetectException {
+
+		Set<String> supportedLanguages = new TreeSet<String>();
+		for (Locale locale : Locale.getAvailableLocales()) {
+
+			if (locale.getLanguage().isEmpty()) {
+				continue;
+			}
+
+			supportedLanguages.add(locale.getLanguage().toLowerCase());
+		}
+
+		//added these manually since they were not present in the available Locales.
+		supportedLanguages.add("zh-cn");
+		supportedLanguages.add("zh-tw");
+
+		MessageDigest digest = newDigest();
+		ClassLoader classLoader = LangProfile.class.getClassLoader();
+
+		for (String lang : supportedLanguages) {
+
+			String location = "profiles/" + textModel.name().toLowerCase() + "/" + lang;
+
+			byte[] profile;
+			try (InputStream is = classLoader.getResourceAsStream(location)) {
+
+				if (is == null) {
+					continue;
+				}
+
+				profile = StreamUtils.copyToByteArray(is);
+			} catch (IOException ex) {
+				throw new LangDetectException(ErrorCode.FileLoadError, "can't open '" + location + "'", ex);
+			}
+
+			readProfile(builder, digest, profile, location);
+		}
+
+		return "textModel=" + textModel + ",languageProfileLocation=,sha256=" + toHex(digest.digest());
+	}
+
+	/**
+	 * Reads the profiles of the given directory and adds them to the given builder, if any.
+	 *
+	 * @return the source of the profiles.
+	 */
+	private static String readProfiles(File profileDirectory, LanguageProfileTable.Builder builder)
+			throws LangDetectException {
+
+		File[] files = profileDirectory.listFiles();
+		if (files == null) {
+			throw new LangDetectException(ErrorCode.NeedLoadProfileError, "Not found profile: " + profileDirectory);
+		}
+
+		MessageDigest digest = newDigest();
+
+		for (File file : files) {
+
+			if (file.getName().startsWith(".") || !file.isFile()) {
+				continue;
+			}
+
+			byte[] profile;
+			try (InputStream is = new FileInputStream(file)) {
+				profile = StreamUtils.copyToByteArray(is);
+			} catch (IOException ex) {
+				throw new LangDetectException(ErrorCode.FileLoadError, "can't open '" + file.getName() + "'", ex);
+			}
+
+			readProfile(builder, digest, profile, file.getName());
+		}
+
+		return "textModel=,languageProfileLocation=" + profileDirectory.getAbsolutePath() + ",sha256="
+				+ toHex(digest.digest());
+	}
+
+	private static void readProfile(LanguageProfileTable.Builder builder, MessageDigest digest, byte[] profile,
+			String location) throws LangDetectException {
+
+		digest.update(location.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(profile);
+
+		if (builder != null) {
+			addProfile(builder, profile, location);
+		}
+	}
+
+	private static void addProfile(LanguageProfileTable.Builder builder, byte[] data, String location)
+			throws LangDetectException {
+
+		LangProfile profile;
+		try {
+			profile = JSON.decode(new ByteArrayInputStream(data), LangProfile.class);
+		} catch (JSONException ex) {
+			throw new LangDetectException(ErrorCode.FormatError, "profile format error in '" + location + "'", ex);
+		} catch (IOException ex) {
+			throw new LangDetectException(ErrorCode.FileLoadError, "can't open '" + location + "'", ex);
+		}
+
+		if (builder.hasLanguage(profile.name)) {
+			throw new LangDetectException(ErrorCode.DuplicateLangError, "duplicate the same language profile");
+		}
+
+		int language = builder.addLanguage(profile.name);
+
+		for (Map.Entry<String, Integer> entry : profile.freq.entrySet()) {
+
+			int length = entry.getKey().length();
+			if (length < 1 || length > LanguageProfileTable.MAX_NGRAM_LENGTH) {
+				continue;
+			}
+
+			builder.add(entry.getKey(), language, entry.getValue().doubleValue() / profile.n_words[length - 1]);
+		}
+
+		LOG.debug("Loaded language profile {} from {}.", profile.name, location);
+	}
+
+	private static MessageDigest newDigest() {
+
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("SHA-256 is not supported", ex);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+
+		return hex.toString();
+	}
+}
@@ -0,0 +1,555 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.linguistics.langdetect;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.Assert;
+
+/**
+ * An immutable table of the n-gram probabilities of a set of language profiles that is kept outside of the heap.
+ * <p>
+ * The n-grams of up to three characters are packed into {@code long} keys and stored in an open-addressing hash table
+ * with linear probing. Each key refers to a row with the probability of the n-gram in every language stored next to
+ * each other, so scoring an n-gram reads one contiguous row instead of following a {@code String} key and a
+ * {@code double[]} per entry of a {@link java.util.HashMap}. The probabilities are stored as {@code float}s, or as
+ * {@code double}s if the scores have to be exactly the ones of the {@link com.cybozu.labs.langdetect.Detector}.
+ * </p>
+ * A table can be written to a file once and memory-mapped from there later on, which avoids parsing the language
+ * profiles on startup and lets several processes share the same pages. The file records the {@link #getSource() source}
+ * of the profiles the table was built from, so a table of other profiles can be told apart.
+ */
+public class LanguageProfileTable {
+
+	static final int MAX_NGRAM_LENGTH = 3;
+
+	private static final int MAGIC = 0x4c504654;
+
+	private static final int VERSION = 3;
+
+	private static final long EMPTY_KEY = 0L;
+
+	private final List<String> languages;
+
+	private final String source;
+
+	private final int size;
+
+	private final int mask;
+
+	private final boolean doublePrecision;
+
+	private final LongBuffer keys;
+
+	private final IntBuffer rows;
+
+	private final FloatBuffer floatProbabilities;
+
+	private final DoubleBuffer doubleProbabilities;
+
+	private final ByteBuffer buffer;
+
+	private LanguageProfileTable(List<String> languages, String source, int size, int capacity,
+			boolean doublePrecision, ByteBuffer buffer) {
+
+		this.languages = Collections.unmodifiableList(new ArrayList<String>(languages));
+		this.source = source;
+		this.size = size;
+		this.mask = capacity - 1;
+		this.doublePrecision = doublePrecision;
+		this.buffer = buffer;
+
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		this.keys = slice(buffer, 0, capacity * 8).asLongBuffer();
+		this.rows = slice(buffer, capacity * 8, capacity * 4).asIntBuffer();
+
+		ByteBuffer probabilities = slice(buffer, capacity * 12, size * languages.size()
+				* probabilityWidth(doublePrecision));
+
+		this.floatProbabilities = doublePrecision ? null : probabilities.asFloatBuffer();
+		this.doubleProbabilities = doublePrecision ? probabilities.asDoubleBuffer() : null;
+	}
+
+	/**
+	 * Builds a new {@link LanguageProfileTable} with {@code float} probabilities from the n-gram probabilities of the
+	 * given languages. Words that are longer than {@link #MAX_NGRAM_LENGTH} are skipped, since they are never scored.
+	 *
+	 * @param languages must not be {@literal null}
+	 * @param wordLangProbMap the probabilities of each n-gram per language in the order of the given
+	 *          {@code languages}, must not be {@literal null}
+	 * @return
+	 */
+	public static LanguageProfileTable build(List<String> languages, Map<String, double[]> wordLangProbMap) {
+
+		Assert.notNull(languages, "languages");
+		Assert.notNull(wordLangProbMap, "wordLangProbMap");
+
+		Builder builder = new Builder();
+		for (String language : languages) {
+			builder.addLanguage(language);
+		}
+
+		for (Map.Entry<String, double[]> entry : wordLangProbMap.entrySet()) {
+
+			Assert.isTrue(entry.getValue().length == languages.size(), "Probabilities of " + entry.getKey()
+					+ " do not match the number of languages");
+
+			for (int i = 0; i < languages.size(); i++) {
+				builder.add(entry.getKey(), i, entry.getValue()[i]);
+			}
+		}
+
+		return builder.build(false, "");
+	}
+
+	/**
+	 * Maps the {@link LanguageProfileTable} previously written to the given file into memory.
+	 *
+	 * @param file must not be {@literal null}
+	 * @return
+	 * @throws IOException if the file cannot be read or is no language profile table.
+	 */
+	public static LanguageProfileTable map(File file) throws IOException {
+
+		Assert.notNull(file, "file");
+
+		List<String> languages = new ArrayList<String>();
+		String source;
+		int headerSize;
+		int size;
+		int capacity;
+		boolean doublePrecision;
+
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(file + " is not a language profile table");
+			}
+
+			headerSize = in.readInt();
+			size = in.readInt();
+			capacity = in.readInt();
+			doublePrecision = in.readBoolean();
+			source = in.readUTF();
+
+			int languageCount = in.readInt();
+			for (int i = 0; i < languageCount; i++) {
+				languages.add(in.readUTF());
+			}
+		}
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+
+			long bufferSize = bufferSize(capacity, size, languages.size(), doublePrecision);
+			if (raf.length() != headerSize + bufferSize) {
+				throw new IOException(file + " is truncated");
+			}
+
+			// the mapping stays valid after the channel is closed.
+			return new LanguageProfileTable(languages, source, size, capacity, doublePrecision, raf.getChannel().map(
+					FileChannel.MapMode.READ_ONLY, headerSize, bufferSize));
+		}
+	}
+
+	/**
+	 * Writes this {@link LanguageProfileTable} to the given file so that it can be mapped with {@link #map(File)}. The
+	 * table is written to a temporary file next to it first and then moved over the given file, since truncating a file
+	 * that is still mapped would break the tables mapped from it.
+	 *
+	 * @param file must not be {@literal null}
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+
+		Assert.notNull(file, "file");
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(header);
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(0);
+		out.writeInt(size);
+		out.writeInt(mask + 1);
+		out.writeBoolean(doublePrecision);
+		out.writeUTF(source);
+		out.writeInt(languages.size());
+		for (String language : languages) {
+			out.writeUTF(language);
+		}
+
+		// keeps the mapped keys aligned.
+		while (out.size() % 8 != 0) {
+			out.writeByte(0);
+		}
+
+		byte[] headerBytes = header.toByteArray();
+		ByteBuffer.wrap(headerBytes).putInt(8, headerBytes.length);
+
+		File tempFile = File.createTempFile(file.getName() + "-", ".tmp", file.getAbsoluteFile().getParentFile());
+
+		try {
+
+			try (FileOutputStream fos = new FileOutputStream(tempFile)) {
+
+				FileChannel channel = fos.getChannel();
+				channel.write(ByteBuffer.wrap(headerBytes));
+
+				ByteBuffer data = buffer.duplicate();
+				data.clear();
+				while (data.hasRemaining()) {
+					channel.write(data);
+				}
+			}
+
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * Returns the row of the n-gram with the given key.
+	 *
+	 * @param key the key of the n-gram as created by {@link #key(char[], int, int)}
+	 * @return the row or {@literal -1} if the n-gram is not part of any language profile.
+	 */
+	public int rowOf(long key) {
+
+		int slot = slotOf(keys, mask, key);
+
+		return keys.get(slot) == EMPTY_KEY ? -1 : rows.get(slot);
+	}
+
+	/**
+	 * Multiplies the given probabilities of each language by the probability of the n-gram in the given row plus the
+	 * given {@code weight}.
+	 *
+	 * @param prob the probability per language, in the order of {@link #getLanguages()}
+	 * @param row
+	 * @param weight
+	 */
+	public void updateProbabilities(double[] prob, int row, double weight) {
+
+		int offset = row * prob.length;
+
+		if (doublePrecision) {
+			for (int i = 0; i < prob.length; i++) {
+				prob[i] *= weight + doubleProbabilities.get(offset + i);
+			}
+			return;
+		}
+
+		for (int i = 0; i < prob.length; i++) {
+			prob[i] *= weight + floatProbabilities.get(offset + i);
+		}
+	}
+
+	/**
+	 * @param row
+	 * @param language the index of the language in {@link #getLanguages()}
+	 * @return the probability of the n-gram in the given row for the given language.
+	 */
+	public double getProbability(int row, int language) {
+
+		int index = row * languages.size() + language;
+
+		return doublePrecision ? doubleProbabilities.get(index) : floatProbabilities.get(index);
+	}
+
+	/**
+	 * @return the languages of this table, their index is the column of their probabilities.
+	 */
+	public List<String> getLanguages() {
+		return languages;
+	}
+
+	/**
+	 * @return the number of n-grams in this table.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return whether the probabilities are stored as {@code double}s.
+	 */
+	public boolean isDoublePrecision() {
+		return doublePrecision;
+	}
+
+	/**
+	 * @return the identity of the language profiles this table was built from as given to
+	 *         {@link Builder#build(boolean, String)}, e.g. their location and hash, or an empty {@code String}.
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Packs the given n-gram into a {@code long} key.
+	 *
+	 * @param ngram must not be {@literal null}
+	 * @return
+	 */
+	public static long key(String ngram) {
+
+		Assert.isTrue(isNGram(ngram), "Unsupported n-gram: " + ngram);
+
+		return key(ngram.toCharArray(), 0, ngram.length());
+	}
+
+	/**
+	 * Packs the given characters into a {@code long} key. The length of the n-gram is stored above the characters, which
+	 * keeps n-grams of different lengths apart and the key distinct from the empty slot marker.
+	 *
+	 * @param chars
+	 * @param offset
+	 * @param length between {@literal 1} and {@literal 3}
+	 * @return
+	 */
+	public static long key(char[] chars, int offset, int length) {
+
+		long key = length;
+		for (int i = offset; i < offset + length; i++) {
+			key = key << 16 | chars[i];
+		}
+
+		return key;
+	}
+
+	private static boolean isNGram(String word) {
+		return word.length() >= 1 && word.length() <= MAX_NGRAM_LENGTH;
+	}
+
+	private static int slotOf(LongBuffer keys, int mask, long key) {
+
+		int slot = hash(key) & mask;
+		while (true) {
+
+			long current = keys.get(slot);
+			if (current == key || current == EMPTY_KEY) {
+				return slot;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private static int hash(long key) {
+
+		long h = key * 0x9E3779B97F4A7C15L;
+
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static int probabilityWidth(boolean doublePrecision) {
+		return doublePrecision ? 8 : 4;
+	}
+
+	private static long bufferSize(int capacity, int size, int languageCount, boolean doublePrecision) {
+		return capacity * 12L + (long) size * languageCount * probabilityWidth(doublePrecision);
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.position(offset);
+		duplicate.limit(offset + length);
+
+		return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Collects the n-gram probabilities of one language profile after the other into primitive arrays and lays them out
+	 * as a {@link LanguageProfileTable}, so the profiles never have to be held as one {@link java.util.HashMap} per
+	 * n-gram.
+	 */
+	public static class Builder {
+
+		private final List<String> languages = new ArrayList<String>();
+
+		private LongBuffer keys = LongBuffer.allocate(16);
+
+		private int[] rows = new int[16];
+
+		private int size;
+
+		private int[] entryRows = new int[1024];
+
+		private int[] entryLanguages = new int[1024];
+
+		private double[] entryProbabilities = new double[1024];
+
+		private int entryCount;
+
+		/**
+		 * Adds a new language, its probabilities are given with the returned index.
+		 *
+		 * @param language must not be {@literal null}
+		 * @return the index of the language.
+		 */
+		public int addLanguage(String language) {
+
+			Assert.notNull(language, "language");
+			Assert.isTrue(!languages.contains(language), "Duplicate language: " + language);
+
+			languages.add(language);
+
+			return languages.size() - 1;
+		}
+
+		/**
+		 * @param language
+		 * @return whether a language with the given name was already added.
+		 */
+		public boolean hasLanguage(String language) {
+			return languages.contains(language);
+		}
+
+		/**
+		 * Adds the probability of the given n-gram for the language with the given index. N-grams that are longer than
+		 * {@link LanguageProfileTable#MAX_NGRAM_LENGTH} are skipped.
+		 *
+		 * @param ngram must not be {@literal null}
+		 * @param language the index returned by {@link #addLanguage(String)}
+		 * @param probability
+		 * @return
+		 */
+		public Builder add(String ngram, int language, double probability) {
+
+			Assert.isTrue(language >= 0 && language < languages.size(), "Unknown language: " + language);
+
+			if (!isNGram(ngram)) {
+				return this;
+			}
+
+			if (entryCount == entryRows.length) {
+				entryRows = Arrays.copyOf(entryRows, entryCount * 2);
+				entryLanguages = Arrays.copyOf(entryLanguages, entryCount * 2);
+				entryProbabilities = Arrays.copyOf(entryProbabilities, entryCount * 2);
+			}
+
+			entryRows[entryCount] = rowOf(key(ngram));
+			entryLanguages[entryCount] = language;
+			entryProbabilities[entryCount] = probability;
+			entryCount++;
+
+			return this;
+		}
+
+		/**
+		 * Lays out the collected probabilities as a new {@link LanguageProfileTable} outside of the heap.
+		 *
+		 * @param doublePrecision whether to store the probabilities as {@code double}s instead of {@code float}s.
+		 * @param source the identity of the language profiles, must not be {@literal null}
+		 * @return
+		 */
+		public LanguageProfileTable build(boolean doublePrecision, String source) {
+
+			Assert.notNull(source, "source");
+
+			int capacity = keys.capacity();
+			long bufferSize = bufferSize(capacity, size, languages.size(), doublePrecision);
+
+			Assert.isTrue(bufferSize <= Integer.MAX_VALUE, "Too many n-grams: " + size);
+
+			LanguageProfileTable table = new LanguageProfileTable(languages, source, size, capacity, doublePrecision,
+					ByteBuffer.allocateDirect((int) bufferSize));
+
+			for (int slot = 0; slot < capacity; slot++) {
+				table.keys.put(slot, keys.get(slot));
+				table.rows.put(slot, rows[slot]);
+			}
+
+			for (int i = 0; i < entryCount; i++) {
+
+				int index = entryRows[i] * languages.size() + entryLanguages[i];
+
+				if (doublePrecision) {
+					table.doubleProbabilities.put(index, entryProbabilities[i]);
+				} else {
+					table.floatProbabilities.put(index, (float) entryProbabilities[i]);
+				}
+			}
+
+			return table;
+		}
+
+		private int rowOf(long key) {
+
+			int slot = slotOf(keys, keys.capacity() - 1, key);
+			if (keys.get(slot) != EMPTY_KEY) {
+				return rows[slot];
+			}
+
+			// keeps the table at most half full to keep the probe sequences short.
+			if ((size + 1) * 2 > keys.capacity()) {
+				grow();
+				slot = slotOf(keys, keys.capacity() - 1, key);
+			}
+
+			keys.put(slot, key);
+			rows[slot] = size;
+
+			return size++;
+		}
+
+		private void grow() {
+
+			LongBuffer oldKeys = keys;
+			int[] oldRows = rows;
+
+			keys = LongBuffer.allocate(oldKeys.capacity() * 2);
+			rows = new int[oldRows.length * 2];
+
+			for (int i = 0; i < oldKeys.capacity(); i++) {
+
+				long key = oldKeys.get(i);
+				if (key == EMPTY_KEY) {
+					continue;
+				}
+
+				int slot = slotOf(keys, keys.capacity() - 1, key);
+				keys.put(slot, key);
+				rows[slot] = oldRows[i];
+			}
+		}
+	}
+}
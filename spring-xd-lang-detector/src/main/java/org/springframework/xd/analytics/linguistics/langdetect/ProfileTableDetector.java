@@ -0,0 +1,503 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.linguistics.langdetect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import com.cybozu.labs.langdetect.ErrorCode;
+import com.cybozu.labs.langdetect.LangDetectException;
+import com.cybozu.labs.langdetect.Language;
+import com.cybozu.labs.langdetect.util.NGram;
+import org.springframework.util.Assert;
+
+/**
+ * Detects the language of a text with the n-gram probabilities of a {@link LanguageProfileTable}.
+ * <p>
+ * Follows the naive Bayesian sampling of {@link com.cybozu.labs.langdetect.Detector}, but extracts the n-grams from a
+ * reused {@code char[]} into table rows instead of creating a {@code String} per n-gram. Instances are not thread-safe
+ * and are meant to be reused for many texts by one thread at a time.
+ * </p>
+ * <p>
+ * The {@code Detector} always averages {@literal 7} sampling trials. With a confidence threshold the detector stops
+ * after the second or a later trial once the averaged probability of the most likely language reaches the threshold or
+ * changes by less than {@literal 0.01} from the previous trial, which is the common case for texts in one language.
+ * The number of trials and sampling iterations of the last text are available via {@link #getTrialCount()} and
+ * {@link #getIterationCount()}.
+ * </p>
+ */
+public class ProfileTableDetector {
+
+	static final String UNKNOWN_LANGUAGE = "unknown";
+
+	private static final double ALPHA = 0.5;
+
+	private static final double ALPHA_WIDTH = 0.05;
+
+	private static final int ITERATION_LIMIT = 1000;
+
+	private static final double PROB_THRESHOLD = 0.1;
+
+	private static final double CONV_THRESHOLD = 0.99999;
+
+	private static final int BASE_FREQ = 10000;
+
+	static final int N_TRIAL = 7;
+
+	private static final int MIN_TRIALS = 2;
+
+	private static final double STABILITY_DELTA = 0.01;
+
+	private static final int MAX_TEXT_LENGTH = 10000;
+
+	private static final Pattern URL_REGEX = Pattern.compile("https?://[-_.?&~;+=/#0-9A-Za-z]{1,2076}");
+
+	private static final Pattern MAIL_REGEX = Pattern.compile("[-_.0-9A-Za-z]{1,64}@[-_0-9A-Za-z]{1,255}[-_.0-9A-Za-z]{1,255}");
+
+	private static final String VIETNAMESE_DIACRITICAL_MARKS = "\u0300\u0301\u0303\u0309\u0323";
+
+	private final LanguageProfileTable table;
+
+	private final double[] priors;
+
+	private final Long seed;
+
+	private final Double confidenceThreshold;
+
+	private final Random random = new Random();
+
+	private final double[] langprob;
+
+	private final double[] prob;
+
+	private final char[] grams = new char[LanguageProfileTable.MAX_NGRAM_LENGTH];
+
+	private char[] text = new char[256];
+
+	private int[] ngramRows = new int[256];
+
+	private int trialCount;
+
+	private int iterationCount;
+
+	/**
+	 * Creates a new {@link ProfileTableDetector}.
+	 *
+	 * @param table must not be {@literal null}
+	 * @param priors the normalized prior probability per language of the {@code table}, may be {@literal null} to
+	 *          assume the same probability for every language.
+	 * @param seed the seed for the sampling of the n-grams, may be {@literal null} for a random seed per text.
+	 */
+	public ProfileTableDetector(LanguageProfileTable table, double[] priors, Long seed) {
+		this(table, priors, seed, null);
+	}
+
+	/**
+	 * Creates a new {@link ProfileTableDetector} that stops sampling once the detected language is certain enough.
+	 *
+	 * @param table must not be {@literal null}
+	 * @param priors the normalized prior probability per language of the {@code table}, may be {@literal null} to
+	 *          assume the same probability for every language.
+	 * @param seed the seed for the sampling of the n-grams, may be {@literal null} for a random seed per text.
+	 * @param confidenceThreshold the averaged probability of the most likely language after which no further trials
+	 *          are run, may be {@literal null} to always run all trials like the {@code Detector}.
+	 */
+	public ProfileTableDetector(LanguageProfileTable table, double[] priors, Long seed, Double confidenceThreshold) {
+
+		Assert.notNull(table, "table");
+		Assert.isTrue(priors == null || priors.length == table.getLanguages().size(),
+				"priors must contain a probability per language");
+
+		this.table = table;
+		this.priors = priors;
+		this.seed = seed;
+		this.confidenceThreshold = confidenceThreshold;
+		this.langprob = new double[table.getLanguages().size()];
+		this.prob = new double[table.getLanguages().size()];
+	}
+
+	/**
+	 * Normalizes the given language priorities to prior probabilities the same way
+	 * {@link com.cybozu.labs.langdetect.Detector#setPriorMap(java.util.HashMap)} does.
+	 *
+	 * @param languages must not be {@literal null}
+	 * @param priorities may be {@literal null}
+	 * @return the prior probability per language or {@literal null} if no priorities are given.
+	 * @throws LangDetectException if a priority is negative or all are zero.
+	 */
+	public static double[] toPriors(List<String> languages, Map<String, Double> priorities) throws LangDetectException {
+
+		if (priorities == null || priorities.isEmpty()) {
+			return null;
+		}
+
+		double[] priors = new double[languages.size()];
+		double sum = 0;
+
+		for (int i = 0; i < priors.length; i++) {
+
+			Double priority = priorities.get(languages.get(i));
+			if (priority == null) {
+				continue;
+			}
+
+			if (priority < 0) {
+				throw new LangDetectException(ErrorCode.InitParamError, "Prior probability must be non-negative.");
+			}
+
+			priors[i] = priority;
+			sum += priority;
+		}
+
+		if (sum <= 0) {
+			throw new LangDetectException(ErrorCode.InitParamError, "More one of prior probability must be non-zero.");
+		}
+
+		for (int i = 0; i < priors.length; i++) {
+			priors[i] /= sum;
+		}
+
+		return priors;
+	}
+
+	/**
+	 * Detects the languages of the given text.
+	 *
+	 * @param text must not be {@literal null}
+	 * @return the languages with a probability above {@literal 0.1}, the most likely first.
+	 * @throws LangDetectException if the text contains no n-gram of any language profile.
+	 */
+	public ArrayList<Language> getProbabilities(String text) throws LangDetectException {
+
+		int length = cleanText(appendText(text));
+		int ngramCount = extractNGrams(length);
+
+		trialCount = 0;
+		iterationCount = 0;
+
+		if (ngramCount == 0) {
+			throw new LangDetectException(ErrorCode.CantDetectError, "no features in text");
+		}
+
+		detectBlock(ngramCount);
+
+		return sortProbability();
+	}
+
+	/**
+	 * @return the languages that are detected, in the order of the table.
+	 */
+	public List<String> getLanguages() {
+		return table.getLanguages();
+	}
+
+	/**
+	 * @return the number of sampling trials run for the last text.
+	 */
+	public int getTrialCount() {
+		return trialCount;
+	}
+
+	/**
+	 * @return the number of n-grams sampled over all trials for the last text.
+	 */
+	public int getIterationCount() {
+		return iterationCount;
+	}
+
+	/**
+	 * @param probabilities as returned by {@link #getProbabilities(String)}
+	 * @return the most likely language or {@code unknown}.
+	 */
+	public static String mostLikelyLanguage(List<Language> probabilities) {
+		return probabilities.isEmpty() ? UNKNOWN_LANGUAGE : probabilities.get(0).lang;
+	}
+
+	/**
+	 * Copies the given text into the text buffer, removing URLs and e-mail addresses and collapsing consecutive spaces.
+	 * The regular expressions only run if the text can contain a match at all.
+	 *
+	 * @return the length of the text in the buffer.
+	 */
+	private int appendText(String input) {
+
+		if (input.indexOf("http") >= 0) {
+			input = URL_REGEX.matcher(input).replaceAll(" ");
+		}
+
+		if (input.indexOf('@') >= 0) {
+			input = MAIL_REGEX.matcher(input).replaceAll(" ");
+		}
+
+		if (containsAny(input, VIETNAMESE_DIACRITICAL_MARKS)) {
+			input = NGram.normalize_vi(input);
+		}
+
+		int limit = Math.min(input.length(), MAX_TEXT_LENGTH);
+		if (text.length < limit) {
+			text = new char[limit];
+		}
+
+		int length = 0;
+		char pre = 0;
+		for (int i = 0; i < limit; i++) {
+
+			char c = input.charAt(i);
+			if (c != ' ' || pre != ' ') {
+				text[length++] = c;
+			}
+			pre = c;
+		}
+
+		return length;
+	}
+
+	/**
+	 * Removes the latin characters if the text is dominated by non-latin ones.
+	 *
+	 * @return the length of the cleaned text.
+	 */
+	private int cleanText(int length) {
+
+		int latinCount = 0;
+		int nonLatinCount = 0;
+
+		for (int i = 0; i < length; i++) {
+
+			char c = text[i];
+			if (c <= 'z' && c >= 'A') {
+				latinCount++;
+			} else if (c >= '\u0300' && Character.UnicodeBlock.of(c) != Character.UnicodeBlock.LATIN_EXTENDED_ADDITIONAL) {
+				nonLatinCount++;
+			}
+		}
+
+		if (latinCount * 2 >= nonLatinCount) {
+			return length;
+		}
+
+		int cleanedLength = 0;
+		for (int i = 0; i < length; i++) {
+
+			char c = text[i];
+			if (c > 'z' || c < 'A') {
+				text[cleanedLength++] = c;
+			}
+		}
+
+		return cleanedLength;
+	}
+
+	/**
+	 * Collects the table rows of the 1-, 2- and 3-grams of the text with the same windowing rules as
+	 * {@link com.cybozu.labs.langdetect.util.NGram}: n-grams never span a word boundary on both sides and words in
+	 * capitals are skipped.
+	 *
+	 * @return the number of n-grams found in the table.
+	 */
+	private int extractNGrams(int length) {
+
+		int count = 0;
+		int gramLength = 1;
+		boolean capitalWord = false;
+
+		grams[0] = ' ';
+
+		for (int i = 0; i < length; i++) {
+
+			char c = NGram.normalize(text[i]);
+			char last = grams[gramLength - 1];
+
+			if (last == ' ') {
+
+				grams[0] = ' ';
+				gramLength = 1;
+				capitalWord = false;
+
+				if (c == ' ') {
+					continue;
+				}
+			} else if (gramLength == grams.length) {
+				grams[0] = grams[1];
+				grams[1] = grams[2];
+				gramLength--;
+			}
+
+			grams[gramLength++] = c;
+
+			if (Character.isUpperCase(c)) {
+				if (Character.isUpperCase(last)) {
+					capitalWord = true;
+				}
+			} else {
+				capitalWord = false;
+			}
+
+			if (capitalWord) {
+				continue;
+			}
+
+			for (int n = 1; n <= gramLength; n++) {
+
+				if (n == 1 && c == ' ') {
+					continue;
+				}
+
+				int row = table.rowOf(LanguageProfileTable.key(grams, gramLength - n, n));
+				if (row < 0) {
+					continue;
+				}
+
+				if (count == ngramRows.length) {
+					ngramRows = Arrays.copyOf(ngramRows, count * 2);
+				}
+				ngramRows[count++] = row;
+			}
+		}
+
+		return count;
+	}
+
+	private void detectBlock(int ngramCount) {
+
+		Arrays.fill(langprob, 0);
+
+		if (seed != null) {
+			random.setSeed(seed);
+		}
+
+		int topLanguage = -1;
+		double topProbability = 0;
+
+		while (trialCount < N_TRIAL) {
+
+			initProbability();
+
+			double alpha = ALPHA + random.nextGaussian() * ALPHA_WIDTH;
+			double weight = alpha / BASE_FREQ;
+
+			for (int i = 0;; i++) {
+
+				table.updateProbabilities(prob, ngramRows[random.nextInt(ngramCount)], weight);
+
+				if (i % 5 == 0 && (normalizeProb(prob) > CONV_THRESHOLD || i >= ITERATION_LIMIT)) {
+					iterationCount += i + 1;
+					break;
+				}
+			}
+
+			for (int j = 0; j < langprob.length; j++) {
+				langprob[j] += prob[j] / N_TRIAL;
+			}
+
+			trialCount++;
+
+			if (confidenceThreshold == null) {
+				continue;
+			}
+
+			int previousTopLanguage = topLanguage;
+			double previousTopProbability = topProbability;
+
+			topLanguage = 0;
+			for (int j = 1; j < langprob.length; j++) {
+				if (langprob[j] > langprob[topLanguage]) {
+					topLanguage = j;
+				}
+			}
+			topProbability = langprob[topLanguage] * N_TRIAL / trialCount;
+
+			if (trialCount >= MIN_TRIALS
+					&& (topProbability >= confidenceThreshold || topLanguage == previousTopLanguage
+							&& Math.abs(topProbability - previousTopProbability) < STABILITY_DELTA)) {
+				break;
+			}
+		}
+
+		if (trialCount < N_TRIAL) {
+			for (int j = 0; j < langprob.length; j++) {
+				langprob[j] = langprob[j] * N_TRIAL / trialCount;
+			}
+		}
+	}
+
+	private void initProbability() {
+
+		if (priors != null) {
+			System.arraycopy(priors, 0, prob, 0, prob.length);
+		} else {
+			Arrays.fill(prob, 1.0 / prob.length);
+		}
+	}
+
+	private static double normalizeProb(double[] prob) {
+
+		double max = 0;
+		double sum = 0;
+
+		for (double p : prob) {
+			sum += p;
+		}
+
+		for (int i = 0; i < prob.length; i++) {
+
+			double p = prob[i] / sum;
+			if (max < p) {
+				max = p;
+			}
+			prob[i] = p;
+		}
+
+		return max;
+	}
+
+	private ArrayList<Language> sortProbability() {
+
+		ArrayList<Language> list = new ArrayList<Language>();
+
+		for (int i = 0; i < langprob.length; i++) {
+
+			double p = langprob[i];
+			if (p <= PROB_THRESHOLD) {
+				continue;
+			}
+
+			int j = 0;
+			while (j < list.size() && list.get(j).prob >= p) {
+				j++;
+			}
+
+			list.add(j, new Language(table.getLanguages().get(i), p));
+		}
+
+		return list;
+	}
+
+	private static boolean containsAny(String text, String chars) {
+
+		for (int i = 0; i < text.length(); i++) {
+			if (chars.indexOf(text.charAt(i)) >= 0) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
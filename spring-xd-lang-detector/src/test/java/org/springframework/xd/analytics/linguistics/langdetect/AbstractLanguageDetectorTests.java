@@ -18,7 +18,6 @@ package org.springframework.xd.analytics.linguistics.langdetect;
 import java.util.List;
 import java.util.NoSuchElementException;
 
-import com.cybozu.labs.langdetect.DetectorFactory;
 import com.cybozu.labs.langdetect.Language;
 import org.junit.Before;
 import org.springframework.xd.tuple.Tuple;
@@ -36,8 +35,6 @@ public abstract class AbstractLanguageDetectorTests {
 	@Before
 	public void setup() throws Exception {
 
-		DetectorFactory.clear();
-
 		languageDetectionProcessor = createNewLanguageDetector();
 		languageDetectionProcessor.afterPropertiesSet();
 	}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.linguistics.langdetect;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import com.cybozu.labs.langdetect.LangDetectException;
+import org.junit.Test;
+import org.springframework.xd.tuple.Tuple;
+
+public class AdaptiveShortTextLanguageDetectorTests extends AbstractLanguageDetectorTests {
+
+	@Override
+	protected LanguageDetector createNewLanguageDetector() {
+
+		LanguageDetector processor = super.createNewLanguageDetector();
+		processor.setDeterministicLanguageDetection(true);
+		processor.setAdaptiveLanguageDetection(true);
+
+		return processor;
+	}
+
+	@Test
+	public void testProcess_simple_short_texts() throws Exception {
+
+		assertThat(languageDetectionProcessor.process(newTupleWithText(Texts.SHORT_ENGLISH_1)).getString(predLangOutField),
+				is("en"));
+		assertThat(languageDetectionProcessor.process(newTupleWithText(Texts.SHORT_GERMAN_1)).getString(predLangOutField),
+				is("de"));
+		assertThat(languageDetectionProcessor.process(newTupleWithText(Texts.SHORT_ITALIAN_1)).getString(predLangOutField),
+				is("it"));
+	}
+
+	@Test
+	public void testProcess_should_report_the_sampling_of_early_exits_in_the_metrics() throws Exception {
+
+		Tuple output = languageDetectionProcessor.process(newTupleWithText(Texts.LONG_GERMAN_1));
+
+		try {
+			languageDetectionProcessor.process(newTupleWithText("1234 !?"));
+			fail("Expected a text without features to be rejected");
+		} catch (LangDetectException expected) {}
+
+		LanguageDetectorMetrics metrics = languageDetectionProcessor.getMetrics();
+
+		assertThat(output.getString(predLangOutField), is("de"));
+		assertThat(extractLanguageProbability(output, "de") > 0.99, is(true));
+		assertThat(metrics.getDetectionCount(), is(1L));
+		assertThat(metrics.getErrorCount(), is(1L));
+		assertThat(metrics.getEarlyExitCount(), is(1L));
+		assertThat(metrics.getTrialCount(), is(2L));
+		assertThat(metrics.getIterationCount() > 0, is(true));
+		assertThat(metrics.getAverageIterationCount(), is((double) metrics.getIterationCount()));
+	}
+}
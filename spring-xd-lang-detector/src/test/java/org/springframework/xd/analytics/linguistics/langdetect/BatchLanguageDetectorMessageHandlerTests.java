@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.linguistics.langdetect;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.cybozu.labs.langdetect.LangDetectException;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.ErrorHandler;
+import org.springframework.xd.tuple.Tuple;
+
+public class BatchLanguageDetectorMessageHandlerTests extends AbstractLanguageDetectorTests {
+
+	private final QueueChannel output = new QueueChannel();
+
+	@After
+	public void tearDown() {
+		languageDetectionProcessor.destroy();
+	}
+
+	@Test
+	public void testShouldEmitOneResultPerMessageWithItsHeaders() {
+
+		BatchLanguageDetectorMessageHandler handler = new BatchLanguageDetectorMessageHandler(languageDetectionProcessor,
+				output);
+
+		handler.handleMessage(batchOf(Texts.SHORT_GERMAN_1, Texts.SHORT_ITALIAN_1));
+
+		Message<?> result = output.receive(0);
+		assertThat(((Tuple) result.getPayload()).getString(predLangOutField), is("de"));
+		assertThat(result.getHeaders().get("seq"), is((Object) 0));
+
+		result = output.receive(0);
+		assertThat(((Tuple) result.getPayload()).getString(predLangOutField), is("it"));
+		assertThat(result.getHeaders().get("seq"), is((Object) 1));
+
+		assertThat(output.receive(0), is(nullValue()));
+	}
+
+	@Test
+	public void testShouldPassOnlyTheFailedMessageToTheErrorHandler() {
+
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+		BatchLanguageDetectorMessageHandler handler = new BatchLanguageDetectorMessageHandler(languageDetectionProcessor,
+				output);
+		handler.setErrorHandler(new ErrorHandler() {
+
+			@Override
+			public void handleError(Throwable t) {
+				errors.add(t);
+			}
+		});
+
+		handler.handleMessage(batchOf(Texts.SHORT_GERMAN_1, "1234 !?", Texts.SHORT_ITALIAN_1));
+
+		assertThat(output.receive(0).getHeaders().get("seq"), is((Object) 0));
+		assertThat(output.receive(0).getHeaders().get("seq"), is((Object) 2));
+		assertThat(output.receive(0), is(nullValue()));
+
+		assertThat(errors.size(), is(1));
+		assertThat(errors.get(0), is(instanceOf(MessageHandlingException.class)));
+		assertThat(errors.get(0).getCause(), is(instanceOf(LangDetectException.class)));
+
+		Message<?> failedMessage = ((MessageHandlingException) errors.get(0)).getFailedMessage();
+		assertThat(failedMessage.getHeaders().get("seq"), is((Object) 1));
+	}
+
+	private Message<List<Message<Tuple>>> batchOf(String... texts) {
+
+		List<Message<Tuple>> messages = new ArrayList<Message<Tuple>>(texts.length);
+		for (int i = 0; i < texts.length; i++) {
+			messages.add(MessageBuilder.withPayload(newTupleWithText(texts[i])).setHeader("seq", i).build());
+		}
+
+		return MessageBuilder.withPayload(messages).build();
+	}
+}
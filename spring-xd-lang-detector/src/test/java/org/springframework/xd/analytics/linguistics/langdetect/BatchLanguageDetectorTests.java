@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.linguistics.langdetect;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.cybozu.labs.langdetect.LangDetectException;
+import com.cybozu.labs.langdetect.Language;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.xd.tuple.Tuple;
+
+public class BatchLanguageDetectorTests extends AbstractLanguageDetectorTests {
+
+	private static final List<String> TEXTS = Arrays.asList(Texts.SHORT_ENGLISH_1, Texts.SHORT_GERMAN_1,
+			Texts.SHORT_ITALIAN_1, Texts.SHORT_ENGLISH_FRENCH_MIX_1, Texts.SHORT_ENGLISH_2, Texts.LONG_ENGLISH_1,
+			Texts.LONG_GERMAN_1, Texts.LONG_ITALIAN_1);
+
+	@Override
+	protected LanguageDetector createNewLanguageDetector() {
+
+		LanguageDetector processor = super.createNewLanguageDetector();
+		processor.setDeterministicLanguageDetection(true);
+
+		return processor;
+	}
+
+	@After
+	public void tearDown() {
+		languageDetectionProcessor.destroy();
+	}
+
+	@Test
+	public void testProcessAll_should_return_the_same_outputs_as_process_in_the_same_order() throws Exception {
+
+		List<Tuple> inputs = new ArrayList<Tuple>();
+		for (int i = 0; i < 200; i++) {
+			inputs.add(newTupleWithText(TEXTS.get(i * 7 % TEXTS.size())));
+		}
+
+		List<DetectionResult<Tuple>> outputs = languageDetectionProcessor.processAll(inputs);
+
+		assertThat(outputs.size(), is(inputs.size()));
+		for (int i = 0; i < inputs.size(); i++) {
+			assertThat(outputs.get(i).getValue().toString(), is(languageDetectionProcessor.process(inputs.get(i)).toString()));
+		}
+	}
+
+	@Test
+	public void testProcessAll_small_batch() throws Exception {
+
+		List<DetectionResult<Tuple>> outputs = languageDetectionProcessor.processAll(Arrays.asList(
+				newTupleWithText(Texts.SHORT_GERMAN_1), newTupleWithText(Texts.SHORT_ITALIAN_1)));
+
+		assertThat(outputs.get(0).getValue().getString(predLangOutField), is("de"));
+		assertThat(outputs.get(1).getValue().getString(predLangOutField), is("it"));
+	}
+
+	@Test
+	public void testDetectAll_should_fail_only_the_text_that_has_no_features() throws Exception {
+
+		List<String> texts = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			texts.add(i == 57 ? "1234 !?" : TEXTS.get(i % TEXTS.size()));
+		}
+
+		List<DetectionResult<List<Language>>> results = languageDetectionProcessor.detectAll(texts);
+
+		assertThat(results.size(), is(texts.size()));
+		for (int i = 0; i < texts.size(); i++) {
+			assertThat(results.get(i).isFailed(), is(i == 57));
+		}
+		assertThat(results.get(57).getError(), is(instanceOf(LangDetectException.class)));
+		assertThat(results.get(57).getValue(), is(nullValue()));
+		assertThat(results.get(49).getValue().get(0).lang, is("de"));
+	}
+
+	@Test
+	public void testProcessAll_should_fail_only_the_input_that_has_no_features() throws Exception {
+
+		List<DetectionResult<Tuple>> outputs = languageDetectionProcessor.processAll(Arrays.asList(
+				newTupleWithText(Texts.SHORT_GERMAN_1), newTupleWithText("1234 !?"), newTupleWithText(Texts.SHORT_ITALIAN_1)));
+
+		assertThat(outputs.get(0).getValue().getString(predLangOutField), is("de"));
+		assertThat(outputs.get(1).isFailed(), is(true));
+		assertThat(outputs.get(2).getValue().getString(predLangOutField), is("it"));
+	}
+
+	@Test
+	public void testDetectAll_should_fail_after_destroy() throws Exception {
+
+		languageDetectionProcessor.destroy();
+
+		List<String> texts = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			texts.add(TEXTS.get(i % TEXTS.size()));
+		}
+
+		for (List<String> batch : Arrays.asList(TEXTS.subList(0, 2), texts)) {
+			try {
+				languageDetectionProcessor.detectAll(batch);
+				fail("Expected a destroyed detector to be rejected");
+			} catch (IllegalStateException expected) {}
+		}
+	}
+}
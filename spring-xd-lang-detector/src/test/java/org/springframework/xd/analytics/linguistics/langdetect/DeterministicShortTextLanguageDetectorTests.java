@@ -90,4 +90,21 @@ public class DeterministicShortTextLanguageDetectorTests extends AbstractLanguag
 
 		assertThat(extractLanguageProbability(firstOutput,"en"), is(equalTo(extractLanguageProbability(secondOutput, "en"))));
 	}
+
+	@Test
+	public void testProcess_should_reuse_detectors_without_leaking_text_between_documents() throws Exception {
+
+		Tuple german = languageDetectionProcessor.process(newTupleWithText(Texts.LONG_GERMAN_1));
+		Tuple english = languageDetectionProcessor.process(newTupleWithText(Texts.SHORT_ENGLISH_2));
+
+		ProfileTableDetector detector = languageDetectionProcessor.acquireDetector();
+		assertThat(languageDetectionProcessor.acquireDetector(), is(not(sameInstance(detector))));
+		languageDetectionProcessor.releaseDetector(detector);
+		assertThat(languageDetectionProcessor.acquireDetector(), is(sameInstance(detector)));
+
+		assertThat(german.getString(predLangOutField), is("de"));
+		assertThat(english.getString(predLangOutField), is("en"));
+		assertThat(extractLanguageProbability(english, "en"), is(equalTo(extractLanguageProbability(
+				languageDetectionProcessor.process(newTupleWithText(Texts.SHORT_ENGLISH_2)), "en"))));
+	}
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.linguistics.langdetect;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.cybozu.labs.langdetect.util.LangProfile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.xd.tuple.Tuple;
+
+public class LanguageProfileTableTests extends AbstractLanguageDetectorTests {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Override
+	protected LanguageDetector createNewLanguageDetector() {
+
+		LanguageDetector processor = super.createNewLanguageDetector();
+		processor.setDeterministicLanguageDetection(true);
+
+		return processor;
+	}
+
+	@Test
+	public void testShouldFindEveryNGramOfTheProfiles() throws Exception {
+
+		List<String> languages = Arrays.asList("de", "en");
+
+		Map<String, double[]> wordLangProbMap = new LinkedHashMap<String, double[]>();
+		wordLangProbMap.put("abcd", new double[] { 0.0, 0.0 });
+		wordLangProbMap.put("a", new double[] { 0.1, 0.2 });
+		wordLangProbMap.put(" a", new double[] { 0.3, 0.4 });
+		wordLangProbMap.put("ab", new double[] { 0.5, 0.6 });
+		wordLangProbMap.put("abc", new double[] { 0.7, 0.8 });
+		wordLangProbMap.put("\u4e00\u4e01", new double[] { 0.9, 1.0 });
+
+		LanguageProfileTable table = LanguageProfileTable.build(languages, wordLangProbMap);
+
+		wordLangProbMap.remove("abcd");
+
+		File file = temporaryFolder.newFile("profiles.table");
+		table.write(file);
+
+		for (LanguageProfileTable candidate : Arrays.asList(table, LanguageProfileTable.map(file))) {
+
+			assertThat(candidate.getLanguages(), is(languages));
+			assertThat(candidate.getSource(), is(""));
+			assertThat(candidate.size(), is(5));
+
+			for (Map.Entry<String, double[]> entry : wordLangProbMap.entrySet()) {
+
+				int row = candidate.rowOf(LanguageProfileTable.key(entry.getKey()));
+
+				assertThat(row, is(not(-1)));
+				assertThat(candidate.getProbability(row, 1), is((double) (float) entry.getValue()[1]));
+			}
+
+			assertThat(candidate.rowOf(LanguageProfileTable.key("b")), is(-1));
+			assertThat(candidate.rowOf(LanguageProfileTable.key("ba")), is(-1));
+		}
+	}
+
+	@Test
+	public void testShouldMapTheTableWrittenOnFirstStart() throws Exception {
+
+		File file = new File(temporaryFolder.getRoot(), "shorttext.table");
+
+		LanguageDetector first = createNewLanguageDetector();
+		first.setLanguageProfileTableLocation(file.getPath());
+		first.afterPropertiesSet();
+
+		assertThat(file.exists(), is(true));
+
+		LanguageDetector second = createNewLanguageDetector();
+		second.setLanguageProfileTableLocation(file.getPath());
+		second.afterPropertiesSet();
+
+		Tuple input = newTupleWithText(Texts.SHORT_GERMAN_1);
+
+		assertThat(second.process(input).getString(predLangOutField), is("de"));
+		assertThat(extractLanguageProbability(second.process(input), "de"),
+				is(equalTo(extractLanguageProbability(first.process(input), "de"))));
+
+		LanguageDetector probabilistic = createNewLanguageDetector();
+		probabilistic.setDeterministicLanguageDetection(false);
+		probabilistic.setLanguageProfileTableLocation(file.getPath());
+		probabilistic.afterPropertiesSet();
+
+		assertThat(LanguageProfileTable.map(file).isDoublePrecision(), is(false));
+		assertThat(probabilistic.process(input).getString(predLangOutField), is("de"));
+	}
+
+	@Test
+	public void testShouldRebuildTheTableOfOtherLanguageProfiles() throws Exception {
+
+		File file = new File(temporaryFolder.getRoot(), "profiles.table");
+
+		LanguageDetector shortText = createNewLanguageDetector();
+		shortText.setLanguageProfileTableLocation(file.getPath());
+		shortText.afterPropertiesSet();
+
+		String shortTextSource = LanguageProfileTable.map(file).getSource();
+		assertThat(shortTextSource, containsString("textModel=SHORTTEXT"));
+
+		LanguageDetector longText = createNewLanguageDetector();
+		longText.setTextModel(TextModel.LONGTEXT);
+		longText.setLanguageProfileTableLocation(file.getPath());
+		longText.afterPropertiesSet();
+
+		assertThat(LanguageProfileTable.map(file).getSource(), containsString("textModel=LONGTEXT"));
+
+		File profileDirectory = temporaryFolder.newFolder("profiles");
+		for (String language : Arrays.asList("de", "en")) {
+			Files.copy(LangProfile.class.getClassLoader().getResourceAsStream("profiles/shorttext/" + language),
+					new File(profileDirectory, language).toPath());
+		}
+
+		LanguageDetector directory = createNewLanguageDetector();
+		directory.setLanguageProfileLocation(profileDirectory.toURI().toString());
+		directory.setLanguageProfileTableLocation(file.getPath());
+		directory.afterPropertiesSet();
+
+		String directorySource = LanguageProfileTable.map(file).getSource();
+		assertThat(directorySource, containsString("languageProfileLocation=" + profileDirectory.getAbsolutePath()));
+		assertThat(LanguageProfileTable.map(file).getLanguages().size(), is(2));
+
+		Files.write(new File(profileDirectory, "en").toPath(), " ".getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.APPEND);
+
+		directory.afterPropertiesSet();
+
+		assertThat(LanguageProfileTable.map(file).getSource(), is(not(directorySource)));
+		assertThat(directory.process(newTupleWithText(Texts.SHORT_GERMAN_1)).getString(predLangOutField), is("de"));
+	}
+
+	@Test
+	public void testShouldRebuildATableThatCannotBeRead() throws Exception {
+
+		File file = temporaryFolder.newFile("profiles.table");
+		Files.write(file.toPath(), "no table".getBytes(StandardCharsets.UTF_8));
+
+		LanguageDetector detector = createNewLanguageDetector();
+		detector.setLanguageProfileTableLocation(file.getPath());
+		detector.afterPropertiesSet();
+
+		assertThat(LanguageProfileTable.map(file).getSource(), containsString("textModel=SHORTTEXT"));
+		assertThat(detector.process(newTupleWithText(Texts.SHORT_GERMAN_1)).getString(predLangOutField), is("de"));
+	}
+}
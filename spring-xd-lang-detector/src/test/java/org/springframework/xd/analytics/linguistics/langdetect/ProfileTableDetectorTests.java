@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.linguistics.langdetect;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import com.cybozu.labs.langdetect.Detector;
+import com.cybozu.labs.langdetect.DetectorFactory;
+import com.cybozu.labs.langdetect.LangDetectException;
+import com.cybozu.labs.langdetect.Language;
+import com.cybozu.labs.langdetect.util.LangProfile;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.util.FileCopyUtils;
+
+public class ProfileTableDetectorTests {
+
+	private static final List<String> TEXTS = Arrays.asList(Texts.SHORT_ENGLISH_1, Texts.SHORT_GERMAN_1,
+			Texts.SHORT_ITALIAN_1, Texts.SHORT_ENGLISH_FRENCH_MIX_1, Texts.SHORT_ENGLISH_2, Texts.LONG_ENGLISH_1,
+			Texts.LONG_GERMAN_1, Texts.LONG_ITALIAN_1, Texts.LONG_ENGLISH_1 + Texts.LONG_GERMAN_1,
+			"Visit http://spring.io or mail info@spring.io", "THE QUICK BROWN FOX jumps over the lazy dog",
+			"Xin chào thế giới", "こんにちは世界 hello world");
+
+	@After
+	public void tearDown() {
+		DetectorFactory.clear();
+	}
+
+	@Test
+	public void testShouldDetectExactlyLikeTheDetectorForShortTexts() throws Exception {
+		assertSameProbabilitiesAsDetector(TextModel.SHORTTEXT, null);
+	}
+
+	@Test
+	public void testShouldDetectExactlyLikeTheDetectorForLongTexts() throws Exception {
+		assertSameProbabilitiesAsDetector(TextModel.LONGTEXT, null);
+	}
+
+	@Test
+	public void testShouldDetectExactlyLikeTheDetectorWithPriorities() throws Exception {
+
+		HashMap<String, Double> priorities = new HashMap<String, Double>();
+		priorities.put("en", 0.2);
+		priorities.put("fr", 0.8);
+
+		assertSameProbabilitiesAsDetector(TextModel.SHORTTEXT, priorities);
+	}
+
+	@Test
+	public void testShouldFailOnTextsWithoutFeatures() throws Exception {
+
+		ProfileTableDetector detector = new ProfileTableDetector(
+				new LanguageProfileLoader(false).loadEmbeddedProfiles(TextModel.SHORTTEXT), null, 0L);
+
+		try {
+			detector.getProbabilities("1234 !?");
+			fail("Expected a text without features to be rejected");
+		} catch (LangDetectException expected) {}
+
+		assertThat(detector.getProbabilities(Texts.SHORT_GERMAN_1).get(0).lang, is("de"));
+	}
+
+	@Test
+	public void testShouldStopSamplingOnceTheLanguageIsCertainEnough() throws Exception {
+
+		LanguageProfileTable table = new LanguageProfileLoader(true).loadEmbeddedProfiles(TextModel.SHORTTEXT);
+		ProfileTableDetector detector = new ProfileTableDetector(table, null, 0L);
+		ProfileTableDetector adaptiveDetector = new ProfileTableDetector(table, null, 0L, 0.99);
+
+		for (String text : TEXTS) {
+
+			List<Language> probabilities = detector.getProbabilities(text);
+			List<Language> adaptiveProbabilities = adaptiveDetector.getProbabilities(text);
+
+			assertThat(detector.getTrialCount(), is(ProfileTableDetector.N_TRIAL));
+			assertThat(adaptiveDetector.getTrialCount() <= detector.getTrialCount(), is(true));
+			assertThat(adaptiveDetector.getIterationCount() <= detector.getIterationCount(), is(true));
+			assertThat(text, adaptiveProbabilities.get(0).lang, is(probabilities.get(0).lang));
+		}
+
+		adaptiveDetector.getProbabilities(Texts.LONG_GERMAN_1);
+
+		assertThat(adaptiveDetector.getTrialCount(), is(2));
+	}
+
+	private void assertSameProbabilitiesAsDetector(TextModel textModel, HashMap<String, Double> priorities)
+			throws Exception {
+
+		LanguageProfileTable table = new LanguageProfileLoader(true).loadEmbeddedProfiles(textModel);
+		ProfileTableDetector tableDetector = new ProfileTableDetector(table, ProfileTableDetector.toPriors(
+				table.getLanguages(), priorities), 0L);
+
+		DetectorFactory.loadProfile(readEmbeddedProfiles(textModel, table.getLanguages()));
+		DetectorFactory.setSeed(0L);
+
+		assertThat(DetectorFactory.getLangList(), is(table.getLanguages()));
+
+		for (String text : TEXTS) {
+
+			Detector detector = DetectorFactory.create();
+			if (priorities != null) {
+				detector.setPriorMap(priorities);
+			}
+			detector.append(text);
+
+			assertThat(text, tableDetector.getProbabilities(text).toString(), is(detector.getProbabilities().toString()));
+		}
+	}
+
+	private static List<String> readEmbeddedProfiles(TextModel textModel, List<String> languages) throws Exception {
+
+		List<String> profiles = new ArrayList<String>();
+
+		for (String language : languages) {
+			try (InputStream is = LangProfile.class.getClassLoader().getResourceAsStream(
+					"profiles/" + textModel.name().toLowerCase() + "/" + language)) {
+				profiles.add(FileCopyUtils.copyToString(new InputStreamReader(is, "UTF-8")));
+			}
+		}
+
+		return profiles;
+	}
+}